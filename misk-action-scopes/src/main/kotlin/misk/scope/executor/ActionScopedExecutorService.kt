@@ -5,17 +5,36 @@ import com.google.common.util.concurrent.MoreExecutors
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutorService
 import misk.concurrent.WrappingListeningExecutorService
+import misk.logging.Mdc
 import misk.scope.ActionScope
 
 /**
  * Wraps a [ListeningExecutorService] to propagate the current action scope to any tasks submitted by the current thread
+ *
+ * If [mdc] is provided, the submitting thread's MDC is propagated as well. Executors that start a new thread per task,
+ * like virtual thread executors, have no other way to carry the MDC across.
  */
-class ActionScopedExecutorService(target: ExecutorService, private val scope: ActionScope) :
+class ActionScopedExecutorService
+@JvmOverloads
+constructor(target: ExecutorService, private val scope: ActionScope, private val mdc: Mdc? = null) :
   WrappingListeningExecutorService() {
 
   private val target = MoreExecutors.listeningDecorator(target)
 
-  override fun <T> wrap(callable: Callable<T>): Callable<T> = scope.propagate(callable)
+  override fun <T> wrap(callable: Callable<T>): Callable<T> {
+    val scoped = scope.propagate(callable)
+    val mdc = mdc ?: return scoped
+    val context = mdc.getCopyOfContextMap() ?: mapOf()
+    return Callable {
+      val previous = mdc.getCopyOfContextMap() ?: mapOf()
+      mdc.setContextMap(context)
+      try {
+        scoped.call()
+      } finally {
+        mdc.setContextMap(previous)
+      }
+    }
+  }
 
   override fun delegate(): ListeningExecutorService = target
 }
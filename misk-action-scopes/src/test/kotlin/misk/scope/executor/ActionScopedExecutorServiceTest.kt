@@ -13,6 +13,8 @@ import java.util.concurrent.Executors
 import kotlin.test.assertFailsWith
 import misk.inject.KAbstractModule
 import misk.inject.keyOf
+import misk.logging.Mdc
+import misk.logging.MdcContextMap
 import misk.scope.ActionScope
 import misk.scope.ActionScoped
 import misk.scope.TestActionScopedProviderModule
@@ -55,6 +57,41 @@ internal class ActionScopedExecutorServiceTest {
     }
   }
 
+  @Test
+  fun propagatesMdc() {
+    val injector = Guice.createInjector(TestActionScopedProviderModule())
+    val scope = injector.getInstance(ActionScope::class.java)
+    val mdc = ThreadLocalMdc()
+    val executor = ActionScopedExecutorService(Executors.newSingleThreadExecutor(), scope, mdc)
+
+    val seedData: Map<Key<*>, Any> = mapOf(keyOf<String>(Names.named("from-seed")) to "my seed data")
+    mdc.put("request_id", "abc")
+    val future = scope.create(seedData).inScope { executor.submit(Callable { mdc.get("request_id") }) }
+    mdc.clear()
+
+    assertThat(future.get()).isEqualTo("abc")
+    // Tasks see the MDC of the thread that submitted them, not one left behind by an earlier task.
+    val afterwards = scope.create(seedData).inScope { executor.submit(Callable { mdc.get("request_id") }) }
+    assertThat(afterwards.get()).isNull()
+    executor.shutdown()
+  }
+
+  private class ThreadLocalMdc : Mdc {
+    private val context = ThreadLocal.withInitial { mutableMapOf<String, String>() }
+
+    override fun put(key: String, value: String?) {
+      if (value == null) context.get().remove(key) else context.get()[key] = value
+    }
+
+    override fun get(key: String): String? = context.get()[key]
+
+    override fun clear() = context.get().clear()
+
+    override fun setContextMap(context: MdcContextMap) = this.context.set(context.toMutableMap())
+
+    override fun getCopyOfContextMap(): MdcContextMap = context.get().toMap()
+  }
+
   class ActionScopedExecutorServiceModule : KAbstractModule() {
     override fun configure() {}
 
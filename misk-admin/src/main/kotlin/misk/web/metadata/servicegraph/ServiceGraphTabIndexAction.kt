@@ -5,7 +5,14 @@ import jakarta.inject.Inject
 import jakarta.inject.Singleton
 import kotlinx.html.div
 import kotlinx.html.h1
+import kotlinx.html.h2
 import kotlinx.html.script
+import kotlinx.html.table
+import kotlinx.html.tbody
+import kotlinx.html.td
+import kotlinx.html.th
+import kotlinx.html.thead
+import kotlinx.html.tr
 import kotlinx.html.unsafe
 import misk.metadata.servicegraph.ServiceGraphMetadata
 import misk.moshi.adapter
@@ -43,7 +50,8 @@ constructor(
         }
       }
       .build { _, _, _ ->
-        val metadataArray = adapter.toFormattedJson(serviceGraphMetadataProvider.get().graphVisual)
+        val serviceGraphMetadata = serviceGraphMetadataProvider.get()
+        val metadataArray = adapter.toFormattedJson(serviceGraphMetadata.graphVisual)
 
         div("container mx-auto p-8") {
           h1("text-3xl font-bold mb-8") { +"""Service Graph""" }
@@ -58,6 +66,26 @@ constructor(
 
           div("svg-container") {}
 
+          h2("text-2xl font-bold mt-8 mb-4") { +"""Start and Stop Durations""" }
+          table("min-w-full divide-y divide-gray-300 text-sm") {
+            thead {
+              tr {
+                th(classes = "py-2 pr-4 text-left font-semibold") { +"Service" }
+                th(classes = "py-2 pr-4 text-right font-semibold") { +"Start (ms)" }
+                th(classes = "py-2 text-right font-semibold") { +"Stop (ms)" }
+              }
+            }
+            tbody("divide-y divide-gray-200") {
+              serviceGraphMetadata.serviceDurations.forEach { durations ->
+                tr {
+                  td("py-2 pr-4 font-mono") { +durations.service }
+                  td("py-2 pr-4 text-right") { +(durations.startDurationMillis?.toString() ?: "-") }
+                  td("py-2 text-right") { +(durations.stopDurationMillis?.toString() ?: "-") }
+                }
+              }
+            }
+          }
+
           // JavaScript code in a block
           script {
             unsafe {
@@ -0,0 +1,47 @@
+package misk.aws2.sqs.jobqueue
+
+import java.util.concurrent.CompletableFuture
+import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse
+
+/**
+ * Records the size and latency of every batch request that an `SqsAsyncBatchManager` flushes.
+ *
+ * The batch manager decides when to flush on its own and doesn't report what it sent, so it's given this client to
+ * send through instead. Batches are labeled with the name of the SQS queue they were sent to, taken from the queue URL.
+ */
+internal class BatchMetricsSqsAsyncClient(private val delegate: SqsAsyncClient, private val sqsMetrics: SqsMetrics) :
+  SqsAsyncClient by delegate {
+  override fun sendMessageBatch(request: SendMessageBatchRequest): CompletableFuture<SendMessageBatchResponse> =
+    record("send", request.queueUrl(), request.entries().size) { delegate.sendMessageBatch(request) }
+
+  override fun deleteMessageBatch(request: DeleteMessageBatchRequest): CompletableFuture<DeleteMessageBatchResponse> =
+    record("delete", request.queueUrl(), request.entries().size) { delegate.deleteMessageBatch(request) }
+
+  override fun changeMessageVisibilityBatch(
+    request: ChangeMessageVisibilityBatchRequest
+  ): CompletableFuture<ChangeMessageVisibilityBatchResponse> =
+    record("change_visibility", request.queueUrl(), request.entries().size) {
+      delegate.changeMessageVisibilityBatch(request)
+    }
+
+  private fun <T> record(
+    operation: String,
+    queueUrl: String,
+    size: Int,
+    send: () -> CompletableFuture<T>,
+  ): CompletableFuture<T> {
+    val queueName = queueUrl.substringAfterLast('/')
+    sqsMetrics.sqsBatchFlushSize.labels(queueName, operation).observe(size.toDouble())
+    val startTime = System.nanoTime()
+    return send().whenComplete { _, _ ->
+      val elapsedMillis = (System.nanoTime() - startTime) / 1_000_000.0
+      sqsMetrics.sqsBatchFlushTime.labels(queueName, operation).observe(elapsedMillis)
+    }
+  }
+}
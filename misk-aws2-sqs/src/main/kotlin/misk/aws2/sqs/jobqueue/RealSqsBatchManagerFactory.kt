@@ -11,9 +11,19 @@ import misk.logging.getLogger
 import software.amazon.awssdk.services.sqs.batchmanager.BatchOverrideConfiguration
 import software.amazon.awssdk.services.sqs.batchmanager.SqsAsyncBatchManager
 
+/**
+ * Creates one [SqsAsyncBatchManager] per region, flushing every `buffered_batch_flush_frequency_ms`.
+ *
+ * If [sqsMetrics] is provided, the size and latency of every batch the managers flush are recorded.
+ */
 @Singleton
-class RealSqsBatchManagerFactory(private val sqsClientFactory: SqsClientFactory, sqsConfig: SqsConfig) :
-  SqsBatchManagerFactory, AbstractIdleService() {
+class RealSqsBatchManagerFactory
+@JvmOverloads
+constructor(
+  private val sqsClientFactory: SqsClientFactory,
+  sqsConfig: SqsConfig,
+  private val sqsMetrics: SqsMetrics? = null,
+) : SqsBatchManagerFactory, AbstractIdleService() {
   private val sendRequestFrequency: Duration = Duration.ofMillis(sqsConfig.buffered_batch_flush_frequency_ms)
   private val batchManagers = ConcurrentHashMap<String, SqsAsyncBatchManager>()
   private val scheduledExecutors = ConcurrentHashMap<String, ScheduledExecutorService>()
@@ -28,7 +38,7 @@ class RealSqsBatchManagerFactory(private val sqsClientFactory: SqsClientFactory,
       try {
         val batchManager =
           SqsAsyncBatchManager.builder()
-            .client(client)
+            .client(if (sqsMetrics != null) BatchMetricsSqsAsyncClient(client, sqsMetrics) else client)
             .scheduledExecutor(executor)
             .overrideConfiguration(
               BatchOverrideConfiguration.builder().sendRequestFrequency(sendRequestFrequency).build()
@@ -12,7 +12,9 @@ import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.Job
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.cancel
+import kotlinx.coroutines.cancelAndJoin
 import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.job
 import kotlinx.coroutines.joinAll
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
@@ -44,12 +46,16 @@ import kotlin.time.Duration.Companion.milliseconds
  * polling coroutine will wait until all the jobs from the last roundtrip are picked by the handlers before sending
  * another request to SQS. Use channel with a larger buffer size to prefetch messages. This can reduce the latency, but
  * increase the risk of hitting visibility timeout.
+ *
+ * Queues with [SqsQueueConfig.autoscaling] instead start with `concurrency` handling coroutines and `min_receivers`
+ * receivers, and a [SubscriptionAutoscaler] adjusts both to the queue's backlog while the subscription runs.
  */
 @Singleton
 class SqsJobConsumer
 @Inject
 constructor(
   private val sqsClientFactory: SqsClientFactory,
+  private val sqsBatchManagerFactory: SqsBatchManagerFactory,
   private val sqsQueueResolver: SqsQueueResolver,
   private val visibilityTimeoutCalculator: VisibilityTimeoutCalculator,
   private val moshi: Moshi,
@@ -71,6 +77,7 @@ constructor(
     // We won't resolve dead letter queue yet to skip it for local development and testing
     val deadLetterQueueName = dlqProvider.deadLetterQueueFor(queueName)
 
+    val region = queueConfig.region!!
     val subscriber =
       Subscriber(
         queueName = queueName,
@@ -78,7 +85,7 @@ constructor(
         deadLetterQueueName = deadLetterQueueName,
         handler = handler,
         channel = Channel(queueConfig.channel_capacity),
-        client = sqsClientFactory.get(queueConfig.region!!),
+        client = sqsClientFactory.get(region),
         sqsQueueResolver = sqsQueueResolver,
         sqsMetrics = sqsMetrics,
         moshi = moshi,
@@ -86,21 +93,33 @@ constructor(
         tracer = tracer,
         visibilityTimeoutCalculator = visibilityTimeoutCalculator,
         asyncSwitch = asyncSwitch,
+        batchManager = if (queueConfig.batch_acknowledgements) sqsBatchManagerFactory.get(region) else null,
       )
 
     val pollingJob = scope.launch { subscriber.poll() }
     val handlingScope = CoroutineScope(Dispatchers.IO.limitedParallelism(queueConfig.parallelism) + SupervisorJob())
-    val handlingJobs = List(queueConfig.concurrency) { handlingScope.launch { subscriber.run() } }
-    subscriptions[queueName] = Subscription(subscriber, pollingJob, handlingScope, handlingJobs)
+    val autoscalingJob =
+      if (queueConfig.autoscaling != null) {
+        val autoscaler = SubscriptionAutoscaler(subscriber, handlingScope, sqsMetrics, queueConfig.autoscaling)
+        scope.launch { autoscaler.run() }
+      } else {
+        repeat(queueConfig.concurrency) { handlingScope.launch { subscriber.run() } }
+        null
+      }
+    subscriptions[queueName] = Subscription(subscriber, pollingJob, handlingScope, autoscalingJob)
   }
 
   override fun unsubscribe(queueName: QueueName) {
+    subscriptions[queueName]?.autoscalingJob?.cancel()
     subscriptions[queueName]?.handlingScope?.cancel()
   }
 
   /** Called automatically between every test to prevent long-running scopes or test timeouts. */
   override fun reset() {
-    subscriptions.forEach { _, subscription -> subscription.handlingScope.cancel() }
+    subscriptions.forEach { _, subscription ->
+      subscription.autoscalingJob?.cancel()
+      subscription.handlingScope.cancel()
+    }
   }
 
   override fun doStart() {
@@ -111,6 +130,8 @@ constructor(
     logger.info("Stopping job consumer")
     runBlocking(scope.coroutineContext) {
       subscriptions.forEach { (queueName, subscription) ->
+        // Keep the handler and receiver counts as they are while winding down.
+        subscription.autoscalingJob?.cancelAndJoin()
         // Stop issuing new receives, and give the in-flight one a chance to finish its long poll. Messages it already
         // fetched are handled normally; abandoning it would leave them invisible until their visibility timeout expires.
         subscription.subscriber.stop()
@@ -124,7 +145,7 @@ constructor(
           subscription.pollingJob.join()
         }
         // The polling job closes the channel when it completes, which is what lets the handlers finish.
-        subscription.handlingJobs.joinAll()
+        subscription.handlingScope.coroutineContext.job.children.toList().joinAll()
       }
     }
     logger.info("Stopped job consumer")
@@ -139,7 +160,7 @@ constructor(
     val subscriber: Subscriber,
     val pollingJob: Job,
     val handlingScope: CoroutineScope,
-    val handlingJobs: List<Job>,
+    val autoscalingJob: Job?,
   )
 
 
@@ -28,7 +28,9 @@ constructor(private val config: SqsConfig, private val configureClient: SqsAsync
     multibind<TestFixture>().to<SqsJobConsumer>()
 
     install(DefaultAsyncSwitchModule())
-    install(ServiceModule<SqsJobConsumer>().dependsOn<ReadyService>())
+    // Handlers still being joined when the consumer stops acknowledge through the batch managers, so keep those open
+    // until the consumer has stopped.
+    install(ServiceModule<SqsJobConsumer>().dependsOn<ReadyService>().dependsOn<RealSqsBatchManagerFactory>())
     bind<SqsBatchManagerFactory>().to<RealSqsBatchManagerFactory>()
     install(ServiceModule<RealSqsBatchManagerFactory>())
 
@@ -52,7 +54,11 @@ constructor(private val config: SqsConfig, private val configureClient: SqsAsync
 
   @Provides
   @Singleton
-  fun sqsBatchManagerFactory(sqsClientFactory: SqsClientFactory, sqsConfig: SqsConfig): RealSqsBatchManagerFactory {
-    return RealSqsBatchManagerFactory(sqsClientFactory, sqsConfig)
+  fun sqsBatchManagerFactory(
+    sqsClientFactory: SqsClientFactory,
+    sqsConfig: SqsConfig,
+    sqsMetrics: SqsMetrics,
+  ): RealSqsBatchManagerFactory {
+    return RealSqsBatchManagerFactory(sqsClientFactory, sqsConfig, sqsMetrics)
   }
 }
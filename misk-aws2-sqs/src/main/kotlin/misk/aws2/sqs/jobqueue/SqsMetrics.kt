@@ -100,6 +100,35 @@ class SqsMetrics @Inject internal constructor(metrics: Metrics) {
       listOf("QueueName"),
     )
 
+  val sqsBatchFlushSize =
+    metrics.histogram(
+      "jobs_sqs_batch_flush_size_v2",
+      "number of entries in each batch request flushed to SQS, by operation",
+      listOf("QueueName", "operation"),
+      buckets = listOf(1.0, 2.0, 3.0, 4.0, 5.0, 6.0, 7.0, 8.0, 9.0, 10.0),
+    )
+
+  val sqsBatchFlushTime =
+    metrics.histogram(
+      "jobs_sqs_batch_flush_latency_v2",
+      "the round trip time of each batch request flushed to SQS, by operation",
+      listOf("QueueName", "operation"),
+    )
+
+  val handlerConcurrency =
+    metrics.gauge(
+      "jobs_sqs_handler_concurrency_v2",
+      "number of handler coroutines for a queueName with autoscaling",
+      listOf("QueueName"),
+    )
+
+  val receiverConcurrency =
+    metrics.gauge(
+      "jobs_sqs_receiver_concurrency_v2",
+      "number of concurrent receivers for a queueName with autoscaling",
+      listOf("QueueName"),
+    )
+
   val sqsReceiveTime =
     metrics.histogram(
       "jobs_sqs_receive_latency_v2",
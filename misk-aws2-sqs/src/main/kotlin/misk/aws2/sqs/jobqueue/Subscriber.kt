@@ -6,15 +6,22 @@ import io.opentracing.tag.Tags
 import java.time.Clock
 import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.currentCoroutineContext
 import kotlinx.coroutines.delay
 import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.flow
 import kotlinx.coroutines.flow.merge
 import kotlinx.coroutines.future.await
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.selects.select
 import misk.aws2.sqs.jobqueue.config.SqsQueueConfig
 import misk.inject.AsyncSwitch
 import misk.jobqueue.QueueName
@@ -24,9 +31,12 @@ import misk.jobqueue.v2.JobStatus
 import misk.jobqueue.v2.SuspendingJobHandler
 import misk.logging.getLogger
 import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.batchmanager.SqsAsyncBatchManager
 import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest
 import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest
 import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest
@@ -36,8 +46,13 @@ import kotlin.math.log
  * Subscriber reads jobs from the channel and passes them to handler.
  *
  * It responds to handler results by either acknowledging the job or moving it to a dead letter queue.
+ *
+ * If [batchManager] is provided, acknowledgements, visibility timeout changes and dead letter queue sends go through it
+ * and are coalesced with those of other handlers into batch requests. Otherwise each one is a request of its own.
  */
-class Subscriber(
+class Subscriber
+@JvmOverloads
+constructor(
   val queueName: QueueName,
   val queueConfig: SqsQueueConfig,
   val deadLetterQueueName: QueueName,
@@ -51,10 +66,14 @@ class Subscriber(
   val tracer: Tracer,
   val visibilityTimeoutCalculator: VisibilityTimeoutCalculator,
   val asyncSwitch: AsyncSwitch,
+  val batchManager: SqsAsyncBatchManager? = null,
 ) {
   private var wasDisabled = false
   @Volatile private var isRunning = true
 
+  /** The number of concurrent receivers for the regular queue, including the one that also polls the retry queue. */
+  private val receivers = MutableStateFlow(1)
+
   /** In-flight `ReceiveMessage` requests, so they can be aborted when the subscriber is stopped. */
   private val inFlightReceives = ConcurrentHashMap.newKeySet<CompletableFuture<*>>()
 
@@ -75,37 +94,53 @@ class Subscriber(
 
   suspend fun run() {
     for (job in channel) {
-      tracer.withSpan("process-queue-${queueName.value}") {
-        val receiveFromChannelTimestamp = clock.millis()
-        sqsMetrics.channelReceiveLag
-          .labels(queueName.value)
-          .observe((receiveFromChannelTimestamp - job.publishToChannelTimestamp).toDouble())
-        val result =
-          try {
-            val startTime = clock.millis()
-            val result =
-              tracer.withSpan("handle-queue-${queueName.value}") {
-                when (handler) {
-                  is SuspendingJobHandler -> handler.handleJob(job)
-                  is BlockingJobHandler -> runInterruptible { handler.handleJob(job) }
-                }
+      handle(job)
+    }
+  }
+
+  /** Like [run], but also returns once [retire] completes. A job is either left in the channel or handled in full. */
+  internal suspend fun run(retire: Deferred<Unit>) {
+    while (true) {
+      val job =
+        select<SqsJob?> {
+          retire.onAwait { null }
+          channel.onReceiveCatching { it.getOrNull() }
+        } ?: return
+      handle(job)
+    }
+  }
+
+  private suspend fun handle(job: SqsJob) {
+    tracer.withSpan("process-queue-${queueName.value}") {
+      val receiveFromChannelTimestamp = clock.millis()
+      sqsMetrics.channelReceiveLag
+        .labels(queueName.value)
+        .observe((receiveFromChannelTimestamp - job.publishToChannelTimestamp).toDouble())
+      val result =
+        try {
+          val startTime = clock.millis()
+          val result =
+            tracer.withSpan("handle-queue-${queueName.value}") {
+              when (handler) {
+                is SuspendingJobHandler -> handler.handleJob(job)
+                is BlockingJobHandler -> runInterruptible { handler.handleJob(job) }
               }
-            sqsMetrics.handlerDispatchTime.labels(queueName.value).observe((clock.millis() - startTime).toDouble())
-            result
-          } catch (e: Exception) {
-            // Propagate cancellation of this subscriber, but recover if only the failed operation was canceled.
-            currentCoroutineContext().ensureActive()
-            logger.warn(e) { "Handler failed for job ${job.id} from queue ${job.queueName.value}" }
-            sqsMetrics.handlerFailures.labels(queueName.value).inc()
-            return@withSpan
-          }
-        when (result) {
-          JobStatus.OK -> deleteMessage(job)
-          JobStatus.DEAD_LETTER -> deadLetterMessage(job)
-          JobStatus.RETRY_WITH_BACKOFF -> retryWithBackoff(job)
-          JobStatus.RETRY_LATER -> {
-            /* no-op, will be retried after visibility timeout passes */
-          }
+            }
+          sqsMetrics.handlerDispatchTime.labels(queueName.value).observe((clock.millis() - startTime).toDouble())
+          result
+        } catch (e: Exception) {
+          // Propagate cancellation of this subscriber, but recover if only the failed operation was canceled.
+          currentCoroutineContext().ensureActive()
+          logger.warn(e) { "Handler failed for job ${job.id} from queue ${job.queueName.value}" }
+          sqsMetrics.handlerFailures.labels(queueName.value).inc()
+          return@withSpan
+        }
+      when (result) {
+        JobStatus.OK -> deleteMessage(job)
+        JobStatus.DEAD_LETTER -> deadLetterMessage(job)
+        JobStatus.RETRY_WITH_BACKOFF -> retryWithBackoff(job)
+        JobStatus.RETRY_LATER -> {
+          /* no-op, will be retried after visibility timeout passes */
         }
       }
     }
@@ -134,15 +169,13 @@ class Subscriber(
           queueVisibilityTimeout = queueConfig.visibility_timeout ?: 1,
         )
 
-      client
-        .changeMessageVisibility(
-          ChangeMessageVisibilityRequest.builder()
-            .queueUrl(job.queueUrl)
-            .receiptHandle(job.message.receiptHandle())
-            .visibilityTimeout(visibilityTime)
-            .build()
-        )
-        .await()
+      val request =
+        ChangeMessageVisibilityRequest.builder()
+          .queueUrl(job.queueUrl)
+          .receiptHandle(job.message.receiptHandle())
+          .visibilityTimeout(visibilityTime)
+          .build()
+      (batchManager?.changeMessageVisibility(request) ?: client.changeMessageVisibility(request)).await()
 
       sqsMetrics.visibilityTime.labels(queueName.value).observe(visibilityTime.toDouble())
     } catch (e: Exception) {
@@ -162,11 +195,9 @@ class Subscriber(
   private suspend fun deleteMessage(job: SqsJob) {
     val startTime = clock.millis()
     try {
-      client
-        .deleteMessage(
-          DeleteMessageRequest.builder().queueUrl(job.queueUrl).receiptHandle(job.message.receiptHandle()).build()
-        )
-        .await()
+      val request =
+        DeleteMessageRequest.builder().queueUrl(job.queueUrl).receiptHandle(job.message.receiptHandle()).build()
+      (batchManager?.deleteMessage(request) ?: client.deleteMessage(request)).await()
     } catch (e: Exception) {
       // Propagate cancellation of this subscriber, but recover if only the failed operation was canceled.
       currentCoroutineContext().ensureActive()
@@ -183,15 +214,13 @@ class Subscriber(
       val deadLetterQueueUrl = sqsQueueResolver.getQueueUrl(deadLetterQueueName)
       val startTime = clock.millis()
 
-      client
-        .sendMessage(
-          SendMessageRequest.builder()
-            .queueUrl(deadLetterQueueUrl)
-            .messageBody(job.body)
-            .messageAttributes(job.message.messageAttributes())
-            .build()
-        )
-        .await()
+      val request =
+        SendMessageRequest.builder()
+          .queueUrl(deadLetterQueueUrl)
+          .messageBody(job.body)
+          .messageAttributes(job.message.messageAttributes())
+          .build()
+      (batchManager?.sendMessage(request) ?: client.sendMessage(request)).await()
       sqsMetrics.sqsSendTime.labels(deadLetterQueueName.value).observe((clock.millis() - startTime).toDouble())
       sqsMetrics.jobsDeadLettered.labels(queueName.value).inc()
     } catch (e: Exception) {
@@ -206,22 +235,70 @@ class Subscriber(
     deleteMessage(job)
   }
 
-  /** Polls the messages from both the regular and the retry queue. */
+  /**
+   * Polls the messages from both the regular and the retry queue.
+   *
+   * Additional receivers requested with [setReceivers] poll the regular queue alongside. The channel is closed once
+   * every receiver has stopped.
+   */
   suspend fun poll() {
-    if (queueConfig.install_retry_queue) {
-        merge(messageFlow(queueName), messageFlow(queueName.retryQueue))
-      } else {
-        messageFlow(queueName)
+    coroutineScope {
+      val scaling = if (queueConfig.autoscaling != null) launch { scaleReceivers(this@coroutineScope) } else null
+      if (queueConfig.install_retry_queue) {
+          merge(messageFlow(queueName), messageFlow(queueName.retryQueue))
+        } else {
+          messageFlow(queueName)
+        }
+        .collect { received ->
+          channel.send(received)
+        }
+      // Additional receivers stop on their own after their in-flight receive.
+      scaling?.cancel()
+    }
+    channel.close()
+  }
+
+  /** Sets the number of concurrent receive requests for the regular queue. Requires [SqsQueueConfig.autoscaling]. */
+  internal fun setReceivers(count: Int) {
+    receivers.value = count
+  }
+
+  /** Launches or retires additional receivers in [scope] as [receivers] changes. */
+  private suspend fun scaleReceivers(scope: CoroutineScope) {
+    val retiredFlags = ArrayDeque<AtomicBoolean>()
+    receivers.collect { count ->
+      while (retiredFlags.size < count - 1) {
+        val retired = AtomicBoolean()
+        retiredFlags.addLast(retired)
+        scope.launch { messageFlow(queueName) { !retired.get() }.collect { received -> channel.send(received) } }
       }
-      .collect { received ->
-        channel.send(received)
+      while (retiredFlags.size > maxOf(count - 1, 0)) {
+        retiredFlags.removeLast().set(true)
       }
-    channel.close()
+    }
+  }
+
+  /** Returns the approximate number of messages visible in the regular queue, or null if it couldn't be fetched. */
+  internal suspend fun approximateQueueDepth(): Long? {
+    return try {
+      val request =
+        GetQueueAttributesRequest.builder()
+          .queueUrl(sqsQueueResolver.getQueueUrl(queueName))
+          .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+          .build()
+      val response = client.getQueueAttributes(request).await()
+      response.attributes()[QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES]?.toLong()
+    } catch (e: Exception) {
+      // Propagate cancellation of this subscriber, but recover if only the failed operation was canceled.
+      currentCoroutineContext().ensureActive()
+      logger.warn(e) { "Failed to fetch the approximate depth of queue ${queueName.value}" }
+      null
+    }
   }
 
-  private fun messageFlow(queueName: QueueName) = flow {
+  private fun messageFlow(queueName: QueueName, keepPolling: () -> Boolean = { true }) = flow {
     val queueUrl = sqsQueueResolver.getQueueUrl(queueName)
-    while (isRunning) {
+    while (isRunning && keepPolling()) {
       if (!asyncSwitch.isEnabled("sqs")) {
         if (!wasDisabled) {
           logger.info { "Async SQS tasks disabled. Polling paused for queue ${queueName.value}." }
@@ -0,0 +1,161 @@
+package misk.aws2.sqs.jobqueue
+
+import io.prometheus.client.Histogram
+import kotlin.math.ceil
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import misk.aws2.sqs.jobqueue.config.SqsAutoscalingConfig
+import misk.logging.getLogger
+
+/**
+ * Adjusts the number of handler coroutines and receivers of a [Subscriber] to its queue's backlog.
+ *
+ * Every [SqsAutoscalingConfig.interval_ms] it samples the subscriber's metrics and the approximate depth of the queue:
+ * - Handlers are sized by Little's law, from the rate jobs were received at and how long handlers took. If jobs waited
+ *   in the channel for longer than [SqsAutoscalingConfig.max_channel_receive_lag_ms], handlers are added regardless.
+ *   Handlers are removed one per interval, so a short lull doesn't undo the scaling for a backlog.
+ * - A receiver is added while the queue holds more than the receivers fetch in a round trip and handlers are keeping
+ *   up, and one is removed while the queue is empty.
+ *
+ * Handlers are launched in [handlingScope]. A retired handler finishes the job it's handling before it exits.
+ */
+internal class SubscriptionAutoscaler(
+  private val subscriber: Subscriber,
+  private val handlingScope: CoroutineScope,
+  private val sqsMetrics: SqsMetrics,
+  private val config: SqsAutoscalingConfig,
+) {
+  private val queueName = subscriber.queueName.value
+  private val maxNumberOfMessages = subscriber.queueConfig.max_number_of_messages
+
+  /** Retires each running handler when completed, newest last. Only accessed from [run]. */
+  private val handlers = ArrayDeque<CompletableDeferred<Unit>>()
+  private var receivers = config.min_receivers
+
+  init {
+    require(config.min_concurrency in 1..config.max_concurrency) {
+      "autoscaling for ${subscriber.queueName.value} requires 1 <= min_concurrency <= max_concurrency"
+    }
+    require(config.min_receivers in 1..config.max_receivers) {
+      "autoscaling for ${subscriber.queueName.value} requires 1 <= min_receivers <= max_receivers"
+    }
+    require(config.interval_ms > 0) { "autoscaling for ${subscriber.queueName.value} requires a positive interval_ms" }
+  }
+
+  /** Starts the initial handlers and receivers, then adjusts them every interval until canceled. */
+  suspend fun run() {
+    val concurrency = subscriber.queueConfig.concurrency.coerceIn(config.min_concurrency, config.max_concurrency)
+    apply(Target(concurrency, receivers))
+
+    var previous = Snapshot.of(sqsMetrics, queueName)
+    while (true) {
+      delay(config.interval_ms)
+      val snapshot = Snapshot.of(sqsMetrics, queueName)
+      val sample =
+        Sample(
+          jobsReceived = snapshot.jobsReceived - previous.jobsReceived,
+          channelReceiveLagMs = snapshot.channelReceiveLag.meanSince(previous.channelReceiveLag),
+          handlerTimeMs = snapshot.handlerTime.meanSince(previous.handlerTime),
+          queueDepth = subscriber.approximateQueueDepth(),
+          intervalMs = config.interval_ms,
+        )
+      previous = snapshot
+
+      val current = Target(handlers.size, receivers)
+      val target = nextTarget(current, sample)
+      if (target != current) {
+        logger.info { "Scaling queue $queueName from $current to $target after $sample" }
+        apply(target)
+      }
+    }
+  }
+
+  private fun apply(target: Target) {
+    while (handlers.size < target.handlers) {
+      val retire = CompletableDeferred<Unit>()
+      handlers.addLast(retire)
+      handlingScope.launch { subscriber.run(retire) }
+    }
+    while (handlers.size > target.handlers) {
+      handlers.removeLast().complete(Unit)
+    }
+    receivers = target.receivers
+    subscriber.setReceivers(receivers)
+    sqsMetrics.handlerConcurrency.labels(queueName).set(handlers.size.toDouble())
+    sqsMetrics.receiverConcurrency.labels(queueName).set(receivers.toDouble())
+  }
+
+  fun nextTarget(current: Target, sample: Sample): Target {
+    val lagging = sample.channelReceiveLagMs > config.max_channel_receive_lag_ms
+
+    // The number of handlers that were busy on average, with some headroom.
+    val busy = sample.jobsReceived / sample.intervalMs * sample.handlerTimeMs
+    var handlers = ceil(busy * HANDLER_HEADROOM).toInt()
+    if (lagging) {
+      handlers = maxOf(handlers, current.handlers + maxOf(1, current.handlers / 2))
+    } else if (handlers < current.handlers) {
+      handlers = current.handlers - 1
+    }
+
+    val depth = sample.queueDepth
+    val receivers =
+      when {
+        depth == null -> current.receivers
+        depth == 0L -> current.receivers - 1
+        depth > current.receivers.toLong() * maxNumberOfMessages && !lagging -> current.receivers + 1
+        else -> current.receivers
+      }
+
+    return Target(
+      handlers = handlers.coerceIn(config.min_concurrency, config.max_concurrency),
+      receivers = receivers.coerceIn(config.min_receivers, config.max_receivers),
+    )
+  }
+
+  data class Target(val handlers: Int, val receivers: Int)
+
+  /** What happened over one interval. Means are zero when nothing was observed. */
+  data class Sample(
+    val jobsReceived: Double,
+    val channelReceiveLagMs: Double,
+    val handlerTimeMs: Double,
+    val queueDepth: Long?,
+    val intervalMs: Long,
+  )
+
+  /** Cumulative metric values, differenced between intervals. */
+  private class Snapshot(
+    val jobsReceived: Double,
+    val channelReceiveLag: HistogramTotals,
+    val handlerTime: HistogramTotals,
+  ) {
+    companion object {
+      fun of(sqsMetrics: SqsMetrics, queueName: String) =
+        Snapshot(
+          jobsReceived = sqsMetrics.jobsReceived.labels(queueName).get(),
+          channelReceiveLag = HistogramTotals.of(sqsMetrics.channelReceiveLag.labels(queueName).get()),
+          handlerTime = HistogramTotals.of(sqsMetrics.handlerDispatchTime.labels(queueName).get()),
+        )
+    }
+  }
+
+  private class HistogramTotals(val count: Double, val sum: Double) {
+    fun meanSince(previous: HistogramTotals): Double {
+      val count = count - previous.count
+      return if (count > 0.0) (sum - previous.sum) / count else 0.0
+    }
+
+    companion object {
+      fun of(value: Histogram.Child.Value) = HistogramTotals(value.buckets.last(), value.sum)
+    }
+  }
+
+  companion object {
+    private val logger = getLogger<SubscriptionAutoscaler>()
+
+    /** Handlers to run per handler that was busy on average, so a growing backlog is caught before it builds up. */
+    private const val HANDLER_HEADROOM = 1.25
+  }
+}
@@ -48,7 +48,7 @@ constructor(
     logger.info { "Starting AWS SQS SubscriptionService with config=$effectiveConfig" }
     handlers.forEach { (queueName, handler) ->
       val queueConfig = effectiveConfig.getQueueConfig(queueName)
-      logger.info { "Subscribing to queue ${queueName.value} with config: concurrency=${queueConfig.concurrency}, parallelism=${queueConfig.parallelism}" }
+      logger.info { "Subscribing to queue ${queueName.value} with config: concurrency=${queueConfig.concurrency}, parallelism=${queueConfig.parallelism}, autoscaling=${queueConfig.autoscaling}" }
       consumer.subscribe(queueName, handler, queueConfig)
     }
   }
@@ -0,0 +1,24 @@
+package misk.aws2.sqs.jobqueue.config
+
+/**
+ * Configuration for adjusting a queue's handler and receiver counts to its backlog at runtime.
+ *
+ * Every `interval_ms` the subscriber compares the jobs it received, how long they waited in the channel for a handler,
+ * how long handlers took and the approximate depth of the queue, and picks new counts:
+ * - `min_concurrency` and `max_concurrency` bound the number of handler coroutines. The queue's `concurrency` is the
+ *   number it starts with.
+ * - `min_receivers` and `max_receivers` bound the number of concurrent receive requests for the queue.
+ * - `max_channel_receive_lag_ms` is how long a received job may wait for a handler before more handlers are added.
+ *
+ * The queue's `parallelism` is not adjusted: handlers always share the same number of threads.
+ */
+data class SqsAutoscalingConfig
+@JvmOverloads
+constructor(
+  val min_concurrency: Int = 1,
+  val max_concurrency: Int = 16,
+  val min_receivers: Int = 1,
+  val max_receivers: Int = 4,
+  val interval_ms: Long = 5_000,
+  val max_channel_receive_lag_ms: Long = 100,
+)
@@ -8,7 +8,8 @@ import misk.jobqueue.QueueName
  *
  * `default_config` will be applied to any queue that does not have its own configuration. `per_queue_config` allows
  * overriding configuration for a given queue `buffered_batch_flush_frequency_ms` controls how often buffered messages
- * are flushed to SQS when using enqueueBuffered
+ * are flushed to SQS when using enqueueBuffered, and how long acknowledgements wait to be batched when a queue sets
+ * `batch_acknowledgements`
  *
  * `config_feature_flag` allows specifying a dynamic config name that returns a JSON object matching the
  * structure of SqsConfig. When set, the dynamic config is evaluated at service startup and **completely replaces**
@@ -38,6 +39,7 @@ constructor(
         region = override.region ?: all_queues.region,
         account_id = override.account_id ?: all_queues.account_id,
         shutdown_grace_period_ms = override.shutdown_grace_period_ms ?: all_queues.shutdown_grace_period_ms,
+        autoscaling = override.autoscaling ?: all_queues.autoscaling,
       )
     } else {
       all_queues
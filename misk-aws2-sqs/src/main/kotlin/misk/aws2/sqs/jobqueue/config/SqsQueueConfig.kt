@@ -13,7 +13,11 @@ package misk.aws2.sqs.jobqueue.config
  * defaults to the current account. `queue_name` AWS Queue Name, defaults to the application provided name of the queue.
  * `shutdown_grace_period_ms` defines how long shutdown waits for an in-flight receive to complete before aborting it.
  * Set it to 0 to abort in-flight receives immediately. Defaults to null, which uses
- * [SqsQueueConfig.DEFAULT_SHUTDOWN_GRACE_PERIOD_MS].
+ * [SqsQueueConfig.DEFAULT_SHUTDOWN_GRACE_PERIOD_MS]. `batch_acknowledgements` sends acknowledgements, visibility
+ * timeout changes and dead letter queue sends through the region's batch manager, which coalesces them into batch
+ * requests flushed when a batch is full or every `buffered_batch_flush_frequency_ms`. `autoscaling` adjusts the
+ * number of handlers and receivers to the queue's backlog; see [SqsAutoscalingConfig]. Defaults to null, which keeps
+ * `concurrency` handlers and a single receiver.
  */
 data class SqsQueueConfig
 @JvmOverloads
@@ -28,6 +32,8 @@ constructor(
   val region: String? = null,
   val account_id: String? = null,
   val shutdown_grace_period_ms: Long? = null,
+  val batch_acknowledgements: Boolean = false,
+  val autoscaling: SqsAutoscalingConfig? = null,
 ) {
   companion object {
     /**
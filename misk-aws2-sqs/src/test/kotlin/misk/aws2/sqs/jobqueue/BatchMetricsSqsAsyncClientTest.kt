@@ -0,0 +1,65 @@
+package misk.aws2.sqs.jobqueue
+
+import io.prometheus.client.CollectorRegistry
+import java.util.concurrent.CompletableFuture
+import kotlin.test.assertEquals
+import misk.metrics.v2.Metrics
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.any
+import org.mockito.kotlin.mock
+import org.mockito.kotlin.whenever
+import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse
+
+class BatchMetricsSqsAsyncClientTest {
+  private val queueUrl = "https://sqs.us-west-2.amazonaws.com/123456789/test-queue"
+  private val delegate = mock<SqsAsyncClient>()
+  private val sqsMetrics =
+    SqsMetrics(
+      object : Metrics {
+        override fun getRegistry() = CollectorRegistry()
+      }
+    )
+  private val client = BatchMetricsSqsAsyncClient(delegate, sqsMetrics)
+
+  @Test
+  fun `records size and latency of batch requests`() {
+    val response = CompletableFuture<DeleteMessageBatchResponse>()
+    whenever(delegate.deleteMessageBatch(any<DeleteMessageBatchRequest>())).thenReturn(response)
+
+    val result =
+      client.deleteMessageBatch(
+        DeleteMessageBatchRequest.builder()
+          .queueUrl(queueUrl)
+          .entries(
+            (1..3).map { DeleteMessageBatchRequestEntry.builder().id("$it").receiptHandle("receipt-$it").build() }
+          )
+          .build()
+      )
+
+    val size = sqsMetrics.sqsBatchFlushSize.labels("test-queue", "delete").get()
+    assertEquals(1.0, size.buckets.last())
+    assertEquals(3.0, size.sum)
+    // Latency is recorded when the request completes.
+    assertEquals(0.0, sqsMetrics.sqsBatchFlushTime.labels("test-queue", "delete").get().buckets.last())
+
+    response.complete(DeleteMessageBatchResponse.builder().build())
+
+    assertEquals(response.get(), result.get())
+    assertEquals(1.0, sqsMetrics.sqsBatchFlushTime.labels("test-queue", "delete").get().buckets.last())
+  }
+
+  @Test
+  fun `other requests are passed through`() {
+    val response = CompletableFuture.completedFuture(ReceiveMessageResponse.builder().build())
+    whenever(delegate.receiveMessage(any<ReceiveMessageRequest>())).thenReturn(response)
+
+    val result = client.receiveMessage(ReceiveMessageRequest.builder().queueUrl(queueUrl).build())
+
+    assertEquals(response.get(), result.get())
+  }
+}
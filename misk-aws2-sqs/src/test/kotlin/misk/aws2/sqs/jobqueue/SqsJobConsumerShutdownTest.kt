@@ -0,0 +1,89 @@
+package misk.aws2.sqs.jobqueue
+
+import com.google.common.util.concurrent.ServiceManager
+import com.google.inject.Guice
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit.SECONDS
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+import misk.aws2.sqs.jobqueue.config.SqsQueueConfig
+import misk.inject.getInstance
+import misk.jobqueue.QueueName
+import misk.jobqueue.v2.BlockingJobHandler
+import misk.jobqueue.v2.Job
+import misk.jobqueue.v2.JobStatus
+import misk.testing.MiskExternalDependency
+import misk.testing.MiskTest
+import org.junit.jupiter.api.Test
+import software.amazon.awssdk.services.sqs.model.CreateQueueRequest
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName
+import software.amazon.awssdk.services.sqs.model.SendMessageRequest
+
+/** Stops its own service manager, so it doesn't share an injector with other tests. */
+@MiskTest(startService = false)
+class SqsJobConsumerShutdownTest {
+  @MiskExternalDependency private val dockerSqs = DockerSqs
+
+  @Test
+  fun `batched acknowledgements of handlers running at shutdown are sent`() {
+    val injector = Guice.createInjector(SqsJobQueueTestModule(dockerSqs))
+    val serviceManager = injector.getInstance<ServiceManager>()
+    serviceManager.startAsync().awaitHealthy(10, SECONDS)
+    val jobConsumer = injector.getInstance<SqsJobConsumer>()
+
+    val queueName = QueueName("test-queue-shutdown")
+    val queueUrl = createQueue(queueName.value)
+    createQueue("${queueName.value}_retryq")
+    createQueue("${queueName.value}_dlq")
+    DockerSqs.client.sendMessage(SendMessageRequest.builder().queueUrl(queueUrl).messageBody("message").build()).join()
+
+    val handling = CountDownLatch(1)
+    val release = CountDownLatch(1)
+    jobConsumer.subscribe(
+      queueName,
+      object : BlockingJobHandler {
+        override fun handleJob(job: Job): JobStatus {
+          handling.countDown()
+          release.await(10, SECONDS)
+          return JobStatus.OK
+        }
+      },
+      SqsQueueConfig(region = "us-west-2", batch_acknowledgements = true, shutdown_grace_period_ms = 0),
+    )
+    assertTrue(handling.await(10, SECONDS))
+
+    // Finish the handler only once shutdown is underway, so its delete goes out while services are stopping.
+    serviceManager.stopAsync()
+    Thread.sleep(500)
+    release.countDown()
+    serviceManager.awaitStopped(30, SECONDS)
+
+    val attributes =
+      DockerSqs.client
+        .getQueueAttributes(
+          GetQueueAttributesRequest.builder()
+            .queueUrl(queueUrl)
+            .attributeNames(
+              QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES,
+              QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE,
+            )
+            .build()
+        )
+        .join()
+        .attributes()
+    assertEquals("0", attributes[QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES])
+    assertEquals("0", attributes[QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE])
+  }
+
+  private fun createQueue(name: String): String =
+    DockerSqs.client
+      .createQueue(
+        CreateQueueRequest.builder()
+          .queueName(name)
+          .attributes(mapOf(QueueAttributeName.RECEIVE_MESSAGE_WAIT_TIME_SECONDS to "1"))
+          .build()
+      )
+      .join()
+      .queueUrl()
+}
@@ -7,12 +7,14 @@ import java.util.concurrent.CompletableFuture
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.ExperimentalCoroutinesApi
 import kotlinx.coroutines.cancelAndJoin
 import kotlinx.coroutines.channels.Channel
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.test.runCurrent
 import kotlinx.coroutines.test.runTest
+import misk.aws2.sqs.jobqueue.config.SqsAutoscalingConfig
 import misk.aws2.sqs.jobqueue.config.SqsQueueConfig
 import misk.inject.AlwaysEnabledSwitch
 import misk.jobqueue.QueueName
@@ -26,9 +28,12 @@ import org.junit.jupiter.api.Test
 import org.mockito.kotlin.any
 import org.mockito.kotlin.argumentCaptor
 import org.mockito.kotlin.mock
+import org.mockito.kotlin.times
 import org.mockito.kotlin.verify
+import org.mockito.kotlin.verifyNoInteractions
 import org.mockito.kotlin.whenever
 import software.amazon.awssdk.services.sqs.SqsAsyncClient
+import software.amazon.awssdk.services.sqs.batchmanager.SqsAsyncBatchManager
 import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityRequest
 import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityResponse
 import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest
@@ -123,6 +128,97 @@ class SubscriberTest {
     assertTrue(subscriberJob.isActive)
   }
 
+  @Test
+  fun `batch manager is used for acknowledgements, retries and dead letters`() = runTest {
+    whenever(sqsQueueResolver.getQueueUrl(queueName.deadLetterQueue)).thenReturn("$queueUrl-dlq")
+    val batchManager = mock<SqsAsyncBatchManager>()
+    whenever(batchManager.deleteMessage(any<DeleteMessageRequest>()))
+      .thenReturn(CompletableFuture.completedFuture(DeleteMessageResponse.builder().build()))
+    whenever(batchManager.changeMessageVisibility(any<ChangeMessageVisibilityRequest>()))
+      .thenReturn(CompletableFuture.completedFuture(ChangeMessageVisibilityResponse.builder().build()))
+    whenever(batchManager.sendMessage(any<SendMessageRequest>()))
+      .thenReturn(CompletableFuture.completedFuture(SendMessageResponse.builder().build()))
+    val statuses = ArrayDeque(listOf(JobStatus.OK, JobStatus.RETRY_WITH_BACKOFF, JobStatus.DEAD_LETTER))
+    val handler =
+      object : SuspendingJobHandler {
+        override suspend fun handleJob(job: Job) = statuses.removeFirst()
+      }
+
+    backgroundScope.launch { subscriber(handler, batchManager = batchManager).run() }
+    channel.send(job("job-1"))
+    channel.send(job("job-2"))
+    channel.send(job("job-3"))
+    runCurrent()
+
+    val deleteRequests = argumentCaptor<DeleteMessageRequest>()
+    verify(batchManager, times(2)).deleteMessage(deleteRequests.capture())
+    assertEquals(listOf("receipt-job-1", "receipt-job-3"), deleteRequests.allValues.map { it.receiptHandle() })
+    verify(batchManager).changeMessageVisibility(any<ChangeMessageVisibilityRequest>())
+    val sendRequest = argumentCaptor<SendMessageRequest>()
+    verify(batchManager).sendMessage(sendRequest.capture())
+    assertEquals("$queueUrl-dlq", sendRequest.firstValue.queueUrl())
+    verifyNoInteractions(client)
+    assertEquals(2.0, sqsMetrics.jobsAcknowledged.labels(queueName.value).get())
+    assertEquals(1.0, sqsMetrics.jobsDeadLettered.labels(queueName.value).get())
+  }
+
+  @Test
+  fun `retired handler leaves remaining jobs in the channel`() = runTest {
+    whenever(client.deleteMessage(any<DeleteMessageRequest>()))
+      .thenReturn(CompletableFuture.completedFuture(DeleteMessageResponse.builder().build()))
+    val handledJobs = mutableListOf<String>()
+    val retire = CompletableDeferred<Unit>()
+
+    val handlerJob =
+      backgroundScope.launch {
+        subscriber(
+            handler = { job ->
+              handledJobs += job.id
+              JobStatus.OK
+            }
+          )
+          .run(retire)
+      }
+    channel.send(job("job-1"))
+    runCurrent()
+    retire.complete(Unit)
+    runCurrent()
+    channel.send(job("job-2"))
+    runCurrent()
+
+    assertEquals(listOf("job-1"), handledJobs)
+    assertTrue(handlerJob.isCompleted)
+    assertEquals("job-2", channel.receive().id)
+  }
+
+  @Test
+  fun `additional receivers poll the queue alongside the first one`() = runTest {
+    whenever(sqsQueueResolver.getQueueUrl(queueName)).thenReturn(queueUrl)
+    val pendingResponses = List(3) { CompletableFuture<ReceiveMessageResponse>() }
+    whenever(client.receiveMessage(any<ReceiveMessageRequest>()))
+      .thenReturn(pendingResponses[0], pendingResponses[1], pendingResponses[2])
+
+    val subscriber =
+      subscriber(
+        handler = { JobStatus.OK },
+        queueConfig = SqsQueueConfig(install_retry_queue = false, autoscaling = SqsAutoscalingConfig()),
+      )
+    val pollingJob = backgroundScope.launch { subscriber.poll() }
+    runCurrent()
+    subscriber.setReceivers(3)
+    runCurrent()
+
+    verify(client, times(3)).receiveMessage(any<ReceiveMessageRequest>())
+
+    subscriber.stop()
+    subscriber.cancelInFlightReceives()
+    runCurrent()
+
+    assertTrue(pendingResponses.all { it.isCancelled })
+    assertTrue(pollingJob.isCompleted)
+    assertTrue(channel.receiveCatching().isClosed)
+  }
+
   @Test
   fun `canceled fetch does not stop polling unless subscriber is canceled`() = runTest {
     whenever(sqsQueueResolver.getQueueUrl(queueName)).thenReturn(queueUrl)
@@ -216,6 +312,7 @@ class SubscriberTest {
   private fun subscriber(
     handler: JobHandler,
     queueConfig: SqsQueueConfig = SqsQueueConfig(install_retry_queue = false),
+    batchManager: SqsAsyncBatchManager? = null,
   ) =
     Subscriber(
       queueName = queueName,
@@ -231,13 +328,18 @@ class SubscriberTest {
       tracer = ConcurrentMockTracer(),
       visibilityTimeoutCalculator = VisibilityTimeoutCalculator(),
       asyncSwitch = AlwaysEnabledSwitch(),
+      batchManager = batchManager,
     )
 
-  private fun subscriber(handler: suspend (Job) -> JobStatus): Subscriber =
+  private fun subscriber(
+    handler: suspend (Job) -> JobStatus,
+    queueConfig: SqsQueueConfig = SqsQueueConfig(install_retry_queue = false),
+  ): Subscriber =
     subscriber(
       object : SuspendingJobHandler {
         override suspend fun handleJob(job: Job) = handler(job)
-      }
+      },
+      queueConfig,
     )
 
   private fun job(id: String) =
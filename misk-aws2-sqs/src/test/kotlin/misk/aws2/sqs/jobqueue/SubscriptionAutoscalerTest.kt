@@ -0,0 +1,125 @@
+package misk.aws2.sqs.jobqueue
+
+import com.squareup.moshi.Moshi
+import io.prometheus.client.CollectorRegistry
+import java.time.Clock
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.channels.Channel
+import misk.aws2.sqs.jobqueue.SubscriptionAutoscaler.Sample
+import misk.aws2.sqs.jobqueue.SubscriptionAutoscaler.Target
+import misk.aws2.sqs.jobqueue.config.SqsAutoscalingConfig
+import misk.aws2.sqs.jobqueue.config.SqsQueueConfig
+import misk.inject.AlwaysEnabledSwitch
+import misk.jobqueue.QueueName
+import misk.jobqueue.v2.Job
+import misk.jobqueue.v2.JobStatus
+import misk.jobqueue.v2.SuspendingJobHandler
+import misk.metrics.v2.Metrics
+import misk.testing.ConcurrentMockTracer
+import org.junit.jupiter.api.Test
+import org.mockito.kotlin.mock
+
+class SubscriptionAutoscalerTest {
+  private val config =
+    SqsAutoscalingConfig(
+      min_concurrency = 2,
+      max_concurrency = 20,
+      min_receivers = 1,
+      max_receivers = 3,
+      interval_ms = 5_000,
+      max_channel_receive_lag_ms = 100,
+    )
+  private val autoscaler = autoscaler(config)
+
+  @Test
+  fun `handlers are sized by arrival rate and handling time`() {
+    // 200 jobs per second that take 50 ms each keep 10 handlers busy.
+    val target = autoscaler.nextTarget(Target(4, 1), sample(jobsReceived = 1_000.0, handlerTimeMs = 50.0))
+
+    assertEquals(Target(13, 1), target)
+  }
+
+  @Test
+  fun `handlers are added when jobs wait for a handler`() {
+    val lagging = sample(jobsReceived = 10.0, handlerTimeMs = 50.0, channelReceiveLagMs = 500.0)
+    val target = autoscaler.nextTarget(Target(4, 1), lagging)
+
+    assertEquals(Target(6, 1), target)
+  }
+
+  @Test
+  fun `idle queue scales down one step at a time to the floor`() {
+    assertEquals(Target(7, 2), autoscaler.nextTarget(Target(8, 3), sample(queueDepth = 0)))
+    assertEquals(Target(2, 1), autoscaler.nextTarget(Target(2, 1), sample(queueDepth = 0)))
+  }
+
+  @Test
+  fun `counts are capped at the ceiling`() {
+    val target =
+      autoscaler.nextTarget(
+        Target(20, 3),
+        sample(jobsReceived = 100_000.0, handlerTimeMs = 50.0, channelReceiveLagMs = 500.0, queueDepth = 10_000),
+      )
+
+    assertEquals(Target(20, 3), target)
+  }
+
+  @Test
+  fun `receivers are added for a backlog only while handlers keep up`() {
+    val backlog = sample(jobsReceived = 500.0, handlerTimeMs = 10.0, queueDepth = 1_000)
+    assertEquals(Target(2, 2), autoscaler.nextTarget(Target(2, 1), backlog))
+
+    val lagging = backlog.copy(channelReceiveLagMs = 500.0)
+    assertEquals(Target(3, 1), autoscaler.nextTarget(Target(2, 1), lagging))
+  }
+
+  @Test
+  fun `unknown queue depth keeps receivers`() {
+    assertEquals(Target(2, 2), autoscaler.nextTarget(Target(2, 2), sample(queueDepth = null)))
+  }
+
+  @Test
+  fun `invalid bounds are rejected`() {
+    assertFailsWith<IllegalArgumentException> { autoscaler(config.copy(min_concurrency = 0)) }
+    assertFailsWith<IllegalArgumentException> { autoscaler(config.copy(min_receivers = 4)) }
+  }
+
+  private fun sample(
+    jobsReceived: Double = 0.0,
+    channelReceiveLagMs: Double = 0.0,
+    handlerTimeMs: Double = 0.0,
+    queueDepth: Long? = 5,
+  ) = Sample(jobsReceived, channelReceiveLagMs, handlerTimeMs, queueDepth, intervalMs = config.interval_ms)
+
+  private fun autoscaler(config: SqsAutoscalingConfig): SubscriptionAutoscaler {
+    val sqsMetrics =
+      SqsMetrics(
+        object : Metrics {
+          override fun getRegistry() = CollectorRegistry()
+        }
+      )
+    val subscriber =
+      Subscriber(
+        queueName = QueueName("test-queue"),
+        queueConfig = SqsQueueConfig(autoscaling = config),
+        deadLetterQueueName = QueueName("test-queue_dlq"),
+        handler =
+          object : SuspendingJobHandler {
+            override suspend fun handleJob(job: Job) = JobStatus.OK
+          },
+        channel = Channel(),
+        client = mock(),
+        sqsQueueResolver = mock(),
+        sqsMetrics = sqsMetrics,
+        moshi = Moshi.Builder().build(),
+        clock = Clock.systemUTC(),
+        tracer = ConcurrentMockTracer(),
+        visibilityTimeoutCalculator = VisibilityTimeoutCalculator(),
+        asyncSwitch = AlwaysEnabledSwitch(),
+      )
+    return SubscriptionAutoscaler(subscriber, CoroutineScope(Dispatchers.Unconfined), sqsMetrics, config)
+  }
+}
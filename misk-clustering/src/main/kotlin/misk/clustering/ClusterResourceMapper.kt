@@ -12,4 +12,10 @@ interface ClusterResourceMapper {
    * @throws NoMembersAvailableException if there are no members in the cluster
    */
   operator fun get(resourceId: String): Cluster.Member
+
+  /**
+   * @return The [Cluster.Member] that should own each of the given resource ids
+   * @throws NoMembersAvailableException if there are no members in the cluster
+   */
+  fun getAll(resourceIds: Collection<String>): Map<String, Cluster.Member> = resourceIds.associateWith { get(it) }
 }
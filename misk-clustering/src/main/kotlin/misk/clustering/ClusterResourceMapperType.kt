@@ -0,0 +1,24 @@
+package misk.clustering
+
+/** The strategies for assigning resources to cluster members. */
+enum class ClusterResourceMapperType {
+  /** See [HashRingClusterResourceMapper]. */
+  HASH_RING,
+
+  /** See [RendezvousClusterResourceMapper]. */
+  RENDEZVOUS,
+
+  /** See [MaglevClusterResourceMapper]. */
+  MAGLEV,
+
+  /** See [JumpHashClusterResourceMapper]. */
+  JUMP_HASH;
+
+  fun newResourceMapper(members: Set<Cluster.Member>): ClusterResourceMapper =
+    when (this) {
+      HASH_RING -> HashRingClusterResourceMapper(members)
+      RENDEZVOUS -> RendezvousClusterResourceMapper(members)
+      MAGLEV -> MaglevClusterResourceMapper(members)
+      JUMP_HASH -> JumpHashClusterResourceMapper(members)
+    }
+}
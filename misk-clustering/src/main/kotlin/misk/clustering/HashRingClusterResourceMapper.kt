@@ -5,55 +5,136 @@ import com.google.common.hash.Hashing
 import java.util.Arrays
 import java.util.Objects
 
-/** A [HashRingClusterResourceMapper] maps resources to cluster members based on a consistent hash */
+/**
+ * A [HashRingClusterResourceMapper] maps resources to cluster members based on a consistent hash
+ *
+ * Each member occupies [vnodesCount] slots on the ring, scaled by its weight from [memberWeight]. Weights use the same
+ * 0 to 100 scale as [misk.clustering.weights.ClusterWeightProvider]: a member with weight 50 gets half the vnodes of a
+ * member with weight 100, and a member with weight 0 gets none.
+ */
 class HashRingClusterResourceMapper
 @JvmOverloads
 constructor(
   members: Set<Cluster.Member>,
   private val hashFn: HashFunction = Hashing.murmur3_32_fixed(),
   private val vnodesCount: Int = 16,
+  memberWeight: (Cluster.Member) -> Int = { MAX_WEIGHT },
 ) : ClusterResourceMapper {
+  /** Sorted, distinct vnode hashes. */
   private val vnodes: IntArray
-  private val vnodesToMembers: Map<Int, Cluster.Member>
+
+  /** The member owning the vnode at the same index in [vnodes]. */
+  private val owners: Array<Cluster.Member>
 
   init {
-    val vnodesBuilder = mutableListOf<Int>()
     val vnodesToMembers = mutableMapOf<Int, Cluster.Member>()
 
     // Hash each member up to the vnode count to occupy slots in the ring. To resolve
     // a resource, we find the vnode that is closest to the resources hash, then find
     // the member corresponding to that vnode
     members.forEach { member ->
-      (0 until vnodesCount).forEach { replica ->
+      val weight = memberWeight(member)
+      require(weight in 0..MAX_WEIGHT) { "weight for ${member.name} must be in [0, $MAX_WEIGHT] but was $weight" }
+      (0 until weightedVnodesCount(weight)).forEach { replica ->
         val vnodeHash = hashFn.hashBytes("${member.name} $replica".toByteArray()).asInt()
-        vnodesBuilder.add(vnodeHash)
         vnodesToMembers[vnodeHash] = member
       }
     }
 
-    this.vnodesToMembers = vnodesToMembers.toMap()
-    vnodes = vnodesBuilder.sorted().toIntArray()
+    vnodes = vnodesToMembers.keys.toIntArray().also { it.sort() }
+    owners = Array(vnodes.size) { vnodesToMembers.getValue(vnodes[it]) }
   }
 
   /** @return The [Cluster.Member] that should own the given resource id */
   override fun get(resourceId: String): Cluster.Member {
-    if (vnodesToMembers.isEmpty()) {
+    if (vnodes.isEmpty()) {
       throw NoMembersAvailableException(resourceId)
     }
 
-    val resourceHash = hashFn.hashBytes(resourceId.toByteArray()).asInt()
-    val vnode = vnodes.firstOrNull { it >= resourceHash } ?: vnodes[0]
-    return vnodesToMembers[vnode] ?: throw IllegalStateException("no member corresponding to vnode hash $vnode")
+    return owners[vnodeIndex(hashFn.hashBytes(resourceId.toByteArray()).asInt())]
+  }
+
+  /**
+   * Resolves a batch of resource ids. Ids are encoded into one shared scratch buffer, so the batch doesn't allocate a
+   * byte array per id.
+   */
+  override fun getAll(resourceIds: Collection<String>): Map<String, Cluster.Member> {
+    if (resourceIds.isEmpty()) return mapOf()
+    if (vnodes.isEmpty()) {
+      throw NoMembersAvailableException(resourceIds.first())
+    }
+
+    val result = LinkedHashMap<String, Cluster.Member>(resourceIds.size * 2)
+    var scratch = ByteArray(64)
+    for (resourceId in resourceIds) {
+      // A UTF-16 char never takes more than 3 bytes in UTF-8.
+      if (scratch.size < resourceId.length * 3) scratch = ByteArray(resourceId.length * 3)
+      val length = encodeUtf8(resourceId, scratch)
+      result[resourceId] = owners[vnodeIndex(hashFn.hashBytes(scratch, 0, length).asInt())]
+    }
+    return result
+  }
+
+  /** Returns the index of the first vnode at or after [resourceHash], wrapping around the ring. */
+  private fun vnodeIndex(resourceHash: Int): Int {
+    val index = Arrays.binarySearch(vnodes, resourceHash)
+    if (index >= 0) return index
+    val insertionPoint = -index - 1
+    return if (insertionPoint == vnodes.size) 0 else insertionPoint
+  }
+
+  private fun weightedVnodesCount(weight: Int): Int {
+    if (weight == 0) return 0
+    return maxOf(1, (vnodesCount * weight + MAX_WEIGHT - 1) / MAX_WEIGHT)
   }
 
   override fun equals(other: Any?): Boolean {
     val otherRing = other as? HashRingClusterResourceMapper ?: return false
     return vnodesCount == otherRing.vnodesCount &&
       vnodes.contentEquals(otherRing.vnodes) &&
-      vnodesToMembers == other.vnodesToMembers
+      owners.contentEquals(otherRing.owners)
   }
 
   override fun hashCode(): Int {
-    return Objects.hash(vnodesCount, vnodesToMembers, Arrays.hashCode(vnodes))
+    return Objects.hash(vnodesCount, Arrays.hashCode(owners), Arrays.hashCode(vnodes))
+  }
+
+  companion object {
+    /** The weight of a member that takes its full share of vnodes. */
+    const val MAX_WEIGHT = 100
+
+    /**
+     * Writes [s] as UTF-8 into [sink], which must have room for 3 bytes per char, and returns the number of bytes
+     * written. Unpaired surrogates are replaced with '?', matching [String.toByteArray].
+     */
+    private fun encodeUtf8(s: String, sink: ByteArray): Int {
+      var pos = 0
+      var i = 0
+      while (i < s.length) {
+        val c = s[i]
+        when {
+          c.code < 0x80 -> sink[pos++] = c.code.toByte()
+          c.code < 0x800 -> {
+            sink[pos++] = (0xc0 or (c.code shr 6)).toByte()
+            sink[pos++] = (0x80 or (c.code and 0x3f)).toByte()
+          }
+          Character.isHighSurrogate(c) && i + 1 < s.length && Character.isLowSurrogate(s[i + 1]) -> {
+            val codePoint = Character.toCodePoint(c, s[++i])
+            sink[pos++] = (0xf0 or (codePoint shr 18)).toByte()
+            sink[pos++] = (0x80 or ((codePoint shr 12) and 0x3f)).toByte()
+            sink[pos++] = (0x80 or ((codePoint shr 6) and 0x3f)).toByte()
+            sink[pos++] = (0x80 or (codePoint and 0x3f)).toByte()
+          }
+          Character.isSurrogate(c) -> sink[pos++] = '?'.code.toByte()
+          else -> {
+            sink[pos++] = (0xe0 or (c.code shr 12)).toByte()
+            sink[pos++] = (0x80 or ((c.code shr 6) and 0x3f)).toByte()
+            sink[pos++] = (0x80 or (c.code and 0x3f)).toByte()
+          }
+        }
+        i++
+      }
+      return pos
+    }
   }
 }
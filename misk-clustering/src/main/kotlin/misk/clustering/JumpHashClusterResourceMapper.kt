@@ -0,0 +1,48 @@
+package misk.clustering
+
+import com.dynatrace.hash4j.hashing.Hashing
+
+/**
+ * Maps resources to cluster members with jump consistent hashing (Lamping and Veach, 2014).
+ *
+ * Lookups take a few multiplications, with no table to build or keep in memory, and members get equal shares.
+ *
+ * Jump hashing numbers its buckets, and only moves the minimum of resources when buckets are added or removed at the
+ * end of that numbering. Members are numbered in order of name, so this suits clusters whose member names sort in the
+ * order they're added, like StatefulSet pods. Where members with arbitrary names come and go, as in a Deployment
+ * rollout, a departing member shifts every member after it and [MaglevClusterResourceMapper] moves far fewer resources.
+ */
+class JumpHashClusterResourceMapper(members: Set<Cluster.Member>) : ClusterResourceMapper {
+  private val buckets: List<Cluster.Member> = members.sortedBy { it.name }
+
+  override fun get(resourceId: String): Cluster.Member {
+    if (buckets.isEmpty()) {
+      throw NoMembersAvailableException(resourceId)
+    }
+    return buckets[jumpHash(HASHER.hashCharsToLong(resourceId), buckets.size)]
+  }
+
+  override fun equals(other: Any?): Boolean {
+    val otherMapper = other as? JumpHashClusterResourceMapper ?: return false
+    return buckets == otherMapper.buckets
+  }
+
+  override fun hashCode(): Int = buckets.hashCode()
+
+  companion object {
+    private val HASHER = Hashing.rapidhash3()
+
+    /** Returns the bucket in `[0, buckets)` for [key]. */
+    internal fun jumpHash(key: Long, buckets: Int): Int {
+      var k = key
+      var b = -1L
+      var j = 0L
+      while (j < buckets) {
+        b = j
+        k = k * 2862933555777941757L + 1
+        j = ((b + 1) * ((1L shl 31).toDouble() / ((k ushr 33) + 1).toDouble())).toLong()
+      }
+      return b.toInt()
+    }
+  }
+}
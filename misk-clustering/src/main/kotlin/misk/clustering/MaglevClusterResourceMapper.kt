@@ -0,0 +1,90 @@
+package misk.clustering
+
+import com.dynatrace.hash4j.hashing.Hashing
+import java.util.Arrays
+
+/**
+ * Maps resources to cluster members with Maglev hashing.
+ *
+ * Each member fills slots of a lookup table of [tableSize] entries in an order given by its own permutation, taking
+ * turns until the table is full. A lookup hashes the resource id to a slot, so it costs the same however many members
+ * there are. Members end up with nearly equal shares of the table, and when a member joins or leaves most resources
+ * keep their owner, whichever member it is.
+ *
+ * [tableSize] must be a prime larger than the number of members. Larger tables spread resources more evenly and move
+ * fewer of them on membership changes, at the cost of memory and time to build the table.
+ */
+class MaglevClusterResourceMapper
+@JvmOverloads
+constructor(members: Set<Cluster.Member>, private val tableSize: Int = DEFAULT_TABLE_SIZE) : ClusterResourceMapper {
+  /** The member owning each slot, or empty if there are no members. */
+  private val table: Array<Cluster.Member>
+
+  init {
+    require(isPrime(tableSize)) { "tableSize must be prime but was $tableSize" }
+    require(members.size <= tableSize) { "tableSize $tableSize is smaller than the ${members.size} members" }
+    table = populate(members.sortedBy { it.name })
+  }
+
+  override fun get(resourceId: String): Cluster.Member {
+    if (table.isEmpty()) {
+      throw NoMembersAvailableException(resourceId)
+    }
+    return table[Math.floorMod(RESOURCE_HASHER.hashCharsToLong(resourceId), tableSize)]
+  }
+
+  private fun populate(members: List<Cluster.Member>): Array<Cluster.Member> {
+    if (members.isEmpty()) return arrayOf()
+
+    val offsets = IntArray(members.size)
+    val skips = IntArray(members.size)
+    for ((i, member) in members.withIndex()) {
+      val key = "${member.name}:${member.ipAddress}"
+      offsets[i] = Math.floorMod(OFFSET_HASHER.hashCharsToLong(key), tableSize)
+      skips[i] = Math.floorMod(SKIP_HASHER.hashCharsToLong(key), tableSize - 1) + 1
+    }
+
+    val owners = IntArray(tableSize) { -1 }
+    val next = IntArray(members.size)
+    var filled = 0
+    while (true) {
+      for (i in members.indices) {
+        // Walk this member's permutation to its next unclaimed slot.
+        var slot = ((offsets[i] + next[i].toLong() * skips[i]) % tableSize).toInt()
+        while (owners[slot] >= 0) {
+          next[i]++
+          slot = ((offsets[i] + next[i].toLong() * skips[i]) % tableSize).toInt()
+        }
+        owners[slot] = i
+        next[i]++
+        if (++filled == tableSize) return Array(tableSize) { members[owners[it]] }
+      }
+    }
+  }
+
+  override fun equals(other: Any?): Boolean {
+    val otherMapper = other as? MaglevClusterResourceMapper ?: return false
+    return table.contentEquals(otherMapper.table)
+  }
+
+  override fun hashCode(): Int = Arrays.hashCode(table)
+
+  companion object {
+    /** A prime that suits clusters of up to several hundred members. */
+    const val DEFAULT_TABLE_SIZE = 65_537
+
+    private val RESOURCE_HASHER = Hashing.rapidhash3()
+    private val OFFSET_HASHER = Hashing.rapidhash3(1L)
+    private val SKIP_HASHER = Hashing.rapidhash3(2L)
+
+    private fun isPrime(n: Int): Boolean {
+      if (n < 2) return false
+      var i = 2
+      while (i.toLong() * i <= n) {
+        if (n % i == 0) return false
+        i++
+      }
+      return true
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package misk.clustering
+
+/**
+ * Reports how many resources change owner between two resource mappings, such as before and after a cluster membership
+ * change. Use this to compare how much work a [ClusterResourceMapper] reshuffles during rollouts.
+ *
+ * Resources that had no owner, or have none afterwards because a mapping had no members, count as moved.
+ */
+data class ResourceMovement(
+  /** The number of resources compared. */
+  val resourceCount: Int,
+
+  /** The number of resources whose owner changed. */
+  val movedCount: Int,
+
+  /** The number of moved resources each member gave up. */
+  val movedFrom: Map<Cluster.Member, Int>,
+
+  /** The number of moved resources each member took on. */
+  val movedTo: Map<Cluster.Member, Int>,
+) {
+  /** The fraction of resources whose owner changed, from 0 to 1. */
+  val movedFraction: Double
+    get() = if (resourceCount == 0) 0.0 else movedCount.toDouble() / resourceCount
+
+  companion object {
+    /** Compares the owners of [resourceIds] in [before] and [after]. */
+    @JvmStatic
+    fun between(
+      before: ClusterResourceMapper,
+      after: ClusterResourceMapper,
+      resourceIds: Collection<String>,
+    ): ResourceMovement {
+      val ownersBefore = ownersOrEmpty(before, resourceIds)
+      val ownersAfter = ownersOrEmpty(after, resourceIds)
+
+      var movedCount = 0
+      val movedFrom = mutableMapOf<Cluster.Member, Int>()
+      val movedTo = mutableMapOf<Cluster.Member, Int>()
+      for (resourceId in resourceIds) {
+        val from = ownersBefore[resourceId]
+        val to = ownersAfter[resourceId]
+        if (from != null && from == to) continue
+        movedCount++
+        if (from != null) movedFrom.merge(from, 1, Int::plus)
+        if (to != null) movedTo.merge(to, 1, Int::plus)
+      }
+      return ResourceMovement(resourceIds.size, movedCount, movedFrom, movedTo)
+    }
+
+    /** Compares the owners of [resourceIds] in two snapshots of a cluster. */
+    @JvmStatic
+    fun between(before: Cluster.Snapshot, after: Cluster.Snapshot, resourceIds: Collection<String>) =
+      between(before.resourceMapper, after.resourceMapper, resourceIds)
+
+    private fun ownersOrEmpty(mapper: ClusterResourceMapper, resourceIds: Collection<String>) =
+      try {
+        mapper.getAll(resourceIds)
+      } catch (e: NoMembersAvailableException) {
+        mapOf()
+      }
+  }
+}
@@ -7,5 +7,6 @@ import misk.clustering.DefaultCluster
 
 internal class KubernetesClusterProvider @Inject internal constructor(private val config: KubernetesConfig) :
   Provider<DefaultCluster> {
-  override fun get() = DefaultCluster(Cluster.Member(config.my_pod_name, config.my_pod_ip))
+  override fun get() =
+    DefaultCluster(Cluster.Member(config.my_pod_name, config.my_pod_ip), config.resource_mapper::newResourceMapper)
 }
@@ -1,11 +1,13 @@
 package misk.clustering.kubernetes
 
+import misk.clustering.ClusterResourceMapperType
 import misk.config.Config
 
 /**
  * @property clustering_pod_label_selector Optional Kubernetes label selector to filter which pods in the namespace are
  *   considered to be in the same cluster. If omitted, all healthy pods in the namespace are included in the cluster.
  *   Ex: "app = helloserver".
+ * @property resource_mapper How resources are assigned to cluster members. See [ClusterResourceMapperType].
  */
 data class KubernetesConfig
 @JvmOverloads
@@ -18,4 +20,5 @@ constructor(
   val kubernetes_watch_read_timeout: Long = 60,
   val kubernetes_read_timeout: Long = 15,
   val kubernetes_connect_timeout: Long = 5,
+  val resource_mapper: ClusterResourceMapperType = ClusterResourceMapperType.HASH_RING,
 ) : Config
@@ -71,6 +71,71 @@ internal class HashRingClusterResourceMapperTest {
     assertThat(listOf("foo", "bar", "zed", "zork").map { hashRing[it] }).containsExactly(a, b, c, a)
   }
 
+  @Test
+  fun getAllMatchesGet() {
+    val members = (0 until 20).map { Cluster.Member("member-$it", "192.49.168.$it") }.toSet()
+    val hashRing = HashRingClusterResourceMapper(members = members, hashFn = Hashing.murmur3_32_fixed(0))
+    val resourceIds =
+      (0 until 500).map { "resource-$it" } + listOf("", "ünïcödé", "日本語", "emoji \uD83D\uDE00", "\uD800")
+    val batch = hashRing.getAll(resourceIds)
+    assertThat(batch.keys).containsExactlyElementsOf(resourceIds)
+    for (resourceId in resourceIds) {
+      assertThat(batch[resourceId]).describedAs(resourceId).isEqualTo(hashRing[resourceId])
+    }
+  }
+
+  @Test
+  fun getAllWithZeroNodes() {
+    val hashRing = HashRingClusterResourceMapper(members = setOf(), hashFn = Hashing.murmur3_32_fixed(0))
+    assertThat(hashRing.getAll(listOf())).isEmpty()
+    assertThrows<NoMembersAvailableException> { hashRing.getAll(listOf("foo")) }
+  }
+
+  @Test
+  fun weightedMembers() {
+    val heavy = Cluster.Member("heavy", "192.49.168.23")
+    val light = Cluster.Member("light", "192.49.168.24")
+    val drained = Cluster.Member("drained", "192.49.168.25")
+    val weights = mapOf(heavy to 100, light to 25, drained to 0)
+    val hashRing =
+      HashRingClusterResourceMapper(
+        members = setOf(heavy, light, drained),
+        hashFn = Hashing.murmur3_32_fixed(0),
+        vnodesCount = 64,
+        memberWeight = { weights.getValue(it) },
+      )
+
+    val owners = hashRing.getAll((0 until 10_000).map { "resource-$it" }).values.groupingBy { it }.eachCount()
+    assertThat(owners).doesNotContainKey(drained)
+    assertThat(owners.getValue(heavy)).isGreaterThan(owners.getValue(light) * 2)
+  }
+
+  @Test
+  fun allMembersDrained() {
+    val zork = Cluster.Member("zork", "192.49.168.23")
+    val hashRing = HashRingClusterResourceMapper(members = setOf(zork), memberWeight = { 0 })
+    assertThrows<NoMembersAvailableException> { hashRing["foo"] }
+  }
+
+  @Test
+  fun invalidWeight() {
+    val zork = Cluster.Member("zork", "192.49.168.23")
+    assertThrows<IllegalArgumentException> {
+      HashRingClusterResourceMapper(members = setOf(zork), memberWeight = { 101 })
+    }
+  }
+
+  @Test
+  fun equality() {
+    val zork = Cluster.Member("zork", "192.49.168.23")
+    val mork = Cluster.Member("mork", "192.49.168.24")
+    assertThat(HashRingClusterResourceMapper(setOf(zork, mork)))
+      .isEqualTo(HashRingClusterResourceMapper(setOf(mork, zork)))
+    assertThat(HashRingClusterResourceMapper(setOf(zork, mork)).hashCode())
+      .isEqualTo(HashRingClusterResourceMapper(setOf(mork, zork)).hashCode())
+    assertThat(HashRingClusterResourceMapper(setOf(zork))).isNotEqualTo(HashRingClusterResourceMapper(setOf(mork)))
+  }
+
   /**
    * Hash function that uses pre-determined mapping to determine hashes for inputs.
    *
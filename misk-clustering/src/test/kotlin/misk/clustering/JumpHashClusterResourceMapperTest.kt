@@ -0,0 +1,53 @@
+package misk.clustering
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+internal class JumpHashClusterResourceMapperTest {
+  private val members = (0 until 50).map { Cluster.Member("pod-%02d".format(it), "10.0.0.$it") }.toSet()
+  private val resourceIds = (0 until 10_000).map { "test-resource:$it" }
+
+  @Test
+  fun `throws an error when there are zero members`() {
+    val mapper = JumpHashClusterResourceMapper(members = setOf())
+    assertThrows<NoMembersAvailableException> { mapper["foo"] }
+  }
+
+  @Test
+  fun `can hash with a single member`() {
+    val zork = Cluster.Member("zork", "192.49.168.23")
+    val mapper = JumpHashClusterResourceMapper(members = setOf(zork))
+    assertThat(listOf("foo", "bar", "zed").map { mapper[it] }).containsExactly(zork, zork, zork)
+  }
+
+  @Test
+  fun `assignments are balanced`() {
+    val mapper = JumpHashClusterResourceMapper(members)
+    val counts = resourceIds.groupingBy { mapper[it] }.eachCount()
+    val expected = resourceIds.size / members.size
+    assertThat(counts).hasSize(members.size)
+    assertThat(counts.values).allMatch { it in (expected * 0.7).toInt()..(expected * 1.3).toInt() }
+  }
+
+  @Test
+  fun `only resources of the last member move when it leaves`() {
+    val last = members.maxBy { it.name }
+    val before = JumpHashClusterResourceMapper(members)
+    val after = JumpHashClusterResourceMapper(members - last)
+
+    val movement = ResourceMovement.between(before, after, resourceIds)
+
+    assertThat(movement.movedFrom.keys).containsExactly(last)
+    assertThat(movement.movedCount).isEqualTo(resourceIds.count { before[it] == last })
+  }
+
+  @Test
+  fun `jump hash only moves keys to a new bucket`() {
+    for (key in 0L until 1_000L) {
+      val before = JumpHashClusterResourceMapper.jumpHash(key * 0x9E3779B97F4A7C15uL.toLong(), 10)
+      val after = JumpHashClusterResourceMapper.jumpHash(key * 0x9E3779B97F4A7C15uL.toLong(), 11)
+      assertThat(after).isIn(before, 10)
+    }
+  }
+}
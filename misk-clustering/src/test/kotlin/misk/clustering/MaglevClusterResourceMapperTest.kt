@@ -0,0 +1,59 @@
+package misk.clustering
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+internal class MaglevClusterResourceMapperTest {
+  private val members = (0 until 50).map { Cluster.Member("pod-$it", "10.0.0.$it") }.toSet()
+  private val resourceIds = (0 until 10_000).map { "test-resource:$it" }
+
+  @Test
+  fun `throws an error when there are zero members`() {
+    val mapper = MaglevClusterResourceMapper(members = setOf())
+    assertThrows<NoMembersAvailableException> { mapper["foo"] }
+  }
+
+  @Test
+  fun `can hash with a single member`() {
+    val zork = Cluster.Member("zork", "192.49.168.23")
+    val mapper = MaglevClusterResourceMapper(members = setOf(zork))
+    assertThat(listOf("foo", "bar", "zed").map { mapper[it] }).containsExactly(zork, zork, zork)
+  }
+
+  @Test
+  fun `mapping does not depend on member order`() {
+    val mapper = MaglevClusterResourceMapper(members)
+    val reversed = MaglevClusterResourceMapper(members.reversed().toSet())
+    assertThat(reversed).isEqualTo(mapper)
+    assertThat(resourceIds.map { reversed[it] }).isEqualTo(resourceIds.map { mapper[it] })
+  }
+
+  @Test
+  fun `assignments are balanced`() {
+    val mapper = MaglevClusterResourceMapper(members)
+    val counts = resourceIds.groupingBy { mapper[it] }.eachCount()
+    val expected = resourceIds.size / members.size
+    assertThat(counts).hasSize(members.size)
+    assertThat(counts.values).allMatch { it in (expected * 0.7).toInt()..(expected * 1.3).toInt() }
+  }
+
+  @Test
+  fun `few resources move when a member leaves`() {
+    val departed = members.first()
+    val before = MaglevClusterResourceMapper(members)
+    val after = MaglevClusterResourceMapper(members - departed)
+
+    val movement = ResourceMovement.between(before, after, resourceIds)
+
+    // The departed member's resources must move; Maglev moves only a little beyond those.
+    assertThat(movement.movedFrom.getValue(departed)).isEqualTo(resourceIds.count { before[it] == departed })
+    assertThat(movement.movedFraction).isLessThan(3.0 / members.size)
+  }
+
+  @Test
+  fun `table size must be prime`() {
+    assertThrows<IllegalArgumentException> { MaglevClusterResourceMapper(members, tableSize = 65_536) }
+    assertThrows<IllegalArgumentException> { MaglevClusterResourceMapper(members, tableSize = 47) }
+  }
+}
@@ -0,0 +1,58 @@
+package misk.feature
+
+/**
+ * The values of several feature flags for one key and attributes, as returned by [FeatureFlags.getAll].
+ *
+ * Each getter throws like the matching [FeatureFlags] getter would if its flag couldn't be evaluated, and throws
+ * [IllegalArgumentException] for a flag that wasn't passed to [FeatureFlags.getAll].
+ */
+interface FeatureFlagValues {
+  fun getBoolean(feature: Feature): Boolean
+
+  fun getDouble(feature: Feature): Double
+
+  fun getInt(feature: Feature): Int
+
+  fun getString(feature: Feature): String
+
+  fun <T : Enum<T>> getEnum(feature: Feature, clazz: Class<T>): T
+
+  fun <T> getJson(feature: Feature, clazz: Class<T>): T
+
+  fun getJsonString(feature: Feature): String
+}
+
+inline fun <reified T : Enum<T>> FeatureFlagValues.getEnum(feature: Feature): T = getEnum(feature, T::class.java)
+
+inline fun <reified T> FeatureFlagValues.getJson(feature: Feature): T = getJson(feature, T::class.java)
+
+/** Evaluates each flag on [featureFlags] when it's read, for implementations that can't evaluate them together. */
+internal class DelegatingFeatureFlagValues(
+  private val featureFlags: FeatureFlags,
+  features: Collection<Feature>,
+  private val key: String,
+  private val attributes: Attributes,
+) : FeatureFlagValues {
+  private val features = features.toSet()
+
+  override fun getBoolean(feature: Feature) = featureFlags.getBoolean(checkRequested(feature), key, attributes)
+
+  override fun getDouble(feature: Feature) = featureFlags.getDouble(checkRequested(feature), key, attributes)
+
+  override fun getInt(feature: Feature) = featureFlags.getInt(checkRequested(feature), key, attributes)
+
+  override fun getString(feature: Feature) = featureFlags.getString(checkRequested(feature), key, attributes)
+
+  override fun <T : Enum<T>> getEnum(feature: Feature, clazz: Class<T>) =
+    featureFlags.getEnum(checkRequested(feature), key, clazz, attributes)
+
+  override fun <T> getJson(feature: Feature, clazz: Class<T>) =
+    featureFlags.getJson(checkRequested(feature), key, clazz, attributes)
+
+  override fun getJsonString(feature: Feature) = featureFlags.getJsonString(checkRequested(feature), key, attributes)
+
+  private fun checkRequested(feature: Feature): Feature {
+    require(feature in features) { "$feature wasn't passed to getAll" }
+    return feature
+  }
+}
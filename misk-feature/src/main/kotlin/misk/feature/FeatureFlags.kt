@@ -118,6 +118,17 @@ interface FeatureFlags {
    */
   fun getJsonString(feature: Feature, key: String, attributes: Attributes = Attributes()): String
 
+  /**
+   * Calculates the values of many feature flags for the same key and attributes, for callers that need several flags
+   * for one entity. Implementations that can evaluate the flags together in one pass do; by default each flag is
+   * evaluated when its value is read.
+   *
+   * @param features the feature flags to evaluate. Reading any other flag from the result throws.
+   * @see [getEnum] for param details
+   */
+  fun getAll(features: Collection<Feature>, key: String, attributes: Attributes = Attributes()): FeatureFlagValues =
+    DelegatingFeatureFlagValues(this, features, key, attributes)
+
   /**
    * Registers a tracker for the value of a boolean feature flag for the given key and attributes.
    *
@@ -222,6 +233,8 @@ interface FeatureFlags {
 
   fun getJsonString(feature: Feature, key: String) = getJsonString(feature, key, Attributes())
 
+  fun getAll(features: Collection<Feature>, key: String) = getAll(features, key, Attributes())
+
   fun trackBoolean(feature: Feature, key: String, executor: Executor, tracker: (Boolean) -> Unit) =
     trackBoolean(feature, key, Attributes(), executor, tracker)
 
@@ -204,6 +204,17 @@ internal class FakeFeatureFlagsTest {
     assertThat(subject.getString(FEATURE, "joker", Attributes(mapOf("don't" to "exist")))).isEqualTo("feature-joker")
   }
 
+  @Test
+  fun getAll() {
+    subject.override(FEATURE, true)
+    subject.overrideKey(OTHER_FEATURE, "joker", 5)
+
+    val flags = subject.getAll(listOf(FEATURE, OTHER_FEATURE), "joker")
+    assertThat(flags.getBoolean(FEATURE)).isTrue()
+    assertThat(flags.getInt(OTHER_FEATURE)).isEqualTo(5)
+    assertThrows<IllegalArgumentException> { flags.getString(Feature("baz")) }
+  }
+
   @Test
   fun `provides the latest override in case two or more attributes are a match`() {
     val typeAttribute = Attributes(mapOf("type" to "bad"))
@@ -0,0 +1,150 @@
+package misk.hibernate
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import java.util.Optional
+import misk.hibernate.ReflectionQuery.ParsedProperty
+
+/**
+ * Caches the HQL of [ReflectionQuery] queries by their shape.
+ *
+ * Running a criteria query builds a tree of criteria objects that Hibernate renders to a new HQL string with every
+ * value inlined as a fresh parameter. Queries with the same shape (the same entity, selection, constrained properties,
+ * operators, orders and groups) differ only in their values, so the HQL is rendered once per shape and each query only
+ * binds its values. Because the HQL string is stable, Hibernate's own query plan cache also skips re-parsing it.
+ */
+internal class HqlPlanCache {
+  private val plans: Cache<QueryShape, Optional<String>> = CacheBuilder.newBuilder().maximumSize(MAX_SHAPES).build()
+
+  /** Returns the HQL for [shape], or null if Hibernate rejected it before. */
+  operator fun get(shape: QueryShape): String? = plans.get(shape) { Optional.of(shape.toHql()) }.orElse(null)
+
+  /** Records that Hibernate rejected the HQL for [shape], so queries of that shape use the criteria API. */
+  fun markUnsupported(shape: QueryShape) {
+    plans.put(shape, Optional.empty())
+  }
+
+  fun size(): Long = plans.size()
+
+  private companion object {
+    /** Shapes come from query methods in code, so this is only reached by queries built dynamically. */
+    const val MAX_SHAPES = 1_000L
+  }
+}
+
+/** Everything that determines the HQL of a query, but none of the values bound to it. */
+internal data class QueryShape(
+  val entity: Class<*>,
+  val selection: SelectionShape,
+  val where: List<ConstraintShape>,
+  val orderBy: List<OrderShape>,
+  val groupBy: List<List<String>>,
+) {
+  /** Renders this shape with named parameters `p0`, `p1`, ... in the order the constraints bind their values. */
+  fun toHql(): String = buildString {
+    append("select ")
+    when (selection) {
+      SelectionShape.Entity -> append(ROOT)
+      SelectionShape.Count -> append("count($ROOT)")
+      is SelectionShape.Properties -> selection.properties.joinTo(this) { it.toHql() }
+    }
+    append(" from ").append(entity.name).append(' ').append(ROOT)
+
+    if (where.isNotEmpty()) {
+      append(" where ")
+      appendConjunction(where, ParameterNames())
+    }
+    if (groupBy.isNotEmpty()) {
+      append(" group by ")
+      groupBy.joinTo(this) { it.toHqlPath() }
+    }
+    if (orderBy.isNotEmpty()) {
+      append(" order by ")
+      orderBy.joinTo(this) { "${it.path.toHqlPath()} ${if (it.asc) "asc" else "desc"}" }
+    }
+  }
+
+  private fun StringBuilder.appendConjunction(constraints: List<ConstraintShape>, parameters: ParameterNames) {
+    constraints.forEachIndexed { index, constraint ->
+      if (index > 0) append(" and ")
+      when (constraint) {
+        is PropertyShape -> appendProperty(constraint, parameters)
+        is OrShape -> {
+          append('(')
+          constraint.options.forEachIndexed { optionIndex, option ->
+            if (optionIndex > 0) append(" or ")
+            append('(')
+            appendConjunction(option, parameters)
+            append(')')
+          }
+          append(')')
+        }
+      }
+    }
+  }
+
+  private fun StringBuilder.appendProperty(constraint: PropertyShape, parameters: ParameterNames) {
+    val path = constraint.path.toHqlPath()
+    when (constraint.operator) {
+      Operator.LT -> append("$path < :${parameters.next()}")
+      Operator.LE -> append("$path <= :${parameters.next()}")
+      Operator.EQ -> append("$path = :${parameters.next()}")
+      Operator.GE -> append("$path >= :${parameters.next()}")
+      Operator.GT -> append("$path > :${parameters.next()}")
+      Operator.NE -> append("$path <> :${parameters.next()}")
+      // The JDBC API forbids empty IN clauses, so they're rendered as constants.
+      Operator.IN -> append(if (constraint.bound) "$path in (:${parameters.next()})" else "1 = 0")
+      Operator.NOT_IN -> append(if (constraint.bound) "$path not in (:${parameters.next()})" else "1 = 1")
+      Operator.IS_NOT_NULL -> append("$path is not null")
+      Operator.IS_NULL -> append("$path is null")
+      Operator.LIKE -> append("$path like :${parameters.next()}")
+      Operator.EQ_OR_IS_NULL -> throw IllegalArgumentException("$constraint must be resolved to EQ or IS_NULL")
+    }
+  }
+
+  private fun ParsedProperty.toHql(): String {
+    val expression = path.toHqlPath()
+    return when (aggregation) {
+      AggregationType.NONE -> expression
+      AggregationType.AVG -> "avg($expression)"
+      AggregationType.COUNT -> "count($expression)"
+      AggregationType.COUNT_DISTINCT -> "count(distinct $expression)"
+      AggregationType.MAX -> "max($expression)"
+      AggregationType.MIN -> "min($expression)"
+      AggregationType.SUM -> "sum($expression)"
+    }
+  }
+
+  private fun List<String>.toHqlPath() = joinToString(separator = ".", prefix = "$ROOT.")
+
+  private class ParameterNames {
+    private var count = 0
+
+    fun next() = parameterName(count++)
+  }
+
+  companion object {
+    private const val ROOT = "root"
+
+    fun parameterName(index: Int) = "p$index"
+  }
+}
+
+internal sealed interface SelectionShape {
+  object Entity : SelectionShape
+
+  object Count : SelectionShape
+
+  data class Properties(val properties: List<ParsedProperty>) : SelectionShape
+}
+
+internal sealed interface ConstraintShape
+
+/** A constraint on the property at [path]. If [bound], it takes one parameter. */
+internal data class PropertyShape(val path: List<String>, val operator: Operator, val bound: Boolean) :
+  ConstraintShape
+
+/** A disjunction of [options], each of which is a conjunction of constraints. */
+internal data class OrShape(val options: List<List<ConstraintShape>>) : ConstraintShape
+
+internal data class OrderShape(val path: List<String>, val asc: Boolean)
@@ -29,6 +29,7 @@ import kotlin.reflect.full.primaryConstructor
 import kotlin.reflect.jvm.javaMethod
 import misk.inject.typeLiteral
 import misk.logging.getLogger
+import org.hibernate.query.Query as HibernateQuery
 
 private val logger = getLogger<ReflectionQuery<*>>()
 
@@ -41,6 +42,7 @@ internal class ReflectionQuery<T : DbEntity<T>>(
   private val rootEntityType: KClass<T>,
   private val queryMethodHandlers: Map<Method, QueryMethodHandler>,
   private val queryLimitsConfig: QueryLimitsConfig,
+  private val planCache: HqlPlanCache,
 
   /** True if this query only exists to collect predicates for an OR clause. */
   private val predicatesOnly: Boolean = false,
@@ -70,7 +72,14 @@ internal class ReflectionQuery<T : DbEntity<T>>(
   }
 
   override fun <Q : Query<*>> clone(): Q {
-    val copy = ReflectionQuery(this.queryClass, this.rootEntityType, this.queryMethodHandlers, this.queryLimitsConfig)
+    val copy =
+      ReflectionQuery(
+        this.queryClass,
+        this.rootEntityType,
+        this.queryMethodHandlers,
+        this.queryLimitsConfig,
+        this.planCache,
+      )
     copy.maxRows = this.maxRows
     copy.firstResult = this.firstResult
     copy.hints.addAll(this.hints)
@@ -92,70 +101,15 @@ internal class ReflectionQuery<T : DbEntity<T>>(
     hints.add(hint)
   }
 
-  @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
-  fun addConstraint(path: List<String>, operator: Operator, value: Any?) {
-    when (operator) {
-      Operator.EQ -> {
-        isEqual(path, value)
-      }
-      Operator.EQ_OR_IS_NULL -> {
-        if (value != null) {
-          isEqual(path, value)
-        } else {
-          isNull(path)
-        }
-      }
-      Operator.NE -> {
-        addConstraint { root, builder -> builder.notEqual(root.traverse<Any?>(path), value) }
-      }
-      Operator.LT -> {
-        val arg = value as Comparable<Comparable<*>?>?
-        addConstraint { root, builder -> builder.lessThan(root.traverse(path), arg) }
-      }
-      Operator.LE -> {
-        val arg = value as Comparable<Comparable<*>?>?
-        addConstraint { root, builder -> builder.lessThanOrEqualTo(root.traverse(path), arg) }
-      }
-      Operator.GE -> {
-        addConstraint { root, builder ->
-          val arg = value as Comparable<Comparable<*>?>?
-          builder.greaterThanOrEqualTo(root.traverse(path), arg)
-        }
-      }
-      Operator.GT -> {
-        addConstraint { root, builder ->
-          val arg = value as Comparable<Comparable<*>?>?
-          builder.greaterThan(root.traverse(path), arg)
-        }
-      }
-      Operator.IN -> {
-        val collection = value as Collection<*>
-        addConstraint { root, builder -> builder.addInClause(root.traverse(path), collection) }
-      }
-      Operator.NOT_IN -> {
-        val collection = value as Collection<*>
-        addConstraint { root, builder -> builder.not(builder.addInClause(root.traverse(path), collection)) }
-      }
-      Operator.IS_NOT_NULL -> {
-        addConstraint { root, builder -> builder.isNotNull(root.traverse<Comparable<Comparable<*>>>(path)) }
-      }
-      Operator.IS_NULL -> isNull(path)
-      Operator.LIKE -> {
-        val pattern = value as String
-        addConstraint { root, builder -> builder.like(root.traverse<String>(path), pattern) }
-      }
+  fun addConstraint(path: List<String>, operator: Operator, value: Any?): ReflectionQuery<T> {
+    if (operator == Operator.EQ_OR_IS_NULL) {
+      return addConstraint(path, if (value != null) Operator.EQ else Operator.IS_NULL, value)
     }
+    return addConstraint(PropertyConstraint(path, operator, value, predicateFactory(path, operator, value)))
   }
 
   override fun dynamicAddOrder(path: String, asc: Boolean) {
-    val pathList = path.split('.')
-    addOrderBy { root, builder ->
-      if (asc) {
-        builder.asc(root.traverse<Any?>(pathList))
-      } else {
-        builder.desc(root.traverse<Any?>(pathList))
-      }
-    }
+    addOrderBy(PropertyOrder(path.split('.'), asc))
   }
 
   override fun dynamicAddFetch(path: String, joinType: JoinType) {
@@ -266,27 +220,32 @@ internal class ReflectionQuery<T : DbEntity<T>>(
   private fun select(returnList: Boolean, session: Session): List<T> {
     check(!predicatesOnly) { "cannot select on this query" }
 
+    check(groupFactories.size == 0) {
+      "@Group methods shouldn't be used with uniqueResult or list, use a @Select projection with aggregation instead"
+    }
+
+    val typedQuery = cachedQuery(session, SelectionShape.Entity) ?: criteriaSelect(session)
+    typedQuery.firstResult = firstResult
+    typedQuery.maxResults = effectiveMaxRows(returnList)
+    hints.forEach { typedQuery.addQueryHint(it) }
+    @Suppress("UNCHECKED_CAST") // Both queries select the root entity.
+    val rows = session.disableChecks(disabledChecks) { typedQuery.list() } as List<T>
+    checkRowCount(returnList, rows.size)
+    return rows
+  }
+
+  private fun criteriaSelect(session: Session): HibernateQuery<T> {
     val criteriaBuilder = session.hibernateSession.criteriaBuilder
     val query = criteriaBuilder.createQuery(rootEntityType.java)
     val queryRoot = query.from(rootEntityType.java)
 
     val predicate = buildWherePredicate(queryRoot, criteriaBuilder)
     query.where(predicate)
-
-    check(groupFactories.size == 0) {
-      "@Group methods shouldn't be used with uniqueResult or list, use a @Select projection with aggregation instead"
-    }
     query.orderBy(buildOrderBys(queryRoot, criteriaBuilder))
 
     fetchFactories.forEach { it(queryRoot) }
 
-    val typedQuery = session.hibernateSession.createQuery(query)
-    typedQuery.firstResult = firstResult
-    typedQuery.maxResults = effectiveMaxRows(returnList)
-    hints.forEach { typedQuery.addQueryHint(it) }
-    val rows = session.disableChecks(disabledChecks) { typedQuery.list() }
-    checkRowCount(returnList, rows.size)
-    return rows
+    return session.hibernateSession.createQuery(query)
   }
 
   override fun count(session: Session): Long {
@@ -299,6 +258,12 @@ internal class ReflectionQuery<T : DbEntity<T>>(
     check(firstResult == 0) { "firstResult shouldn't be used for a count" }
     check(maxRows == -1) { "maxRows shouldn't be used for a count" }
 
+    val typedQuery = cachedQuery(session, SelectionShape.Count) ?: criteriaCount(session)
+    hints.forEach { typedQuery.addQueryHint(it) }
+    return session.disableChecks(disabledChecks) { typedQuery.singleResult } as Long
+  }
+
+  private fun criteriaCount(session: Session): HibernateQuery<Long> {
     val criteriaBuilder = session.hibernateSession.criteriaBuilder
     val query = criteriaBuilder.createQuery(Long::class.java)
     val queryRoot = query.from(rootEntityType.java)
@@ -308,11 +273,43 @@ internal class ReflectionQuery<T : DbEntity<T>>(
 
     query.select(criteriaBuilder.count(queryRoot))
 
-    val typedQuery = session.hibernateSession.createQuery(query)
-    hints.forEach { typedQuery.addQueryHint(it) }
-    return session.disableChecks(disabledChecks) { typedQuery.singleResult }
+    return session.hibernateSession.createQuery(query)
   }
 
+  /**
+   * Returns a query that selects [selection] using HQL cached for this query's shape, with this query's values bound to
+   * it. Returns null if this query can only be built with the criteria API: if it fetches associations, compares a
+   * property with null, or has a constraint added with [addJpaConstraint].
+   */
+  private fun cachedQuery(session: Session, selection: SelectionShape): HibernateQuery<*>? {
+    if (fetchFactories.isNotEmpty()) return null
+    val parameters = mutableListOf<Any>()
+    val where = describeConstraints(parameters) ?: return null
+    val orderBy = orderFactories.map { (it as? PropertyOrder)?.shape ?: return null }
+    val groupBy = groupFactories.flatMap { (it as? PropertyGroup)?.paths ?: return null }
+    val shape = QueryShape(rootEntityType.java, selection, where, orderBy, groupBy)
+
+    val hql = planCache[shape] ?: return null
+    val query =
+      try {
+        session.hibernateSession.createQuery(hql)
+      } catch (e: IllegalArgumentException) {
+        // Hibernate can't run this shape as HQL. The criteria API reports the problem if there's one with the query.
+        logger.warn(e) { "Falling back to the criteria API for ${queryClass.java.name}: $hql" }
+        planCache.markUnsupported(shape)
+        return null
+      }
+    parameters.forEachIndexed { index, value ->
+      val name = QueryShape.parameterName(index)
+      if (value is Collection<*>) query.setParameterList(name, value) else query.setParameter(name, value)
+    }
+    return query
+  }
+
+  /** Returns the shapes of this query's constraints, or null if any can only be built with the criteria API. */
+  private fun describeConstraints(parameters: MutableList<Any>): List<ConstraintShape>? =
+    constraints.map { (it as? ShapedConstraint)?.describe(parameters) ?: return null }
+
   private fun effectiveMaxRows(returnList: Boolean): Int {
     return when {
       (maxRows == 1) -> 1 // If specifically setting maxRows to 1 leave it so we can use unique
@@ -376,6 +373,8 @@ internal class ReflectionQuery<T : DbEntity<T>>(
   @Singleton
   internal class Factory @Inject internal constructor(private var queryLimitsConfig: QueryLimitsConfig) :
     Query.Factory {
+    internal val hqlPlanCache = HqlPlanCache()
+
     private val queryMethodHandlersCache =
       CacheBuilder.newBuilder()
         .build(
@@ -393,13 +392,19 @@ internal class ReflectionQuery<T : DbEntity<T>>(
 
       @Suppress("UNCHECKED_CAST")
       val reflectionQuery =
-        ReflectionQuery(queryClass as KClass<DbPlaceholder>, entityType.kotlin, queryMethodHandlers, queryLimitsConfig)
+        ReflectionQuery(
+          queryClass as KClass<DbPlaceholder>,
+          entityType.kotlin,
+          queryMethodHandlers,
+          queryLimitsConfig,
+          hqlPlanCache,
+        )
       @Suppress("UNCHECKED_CAST")
       return reflectionQuery.toProxy() as Q
     }
 
     override fun <E : DbEntity<E>> dynamicQuery(entityClass: KClass<E>): Query<E> {
-      val reflectionQuery = ReflectionQuery(Query::class, entityClass, mapOf(), queryLimitsConfig)
+      val reflectionQuery = ReflectionQuery(Query::class, entityClass, mapOf(), queryLimitsConfig, hqlPlanCache)
       return reflectionQuery.toProxy()
     }
 
@@ -438,6 +443,19 @@ internal class ReflectionQuery<T : DbEntity<T>>(
 
       val session = args[0] as Session
 
+      val typedQuery =
+        reflectionQuery.cachedQuery(session, SelectionShape.Properties(properties))
+          ?: criteriaQuery(reflectionQuery, session)
+      reflectionQuery.hints.forEach { typedQuery.addQueryHint(it) }
+      typedQuery.firstResult = reflectionQuery.firstResult
+      typedQuery.maxResults = reflectionQuery.effectiveMaxRows(returnList)
+      val rows = session.disableChecks(reflectionQuery.disabledChecks) { typedQuery.list() }
+      reflectionQuery.checkRowCount(returnList, rows.size)
+      val list = rows.mapNotNull { toValue(it) }
+      return if (returnList) list else list.firstOrNull()
+    }
+
+    private fun criteriaQuery(reflectionQuery: ReflectionQuery<*>, session: Session): HibernateQuery<Any> {
       val criteriaBuilder = session.hibernateSession.criteriaBuilder
       val query = criteriaBuilder.createQuery(Any::class.java)
       val root: Root<*> = query.from(reflectionQuery.rootEntityType.java)
@@ -449,14 +467,7 @@ internal class ReflectionQuery<T : DbEntity<T>>(
 
       reflectionQuery.fetchFactories.forEach { it(root) }
 
-      val typedQuery = session.hibernateSession.createQuery(query)
-      reflectionQuery.hints.forEach { typedQuery.addQueryHint(it) }
-      typedQuery.firstResult = reflectionQuery.firstResult
-      typedQuery.maxResults = reflectionQuery.effectiveMaxRows(returnList)
-      val rows = session.disableChecks(reflectionQuery.disabledChecks) { typedQuery.list() }
-      reflectionQuery.checkRowCount(returnList, rows.size)
-      val list = rows.mapNotNull { toValue(it) }
-      return if (returnList) list else list.firstOrNull()
+      return session.hibernateSession.createQuery(query)
     }
 
     private fun select(criteriaBuilder: CriteriaBuilder, queryRoot: Root<*>) =
@@ -579,13 +590,7 @@ internal class ReflectionQuery<T : DbEntity<T>>(
             override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
               check(!reflectionQuery.predicatesOnly) { "cannot define sort order on this query" }
 
-              return reflectionQuery.addOrderBy { root, builder ->
-                if (order.asc) {
-                  builder.asc(root.traverse<Any?>(path))
-                } else {
-                  builder.desc(root.traverse<Any?>(path))
-                }
-              }
+              return reflectionQuery.addOrderBy(PropertyOrder(path, order.asc))
             }
           }
       }
@@ -615,7 +620,7 @@ internal class ReflectionQuery<T : DbEntity<T>>(
         result[javaMethod] =
           object : QueryMethodHandler {
             override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-              return reflectionQuery.addGroupBy { root, _ -> paths.map { root.traverse<Any?>(it) } }
+              return reflectionQuery.addGroupBy(PropertyGroup(paths))
             }
           }
       }
@@ -691,137 +696,30 @@ internal class ReflectionQuery<T : DbEntity<T>>(
           return
         }
 
-        val handler =
+        val argToValue: (Array<out Any>) -> Any? =
           when (constraint.operator) {
-            Operator.EQ ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.isEqual(path, args[0])
-                }
-              }
-            Operator.EQ_OR_IS_NULL ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return if (args[0] != null) {
-                    reflectionQuery.isEqual(path, args[0])
-                  } else {
-                    reflectionQuery.isNull(path)
-                  }
-                }
-              }
-            Operator.NE ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    builder.notEqual(root.traverse<Any?>(path), args[0])
-                  }
-                }
-              }
-            Operator.LT ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
-                  val arg = args[0] as Comparable<Comparable<*>?>?
-                  return reflectionQuery.addConstraint { root, builder -> builder.lessThan(root.traverse(path), arg) }
-                }
-              }
-            Operator.LE ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
-                  val arg = args[0] as Comparable<Comparable<*>?>?
-                  return reflectionQuery.addConstraint { root, builder ->
-                    builder.lessThanOrEqualTo(root.traverse(path), arg)
-                  }
-                }
-              }
-            Operator.GE ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
-                    val arg = args[0] as Comparable<Comparable<*>?>?
-                    builder.greaterThanOrEqualTo(root.traverse(path), arg)
-                  }
-                }
-              }
-            Operator.GT ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
-                    val arg = args[0] as Comparable<Comparable<*>?>?
-                    builder.greaterThan(root.traverse(path), arg)
-                  }
-                }
-              }
-            Operator.IN -> {
+            Operator.IN,
+            Operator.NOT_IN -> {
               val parameter = function.parameters[1]
-
-              val argToCollection: (Any) -> Collection<Any?> =
-                when {
-                  parameter.isVararg -> { arg -> (arg as Array<*>).toList() }
-                  parameter.isAssignableTo(Collection::class) -> { arg -> (arg as Collection<*>) }
-                  else -> {
-                    errors.add("${function.name}() parameter must be a vararg or a collection")
-                    return
-                  }
-                }
-
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    val collection = argToCollection(args[0])
-                    builder.addInClause(root.traverse(path), collection)
-                  }
+              when {
+                parameter.isVararg -> { args -> (args[0] as Array<*>).toList() }
+                parameter.isAssignableTo(Collection::class) -> { args -> args[0] as Collection<*> }
+                else -> {
+                  errors.add("${function.name}() parameter must be a vararg or a collection")
+                  return
                 }
               }
             }
-            Operator.NOT_IN -> {
-              val parameter = function.parameters[1]
-
-              val argToCollection: (Any) -> Collection<Any?> =
-                when {
-                  parameter.isVararg -> { arg -> (arg as Array<*>).toList() }
-                  parameter.isAssignableTo(Collection::class) -> { arg -> (arg as Collection<*>) }
-                  else -> {
-                    errors.add("${function.name}() parameter must be a vararg or a collection")
-                    return
-                  }
-                }
+            Operator.IS_NOT_NULL,
+            Operator.IS_NULL -> { _ -> null }
+            else -> { args -> args[0] }
+          }
 
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    val collection = argToCollection(args[0])
-                    builder.not(builder.addInClause(root.traverse(path), collection))
-                  }
-                }
-              }
+        val handler =
+          object : QueryMethodHandler {
+            override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
+              return reflectionQuery.addConstraint(path, constraint.operator, argToValue(args))
             }
-            Operator.IS_NOT_NULL ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.addConstraint { root, builder ->
-                    builder.isNotNull(root.traverse<Comparable<Comparable<*>>>(path))
-                  }
-                }
-              }
-            Operator.IS_NULL ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  return reflectionQuery.isNull(path)
-                }
-              }
-            Operator.LIKE ->
-              object : QueryMethodHandler {
-                override fun invoke(reflectionQuery: ReflectionQuery<*>, args: Array<out Any>): Any? {
-                  val pattern = args[0] as String
-                  return reflectionQuery.addConstraint { root, builder ->
-                    builder.like(root.traverse<String>(path), pattern)
-                  }
-                }
-              }
           }
 
         result[javaMethod] = handler
@@ -1037,14 +935,21 @@ internal class ReflectionQuery<T : DbEntity<T>>(
   }
 
   /** Accept options by creating subqueries, and then aggregate them into a Hibernate predicate. */
-  inner class OrClausePredicateFactory<Q : Query<*>> : PredicateFactory, OrBuilder<Q> {
+  inner class OrClausePredicateFactory<Q : Query<*>> : PredicateFactory, OrBuilder<Q>, ShapedConstraint {
     /** Model each option as a query. */
     val options = mutableListOf<ReflectionQuery<T>>()
 
     /** Builds a single option. */
     override fun option(lambda: Q.() -> Unit) {
       val queryForOption =
-        ReflectionQuery(queryClass, rootEntityType, queryMethodHandlers, queryLimitsConfig, predicatesOnly = true)
+        ReflectionQuery(
+          queryClass,
+          rootEntityType,
+          queryMethodHandlers,
+          queryLimitsConfig,
+          planCache,
+          predicatesOnly = true,
+        )
       @Suppress("UNCHECKED_CAST") // Q is the query type that we're implementing reflectively.
       (queryForOption.toProxy() as Q).lambda()
       options += queryForOption
@@ -1060,14 +965,115 @@ internal class ReflectionQuery<T : DbEntity<T>>(
         }
       return criteriaBuilder.or(*choices.toTypedArray())
     }
+
+    override fun describe(parameters: MutableList<Any>): ConstraintShape? {
+      if (options.isEmpty()) return null
+      return OrShape(
+        options.map { option ->
+          if (option.constraints.isEmpty()) return null
+          option.describeConstraints(parameters) ?: return null
+        }
+      )
+    }
   }
 
-  companion object {
-    private fun ReflectionQuery<*>.isEqual(path: List<String>, value: Any?) =
-      this.addConstraint { root, builder -> builder.equal(root.traverse<Any?>(path), value) }
+  /** A constraint that can be rendered to HQL. */
+  internal interface ShapedConstraint {
+    /**
+     * Returns the shape of this constraint, adding the values it binds to [parameters] in order. Returns null if it can
+     * only be built with the criteria API.
+     */
+    fun describe(parameters: MutableList<Any>): ConstraintShape?
+  }
 
-    private fun ReflectionQuery<*>.isNull(path: List<String>) =
-      this.addConstraint { root, builder -> builder.isNull(root.traverse<Comparable<Comparable<*>>>(path)) }
+  /** A constraint on a property. Comparisons with null are left to the criteria API. */
+  private class PropertyConstraint(
+    val path: List<String>,
+    val operator: Operator,
+    val value: Any?,
+    private val predicateFactory: PredicateFactory,
+  ) : PredicateFactory, ShapedConstraint {
+    override fun invoke(root: Root<*>, criteriaBuilder: CriteriaBuilder) = predicateFactory(root, criteriaBuilder)
+
+    override fun describe(parameters: MutableList<Any>): ConstraintShape? {
+      return when (operator) {
+        Operator.IS_NULL,
+        Operator.IS_NOT_NULL -> PropertyShape(path, operator, bound = false)
+        Operator.IN,
+        Operator.NOT_IN -> {
+          val collection = value as Collection<*>
+          when {
+            collection.isEmpty() -> PropertyShape(path, operator, bound = false)
+            collection.any { it == null } -> null
+            else -> {
+              parameters += collection
+              PropertyShape(path, operator, bound = true)
+            }
+          }
+        }
+        else -> {
+          if (value == null) return null
+          parameters += value
+          PropertyShape(path, operator, bound = true)
+        }
+      }
+    }
+  }
+
+  private class PropertyOrder(path: List<String>, asc: Boolean) : OrderFactory {
+    val shape = OrderShape(path, asc)
+
+    override fun invoke(root: Root<*>, criteriaBuilder: CriteriaBuilder): javax.persistence.criteria.Order {
+      val expression = root.traverse<Any?>(shape.path)
+      return if (shape.asc) criteriaBuilder.asc(expression) else criteriaBuilder.desc(expression)
+    }
+  }
+
+  private class PropertyGroup(val paths: List<List<String>>) : GroupFactory {
+    override fun invoke(root: Root<*>, criteriaBuilder: CriteriaBuilder): List<Expression<*>> =
+      paths.map { root.traverse<Any?>(it) }
+  }
+
+  companion object {
+    @Suppress("UNCHECKED_CAST") // Comparison operands must be comparable!
+    private fun predicateFactory(path: List<String>, operator: Operator, value: Any?): PredicateFactory {
+      when (operator) {
+        Operator.EQ -> return { root, builder -> builder.equal(root.traverse<Any?>(path), value) }
+        Operator.NE -> return { root, builder -> builder.notEqual(root.traverse<Any?>(path), value) }
+        Operator.LT -> {
+          val arg = value as Comparable<Comparable<*>?>?
+          return { root, builder -> builder.lessThan(root.traverse(path), arg) }
+        }
+        Operator.LE -> {
+          val arg = value as Comparable<Comparable<*>?>?
+          return { root, builder -> builder.lessThanOrEqualTo(root.traverse(path), arg) }
+        }
+        Operator.GE -> {
+          val arg = value as Comparable<Comparable<*>?>?
+          return { root, builder -> builder.greaterThanOrEqualTo(root.traverse(path), arg) }
+        }
+        Operator.GT -> {
+          val arg = value as Comparable<Comparable<*>?>?
+          return { root, builder -> builder.greaterThan(root.traverse(path), arg) }
+        }
+        Operator.IN -> {
+          val collection = value as Collection<*>
+          return { root, builder -> builder.addInClause(root.traverse(path), collection) }
+        }
+        Operator.NOT_IN -> {
+          val collection = value as Collection<*>
+          return { root, builder -> builder.not(builder.addInClause(root.traverse(path), collection)) }
+        }
+        Operator.IS_NOT_NULL ->
+          return { root, builder -> builder.isNotNull(root.traverse<Comparable<Comparable<*>>>(path)) }
+        Operator.IS_NULL -> return { root, builder -> builder.isNull(root.traverse<Comparable<Comparable<*>>>(path)) }
+        Operator.LIKE -> {
+          val pattern = value as String
+          return { root, builder -> builder.like(root.traverse<String>(path), pattern) }
+        }
+        Operator.EQ_OR_IS_NULL -> throw IllegalArgumentException("$operator must be resolved to EQ or IS_NULL")
+      }
+    }
   }
 }
 
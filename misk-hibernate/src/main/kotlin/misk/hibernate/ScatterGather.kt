@@ -0,0 +1,85 @@
+package misk.hibernate
+
+import com.google.common.collect.Iterators
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import misk.vitess.Destination
+import misk.vitess.Keyspace
+import misk.vitess.Shard
+import misk.vitess.TabletType
+
+/** The rows a scatter-gather read returned for [shard], and how long the shard took to return them. */
+data class ShardResult<T>(val shard: Shard, val rows: List<T>, val elapsed: Duration)
+
+/**
+ * Runs [block] against every shard of [keyspace] on replicas, with up to [parallelism] shards in flight at a time.
+ *
+ * Each shard is read in its own [Transacter.replicaRead] on a thread from [executor], targeted at the shard's
+ * replicas, so shards don't wait on each other's connections. Shards start right away, and the returned sequence yields
+ * each shard's result as soon as it completes. Use [mergeSorted] if every shard returns its rows sorted.
+ *
+ * If a shard fails, shards that haven't started are skipped and the sequence throws the failure when it reaches it. The
+ * sequence can only be iterated once.
+ */
+fun <T> Transacter.scatterGather(
+  keyspace: Keyspace,
+  executor: Executor,
+  parallelism: Int = 8,
+  block: (session: Session) -> List<T>,
+): Sequence<ShardResult<T>> {
+  require(parallelism > 0) { "parallelism must be positive: $parallelism" }
+  check(!inTransaction) { "Can't scatter-gather inside a transaction" }
+
+  val shards = replicaRead { it.shards(keyspace) }.toList()
+  val scatter = Scatter(this, shards, block)
+  repeat(minOf(parallelism, shards.size)) { executor.execute(scatter::run) }
+  return scatter.results()
+}
+
+/**
+ * Merges the rows of shards that each returned their rows sorted by [comparator] into one sorted sequence. The merge
+ * waits for every shard to complete, then takes the next row from whichever shard has the smallest.
+ */
+fun <T> Sequence<ShardResult<T>>.mergeSorted(comparator: Comparator<in T>): Sequence<T> = Sequence {
+  Iterators.mergeSorted(map { it.rows.iterator() }.toList(), comparator)
+}
+
+private class Scatter<T>(
+  private val transacter: Transacter,
+  private val shards: List<Shard>,
+  private val block: (session: Session) -> List<T>,
+) {
+  private val nextShard = AtomicInteger()
+  private val failed = AtomicBoolean()
+  private val outcomes = LinkedBlockingQueue<Result<ShardResult<T>>>()
+
+  /** Reads shards until there are none left or one failed. */
+  fun run() {
+    while (!failed.get()) {
+      val index = nextShard.getAndIncrement()
+      if (index >= shards.size) return
+      val outcome = runCatching { read(shards[index]) }
+      // Fail before publishing, so no shard is skipped without the failure reaching the results.
+      if (outcome.isFailure) failed.set(true)
+      outcomes.put(outcome)
+    }
+  }
+
+  private fun read(shard: Shard): ShardResult<T> {
+    val startNanos = System.nanoTime()
+    val rows =
+      transacter.replicaRead { session ->
+        session.target(Destination(shard, TabletType.REPLICA)) { shardSession -> block(shardSession) }
+      }
+    return ShardResult(shard, rows, Duration.ofNanos(System.nanoTime() - startNanos))
+  }
+
+  fun results(): Sequence<ShardResult<T>> =
+    sequence {
+        repeat(shards.size) { yield(outcomes.take().getOrThrow()) }
+      }
+      .constrainOnce()
+}
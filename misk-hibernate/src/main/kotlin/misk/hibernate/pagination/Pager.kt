@@ -1,5 +1,8 @@
 package misk.hibernate.pagination
 
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
 import misk.hibernate.DbEntity
 import misk.hibernate.Query
 import misk.hibernate.Session
@@ -31,3 +34,33 @@ fun <T : DbEntity<T>, R> Pager<T>.listAll(transacter: Transacter, transform: (T)
   }
   return results
 }
+
+/**
+ * Returns every remaining entity, one page at a time, reading each page on a replica.
+ *
+ * While the caller processes a page, the next page is read on a thread from [executor]. Each page is read in its own
+ * [Transacter.replicaRead] whose session is closed before the page is returned, so entities are detached and no
+ * session holds on to pages that were already processed. Only the current page and the prefetched one are in memory,
+ * which keeps full walks of large tables flat. Lazy associations of the returned entities can't be loaded.
+ *
+ * The sequence can only be iterated once. Stopping early leaves at most one prefetched page unread.
+ */
+fun <T : DbEntity<T>> Pager<T>.stream(transacter: Transacter, executor: Executor): Sequence<T> =
+  sequence {
+      var prefetch: CompletableFuture<Page<T>?>? = prefetchPage(transacter, executor)
+      while (prefetch != null) {
+        val page =
+          try {
+            prefetch.get()
+          } catch (e: ExecutionException) {
+            throw e.cause ?: e
+          } ?: break
+        // The pager's next offset is only known once this page is read, so the prefetch starts here.
+        prefetch = if (hasNext()) prefetchPage(transacter, executor) else null
+        yieldAll(page.contents)
+      }
+    }
+    .constrainOnce()
+
+private fun <T> Pager<T>.prefetchPage(transacter: Transacter, executor: Executor): CompletableFuture<Page<T>?> =
+  CompletableFuture.supplyAsync({ transacter.replicaRead { session -> nextPage(session) } }, executor)
@@ -0,0 +1,69 @@
+package misk.hibernate
+
+import misk.hibernate.ReflectionQuery.ParsedProperty
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class HqlPlanCacheTest {
+  @Test
+  fun rendersConstraintsOrdersAndGroups() {
+    val shape =
+      QueryShape(
+        entity = DbMovie::class.java,
+        selection =
+          SelectionShape.Properties(
+            listOf(
+              ParsedProperty(listOf("release_date"), AggregationType.NONE),
+              ParsedProperty(listOf("name"), AggregationType.COUNT_DISTINCT),
+            )
+          ),
+        where =
+          listOf(
+            PropertyShape(listOf("name"), Operator.LIKE, bound = true),
+            OrShape(
+              listOf(
+                listOf(
+                  PropertyShape(listOf("release_date"), Operator.GE, bound = true),
+                  PropertyShape(listOf("release_date"), Operator.IN, bound = true),
+                ),
+                listOf(PropertyShape(listOf("release_date"), Operator.IS_NULL, bound = false)),
+              )
+            ),
+            PropertyShape(listOf("id"), Operator.NOT_IN, bound = false),
+          ),
+        orderBy = listOf(OrderShape(listOf("release_date"), asc = false)),
+        groupBy = listOf(listOf("release_date")),
+      )
+
+    assertThat(shape.toHql())
+      .isEqualTo(
+        "select root.release_date, count(distinct root.name) from misk.hibernate.DbMovie root " +
+          "where root.name like :p0 " +
+          "and ((root.release_date >= :p1 and root.release_date in (:p2)) or (root.release_date is null)) " +
+          "and 1 = 1 " +
+          "group by root.release_date " +
+          "order by root.release_date desc"
+      )
+  }
+
+  @Test
+  fun rendersEntityAndCountSelections() {
+    val where = listOf(PropertyShape(listOf("name"), Operator.EQ, bound = true))
+
+    assertThat(QueryShape(DbMovie::class.java, SelectionShape.Entity, where, listOf(), listOf()).toHql())
+      .isEqualTo("select root from misk.hibernate.DbMovie root where root.name = :p0")
+    assertThat(QueryShape(DbMovie::class.java, SelectionShape.Count, listOf(), listOf(), listOf()).toHql())
+      .isEqualTo("select count(root) from misk.hibernate.DbMovie root")
+  }
+
+  @Test
+  fun unsupportedShapesAreRemembered() {
+    val cache = HqlPlanCache()
+    val shape = QueryShape(DbMovie::class.java, SelectionShape.Entity, listOf(), listOf(), listOf())
+
+    assertThat(cache[shape]).isEqualTo("select root from misk.hibernate.DbMovie root")
+    cache.markUnsupported(shape)
+    assertThat(cache[shape]).isNull()
+    assertThat(cache.size()).isEqualTo(1)
+  }
+}
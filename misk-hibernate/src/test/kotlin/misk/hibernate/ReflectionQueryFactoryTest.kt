@@ -1143,6 +1143,51 @@ class ReflectionQueryFactoryTest {
       .containsExactly("Jurassic Park: The Lost World")
   }
 
+  @Test
+  fun queriesWithTheSameShapeShareHql() {
+    transacter.allowCowrites().transaction { session ->
+      session.save(DbMovie("Rocky 1", LocalDate.of(2018, 1, 1)))
+      session.save(DbMovie("Rocky 2", LocalDate.of(2018, 1, 2)))
+      session.save(DbMovie("Rocky 3", LocalDate.of(2018, 1, 3)))
+    }
+
+    transacter.transaction { session ->
+      assertThat(queryFactory.newQuery<OperatorsMovieQuery>().name("Rocky 1").uniqueName(session)).isEqualTo("Rocky 1")
+      assertThat(queryFactory.newQuery<OperatorsMovieQuery>().name("Rocky 2").uniqueName(session)).isEqualTo("Rocky 2")
+      assertThat(queryFactory.hqlPlanCache.size()).isEqualTo(1)
+
+      assertThat(
+          queryFactory
+            .newQuery<OperatorsMovieQuery>()
+            .releaseDateInVararg(LocalDate.of(2018, 1, 1), LocalDate.of(2018, 1, 3))
+            .releaseDateDesc()
+            .allowTableScan()
+            .listAsNames(session)
+        )
+        .containsExactly("Rocky 3", "Rocky 1")
+      assertThat(
+          queryFactory
+            .newQuery<OperatorsMovieQuery>()
+            .releaseDateInVararg(LocalDate.of(2018, 1, 2))
+            .releaseDateDesc()
+            .allowTableScan()
+            .listAsNames(session)
+        )
+        .containsExactly("Rocky 2")
+      assertThat(queryFactory.hqlPlanCache.size()).isEqualTo(2)
+
+      // JPA constraints can't be rendered to HQL, so they're built with the criteria API.
+      assertThat(
+          queryFactory
+            .newQuery<OperatorsMovieQuery>()
+            .apply { addJpaConstraint { root, builder -> builder.equal(root.get<String>("name"), "Rocky 3") } }
+            .uniqueName(session)
+        )
+        .isEqualTo("Rocky 3")
+      assertThat(queryFactory.hqlPlanCache.size()).isEqualTo(2)
+    }
+  }
+
   @Test
   fun queryHint() {
     withSqlLogging {
@@ -15,6 +15,7 @@ import misk.jdbc.uniqueString
 import misk.testing.MiskExternalDependency
 import misk.testing.MiskTest
 import misk.testing.MiskTestModule
+import misk.vitess.Keyspace
 import misk.vitess.testing.utilities.DockerVitess
 import org.assertj.core.api.Assertions.assertThat
 import org.hibernate.exception.ConstraintViolationException
@@ -176,6 +177,38 @@ abstract class TransacterTest {
     }
   }
 
+  @Test
+  fun `scatter gather reads every shard on replicas`() {
+    createTestData()
+    if (hasDateBug()) {
+      return
+    }
+
+    val keyspace = Keyspace("movies_sharded")
+    val executor = Executors.newFixedThreadPool(2)
+    try {
+      val results =
+        transacter
+          .scatterGather(keyspace, executor, parallelism = 2) { session ->
+            queryFactory.newQuery<OperatorsMovieQuery>().allowTableScan().releaseDateAsc().list(session).map {
+              it.release_date!!
+            }
+          }
+          .toList()
+      assertThat(results.map { it.shard }).containsExactlyInAnyOrderElementsOf(transacter.shards(keyspace))
+      assertThat(Sequence { results.iterator() }.mergeSorted(naturalOrder()).toList())
+        .containsExactly(LocalDate.of(1977, 5, 25), LocalDate.of(1986, 8, 17), LocalDate.of(1993, 6, 9))
+
+      val failure =
+        assertFailsWith<IllegalStateException> {
+          transacter.scatterGather<String>(keyspace, executor) { error("boom") }.toList()
+        }
+      assertThat(failure).hasMessage("boom")
+    } finally {
+      executor.shutdown()
+    }
+  }
+
   @Test
   fun `can run consecutive replica reads and transactions`() {
     createTestData()
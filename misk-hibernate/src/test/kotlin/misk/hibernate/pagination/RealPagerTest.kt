@@ -5,6 +5,7 @@ import jakarta.inject.Inject
 import java.sql.Timestamp
 import java.time.Instant
 import java.time.LocalDate
+import java.util.concurrent.Executors
 import misk.hibernate.CharacterQuery
 import misk.hibernate.DbCharacter
 import misk.hibernate.DbMovie
@@ -69,6 +70,30 @@ class RealPagerTest {
     assertThat(actualCharacterIds).containsExactlyElementsOf(expectedCharacterIds)
   }
 
+  @Test
+  fun streamPrefetchesPagesOnReplicas() {
+    val movieId = givenStarWarsMovie()
+    givenStormtrooperCharacters(movieId, count = 100)
+    val expectedCharacterIds =
+      transacter.transaction { session ->
+        queryFactory.newQuery(CharacterQuery::class).movieId(movieId).idAsc().list(session).map { it.id }
+      }
+    val executor = Executors.newSingleThreadExecutor()
+    try {
+      val actualCharacterIds =
+        queryFactory
+          .newQuery(CharacterQuery::class)
+          .movieId(movieId)
+          .newPager(idAscPaginator(), pageSize = 7)
+          .stream(transacter, executor)
+          .map { it.id }
+          .toList()
+      assertThat(actualCharacterIds).containsExactlyElementsOf(expectedCharacterIds)
+    } finally {
+      executor.shutdown()
+    }
+  }
+
   @Test
   fun customPaginationWithDuplicateNames() {
     val movieId = givenStarWarsMovie()
@@ -403,6 +403,22 @@ constructor(
 /** Configuration element for a cluster of DataSources */
 data class DataSourceClusterConfig(val writer: DataSourceConfig, val reader: DataSourceConfig?)
 
+/**
+ * Configures [Transacter.readOnly] transactions to run on replicas instead of the writer.
+ *
+ * @property replicas data sources for replicas to read from, in addition to the reader, if there is one.
+ * @property max_replica_lag replicas that are further behind the writer than this are skipped. After a thread writes,
+ *   its reads go to the writer until replicas have caught up.
+ * @property lag_check_interval how often the replication lag of each replica is measured.
+ */
+data class ReadRoutingConfig
+@JvmOverloads
+constructor(
+  val replicas: List<DataSourceConfig> = listOf(),
+  val max_replica_lag: Duration = Duration.ofSeconds(5),
+  val lag_check_interval: Duration = Duration.ofSeconds(1),
+)
+
 /** Top-level configuration element for all datasource clusters */
 class DataSourceClustersConfig : LinkedHashMap<String, DataSourceClusterConfig>, Config {
   constructor() : super()
@@ -21,6 +21,7 @@ import wisp.deployment.Deployment
  *
  * @param baseConfig the configuration to connect to. The actual database name used may vary as the [databasePool] can
  *   pick an alternate database name for testing.
+ * @param poolName the name of the connection pool in metrics. Defaults to the name of the [qualifier].
  */
 @Singleton
 class DataSourceService
@@ -32,6 +33,7 @@ constructor(
   private val dataSourceDecorators: Set<DataSourceDecorator>,
   private val databasePool: DatabasePool,
   private val collectorRegistry: CollectorRegistry? = null,
+  private val poolName: String? = qualifier.simpleName,
 ) : AbstractIdleService(), DataSourceConnector, Provider<DataSource> {
   private lateinit var config: DataSourceConfig
 
@@ -78,7 +80,7 @@ constructor(
     }
     hikariConfig.minimumIdle = config.fixed_pool_size
     hikariConfig.maximumPoolSize = config.fixed_pool_size
-    hikariConfig.poolName = qualifier.simpleName
+    hikariConfig.poolName = poolName
     hikariConfig.connectionTimeout = config.connection_timeout.toMillis()
     hikariConfig.validationTimeout = config.validation_timeout.toMillis()
     hikariConfig.idleTimeout =
@@ -28,6 +28,9 @@ import wisp.deployment.Deployment
  *
  * This also registers services to connect to the database ([DataSourceService]) and to verify that the schema is
  * up-to-date ([SchemaMigratorService]).
+ *
+ * With [readRouting], [Transacter.readOnly] transactions on the writer's [Transacter] run on the reader and any other
+ * configured replicas that are caught up with the writer.
  */
 class JdbcModule
 @JvmOverloads
@@ -39,6 +42,7 @@ constructor(
   val databasePool: DatabasePool = RealDatabasePool,
   private val installHealthCheck: Boolean = true,
   private val installSchemaMigrator: Boolean = true,
+  private val readRouting: ReadRoutingConfig? = null,
 ) : KAbstractModule() {
   val config = config.withDefaults()
   val readerConfig = readerConfig?.withDefaults()
@@ -79,6 +83,9 @@ constructor(
     if (readerQualifier != null && readerConfig != null) {
       bindDataSource(readerQualifier, readerConfig, false)
     }
+    if (readRouting != null) {
+      bindReplicaRouter(readRouting)
+    }
 
     newMultibinder<DataSourceDecorator>(qualifier)
 
@@ -194,7 +201,11 @@ constructor(
         .let { if (installHealthCheck) it.dependsOn<PingDatabaseService>(qualifier) else it }
         .enhancedBy<ReadyService>()
     )
-    bind(keyOf<Transacter>(qualifier)).toProvider { RealTransacter(dataSourceServiceProvider.get(), config) }
+    val replicaRouterProvider =
+      if (isWriter && readRouting != null) getProvider(keyOf<ReplicaRouter>(this.qualifier)) else null
+    bind(keyOf<Transacter>(qualifier)).toProvider {
+      RealTransacter(dataSourceServiceProvider.get(), config, replicaRouterProvider?.get())
+    }
 
     if (config.type == DataSourceType.VITESS_MYSQL) {
       val spanInjectorDecoratorKey = SpanInjector::class.toKey(qualifier)
@@ -222,4 +233,45 @@ constructor(
         .asSingleton()
     }
   }
+
+  private fun bindReplicaRouter(readRouting: ReadRoutingConfig) {
+    val deploymentProvider = getProvider(keyOf<Deployment>())
+    val dataSourceDecoratorsProvider = getProvider(setOfType(DataSourceDecorator::class).toKey(qualifier))
+    val writerProvider = getProvider(keyOf<DataSourceService>(qualifier))
+    val readerProvider = readerQualifier?.let { getProvider(keyOf<DataSourceService>(it)) }
+
+    bind(keyOf<ReplicaRouter>(qualifier))
+      .toProvider(
+        object : Provider<ReplicaRouter> {
+          @com.google.inject.Inject(optional = true) var registry: CollectorRegistry? = null
+
+          override fun get(): ReplicaRouter {
+            val replicas =
+              readRouting.replicas.mapIndexed { index, replicaConfig ->
+                DataSourceService(
+                  qualifier = qualifier,
+                  baseConfig = replicaConfig.withDefaults(),
+                  deployment = deploymentProvider.get(),
+                  dataSourceDecorators = dataSourceDecoratorsProvider.get(),
+                  databasePool = databasePool,
+                  collectorRegistry = registry,
+                  poolName = "${qualifier.simpleName}-replica-$index",
+                )
+              }
+            return ReplicaRouter(
+              writer = writerProvider.get(),
+              sharedReplicas = listOfNotNull(readerProvider?.get()),
+              ownedReplicas = replicas,
+              config = readRouting,
+            )
+          }
+        }
+      )
+      .asSingleton()
+    install(
+      ServiceModule<ReplicaRouter>(qualifier)
+        .dependsOn<DataSourceService>(qualifier)
+        .let { if (readerQualifier != null) it.dependsOn<DataSourceService>(readerQualifier) else it }
+    )
+  }
 }
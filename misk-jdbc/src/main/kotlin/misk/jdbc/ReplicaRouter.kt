@@ -0,0 +1,165 @@
+package misk.jdbc
+
+import com.google.common.base.Ticker
+import com.google.common.util.concurrent.AbstractScheduledService
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.SQLException
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import javax.sql.DataSource
+import misk.logging.getLogger
+
+/**
+ * Routes the read-only transactions of a [RealTransacter] to replicas that are caught up with the writer.
+ *
+ * Every [ReadRoutingConfig.lag_check_interval] this measures the replication lag of each replica. Replicas more than
+ * [ReadRoutingConfig.max_replica_lag] behind, or whose lag couldn't be measured, are skipped until they catch up, and
+ * reads are spread round-robin over the rest. If every replica is behind, reads go to the writer.
+ *
+ * After a thread commits a read-write transaction, its read-only transactions go to the writer until any replica that
+ * could be picked has had time to replay the write. That way a caller always reads its own writes.
+ *
+ * @param sharedReplicas replicas whose connection pools are started and stopped by their own services.
+ * @param ownedReplicas replicas whose connection pools are started and stopped with this router.
+ */
+internal class ReplicaRouter(
+  private val writer: DataSourceService,
+  sharedReplicas: List<DataSourceService>,
+  private val ownedReplicas: List<DataSourceService>,
+  private val config: ReadRoutingConfig,
+  private val ticker: Ticker = Ticker.systemTicker(),
+) : AbstractScheduledService() {
+  private val replicas = (sharedReplicas + ownedReplicas).map { Replica(it) }
+  private val nextReplica = AtomicInteger()
+  private val lastWriteNanos = ThreadLocal<Long>()
+
+  /** A replica measured at [ReadRoutingConfig.max_replica_lag] may fall up to one more check interval behind. */
+  private val readYourWritesNanos = config.max_replica_lag.plus(config.lag_check_interval).toNanos()
+
+  init {
+    require(!config.max_replica_lag.isNegative) { "max_replica_lag must not be negative: ${config.max_replica_lag}" }
+    require(!config.lag_check_interval.isNegative && !config.lag_check_interval.isZero) {
+      "lag_check_interval must be positive: ${config.lag_check_interval}"
+    }
+  }
+
+  /** Returns the data source for the calling thread's next read-only transaction. */
+  fun dataSourceForRead(): DataSource {
+    val lastWrite = lastWriteNanos.get()
+    if (lastWrite != null) {
+      if (ticker.read() - lastWrite < readYourWritesNanos) return writer.dataSource
+      lastWriteNanos.remove()
+    }
+
+    val caughtUp = replicas.filter { it.caughtUp }
+    if (caughtUp.isEmpty()) return writer.dataSource
+    return caughtUp[Math.floorMod(nextReplica.getAndIncrement(), caughtUp.size)].service.dataSource
+  }
+
+  /** Records that the calling thread committed a write, so it reads from the writer until replicas have it too. */
+  fun recordWrite() {
+    lastWriteNanos.set(ticker.read())
+  }
+
+  override fun startUp() {
+    for (replica in ownedReplicas) replica.startAsync().awaitRunning()
+    // Measure before the first read, so reads aren't all sent to the writer until the first scheduled check.
+    runOneIteration()
+  }
+
+  override fun scheduler(): Scheduler =
+    Scheduler.newFixedDelaySchedule(
+      config.lag_check_interval.toMillis(),
+      config.lag_check_interval.toMillis(),
+      TimeUnit.MILLISECONDS,
+    )
+
+  override fun runOneIteration() {
+    for (replica in replicas) replica.checkLag()
+  }
+
+  override fun shutDown() {
+    for (replica in ownedReplicas) replica.stopAsync().awaitTerminated()
+  }
+
+  private inner class Replica(val service: DataSourceService) {
+    @Volatile var caughtUp = false
+
+    fun checkLag() {
+      val lag =
+        try {
+          service.dataSource.connection.use { connection -> replicationLag(connection, service.config().type) }
+        } catch (e: Exception) {
+          // Keep the schedule running; the replica is skipped until it can be measured again.
+          logger.warn(e) { "Failed to measure the replication lag of ${service.config().host}" }
+          null
+        }
+      val wasCaughtUp = caughtUp
+      caughtUp = lag != null && lag <= config.max_replica_lag
+      if (wasCaughtUp && !caughtUp) {
+        logger.warn { "Skipping replica ${service.config().host} for reads, replication lag: ${lag ?: "unknown"}" }
+      } else if (!wasCaughtUp && caughtUp) {
+        logger.info { "Routing reads to replica ${service.config().host}, replication lag: $lag" }
+      }
+    }
+  }
+
+  companion object {
+    private val logger = getLogger<ReplicaRouter>()
+
+    /**
+     * Returns how far the database behind [connection] is behind its primary, zero if it isn't a replica, or null if
+     * replication isn't running. Databases that route replica reads themselves, like Vitess, always report zero.
+     */
+    internal fun replicationLag(connection: Connection, type: DataSourceType): Duration? =
+      when (type) {
+        DataSourceType.MYSQL -> mysqlReplicationLag(connection)
+        DataSourceType.POSTGRESQL -> postgresReplicationLag(connection)
+        else -> Duration.ZERO
+      }
+
+    private fun postgresReplicationLag(connection: Connection): Duration? =
+      connection.createStatement().use { statement ->
+        statement
+          .executeQuery(
+            "SELECT pg_is_in_recovery() AS in_recovery, " +
+              "pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() AS replayed_all, " +
+              "EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) AS seconds_since_replay"
+          )
+          .use { postgresReplicationLag(it) }
+      }
+
+    /**
+     * The last replayed transaction's commit time keeps getting older while the primary is idle, so a replica that has
+     * replayed all the WAL it received is caught up whatever that time says.
+     */
+    internal fun postgresReplicationLag(resultSet: ResultSet): Duration? {
+      resultSet.next()
+      // replayed_all is null when the replica isn't streaming, and getBoolean() reads that as false.
+      if (!resultSet.getBoolean("in_recovery") || resultSet.getBoolean("replayed_all")) return Duration.ZERO
+      val seconds = resultSet.getDouble("seconds_since_replay")
+      return if (resultSet.wasNull()) null else Duration.ofMillis((seconds * 1000).toLong())
+    }
+
+    private fun mysqlReplicationLag(connection: Connection): Duration? =
+      connection.createStatement().use { statement ->
+        // MySQL 8.0.22 renamed SHOW SLAVE STATUS and its Seconds_Behind_Master column.
+        val (status, column) =
+          try {
+            statement.executeQuery("SHOW REPLICA STATUS") to "Seconds_Behind_Source"
+          } catch (e: SQLException) {
+            statement.executeQuery("SHOW SLAVE STATUS") to "Seconds_Behind_Master"
+          }
+        status.use { resultSet ->
+          if (!resultSet.next()) {
+            Duration.ZERO
+          } else {
+            val seconds = resultSet.getLong(column)
+            if (resultSet.wasNull()) null else Duration.ofSeconds(seconds)
+          }
+        }
+      }
+  }
+}
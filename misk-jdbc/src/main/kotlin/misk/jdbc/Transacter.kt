@@ -53,12 +53,23 @@ interface Transacter {
    */
   fun isolationLevel(level: TransactionIsolationLevel): Transacter =
     throw UnsupportedOperationException("${this::class.simpleName} does not support isolationLevel($level)")
+
+  /**
+   * Returns a transacter whose transactions only read, on a read-only connection. If the data source has a
+   * [ReadRoutingConfig], they run on a replica that's caught up with the writer.
+   *
+   * The default implementation throws; an implementation that doesn't support read-only transactions must override
+   * this to opt out explicitly.
+   */
+  fun readOnly(): Transacter =
+    throw UnsupportedOperationException("${this::class.simpleName} does not support readOnly()")
 }
 
 class RealTransacter
 private constructor(
   private val dataSourceService: DataSourceService,
   private val config: DataSourceConfig?,
+  private val replicaRouter: ReplicaRouter?,
   private val options: TransacterOptions,
 ) : Transacter {
   private val transacting = ThreadLocal.withInitial { false }
@@ -66,12 +77,23 @@ private constructor(
 
   constructor(
     dataSourceService: DataSourceService
-  ) : this(dataSourceService = dataSourceService, config = null, options = TransacterOptions())
+  ) : this(dataSourceService = dataSourceService, config = null, replicaRouter = null, options = TransacterOptions())
 
   constructor(
     dataSourceService: DataSourceService,
     config: DataSourceConfig,
-  ) : this(dataSourceService = dataSourceService, config = config, options = TransacterOptions())
+  ) : this(dataSourceService = dataSourceService, config = config, replicaRouter = null, options = TransacterOptions())
+
+  internal constructor(
+    dataSourceService: DataSourceService,
+    config: DataSourceConfig,
+    replicaRouter: ReplicaRouter?,
+  ) : this(
+    dataSourceService = dataSourceService,
+    config = config,
+    replicaRouter = replicaRouter,
+    options = TransacterOptions(),
+  )
 
   override val inTransaction: Boolean
     get() = transacting.get()
@@ -106,7 +128,13 @@ private constructor(
 
     var session: JDBCSession? = null
     try {
-      return dataSourceService.dataSource.connection.use { connection ->
+      val dataSource =
+        if (options.readOnly) {
+          replicaRouter?.dataSourceForRead() ?: dataSourceService.dataSource
+        } else {
+          dataSourceService.dataSource
+        }
+      return dataSource.connection.use { connection ->
         /*
          * We are using Hikari, which will automatically roll back incomplete transactions.
          * This means there's actually no need to wrap the transaction in a try clause to
@@ -120,6 +148,8 @@ private constructor(
           options.isolationLevel?.let { requested ->
             connection.transactionIsolation.also { connection.transactionIsolation = requested.jdbcLevel }
           }
+        val readOnlyToRestore: Boolean? =
+          if (options.readOnly) connection.isReadOnly.also { connection.isReadOnly = true } else null
 
         try {
           // BEGIN
@@ -137,10 +167,12 @@ private constructor(
           // COMMIT
           session.executePreCommitHooks()
           connection.commit()
+          if (!options.readOnly) replicaRouter?.recordWrite()
           session.executePostCommitHooks()
           result
         } finally {
           isolationToRestore?.let { connection.transactionIsolation = it }
+          readOnlyToRestore?.let { connection.isReadOnly = it }
         }
       }
     } finally {
@@ -153,6 +185,7 @@ private constructor(
     RealTransacter(
       dataSourceService = dataSourceService,
       config = config,
+      replicaRouter = replicaRouter,
       options = options.copy(maxAttempts = maxAttempts),
     )
 
@@ -162,15 +195,25 @@ private constructor(
     RealTransacter(
       dataSourceService = dataSourceService,
       config = config,
+      replicaRouter = replicaRouter,
       options = options.copy(isolationLevel = level),
     )
 
+  override fun readOnly(): Transacter =
+    RealTransacter(
+      dataSourceService = dataSourceService,
+      config = config,
+      replicaRouter = replicaRouter,
+      options = options.copy(readOnly = true),
+    )
+
   internal data class TransacterOptions(
     val maxAttempts: Int = RetryDefaults.MAX_ATTEMPTS,
     val minRetryDelayMillis: Long = RetryDefaults.MIN_RETRY_DELAY_MILLIS,
     val maxRetryDelayMillis: Long = RetryDefaults.MAX_RETRY_DELAY_MILLIS,
     val retryJitterMillis: Long = RetryDefaults.RETRY_JITTER_MILLIS,
     val isolationLevel: TransactionIsolationLevel? = null,
+    val readOnly: Boolean = false,
   )
 
   companion object {
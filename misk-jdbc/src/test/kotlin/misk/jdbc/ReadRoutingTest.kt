@@ -0,0 +1,83 @@
+package misk.jdbc
+
+import com.google.inject.util.Modules
+import jakarta.inject.Inject
+import java.sql.Connection
+import java.sql.SQLException
+import kotlin.test.assertFailsWith
+import misk.MiskTestingServiceModule
+import misk.config.Config
+import misk.config.MiskConfig
+import misk.environment.DeploymentModule
+import misk.inject.KAbstractModule
+import misk.testing.MiskTest
+import misk.testing.MiskTestModule
+import misk.testing.MockTracingBackendModule
+import misk.time.FakeClockModule
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import wisp.deployment.TESTING
+
+@MiskTest(startService = true)
+class ReadRoutingTest {
+  @MiskTestModule val module = ReadRoutingTestModule()
+
+  @Inject @Movies lateinit var transacter: Transacter
+
+  @Test
+  fun `read-only transactions run on a replica`() {
+    val readConnection =
+      transacter.readOnly().transactionWithSession { (connection) ->
+        assertThat(connection.isReadOnly).isTrue()
+        connectionId(connection)
+      }
+    val writeConnection = transacter.transactionWithSession { (connection) -> connectionId(connection) }
+
+    assertThat(readConnection).isNotEqualTo(writeConnection)
+  }
+
+  @Test
+  fun `read-only transactions read their own writes from the writer`() {
+    val writeConnection =
+      transacter.transactionWithSession { (connection) ->
+        connection.createStatement().use { it.execute("INSERT INTO movies (name) VALUES ('Star Wars')") }
+        connectionId(connection)
+      }
+    val readConnection = transacter.readOnly().transactionWithSession { (connection) -> connectionId(connection) }
+
+    assertThat(readConnection).isEqualTo(writeConnection)
+  }
+
+  @Test
+  fun `read-only transactions can't write`() {
+    assertFailsWith<SQLException> {
+      transacter.readOnly().noRetries().transactionWithSession { (connection) ->
+        connection.createStatement().use { it.execute("INSERT INTO movies (name) VALUES ('Star Wars')") }
+      }
+    }
+  }
+
+  private fun connectionId(connection: Connection): Long =
+    connection.createStatement().use { it.executeQuery("SELECT CONNECTION_ID()").uniqueLong() }
+
+  data class RootConfig(val writer_data_source: DataSourceConfig, val replica_data_source: DataSourceConfig) : Config
+
+  class ReadRoutingTestModule : KAbstractModule() {
+    override fun configure() {
+      install(Modules.override(MiskTestingServiceModule()).with(FakeClockModule(), MockTracingBackendModule()))
+      install(DeploymentModule(TESTING))
+      val config = MiskConfig.load<RootConfig>("test_read_routing", TESTING)
+
+      install(JdbcTestingModule(Movies::class))
+      install(
+        JdbcModule(
+          Movies::class,
+          config.writer_data_source,
+          readerQualifier = null,
+          readerConfig = null,
+          readRouting = ReadRoutingConfig(replicas = listOf(config.replica_data_source)),
+        )
+      )
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package misk.jdbc
+
+import java.lang.reflect.Proxy
+import java.sql.ResultSet
+import java.time.Duration
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class ReplicaRouterTest {
+  @Test
+  fun `postgres primary has no lag`() {
+    val lag = postgresLag(inRecovery = false, replayedAll = null, secondsSinceReplay = null)
+
+    assertThat(lag).isEqualTo(Duration.ZERO)
+  }
+
+  @Test
+  fun `postgres replica of an idle primary is caught up`() {
+    // Nothing has been committed on the primary for an hour, and the replica has replayed everything it received.
+    val lag = postgresLag(inRecovery = true, replayedAll = true, secondsSinceReplay = 3600.0)
+
+    assertThat(lag).isEqualTo(Duration.ZERO)
+  }
+
+  @Test
+  fun `postgres replica behind its primary reports the time since its last replayed transaction`() {
+    val lag = postgresLag(inRecovery = true, replayedAll = false, secondsSinceReplay = 2.5)
+
+    assertThat(lag).isEqualTo(Duration.ofMillis(2500))
+  }
+
+  @Test
+  fun `postgres replica that hasn't replayed anything has an unknown lag`() {
+    val lag = postgresLag(inRecovery = true, replayedAll = false, secondsSinceReplay = null)
+
+    assertThat(lag).isNull()
+  }
+
+  private fun postgresLag(inRecovery: Boolean, replayedAll: Boolean?, secondsSinceReplay: Double?): Duration? {
+    val row =
+      mapOf("in_recovery" to inRecovery, "replayed_all" to replayedAll, "seconds_since_replay" to secondsSinceReplay)
+    var lastRead: Any? = null
+    val resultSet =
+      Proxy.newProxyInstance(ResultSet::class.java.classLoader, arrayOf(ResultSet::class.java)) { _, method, args ->
+        when (method.name) {
+          "next" -> true
+          "getBoolean" -> (row.getValue(args[0] as String) as Boolean?).also { lastRead = it } ?: false
+          "getDouble" -> (row.getValue(args[0] as String) as Double?).also { lastRead = it } ?: 0.0
+          "wasNull" -> lastRead == null
+          else -> throw UnsupportedOperationException(method.name)
+        }
+      } as ResultSet
+    return ReplicaRouter.postgresReplicationLag(resultSet)
+  }
+}
@@ -6,6 +6,7 @@ import jakarta.inject.Singleton
 import java.util.concurrent.Executor
 import misk.feature.Attributes
 import misk.feature.Feature
+import misk.feature.FeatureFlagValues
 import misk.feature.FeatureFlags
 import misk.feature.FeatureService
 import misk.feature.toMisk
@@ -65,6 +66,9 @@ class LaunchDarklyFeatureFlags @Inject constructor(private val delegate: wisp.la
     return delegate.getJsonString(feature, key, attributes)
   }
 
+  override fun getAll(features: Collection<Feature>, key: String, attributes: Attributes): FeatureFlagValues =
+    FlagValues(delegate.getAll(features, key, attributes))
+
   override fun trackBoolean(
     feature: Feature,
     key: String,
@@ -114,4 +118,21 @@ class LaunchDarklyFeatureFlags @Inject constructor(private val delegate: wisp.la
     executor: Executor,
     tracker: (T) -> Unit,
   ) = delegate.trackJson(feature, key, clazz, attributes, executor, tracker).toMisk()
+
+  private class FlagValues(private val delegate: wisp.launchdarkly.LaunchDarklyFeatureFlags.FlagValues) :
+    FeatureFlagValues {
+    override fun getBoolean(feature: Feature): Boolean = delegate.getBoolean(feature)
+
+    override fun getDouble(feature: Feature): Double = delegate.getDouble(feature)
+
+    override fun getInt(feature: Feature): Int = delegate.getInt(feature)
+
+    override fun getString(feature: Feature): String = delegate.getString(feature)
+
+    override fun <T : Enum<T>> getEnum(feature: Feature, clazz: Class<T>): T = delegate.getEnum(feature, clazz)
+
+    override fun <T> getJson(feature: Feature, clazz: Class<T>): T = delegate.getJson(feature, clazz)
+
+    override fun getJsonString(feature: Feature): String = delegate.getJsonString(feature)
+  }
 }
@@ -157,6 +157,25 @@ internal class LaunchDarklyFeatureFlagsTest {
       .containsExactly("failed to parse JSON due to unknown fields. ignoring those fields and trying again")
   }
 
+  @Test
+  fun getAll() {
+    Mockito.`when`(client.jsonValueVariationDetail(anyString(), any(LDContext::class.java), any(LDValue::class.java)))
+      .thenAnswer {
+        val value =
+          when (it.getArgument<String>(0)) {
+            "which-dinosaur" -> LDValue.of("tyrannosaurus")
+            else -> LDValue.parse("""{"value":"dino"}""")
+          }
+        EvaluationDetail.fromValue(value, 1, EvaluationReason.targetMatch())
+      }
+
+    val flags = featureFlags.getAll(listOf(Feature("which-dinosaur"), Feature("dinosaur-json")), "abcd")
+
+    assertThat(flags.getEnum(Feature("which-dinosaur"), Dinosaur::class.java)).isEqualTo(Dinosaur.TYRANNOSAURUS)
+    assertThat(flags.getJson(Feature("dinosaur-json"), JsonFeature::class.java)).isEqualTo(JsonFeature("dino"))
+    verify(client, times(2)).jsonValueVariationDetail(anyString(), any(LDContext::class.java), eq(LDValue.ofNull()))
+  }
+
   @Test
   fun invalidKeys() {
     assertThrows<IllegalArgumentException> { featureFlags.getEnum<Dinosaur>(Feature("which-dinosaur"), "") }
@@ -50,7 +50,7 @@ constructor(private val config: LaunchDarklyConfig, private val qualifier: KClas
     meterRegistry: MeterRegistry,
   ): wisp.launchdarkly.LaunchDarklyFeatureFlags {
     val ldClient = lazy { ldClientInterface.get() }
-    return wisp.launchdarkly.LaunchDarklyFeatureFlags(ldClient, moshi, meterRegistry)
+    return wisp.launchdarkly.LaunchDarklyFeatureFlags(ldClient, moshi, meterRegistry, config.evaluation_cache_ttl)
   }
 
   @Provides
@@ -103,6 +103,10 @@ constructor(private val config: LaunchDarklyConfig, private val qualifier: KClas
   }
 }
 
+/**
+ * @property evaluation_cache_ttl if set, flag evaluations are cached for this long per flag, key and attributes, and
+ *   dropped as soon as LaunchDarkly reports a change to their flag. Cached evaluations aren't reported to LaunchDarkly.
+ */
 data class LaunchDarklyConfig
 @JvmOverloads
 constructor(
@@ -113,4 +117,5 @@ constructor(
   val event_capacity: Int = DEFAULT_CAPACITY,
   val flush_interval: Duration = DEFAULT_FLUSH_INTERVAL,
   val offline: Boolean = false,
+  val evaluation_cache_ttl: Duration? = null,
 ) : Config
@@ -19,10 +19,14 @@ dependencies {
 
   api(project(":misk-inject"))
   api(project(":misk-jdbc"))
+  api(project(":wisp:wisp-lease"))
 
   implementation(project(":misk-api"))
-  implementation(project(":wisp:wisp-lease"))
   implementation(project(":misk-logging"))
+  implementation(project(":misk-metrics"))
+  implementation(project(":misk-service"))
+  implementation(libs.guava)
+  implementation(libs.prometheusClient)
   implementation(libs.sqldelightJdbcDriver)
   implementation(libs.loggingApi)
 
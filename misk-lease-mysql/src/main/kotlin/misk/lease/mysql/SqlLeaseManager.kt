@@ -1,13 +1,19 @@
 package misk.lease.mysql
 
+import app.cash.sqldelight.db.SqlDriver
+import app.cash.sqldelight.driver.jdbc.JdbcPreparedStatement
 import jakarta.inject.Inject
+import jakarta.inject.Singleton
 import java.sql.SQLException
 import java.time.Clock
 import java.time.Duration
 import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ThreadLocalRandom
 import misk.annotation.ExperimentalMiskApi
 import misk.logging.getLogger
 import wisp.lease.AcquireOptions
+import wisp.lease.BatchLeaseManager
 import wisp.lease.Lease
 import wisp.lease.PersistentLeaseManager
 import wisp.lease.UnsupportedWaitBehavior
@@ -15,8 +21,17 @@ import wisp.lease.WaitMode
 
 /** A LeaseManager that uses a SQL database to manage distributed leases. */
 @ExperimentalMiskApi
-internal class SqlLeaseManager @Inject constructor(private val clock: Clock, private val database: LeaseDatabase) :
-  PersistentLeaseManager {
+@Singleton
+internal class SqlLeaseManager
+@Inject
+constructor(
+  private val clock: Clock,
+  private val database: LeaseDatabase,
+  @LeaseDb private val driver: SqlDriver,
+  private val metrics: SqlLeaseMetrics,
+) : PersistentLeaseManager, BatchLeaseManager {
+  /** Leases currently held by this process, renewed by [renewHeldLeases]. */
+  private val heldLeases = ConcurrentHashMap<String, RealSqlLease>()
 
   /** Requests a lease for the given name . */
   override fun requestLease(name: String): Lease {
@@ -34,16 +49,16 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
         // Lease doesn't exist, try to create it
         try {
           database.leaseQueries.insert(lease_name = name, version = 1L, held_until = heldUntil)
-          RealSqlLease(name, 1L, heldUntil)
+          RealSqlLease(name, 1L, heldUntil, duration).also { it.track() }
         } catch (e: SQLException) {
           logger.debug(e) { "Failed to insert lease '$name', likely due to race condition" }
-          RealSqlLease(name, NOT_HELD, Instant.EPOCH)
+          RealSqlLease(name, NOT_HELD, Instant.EPOCH, duration)
         }
       }
 
       now <= lease.held_until -> {
         // Lease is currently held by someone else
-        RealSqlLease(name, NOT_HELD, Instant.EPOCH)
+        RealSqlLease(name, NOT_HELD, Instant.EPOCH, duration)
       }
 
       else -> {
@@ -56,20 +71,146 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
 
         if (updatedRows == 1L) {
           // Successfully acquired the lease
-          RealSqlLease(name, newVersion, heldUntil)
+          RealSqlLease(name, newVersion, heldUntil, duration).also { it.track() }
         } else {
           // Someone else acquired it first (race condition)
-          RealSqlLease(name, NOT_HELD, Instant.EPOCH)
+          RealSqlLease(name, NOT_HELD, Instant.EPOCH, duration)
         }
       }
     }
   }
 
+  override fun requestLeases(names: Collection<String>): Map<String, Lease> =
+    requestLeases(names, DEFAULT_LEASE_DURATION)
+
+  /**
+   * Requests leases for all of [names] with an explicit duration, using a constant number of statements however many
+   * leases are requested: one to read the current rows, one multi-row insert for leases that don't exist yet, one
+   * update for leases that have expired, and one to read back which of those this process won.
+   *
+   * Every lease acquired by a batch is stamped with the same randomly chosen version, so a row is ours afterwards if
+   * and only if it carries that version.
+   */
+  fun requestLeases(names: Collection<String>, duration: Duration): Map<String, Lease> {
+    val distinctNames = names.distinct()
+    if (distinctNames.isEmpty()) return mapOf()
+
+    val now = clock.instant()
+    val heldUntil = now.plus(duration)
+    val batchVersion = ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE)
+
+    val existing = database.leaseQueries.selectByLeaseNames(distinctNames).executeAsList().associateBy { it.lease_name }
+
+    val missing = distinctNames.filter { it !in existing }
+    if (missing.isNotEmpty()) {
+      try {
+        insertIgnore(missing, batchVersion, heldUntil)
+      } catch (e: SQLException) {
+        logger.warn(e) { "Failed to insert ${missing.size} leases" }
+      }
+    }
+
+    val expired = existing.values.filter { now > it.held_until }
+    if (expired.isNotEmpty()) {
+      database.leaseQueries.acquireAll(
+        held_until = heldUntil,
+        version = batchVersion,
+        lease_names = expired.map { it.lease_name },
+        current_versions = expired.map { versionKey(it.lease_name, it.version) },
+      )
+    }
+
+    val acquired =
+      if (missing.isEmpty() && expired.isEmpty()) {
+        setOf()
+      } else {
+        database.leaseQueries
+          .selectByLeaseNames(missing + expired.map { it.lease_name })
+          .executeAsList()
+          .filter { it.version == batchVersion }
+          .mapTo(mutableSetOf()) { it.lease_name }
+      }
+
+    return distinctNames.associateWith { name ->
+      if (name in acquired) {
+        RealSqlLease(name, batchVersion, heldUntil, duration).also { it.track() }
+      } else {
+        RealSqlLease(name, NOT_HELD, Instant.EPOCH, duration)
+      }
+    }
+  }
+
+  /**
+   * Extends every lease held by this process in one pass: one update per distinct lease duration, then one read to
+   * confirm which leases are still ours. Leases whose row has been deleted or taken over by another process are marked
+   * as no longer held, and their listeners are notified as if the lease had been released.
+   */
+  fun renewHeldLeases() {
+    val leases = heldLeases.values.toList()
+    if (leases.isEmpty()) return
+
+    val start = System.nanoTime()
+    for ((duration, group) in leases.groupBy { it.duration }) {
+      database.leaseQueries.renew(
+        held_until = clock.instant().plus(duration),
+        lease_names = group.map { it.name },
+        held_versions = group.map { versionKey(it.name, it.heldVersion) },
+      )
+    }
+
+    val rows = database.leaseQueries.selectByLeaseNames(leases.map { it.name }).executeAsList().associateBy {
+      it.lease_name
+    }
+    val lost =
+      leases.count { lease ->
+        val row = rows[lease.name]
+        if (row != null && row.version == lease.heldVersion) {
+          lease.renewed(row.version, row.held_until)
+          false
+        } else {
+          lease.lost()
+        }
+      }
+
+    metrics.renewalDuration.observe((System.nanoTime() - start) / 1_000_000.0)
+    metrics.leasesRenewed.inc((leases.size - lost).toDouble())
+    if (lost > 0) {
+      logger.warn { "Lost $lost of ${leases.size} held leases during renewal" }
+      metrics.leasesLost.inc(lost.toDouble())
+    }
+    metrics.leasesHeld.set(heldLeases.size.toDouble())
+  }
+
+  /** Inserts a row for each of [names], skipping names that another process inserted first. */
+  private fun insertIgnore(names: List<String>, version: Long, heldUntil: Instant) {
+    val values = names.joinToString(separator = ", ") { "(?, ?, ?)" }
+    driver.execute(
+      identifier = null,
+      sql = "INSERT IGNORE INTO leases (lease_name, version, held_until) VALUES $values",
+      parameters = names.size * 3,
+    ) {
+      val statement = this as JdbcPreparedStatement
+      names.forEachIndexed { i, name ->
+        statement.bindString(i * 3, name)
+        statement.bindLong(i * 3 + 1, version)
+        statement.bindObject(i * 3 + 2, InstantAdapter.encode(heldUntil))
+      }
+    }
+  }
+
   /** Implementation of the Lease interface backed by a SQL row. */
   inner class RealSqlLease
-  constructor(override val name: String, private val heldVersion: Long, private val heldUntil: Instant) : Lease {
+  constructor(override val name: String, heldVersion: Long, heldUntil: Instant, internal val duration: Duration) :
+    Lease {
     private val listeners = mutableListOf<Lease.StateChangeListener>()
 
+    /** The version of the row while this process holds the lease, or [NOT_HELD]. */
+    @Volatile
+    internal var heldVersion: Long = heldVersion
+      private set
+
+    @Volatile private var heldUntil: Instant = heldUntil
+
     override fun shouldHold(): Boolean = true
 
     override fun isHeld(): Boolean {
@@ -79,6 +220,29 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
       return clock.instant() <= heldUntil
     }
 
+    /** Registers this lease for background renewal. */
+    internal fun track() {
+      heldLeases.put(name, this)?.takeIf { it !== this }?.lost()
+      metrics.leasesHeld.set(heldLeases.size.toDouble())
+    }
+
+    @Synchronized
+    internal fun renewed(version: Long, heldUntil: Instant) {
+      if (heldVersion == version) this.heldUntil = heldUntil
+    }
+
+    /** Marks this lease as no longer held. Returns true if it was held. */
+    internal fun lost(): Boolean {
+      synchronized(this) {
+        if (heldVersion == NOT_HELD) return false
+        heldVersion = NOT_HELD
+        heldUntil = Instant.EPOCH
+      }
+      heldLeases.remove(name, this)
+      notifyBeforeRelease()
+      return true
+    }
+
     /** Returns true if this process holds the lease. */
     override fun checkHeld(): Boolean = isHeld()
 
@@ -92,8 +256,14 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
         return true
       }
 
-      val lease = requestLease(name)
+      val lease = requestLease(name, duration) as RealSqlLease
       if (lease.isHeld()) {
+        // Adopt the acquired row so that this instance can be renewed and released.
+        synchronized(this) {
+          heldVersion = lease.heldVersion
+          heldUntil = lease.heldUntil
+        }
+        track()
         notifyAfterAcquire()
         return true
       }
@@ -118,11 +288,14 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
 
     /** Releases the lease if held. Notifies listeners before releasing. */
     override fun release(): Boolean {
-      if (heldVersion == NOT_HELD) return false
+      val version = heldVersion
+      if (version == NOT_HELD) return false
 
       notifyBeforeRelease()
 
-      val deletedRows = database.leaseQueries.release(lease_name = name, version = heldVersion).value
+      heldLeases.remove(name, this)
+      metrics.leasesHeld.set(heldLeases.size.toDouble())
+      val deletedRows = database.leaseQueries.release(lease_name = name, version = version).value
       return deletedRows > 0
     }
 
@@ -162,5 +335,8 @@ internal class SqlLeaseManager @Inject constructor(private val clock: Clock, pri
 
     /** Version number used to indicate a lease is not held by this process */
     const val NOT_HELD = -1L
+
+    /** Identifies a row by name and version in a single value, so a batch of rows can be matched with `IN`. */
+    private fun versionKey(name: String, version: Long) = "$name:$version"
   }
 }
@@ -0,0 +1,29 @@
+package misk.lease.mysql
+
+import io.prometheus.client.Counter
+import io.prometheus.client.Gauge
+import io.prometheus.client.Histogram
+import jakarta.inject.Inject
+import jakarta.inject.Singleton
+import misk.metrics.v2.Metrics
+
+@Singleton
+internal class SqlLeaseMetrics @Inject internal constructor(metrics: Metrics) {
+  val renewalDuration: Histogram =
+    metrics.histogram(
+      name = "sql_lease_renewal_duration_ms",
+      help = "Time taken to renew every lease held by this process in one pass",
+    )
+
+  val leasesRenewed: Counter =
+    metrics.counter(name = "sql_leases_renewed_total", help = "Count of leases successfully extended by renewal")
+
+  val leasesLost: Counter =
+    metrics.counter(
+      name = "sql_leases_lost_total",
+      help = "Count of leases found to be deleted or held by another process during renewal",
+    )
+
+  val leasesHeld: Gauge =
+    metrics.gauge(name = "sql_leases_held", help = "Number of leases currently held and renewed by this process")
+}
@@ -1,48 +1,80 @@
 package misk.lease.mysql
 
 import app.cash.sqldelight.Query
+import app.cash.sqldelight.db.SqlDriver
 import app.cash.sqldelight.driver.jdbc.JdbcDriver
 import com.google.inject.Provider
 import com.google.inject.Provides
 import jakarta.inject.Singleton
 import java.sql.Connection
+import java.time.Duration
 import javax.sql.DataSource
+import misk.ReadyService
+import misk.ServiceModule
 import misk.annotation.ExperimentalMiskApi
 import misk.inject.KAbstractModule
 import misk.jdbc.DataSourceClustersConfig
 import misk.jdbc.JdbcModule
 import misk.lease.Leases
+import wisp.lease.BatchLeaseManager
 import wisp.lease.LeaseManager
 
+/**
+ * Binds a [LeaseManager] and [BatchLeaseManager] backed by a SQL database.
+ *
+ * If [renewalInterval] is set, a background service extends every lease held by this process on that interval. Pick
+ * an interval well under the lease duration so that a single failed renewal doesn't cost a lease.
+ */
 @ExperimentalMiskApi
-class SqlLeaseModule(private val config: DataSourceClustersConfig) : KAbstractModule() {
+class SqlLeaseModule
+@JvmOverloads
+constructor(private val config: DataSourceClustersConfig, private val renewalInterval: Duration? = null) :
+  KAbstractModule() {
   override fun configure() {
     install(JdbcModule(LeaseDb::class, config.values.single().writer))
     bind<LeaseManager>().to<SqlLeaseManager>()
+    bind<BatchLeaseManager>().to<SqlLeaseManager>()
+
+    if (renewalInterval != null) {
+      require(!renewalInterval.isNegative && !renewalInterval.isZero) { "renewalInterval must be positive" }
+      install(RenewerModule(renewalInterval))
+      install(ServiceModule<SqlLeaseRenewer>().dependsOn<ReadyService>())
+    }
   }
 
   @Provides
   @Singleton
-  fun provideLeaseDatabase(@LeaseDb dataSource: Provider<DataSource>): LeaseDatabase {
-    val driver =
-      object : JdbcDriver() {
-        override fun getConnection(): Connection {
-          val connection = dataSource.get().connection
-          // SQLDelight requires autoCommit = true by default for its transaction management to work
-          connection.autoCommit = true
-          return connection
-        }
+  @LeaseDb
+  fun provideLeaseDriver(@LeaseDb dataSource: Provider<DataSource>): SqlDriver {
+    return object : JdbcDriver() {
+      override fun getConnection(): Connection {
+        val connection = dataSource.get().connection
+        // SQLDelight requires autoCommit = true by default for its transaction management to work
+        connection.autoCommit = true
+        return connection
+      }
 
-        override fun notifyListeners(vararg queryKeys: String) {}
+      override fun notifyListeners(vararg queryKeys: String) {}
 
-        override fun removeListener(vararg queryKeys: String, listener: Query.Listener) {}
+      override fun removeListener(vararg queryKeys: String, listener: Query.Listener) {}
 
-        override fun addListener(vararg queryKeys: String, listener: Query.Listener) {}
+      override fun addListener(vararg queryKeys: String, listener: Query.Listener) {}
 
-        override fun closeConnection(connection: Connection) {
-          connection.close()
-        }
+      override fun closeConnection(connection: Connection) {
+        connection.close()
       }
+    }
+  }
+
+  @Provides
+  @Singleton
+  fun provideLeaseDatabase(@LeaseDb driver: SqlDriver): LeaseDatabase {
     return LeaseDatabase(driver = driver, leasesAdapter = Leases.Adapter(held_untilAdapter = InstantAdapter))
   }
+
+  private class RenewerModule(private val interval: Duration) : KAbstractModule() {
+    @Provides
+    @Singleton
+    fun provideRenewer(leaseManager: SqlLeaseManager): SqlLeaseRenewer = SqlLeaseRenewer(leaseManager, interval)
+  }
 }
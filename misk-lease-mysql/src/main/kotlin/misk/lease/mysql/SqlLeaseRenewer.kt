@@ -0,0 +1,28 @@
+package misk.lease.mysql
+
+import com.google.common.util.concurrent.AbstractScheduledService
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+import misk.annotation.ExperimentalMiskApi
+import misk.logging.getLogger
+
+/** Periodically extends every lease held by a [SqlLeaseManager], in batches rather than one statement per lease. */
+@ExperimentalMiskApi
+internal class SqlLeaseRenewer(private val leaseManager: SqlLeaseManager, private val interval: Duration) :
+  AbstractScheduledService() {
+  override fun scheduler(): Scheduler =
+    Scheduler.newFixedDelaySchedule(interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS)
+
+  override fun runOneIteration() {
+    try {
+      leaseManager.renewHeldLeases()
+    } catch (e: Exception) {
+      // Keep the schedule running; leases that can't be renewed will expire and be reported as lost next time.
+      logger.warn(e) { "failed to renew held leases" }
+    }
+  }
+
+  companion object {
+    private val logger = getLogger<SqlLeaseRenewer>()
+  }
+}
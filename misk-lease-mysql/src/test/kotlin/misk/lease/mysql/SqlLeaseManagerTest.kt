@@ -15,6 +15,8 @@ import org.assertj.core.api.Assertions.assertThatThrownBy
 import org.junit.jupiter.api.Test
 import wisp.deployment.TESTING
 import wisp.lease.AcquireOptions
+import wisp.lease.BatchLeaseManager
+import wisp.lease.Lease
 import wisp.lease.LeaseManager
 import wisp.lease.UnsupportedWaitBehavior
 import wisp.lease.WaitMode
@@ -33,6 +35,8 @@ class SqlLeaseManagerTest {
     }
 
   @Inject lateinit var leaseManager: LeaseManager
+  @Inject lateinit var batchLeaseManager: BatchLeaseManager
+  @Inject private lateinit var database: LeaseDatabase
   @Inject lateinit var clock: FakeClock
 
   /** Verifies that a lease cannot be acquired by a second requester while it is held. */
@@ -188,4 +192,86 @@ class SqlLeaseManagerTest {
     assertThat(lease).isNotNull()
     lease!!.use { assertThat(it.isHeld()).isTrue() }
   }
+
+  @Test
+  fun batchAcquiresEveryFreeLease() {
+    val leases = batchLeaseManager.requestLeases(listOf("batch-a", "batch-b", "batch-c"))
+
+    assertThat(leases.keys).containsExactly("batch-a", "batch-b", "batch-c")
+    assertThat(leases.values).allMatch { it.isHeld() }
+
+    // Every lease is now held, so a second batch gets none of them.
+    val leases2 = batchLeaseManager.requestLeases(listOf("batch-a", "batch-b", "batch-c"))
+    assertThat(leases2.values).noneMatch { it.isHeld() }
+  }
+
+  @Test
+  @OptIn(ExperimentalMiskApi::class)
+  fun batchSkipsLeasesHeldElsewhereAndTakesExpiredOnes() {
+    val sqlLeaseManager = leaseManager as SqlLeaseManager
+    sqlLeaseManager.requestLease("held", Duration.ofMinutes(10))
+    sqlLeaseManager.requestLease("expired", Duration.ofSeconds(LEASE_DURATION_SECONDS))
+    clock.add(Duration.ofSeconds(LEASE_DURATION_SECONDS + 1))
+
+    val leases = sqlLeaseManager.requestLeases(listOf("held", "expired", "new", "new"))
+
+    assertThat(leases.keys).containsExactly("held", "expired", "new")
+    assertThat(leases.getValue("held").isHeld()).isFalse()
+    assertThat(leases.getValue("expired").isHeld()).isTrue()
+    assertThat(leases.getValue("new").isHeld()).isTrue()
+
+    // Leases acquired in a batch can be released individually.
+    assertThat(leases.getValue("new").release()).isTrue()
+    assertThat(leaseManager.requestLease("new").isHeld()).isTrue()
+  }
+
+  @Test
+  @OptIn(ExperimentalMiskApi::class)
+  fun renewalExtendsHeldLeases() {
+    val sqlLeaseManager = leaseManager as SqlLeaseManager
+    val single = sqlLeaseManager.requestLease("renewed-single", Duration.ofSeconds(LEASE_DURATION_SECONDS))
+    val batch =
+      sqlLeaseManager.requestLeases(listOf("renewed-a", "renewed-b"), Duration.ofSeconds(LEASE_DURATION_SECONDS))
+
+    clock.add(Duration.ofSeconds(LEASE_DURATION_SECONDS - 1))
+    sqlLeaseManager.renewHeldLeases()
+    clock.add(Duration.ofSeconds(LEASE_DURATION_SECONDS - 1))
+
+    assertThat(single.isHeld()).isTrue()
+    assertThat(batch.values).allMatch { it.isHeld() }
+
+    // Nobody else can take a renewed lease.
+    assertThat(sqlLeaseManager.requestLease("renewed-a").isHeld()).isFalse()
+  }
+
+  @Test
+  @OptIn(ExperimentalMiskApi::class)
+  fun renewalReleasesLeasesTakenOverElsewhere() {
+    val sqlLeaseManager = leaseManager as SqlLeaseManager
+    val lease = sqlLeaseManager.requestLease("taken-over", Duration.ofSeconds(LEASE_DURATION_SECONDS))
+    val released = mutableListOf<String>()
+    lease.addListener(
+      object : Lease.StateChangeListener {
+        override fun afterAcquire(lease: Lease) {}
+
+        override fun beforeRelease(lease: Lease) {
+          released += lease.name
+        }
+      }
+    )
+
+    // Simulate another process acquiring the row after our lease lapsed.
+    val row = database.leaseQueries.selectByLeaseName("taken-over").executeAsOne()
+    database.leaseQueries.acquire(
+      held_until = clock.instant().plus(Duration.ofMinutes(10)),
+      version = row.version + 1,
+      lease_name = "taken-over",
+      current_version = row.version,
+    )
+
+    sqlLeaseManager.renewHeldLeases()
+
+    assertThat(lease.isHeld()).isFalse()
+    assertThat(released).containsExactly("taken-over")
+  }
 }
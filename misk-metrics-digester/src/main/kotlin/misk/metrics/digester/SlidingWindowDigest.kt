@@ -130,9 +130,28 @@ constructor(
     if (gc) {
       deleteOlderDigests()
     }
+    return digestsContaining(windower.windowsContaining(now))
+  }
+
+  /**
+   * Adds the first [count] of [values] to the digests of all windows containing [time], like calling [observe] for each
+   * of them at that time. Windows that would already have been discarded are skipped.
+   */
+  @Synchronized
+  internal fun observeAll(time: ZonedDateTime, values: DoubleArray, count: Int) {
+    deleteOlderDigests()
+    val deleteBefore = ZonedDateTime.now(utcNowClock).minusMinutes(1)
+    val windows = windower.windowsContaining(time).filter { !deleteBefore.isAfter(it.end) }
+    for (digest in digestsContaining(windows)) {
+      for (i in 0 until count) {
+        digest.digest.add(values[i])
+      }
+    }
+  }
 
+  private fun digestsContaining(windowsContaining: List<Window>): List<WindowDigest<T>> {
     val digests =
-      windower.windowsContaining(now).map { window: Window ->
+      windowsContaining.map { window: Window ->
         val existing = windows.find { it.window == window }
         if (existing == null) {
           val newDigest = WindowDigest(window, tDigest())
@@ -0,0 +1,109 @@
+package misk.metrics.digester
+
+import java.time.Clock
+import java.time.Instant
+import java.time.ZonedDateTime
+
+/**
+ * StripedSlidingWindowDigest is a [SlidingWindowDigest] for values observed by many threads at once. It is thread-safe.
+ *
+ * [SlidingWindowDigest.observe] adds each value to every open t-digest while holding the digest's lock, so concurrent
+ * observers wait on each other. This instead buffers observed values in one of several stripes, picked by the
+ * observing thread, and only adds them to the t-digests when a stripe fills up, when the second it buffered values for
+ * has passed, or when the digest is read. Windows start and end on whole seconds, so every value buffered for the same
+ * second belongs to the same windows.
+ *
+ * Reads flush every stripe first, so [quantile], [snapshot] and [closedDigests] report the same data as they would for
+ * a [SlidingWindowDigest] that had observed the same values.
+ *
+ * @param stripeCount how many stripes to buffer values in, rounded up to a power of two. Defaults to twice the number
+ *   of available processors so that few observers share a stripe.
+ * @param bufferSize how many values each stripe buffers before adding them to the t-digests.
+ */
+class StripedSlidingWindowDigest<T : TDigest<T>>
+@JvmOverloads
+constructor(
+  windower: Windower,
+  tDigest: () -> T,
+  private val utcNowClock: Clock = Clock.systemUTC(),
+  stripeCount: Int = 2 * Runtime.getRuntime().availableProcessors(),
+  bufferSize: Int = 256,
+) {
+  /** The digest that buffered values are flushed to. */
+  internal val digest = SlidingWindowDigest(windower, tDigest, utcNowClock)
+
+  private val stripes: Array<Stripe>
+
+  init {
+    require(stripeCount > 0) { "stripeCount must be positive: $stripeCount" }
+    require(bufferSize > 0) { "bufferSize must be positive: $bufferSize" }
+    val size = if (stripeCount == 1) 1 else Integer.highestOneBit(stripeCount - 1) shl 1
+    stripes = Array(size) { Stripe(bufferSize) }
+  }
+
+  /**
+   * Adds the given value to all currently open t-digests. Like [SlidingWindowDigest.observe], an observed value is not
+   * immediately reflected in calls to [quantile].
+   */
+  fun observe(value: Double) {
+    val epochSecond = Math.floorDiv(utcNowClock.millis(), 1000L)
+    val stripe = stripes[stripeIndex()]
+    synchronized(stripe) {
+      if (stripe.count > 0 && (stripe.epochSecond != epochSecond || stripe.count == stripe.values.size)) {
+        flush(stripe)
+      }
+      stripe.epochSecond = epochSecond
+      stripe.values[stripe.count++] = value
+    }
+  }
+
+  /** See [SlidingWindowDigest.quantile]. */
+  fun quantile(quantile: Double): Double {
+    flush()
+    return digest.quantile(quantile)
+  }
+
+  /** See [SlidingWindowDigest.snapshot]. */
+  fun snapshot(quantiles: List<Double>): Snapshot {
+    flush()
+    return digest.snapshot(quantiles)
+  }
+
+  /** See [SlidingWindowDigest.closedDigests]. */
+  fun closedDigests(from: ZonedDateTime): List<WindowDigest<T>> {
+    flush()
+    return digest.closedDigests(from)
+  }
+
+  /** See [SlidingWindowDigest.mergeIn]. */
+  fun mergeIn(windowDigests: List<WindowDigest<T>>) {
+    digest.mergeIn(windowDigests)
+  }
+
+  /** Adds the values buffered in every stripe to the t-digests. */
+  fun flush() {
+    for (stripe in stripes) {
+      synchronized(stripe) { flush(stripe) }
+    }
+  }
+
+  /** Must be called while holding the stripe's lock. */
+  private fun flush(stripe: Stripe) {
+    if (stripe.count == 0) return
+    val time = ZonedDateTime.ofInstant(Instant.ofEpochSecond(stripe.epochSecond), utcNowClock.zone)
+    digest.observeAll(time, stripe.values, stripe.count)
+    stripe.count = 0
+  }
+
+  private fun stripeIndex(): Int {
+    val hash = System.identityHashCode(Thread.currentThread())
+    return (hash xor (hash ushr 16)) and (stripes.size - 1)
+  }
+
+  private class Stripe(bufferSize: Int) {
+    val values = DoubleArray(bufferSize)
+    var count = 0
+    /** The second that the buffered values were observed in. */
+    var epochSecond = 0L
+  }
+}
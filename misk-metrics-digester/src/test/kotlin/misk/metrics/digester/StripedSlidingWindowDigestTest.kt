@@ -0,0 +1,82 @@
+package misk.metrics.digester
+
+import java.time.ZoneId
+import java.time.ZonedDateTime
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import misk.time.FakeClock
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+class StripedSlidingWindowDigestTest {
+  private val clock = FakeClock()
+  private val windower = Windower(10, 3)
+  private val digest =
+    StripedSlidingWindowDigest(windower, fun() = FakeDigest(), clock, stripeCount = 4, bufferSize = 4)
+
+  @Test
+  fun bufferedValuesAreReportedLikeUnbufferedOnes() {
+    val unbuffered = SlidingWindowDigest(windower, fun() = FakeDigest(), clock)
+    repeat(3) {
+      for (value in 0 until 10) {
+        digest.observe(value.toDouble())
+        unbuffered.observe(value.toDouble())
+      }
+      clock.add(1, TimeUnit.SECONDS)
+    }
+    advanceWindows(1)
+
+    assertThat(digest.snapshot(listOf(0.5))).isEqualTo(unbuffered.snapshot(listOf(0.5)))
+    assertThat(digest.digest.windows.map { it.window to it.digest.addedValues })
+      .isEqualTo(unbuffered.windows.map { it.window to it.digest.addedValues })
+  }
+
+  @Test
+  fun valuesAreAddedToTheWindowsOfTheSecondTheyWereObservedIn() {
+    val windowsT0_2 = windows()
+    digest.observe(10.0)
+    val windowsT1_3 = advanceWindows(1)
+    digest.observe(20.0)
+    advanceWindows(2)
+
+    assertThat(digest.closedDigests(windowsT0_2[0].end).map { it.window to it.digest.addedValues })
+      .containsExactly(
+        windowsT0_2[0] to listOf(10.0),
+        windowsT0_2[1] to listOf(10.0, 20.0),
+        windowsT0_2[2] to listOf(10.0, 20.0),
+        windowsT1_3[2] to listOf(20.0),
+      )
+  }
+
+  @Test
+  fun concurrentObservations() {
+    val threads = 8
+    val observationsPerThread = 10_000
+    val executor = Executors.newFixedThreadPool(threads)
+    val start = CountDownLatch(1)
+    val futures =
+      (0 until threads).map {
+        executor.submit {
+          start.await()
+          repeat(observationsPerThread) { digest.observe(1.0) }
+        }
+      }
+    start.countDown()
+    futures.forEach { it.get() }
+    executor.shutdown()
+    advanceWindows(1)
+
+    val snapshot = digest.snapshot(listOf(0.5))
+    assertThat(snapshot.count).isEqualTo((threads * observationsPerThread).toLong())
+    assertThat(snapshot.sum).isEqualTo((threads * observationsPerThread).toDouble())
+  }
+
+  private fun windows(): List<Window> =
+    windower.windowsContaining(ZonedDateTime.ofInstant(clock.instant(), ZoneId.of("UTC")))
+
+  private fun advanceWindows(n: Int): List<Window> {
+    repeat(n) { clock.setNow(windows()[0].end.toInstant()) }
+    return windows()
+  }
+}
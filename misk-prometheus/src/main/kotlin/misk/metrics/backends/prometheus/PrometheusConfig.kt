@@ -15,8 +15,17 @@ constructor(
   val max_age_in_seconds: Long? = null,
   // Disable recording Summary metrics where a Histogram counterpart is available.
   val disable_default_summary_metrics: Boolean = false,
+  // Buffer request latency observations on the request thread and apply them to the default request metrics in
+  // batches, at the latest when metrics are scraped. Values may be reported up to one scrape late.
+  val buffer_request_latency_metrics: Boolean = false,
 ) : Config {
   @Inject
   constructor() :
-    this(hostname = null, http_port = 9102, max_age_in_seconds = null, disable_default_summary_metrics = false)
+    this(
+      hostname = null,
+      http_port = 9102,
+      max_age_in_seconds = null,
+      disable_default_summary_metrics = false,
+      buffer_request_latency_metrics = false,
+    )
 }
@@ -14,6 +14,7 @@ import wisp.ratelimiting.RateLimitPruner
 import wisp.ratelimiting.RateLimiter
 import wisp.ratelimiting.bucket4j.Bucket4jRateLimiter
 import wisp.ratelimiting.bucket4j.ClockTimeMeter
+import wisp.ratelimiting.bucket4j.TokenLeasing
 
 /** Configures a [RateLimiter] that uses DynamoDb as a backend. */
 class DynamoDbV2Bucket4jRateLimiterModule
@@ -24,6 +25,7 @@ constructor(
   private val maxRetries: Int = 3,
   private val retryTimeout: Duration = Duration.ofMillis(100),
   private val configMutator: ClientSideConfig.() -> Unit = {},
+  private val tokenLeasing: TokenLeasing? = null,
 ) : KAbstractModule() {
   override fun configure() {
     requireBinding<Clock>()
@@ -41,7 +43,7 @@ constructor(
         .withMaxRetries(maxRetries)
         .apply { configMutator() }
     val proxyManager: ProxyManager<String> = DynamoDBProxyManager.stringKey(dynamoDB, tableName, config)
-    return Bucket4jRateLimiter(proxyManager, clock, meterRegistry)
+    return Bucket4jRateLimiter(proxyManager, clock, meterRegistry, tokenLeasing)
   }
 
   @Provides
@@ -17,6 +17,7 @@ import wisp.ratelimiting.RateLimitPruner
 import wisp.ratelimiting.RateLimiter
 import wisp.ratelimiting.bucket4j.Bucket4jRateLimiter
 import wisp.ratelimiting.bucket4j.ClockTimeMeter
+import wisp.ratelimiting.bucket4j.TokenLeasing
 
 class MySQLBucket4jRateLimiterModule
 @JvmOverloads
@@ -29,6 +30,7 @@ constructor(
   private val maxRetries: Int = 3,
   private val retryTimeout: Duration = Duration.ofMillis(25),
   private val configMutator: Bucket4jMySQL.MySQLSelectForUpdateBasedProxyManagerBuilder<String>.() -> Unit = {},
+  private val tokenLeasing: TokenLeasing? = null,
 ) : KAbstractModule() {
   override fun configure() {
     requireBinding<Clock>()
@@ -53,7 +55,7 @@ constructor(
         .apply { configMutator() }
         .build()
 
-    return Bucket4jRateLimiter(proxyManager, clock, meterRegistry)
+    return Bucket4jRateLimiter(proxyManager, clock, meterRegistry, tokenLeasing)
   }
 
   @Provides
@@ -14,6 +14,7 @@ import redis.clients.jedis.UnifiedJedis
 import wisp.ratelimiting.RateLimiter
 import wisp.ratelimiting.bucket4j.Bucket4jRateLimiter
 import wisp.ratelimiting.bucket4j.ClockTimeMeter
+import wisp.ratelimiting.bucket4j.TokenLeasing
 
 /**
  * Configures a [RateLimiter] that uses Redis as a backend.
@@ -22,6 +23,8 @@ import wisp.ratelimiting.bucket4j.ClockTimeMeter
  *   the refill period. This is a performance optimization that enables bucket reuse when a request comes in after the
  *   bucket has been refilled, since reuse is cheaper than creating a new bucket
  * @param keyMapper Optional mapper to transform Redis keys
+ * @param tokenLeasing Optionally lease tokens from Redis in blocks and consume them locally, so most consumptions don't
+ *   make a round trip to Redis
  */
 class RedisBucket4jRateLimiterModule
 @JvmOverloads
@@ -32,6 +35,7 @@ constructor(
   private val maxRetries: Int = 3,
   private val retryTimeout: Duration = Duration.ofMillis(25),
   private val configMutator: Bucket4jJedis.JedisBasedProxyManagerBuilder<String>.() -> Unit = {},
+  private val tokenLeasing: TokenLeasing? = null,
 ) : KAbstractModule() {
   override fun configure() {
     requireBinding<Clock>()
@@ -52,6 +56,7 @@ constructor(
           maxRetries = maxRetries,
           retryTimeout = retryTimeout,
           configMutator = configMutator,
+          tokenLeasing = tokenLeasing,
         )
       )
   }
@@ -63,6 +68,7 @@ constructor(
     private val maxRetries: Int,
     private val retryTimeout: Duration,
     private val configMutator: Bucket4jJedis.JedisBasedProxyManagerBuilder<String>.() -> Unit,
+    private val tokenLeasing: TokenLeasing?,
   ) : Provider<RateLimiter> {
     @Inject lateinit var clock: Clock
     @Inject lateinit var metricsRegistry: MeterRegistry
@@ -82,7 +88,7 @@ constructor(
           )
           .apply { configMutator() }
           .build()
-      return Bucket4jRateLimiter(proxyManager, clock, metricsRegistry)
+      return Bucket4jRateLimiter(proxyManager, clock, metricsRegistry, tokenLeasing)
     }
   }
 }
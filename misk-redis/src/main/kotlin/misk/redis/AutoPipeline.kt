@@ -0,0 +1,177 @@
+package misk.redis
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import java.util.Optional
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.reflect.cast
+import redis.clients.jedis.PipeliningBase
+import redis.clients.jedis.Response
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.commands.JedisBinaryCommands
+
+/**
+ * Writes the commands that callers issue concurrently to Redis together, on one pipeline.
+ *
+ * A caller queues its command and then tries to take the flush lock. Whoever gets it writes the queued commands of
+ * every caller to one pipeline, syncs it, and hands each caller its response. Callers that don't get the lock only wait
+ * for their own response, so nobody waits on a round trip that doesn't carry their command. Commands that arrive while
+ * a batch is in flight queue up for the next one, so the batching window is one round trip: under high fan-in many
+ * callers share one connection, and a lone caller doesn't wait for anyone.
+ *
+ * A flushing caller stops once its own command has its response, so it never flushes other callers' batches for longer
+ * than that. It then wakes the caller whose command is next in the queue to flush that command's batch.
+ */
+internal class AutoPipeline(
+  private val unifiedJedis: UnifiedJedis,
+  private val config: RedisAutoPipeliningConfig,
+  private val clientMetrics: RedisClientMetrics,
+) {
+  private val queue = ConcurrentLinkedQueue<QueuedCommand>()
+  private val flushLock = ReentrantLock()
+
+  init {
+    require(config.max_batch_size > 0) {
+      "auto_pipelining.max_batch_size must be positive, got ${config.max_batch_size}"
+    }
+  }
+
+  /** Pipelines the commands that can be, and sends the rest to [unifiedJedis] directly. */
+  val commands: JedisBinaryCommands =
+    JedisBinaryCommands::class.cast(
+      Proxy.newProxyInstance(
+        ClassLoader.getSystemClassLoader(),
+        arrayOf(JedisBinaryCommands::class.java),
+        InvocationHandler { _, method, args -> invoke(method, args ?: arrayOf()) },
+      )
+    )
+
+  private fun invoke(method: Method, args: Array<out Any?>): Any? {
+    val pipelineMethod = pipelineMethods.computeIfAbsent(method, ::findPipelineMethod).orElse(null)
+    if (pipelineMethod == null) {
+      try {
+        return method.invoke(unifiedJedis, *args)
+      } catch (e: InvocationTargetException) {
+        throw e.cause!!
+      }
+    }
+
+    val command = QueuedCommand(pipelineMethod, args)
+    queue.add(command)
+    while (!command.response.isDone) {
+      flushQueued(command)
+      // Woken when the command completes or its caller's turn to flush comes. The timeout is only a backstop.
+      if (!command.response.isDone) LockSupport.parkNanos(this, MAX_PARK_NANOS)
+    }
+    try {
+      return command.response.get()
+    } catch (e: ExecutionException) {
+      throw e.cause!!
+    }
+  }
+
+  /**
+   * Flushes queued commands until [command] has its response, unless another caller is already flushing. Whoever
+   * releases the lock wakes the caller of the next queued command, so a command queued by a caller that didn't get the
+   * lock is never left behind.
+   */
+  private fun flushQueued(command: QueuedCommand) {
+    while (!command.response.isDone && flushLock.tryLock()) {
+      try {
+        flush()
+      } finally {
+        flushLock.unlock()
+      }
+      queue.peek()?.wake()
+    }
+  }
+
+  /** Writes up to [RedisAutoPipeliningConfig.max_batch_size] queued commands in one pipeline. */
+  private fun flush() {
+    val batch = mutableListOf<QueuedCommand>()
+    while (batch.size < config.max_batch_size) {
+      batch += queue.poll() ?: break
+    }
+    if (batch.isEmpty()) return
+
+    try {
+      clientMetrics.autoPipelineBatchSize.observe(batch.size.toDouble())
+      unifiedJedis.pipelined().use { pipeline ->
+        val written =
+          batch.mapNotNull { command ->
+            try {
+              command to command.method.invoke(pipeline, *command.args) as Response<*>
+            } catch (e: InvocationTargetException) {
+              command.response.completeExceptionally(e.cause!!)
+              null
+            }
+          }
+        pipeline.sync()
+        for ((command, response) in written) {
+          runCatching { response.get() }
+            .fold(command.response::complete, command.response::completeExceptionally)
+        }
+      }
+    } catch (e: Throwable) {
+      // The connection failed, so fail every command that's still waiting on it. Its caller rethrows the failure.
+      for (command in batch) command.response.completeExceptionally(e)
+    } finally {
+      for (command in batch) command.wake()
+    }
+  }
+
+  private class QueuedCommand(val method: Method, val args: Array<out Any?>) {
+    val response = CompletableFuture<Any?>()
+    private val caller = Thread.currentThread()
+
+    fun wake() = LockSupport.unpark(caller)
+  }
+
+  private companion object {
+    val MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10)
+
+    /**
+     * Commands that block the connection until data arrives. Pipelining them would hold up every other command in the
+     * batch.
+     */
+    val BLOCKING_COMMANDS =
+      setOf(
+        "blmove",
+        "blmpop",
+        "blpop",
+        "brpop",
+        "brpoplpush",
+        "bzmpop",
+        "bzpopmax",
+        "bzpopmin",
+        "waitAOF",
+        "waitReplicas",
+        "xread",
+        "xreadGroup",
+      )
+
+    val pipelineMethods = ConcurrentHashMap<Method, Optional<Method>>()
+
+    /** Returns the pipeline equivalent of [method], or empty if it can't be pipelined. */
+    fun findPipelineMethod(method: Method): Optional<Method> {
+      if (method.name in BLOCKING_COMMANDS) return Optional.empty()
+      val pipelineMethod =
+        try {
+          PipeliningBase::class.java.getMethod(method.name, *method.parameterTypes)
+        } catch (e: NoSuchMethodException) {
+          return Optional.empty()
+        }
+      // Anything else, such as Object's methods, isn't a Redis command.
+      if (!Response::class.java.isAssignableFrom(pipelineMethod.returnType)) return Optional.empty()
+      return Optional.of(pipelineMethod)
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package misk.redis
+
+import redis.clients.jedis.commands.ProtocolCommand
+import redis.clients.jedis.csc.Cache
+import redis.clients.jedis.csc.CacheConfig
+import redis.clients.jedis.csc.CacheFactory
+import redis.clients.jedis.csc.Cacheable
+import redis.clients.jedis.csc.DefaultCacheable
+
+/** Returns the Jedis client-side cache for [config], with its stats reported to [metrics] for [endpoint]. */
+internal fun newClientSideCache(
+  config: RedisClientSideCacheConfig,
+  endpoint: RedisNodeConfig,
+  metrics: RedisClientMetrics,
+): Cache {
+  require(config.max_size > 0) { "client_side_cache.max_size must be positive, got ${config.max_size}" }
+  val cache =
+    CacheFactory.getCache(
+      CacheConfig.builder().maxSize(config.max_size).cacheable(KeyPrefixCacheable(config.key_prefixes)).build()
+    )
+  metrics.registerClientSideCache(endpoint, cache)
+  return cache
+}
+
+/**
+ * Caches the read commands that Jedis caches by default. If [prefixes] isn't empty, a command is only cached if all of
+ * its keys start with one of them.
+ */
+internal class KeyPrefixCacheable(private val prefixes: List<String>) : Cacheable {
+  private val bytePrefixes = prefixes.map { it.toByteArray(Charsets.UTF_8) }
+
+  override fun isCacheable(command: ProtocolCommand, keys: List<Any>): Boolean {
+    if (!DefaultCacheable.isDefaultCacheableCommand(command)) return false
+    if (prefixes.isEmpty()) return true
+    return keys.all { key ->
+      when (key) {
+        is String -> prefixes.any { key.startsWith(it) }
+        is ByteArray -> bytePrefixes.any { key.startsWith(it) }
+        else -> false
+      }
+    }
+  }
+
+  private fun ByteArray.startsWith(prefix: ByteArray): Boolean {
+    if (size < prefix.size) return false
+    for (i in prefix.indices) {
+      if (this[i] != prefix[i]) return false
+    }
+    return true
+  }
+}
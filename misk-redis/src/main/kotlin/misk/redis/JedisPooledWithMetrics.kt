@@ -10,6 +10,8 @@ import redis.clients.jedis.DefaultJedisClientConfig
 import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisClientConfig
 import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.RedisProtocol
+import redis.clients.jedis.csc.Cache
 import redis.clients.jedis.providers.PooledConnectionProvider
 
 internal class JedisPooledWithMetrics(
@@ -19,12 +21,13 @@ internal class JedisPooledWithMetrics(
   ssl: Boolean = true,
   requiresPassword: Boolean = true,
   database: Int? = null,
+  clientSideCache: Cache? = null,
 ) :
   JedisPooled(
     PooledConnectionProviderWithMetrics(
       metrics,
       poolConfig,
-      ConnectionFactoryWithMetrics(metrics, replicationGroupConfig, ssl, requiresPassword, database),
+      ConnectionFactoryWithMetrics(metrics, replicationGroupConfig, ssl, requiresPassword, database, clientSideCache),
     )
   )
 
@@ -34,6 +37,7 @@ private class ConnectionFactoryWithMetrics(
   ssl: Boolean = true,
   requiresPassword: Boolean = true,
   database: Int? = null,
+  clientSideCache: Cache? = null,
 ) :
   ConnectionFactory(
     HostAndPort(
@@ -42,7 +46,8 @@ private class ConnectionFactoryWithMetrics(
         ?: "127.0.0.1",
       replicationGroupConfig.writer_endpoint.port,
     ),
-    createJedisClientConfig(replicationGroupConfig, ssl, requiresPassword, database),
+    createJedisClientConfig(replicationGroupConfig, ssl, requiresPassword, database, clientSideCache != null),
+    clientSideCache,
   ) {
 
   override fun destroyObject(pooledJedis: PooledObject<Connection>) {
@@ -56,6 +61,7 @@ private fun createJedisClientConfig(
   ssl: Boolean,
   requiresPassword: Boolean = true,
   database: Int? = null,
+  clientSideCaching: Boolean = false,
 ): JedisClientConfig {
 
   return DefaultJedisClientConfig.builder()
@@ -70,6 +76,8 @@ private fun createJedisClientConfig(
       }
     )
     .let { config -> database?.let { config.database(it) } ?: config }
+    // Client-side caching relies on invalidations that Redis only pushes over RESP3.
+    .let { config -> if (clientSideCaching) config.protocol(RedisProtocol.RESP3) else config }
     .ssl(ssl)
     // CLIENT SETINFO is only supported in Redis v7.2+
     .clientSetInfoConfig(ClientSetInfoConfig.DISABLED)
@@ -30,8 +30,20 @@ import redis.clients.jedis.params.ZRangeParams
 import redis.clients.jedis.resps.Tuple
 import redis.clients.jedis.util.JedisClusterCRC16
 
-/** For each command, a Jedis instance is retrieved from the pool and returned once the command has been issued. */
-class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetrics: RedisClientMetrics) : Redis {
+/**
+ * For each command, a Jedis instance is retrieved from the pool and returned once the command has been issued.
+ *
+ * With [autoPipelining], commands that callers issue concurrently share one Jedis instance and are written together.
+ */
+class RealRedis
+@JvmOverloads
+constructor(
+  private val unifiedJedis: UnifiedJedis,
+  private val clientMetrics: RedisClientMetrics,
+  autoPipelining: RedisAutoPipeliningConfig? = null,
+) : Redis {
+  private val autoPipeline = autoPipelining?.let { AutoPipeline(unifiedJedis, it, clientMetrics) }
+
   override fun del(key: String): Boolean {
     val keyBytes = key.toByteArray(charset)
     return jedis { del(keyBytes) == 1L }
@@ -41,14 +53,14 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
     return when (unifiedJedis) {
       is JedisPooled -> {
         val keysAsBytes = keys.map { it.toByteArray(charset) }.toTypedArray()
-        jedis { unifiedJedis.del(*keysAsBytes) }.toInt()
+        jedis { del(*keysAsBytes) }.toInt()
       }
 
       is JedisCluster -> {
         // JedisCluster does not support multi-key del, so we need to group by slot and perform del for each slot
         keys
           .groupBy { JedisClusterCRC16.getSlot(it) }
-          .map { (_, slotKeys) -> jedis { unifiedJedis.del(*slotKeys.toTypedArray()) } }
+          .map { (_, slotKeys) -> jedis { del(*slotKeys.map { it.toByteArray(charset) }.toTypedArray()) } }
           .sumOf { it.toInt() }
       }
 
@@ -60,7 +72,7 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
     return when (unifiedJedis) {
       is JedisPooled -> {
         val keysAsBytes = keys.map { it.toByteArray(charset) }.toTypedArray()
-        jedis { unifiedJedis.mget(*keysAsBytes) }.map { it?.toByteString() }
+        jedis { mget(*keysAsBytes) }.map { it?.toByteString() }
       }
 
       is JedisCluster -> {
@@ -69,10 +81,10 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
         keys
           .groupBy { JedisClusterCRC16.getSlot(it) }
           .flatMap { (_, slotKeys) ->
-            val result = jedis { unifiedJedis.mget(*slotKeys.toTypedArray()) }
+            val result = jedis { mget(*slotKeys.map { it.toByteArray(charset) }.toTypedArray()) }
             slotKeys.zip(result)
           }
-          .forEach { (key, value) -> keyToValueMap[key] = value?.toByteArray(charset)?.toByteString() }
+          .forEach { (key, value) -> keyToValueMap[key] = value?.toByteString() }
         keys.map { keyToValueMap[it] }
       }
 
@@ -87,7 +99,7 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
     when (unifiedJedis) {
       is JedisPooled -> {
         val byteArrays = keyValues.map { it.toByteArray() }.toTypedArray()
-        return jedis { unifiedJedis.mset(*byteArrays) }
+        return jedis { mset(*byteArrays) }
       }
 
       is JedisCluster -> {
@@ -97,7 +109,7 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
           .chunked(2)
           .groupBy { JedisClusterCRC16.getSlot(it[0].toByteArray()) }
           .forEach { (_, slotKeys) ->
-            jedis { unifiedJedis.mset(*slotKeys.flatten().map { it.toByteArray() }.toTypedArray()) }
+            jedis { mset(*slotKeys.flatten().map { it.toByteArray() }.toTypedArray()) }
           }
       }
 
@@ -452,23 +464,23 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
   override fun zadd(key: String, score: Double, member: String, vararg options: ZAddOptions): Long {
     ZAddOptions.verify(options)
 
-    return unifiedJedis.zadd(
-      key.toByteArray(charset),
-      score,
-      member.toByteArray(charset),
-      ZAddOptions.getZAddParams(options),
-    )
+    val params = ZAddOptions.getZAddParams(options)
+    val keyBytes = key.toByteArray(charset)
+    val memberBytes = member.toByteArray(charset)
+    return jedis { zadd(keyBytes, score, memberBytes, params) }
   }
 
   override fun zadd(key: String, scoreMembers: Map<String, Double>, vararg options: ZAddOptions): Long {
     val params = ZAddOptions.getZAddParams(options)
     val keyBytes = key.toByteArray(charset)
     val scoreMembersBytes = scoreMembers.entries.associate { it.key.toByteArray(charset) to it.value }
-    return unifiedJedis.zadd(keyBytes, scoreMembersBytes, params)
+    return jedis { zadd(keyBytes, scoreMembersBytes, params) }
   }
 
   override fun zscore(key: String, member: String): Double? {
-    return unifiedJedis.zscore(key.toByteArray(charset), member.toByteArray(charset))
+    val keyBytes = key.toByteArray(charset)
+    val memberBytes = member.toByteArray(charset)
+    return jedis { zscore(keyBytes, memberBytes) }
   }
 
   override fun zrange(
@@ -497,25 +509,27 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
 
   override fun zrem(key: String, vararg members: String): Long {
     val memberBytes = Array(members.size) { members[it].toByteArray(charset) }
-    return unifiedJedis.zrem(key.toByteArray(charset), *memberBytes)
+    val keyBytes = key.toByteArray(charset)
+    return jedis { zrem(keyBytes, *memberBytes) }
   }
 
   override fun zremRangeByRank(key: String, start: ZRangeRankMarker, stop: ZRangeRankMarker): Long {
-    return unifiedJedis.zremrangeByRank(key, start.longValue, stop.longValue)
+    val keyBytes = key.toByteArray(charset)
+    return jedis { zremrangeByRank(keyBytes, start.longValue, stop.longValue) }
   }
 
   override fun zremRangeByScore(key: String, start: ZRangeScoreMarker, stop: ZRangeScoreMarker): Long {
     // The string form of a marker is what carries the exclusive "(" prefix and the infinities, so this goes through
     // the byte[] overload rather than the double one.
-    return unifiedJedis.zremrangeByScore(
-      key.toByteArray(charset),
-      start.toString().toByteArray(charset),
-      stop.toString().toByteArray(charset),
-    )
+    val keyBytes = key.toByteArray(charset)
+    val minBytes = start.toString().toByteArray(charset)
+    val maxBytes = stop.toString().toByteArray(charset)
+    return jedis { zremrangeByScore(keyBytes, minBytes, maxBytes) }
   }
 
   override fun zcard(key: String): Long {
-    return unifiedJedis.zcard(key)
+    val keyBytes = key.toByteArray(charset)
+    return jedis { zcard(keyBytes) }
   }
 
   private fun zrangeBase(
@@ -543,81 +557,28 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
     withScore: Boolean,
     limit: ZRangeLimit?,
   ): ZRangeResponse {
-    val minString = start.toString()
-    val maxString = stop.toString()
-
-    return if (limit == null && !reverse && !withScore) {
-      ZRangeResponse.noScore(
-        unifiedJedis.zrangeByScore(
-          key.toByteArray(charset),
-          minString.toByteArray(charset),
-          maxString.toByteArray(charset),
-        )
-      )
-    } else if (limit == null && !reverse) {
-      ZRangeResponse.withScore(
-        unifiedJedis.zrangeByScoreWithScores(
-          key.toByteArray(charset),
-          minString.toByteArray(charset),
-          maxString.toByteArray(charset),
-        )
-      )
-    } else if (limit == null && !withScore) {
-      ZRangeResponse.noScore(
-        unifiedJedis.zrevrangeByScore(
-          key.toByteArray(charset),
-          maxString.toByteArray(charset),
-          minString.toByteArray(charset),
-        )
-      )
-    } else if (limit == null) {
-      ZRangeResponse.withScore(
-        unifiedJedis.zrevrangeByScoreWithScores(
-          key.toByteArray(charset),
-          maxString.toByteArray(charset),
-          minString.toByteArray(charset),
-        )
-      )
-    } else if (!reverse && !withScore) {
-      ZRangeResponse.noScore(
-        unifiedJedis.zrangeByScore(
-          key.toByteArray(charset),
-          minString.toByteArray(charset),
-          maxString.toByteArray(charset),
-          limit.offset,
-          limit.count,
-        )
-      )
-    } else if (!reverse) {
-      ZRangeResponse.withScore(
-        unifiedJedis.zrangeByScoreWithScores(
-          key.toByteArray(charset),
-          minString.toByteArray(charset),
-          maxString.toByteArray(charset),
-          limit.offset,
-          limit.count,
-        )
-      )
-    } else if (!withScore) {
-      ZRangeResponse.noScore(
-        unifiedJedis.zrevrangeByScore(
-          key.toByteArray(charset),
-          maxString.toByteArray(charset),
-          minString.toByteArray(charset),
-          limit.offset,
-          limit.count,
-        )
-      )
-    } else {
-      ZRangeResponse.withScore(
-        unifiedJedis.zrevrangeByScoreWithScores(
-          key.toByteArray(charset),
-          maxString.toByteArray(charset),
-          minString.toByteArray(charset),
-          limit.offset,
-          limit.count,
-        )
-      )
+    val keyBytes = key.toByteArray(charset)
+    val minBytes = start.toString().toByteArray(charset)
+    val maxBytes = stop.toString().toByteArray(charset)
+
+    return jedis {
+      if (limit == null && !reverse && !withScore) {
+        ZRangeResponse.noScore(zrangeByScore(keyBytes, minBytes, maxBytes))
+      } else if (limit == null && !reverse) {
+        ZRangeResponse.withScore(zrangeByScoreWithScores(keyBytes, minBytes, maxBytes))
+      } else if (limit == null && !withScore) {
+        ZRangeResponse.noScore(zrevrangeByScore(keyBytes, maxBytes, minBytes))
+      } else if (limit == null) {
+        ZRangeResponse.withScore(zrevrangeByScoreWithScores(keyBytes, maxBytes, minBytes))
+      } else if (!reverse && !withScore) {
+        ZRangeResponse.noScore(zrangeByScore(keyBytes, minBytes, maxBytes, limit.offset, limit.count))
+      } else if (!reverse) {
+        ZRangeResponse.withScore(zrangeByScoreWithScores(keyBytes, minBytes, maxBytes, limit.offset, limit.count))
+      } else if (!withScore) {
+        ZRangeResponse.noScore(zrevrangeByScore(keyBytes, maxBytes, minBytes, limit.offset, limit.count))
+      } else {
+        ZRangeResponse.withScore(zrevrangeByScoreWithScores(keyBytes, maxBytes, minBytes, limit.offset, limit.count))
+      }
     }
   }
 
@@ -640,17 +601,18 @@ class RealRedis(private val unifiedJedis: UnifiedJedis, private val clientMetric
     val params = ZRangeParams(start.intValue, stop.intValue)
     if (reverse) params.rev()
 
+    val keyBytes = key.toByteArray(charset)
     return if (withScore) {
-      ZRangeResponse.withScore(unifiedJedis.zrangeWithScores(key.toByteArray(charset), params))
+      ZRangeResponse.withScore(jedis { zrangeWithScores(keyBytes, params) })
     } else {
-      ZRangeResponse.noScore(unifiedJedis.zrange(key.toByteArray(charset), params))
+      ZRangeResponse.noScore(jedis { zrange(keyBytes, params) })
     }
   }
 
-  // Gets a Jedis instance from the pool, and times the requested method invocations.
+  // Gets a Jedis instance from the pool, or queues on the auto-pipeline, and times the requested method invocations.
   private fun <T> jedis(op: JedisBinaryCommands.() -> T): T {
     updateMetrics()
-    val invocationHandler = JedisTimedInvocationHandler(unifiedJedis, clientMetrics)
+    val invocationHandler = JedisTimedInvocationHandler(autoPipeline?.commands ?: unifiedJedis, clientMetrics)
     val timedProxy =
       JedisBinaryCommands::class.cast(
         Proxy.newProxyInstance(
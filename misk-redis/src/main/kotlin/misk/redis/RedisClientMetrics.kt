@@ -2,13 +2,18 @@ package misk.redis
 
 import com.google.common.base.Stopwatch
 import com.google.common.base.Ticker
+import io.prometheus.client.Collector
+import io.prometheus.client.CounterMetricFamily
+import io.prometheus.client.GaugeMetricFamily
 import jakarta.inject.Inject
 import jakarta.inject.Singleton
+import java.util.concurrent.ConcurrentHashMap
 import misk.metrics.v2.Metrics
 import org.apache.commons.pool2.impl.GenericObjectPool
+import redis.clients.jedis.csc.Cache
 
 @Singleton
-class RedisClientMetrics @Inject constructor(private val ticker: Ticker, metrics: Metrics) {
+class RedisClientMetrics @Inject constructor(private val ticker: Ticker, private val metrics: Metrics) {
   internal val maxTotalConnectionsGauge =
     metrics.gauge(
       name = MAX_TOTAL_CONNECTIONS,
@@ -49,6 +54,12 @@ class RedisClientMetrics @Inject constructor(private val ticker: Ticker, metrics
         """
           .trimIndent(),
     )
+  internal val autoPipelineBatchSize =
+    metrics.histogram(
+      name = AUTO_PIPELINE_BATCH_SIZE,
+      help = "The number of commands from concurrent callers that were written to Redis together by auto-pipelining.",
+      buckets = listOf(1.0, 2.0, 4.0, 8.0, 16.0, 32.0, 64.0, 128.0, 256.0, 512.0, 1024.0),
+    )
   private val operationTime =
     metrics.histogram(
       name = OPERATION_TIME,
@@ -69,6 +80,66 @@ class RedisClientMetrics @Inject constructor(private val ticker: Ticker, metrics
     this.idleConnectionsGauge.set(pool.numIdle.toDouble())
   }
 
+  private val clientSideCaches = ClientSideCacheCollector().register<ClientSideCacheCollector>(metrics.getRegistry())
+
+  /** Reports the stats of the client-side [cache] of the client for [endpoint]. */
+  internal fun registerClientSideCache(endpoint: RedisNodeConfig, cache: Cache) {
+    clientSideCaches.caches["${endpoint.hostname.orEmpty()}:${endpoint.port}"] = cache
+  }
+
+  /**
+   * Reads the stats of each client-side cache when the registry is scraped. Jedis keeps them as running totals, so
+   * they're reported as they are.
+   */
+  private class ClientSideCacheCollector : Collector(), Collector.Describable {
+    val caches = ConcurrentHashMap<String, Cache>()
+
+    override fun collect(): List<MetricFamilySamples> {
+      val hits =
+        CounterMetricFamily(
+          CLIENT_SIDE_CACHE_HITS_TOTAL,
+          "The total count of reads served by the client-side cache.",
+          LABELS,
+        )
+      val misses =
+        CounterMetricFamily(
+          CLIENT_SIDE_CACHE_MISSES_TOTAL,
+          "The total count of cacheable reads that missed the client-side cache and were sent to Redis.",
+          LABELS,
+        )
+      val evictions =
+        CounterMetricFamily(
+          CLIENT_SIDE_CACHE_EVICTIONS_TOTAL,
+          "The total count of entries evicted from the client-side cache because it was full.",
+          LABELS,
+        )
+      val invalidations =
+        CounterMetricFamily(
+          CLIENT_SIDE_CACHE_INVALIDATIONS_TOTAL,
+          "The total count of client-side cache entries invalidated by Redis because their key changed.",
+          LABELS,
+        )
+      val size =
+        GaugeMetricFamily(CLIENT_SIDE_CACHE_SIZE, "Current number of entries in the client-side cache.", LABELS)
+      for ((endpoint, cache) in caches) {
+        val stats = cache.stats
+        val labels = listOf(endpoint)
+        hits.addMetric(labels, stats.hitCount.toDouble())
+        misses.addMetric(labels, stats.missCount.toDouble())
+        evictions.addMetric(labels, stats.evictCount.toDouble())
+        invalidations.addMetric(labels, stats.invalidationCount.toDouble())
+        size.addMetric(labels, cache.size.toDouble())
+      }
+      return listOf(hits, misses, evictions, invalidations, size)
+    }
+
+    override fun describe(): List<MetricFamilySamples> = collect()
+
+    private companion object {
+      val LABELS = listOf("endpoint")
+    }
+  }
+
   companion object {
     internal const val MAX_TOTAL_CONNECTIONS = "redis_client_max_total_connections"
     internal const val MAX_IDLE_CONNECTIONS = "redis_client_max_idle_connections"
@@ -76,5 +147,11 @@ class RedisClientMetrics @Inject constructor(private val ticker: Ticker, metrics
     internal const val ACTIVE_CONNECTIONS = "redis_client_active_connections"
     internal const val DESTROYED_CONNECTIONS_TOTAL = "redis_client_pool_destroyed_connections_total"
     internal const val OPERATION_TIME = "redis_client_operation_time_millis"
+    internal const val CLIENT_SIDE_CACHE_HITS_TOTAL = "redis_client_side_cache_hits_total"
+    internal const val CLIENT_SIDE_CACHE_MISSES_TOTAL = "redis_client_side_cache_misses_total"
+    internal const val CLIENT_SIDE_CACHE_EVICTIONS_TOTAL = "redis_client_side_cache_evictions_total"
+    internal const val CLIENT_SIDE_CACHE_INVALIDATIONS_TOTAL = "redis_client_side_cache_invalidations_total"
+    internal const val CLIENT_SIDE_CACHE_SIZE = "redis_client_side_cache_size"
+    internal const val AUTO_PIPELINE_BATCH_SIZE = "redis_client_auto_pipeline_batch_size"
   }
 }
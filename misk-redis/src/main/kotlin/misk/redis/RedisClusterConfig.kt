@@ -23,6 +23,10 @@ class RedisClusterConfig : LinkedHashMap<String, RedisClusterReplicationGroupCon
  * @property timeout_ms The connection and socket timeout in milliseconds.
  * @property topology_refresh_period_ms If set, the cluster topology will be refreshed periodically at this interval
  *   (in milliseconds). When null (default), topology is only refreshed reactively on errors/redirects.
+ * @property client_side_cache If set, reads are cached on the client and invalidated by the cluster. See
+ *   [RedisClientSideCacheConfig].
+ * @property auto_pipelining If set, commands that callers issue concurrently are pipelined together. See
+ *   [RedisAutoPipeliningConfig].
  */
 data class RedisClusterReplicationGroupConfig
 @JvmOverloads
@@ -33,4 +37,13 @@ constructor(
   @Redact val redis_auth_password: String,
   val timeout_ms: Int = Protocol.DEFAULT_TIMEOUT,
   val topology_refresh_period_ms: Long? = null,
-)
+  val client_side_cache: RedisClientSideCacheConfig? = null,
+  val auto_pipelining: RedisAutoPipeliningConfig? = null,
+) {
+  init {
+    // Pipelined reads bypass the client-side cache, so enabling both would silently disable the cache.
+    require(client_side_cache == null || auto_pipelining == null) {
+      "client_side_cache and auto_pipelining can't both be set"
+    }
+  }
+}
@@ -63,8 +63,9 @@ constructor(
 
     // Bind the redis service to a one-off provider - doing this here instead of annotating the class with @Singleton
     // primarily to avoid injecting the useSsl boolean via @Named or similar
+    val clientMetrics = getProvider(RedisClientMetrics::class.java)
     bind(keyOf<RedisJedisClusterService>())
-      .toProvider { RedisJedisClusterService(connectionPoolConfig, redisClusterGroupConfig, useSsl) }
+      .toProvider { RedisJedisClusterService(connectionPoolConfig, redisClusterGroupConfig, useSsl, clientMetrics) }
       .asSingleton()
     // The services, in addition to normal lifecycle management, provide the actual clients
     bind<UnifiedJedis>().toProvider(keyOf<RedisJedisClusterService>())
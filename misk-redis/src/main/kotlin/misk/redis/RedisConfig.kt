@@ -17,6 +17,43 @@ constructor(
   val reader_endpoint: RedisNodeConfig,
   @Redact val redis_auth_password: String,
   val timeout_ms: Int = Protocol.DEFAULT_TIMEOUT,
-)
+  val client_side_cache: RedisClientSideCacheConfig? = null,
+  val auto_pipelining: RedisAutoPipeliningConfig? = null,
+) {
+  init {
+    // Pipelined reads bypass the client-side cache, so enabling both would silently disable the cache.
+    require(client_side_cache == null || auto_pipelining == null) {
+      "client_side_cache and auto_pipelining can't both be set"
+    }
+  }
+}
 
 data class RedisNodeConfig(val hostname: String?, val port: Int)
+
+/**
+ * Opts a Redis client in to client-side caching of reads such as `GET`, `HGET` and `MGET`.
+ *
+ * Connections switch to RESP3 and enable `CLIENT TRACKING`. Redis then pushes an invalidation to the client when a key
+ * it read changes, and the cached value is dropped. This requires Redis 6 or later.
+ *
+ * @property max_size The maximum number of cached entries. The least recently used entries are evicted first.
+ * @property key_prefixes If not empty, only keys that start with one of these prefixes are cached. Use this to cache
+ *   hot, rarely changing keys without filling the cache with everything else.
+ */
+data class RedisClientSideCacheConfig
+@JvmOverloads
+constructor(val max_size: Int = 10_000, val key_prefixes: List<String> = listOf())
+
+/**
+ * Opts a [RealRedis] client in to auto-pipelining. Commands that callers issue concurrently are written to Redis
+ * together on one pipeline, and each caller gets its own response back. Under high fan-in this takes one pooled
+ * connection and one round trip per batch instead of per command. Blocking commands such as `BLPOP` are never
+ * pipelined, and neither are transactions, explicit pipelines, pub/sub or flushes: those still take a pooled connection
+ * of their own. Pipelined reads skip the client-side cache, so this can't be combined with
+ * [RedisClientSideCacheConfig].
+ *
+ * @property max_batch_size The maximum number of commands written in one pipeline.
+ */
+data class RedisAutoPipeliningConfig
+@JvmOverloads
+constructor(val max_batch_size: Int = 1_000)
@@ -11,15 +11,18 @@ import redis.clients.jedis.UnifiedJedis
 @Singleton
 internal class RedisFacadeClusterService
 @Inject
-constructor(private val clientMetrics: RedisClientMetrics, private val unifiedJedisProvider: Provider<UnifiedJedis>) :
-  AbstractIdleService(), Provider<Redis> {
+constructor(
+  private val clientMetrics: RedisClientMetrics,
+  private val unifiedJedisProvider: Provider<UnifiedJedis>,
+  private val replicationGroup: RedisClusterReplicationGroupConfig,
+) : AbstractIdleService(), Provider<Redis> {
   private lateinit var redis: Redis
 
   override fun startUp() {
     check(!::redis.isInitialized) { "JedisCluster is already initialized. Services must be started only once." }
     logger.info { "Starting ${this::class.simpleName} service" }
 
-    redis = RealRedis(unifiedJedisProvider.get(), clientMetrics)
+    redis = RealRedis(unifiedJedisProvider.get(), clientMetrics, replicationGroup.auto_pipelining)
   }
 
   override fun shutDown() {
@@ -8,6 +8,7 @@ import redis.clients.jedis.ConnectionPoolConfig
 import redis.clients.jedis.DefaultJedisClientConfig
 import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.RedisProtocol
 import redis.clients.jedis.UnifiedJedis
 import java.time.Duration
 
@@ -27,6 +28,7 @@ internal class RedisJedisClusterService(
   private val connectionPoolConfig: ConnectionPoolConfig,
   private val replicationGroup: RedisClusterReplicationGroupConfig,
   private val useSsl: Boolean,
+  private val clientMetrics: Provider<RedisClientMetrics>,
 ) : AbstractIdleService(), Provider<UnifiedJedis> {
   private lateinit var jedisCluster: JedisCluster
 
@@ -44,6 +46,8 @@ internal class RedisJedisClusterService(
         .ssl(useSsl)
         // CLIENT SETINFO is only supported in Redis v7.2+
         .clientSetInfoConfig(ClientSetInfoConfig.DISABLED)
+        // Client-side caching relies on invalidations that Redis only pushes over RESP3.
+        .let { if (replicationGroup.client_side_cache != null) it.protocol(RedisProtocol.RESP3) else it }
         .build()
 
     // We want to support services running both under docker and localhost when running locally and this is a way to
@@ -61,15 +65,36 @@ internal class RedisJedisClusterService(
       "topology_refresh_period_ms must be positive, got $topologyRefreshPeriodMs"
     }
 
-    jedisCluster = JedisCluster(
-      nodes,
-      jedisClientConfig,
-      connectionPoolConfig,
-      topologyRefreshPeriodMs?.let { Duration.ofMillis(it) },
-      replicationGroup.max_attempts,
-      // Cap total retry wall-clock time: each attempt can take at most one socket timeout.
-      Duration.ofMillis(replicationGroup.timeout_ms.toLong() * replicationGroup.max_attempts),
-    )
+    val topologyRefreshPeriod = topologyRefreshPeriodMs?.let { Duration.ofMillis(it) }
+    // Cap total retry wall-clock time: each attempt can take at most one socket timeout.
+    val maxTotalRetriesDuration =
+      Duration.ofMillis(replicationGroup.timeout_ms.toLong() * replicationGroup.max_attempts)
+    val clientSideCache =
+      replicationGroup.client_side_cache?.let {
+        newClientSideCache(it, replicationGroup.configuration_endpoint, clientMetrics.get())
+      }
+
+    jedisCluster =
+      if (clientSideCache == null) {
+        JedisCluster(
+          nodes,
+          jedisClientConfig,
+          connectionPoolConfig,
+          topologyRefreshPeriod,
+          replicationGroup.max_attempts,
+          maxTotalRetriesDuration,
+        )
+      } else {
+        JedisCluster(
+          nodes,
+          jedisClientConfig,
+          clientSideCache,
+          connectionPoolConfig,
+          topologyRefreshPeriod,
+          replicationGroup.max_attempts,
+          maxTotalRetriesDuration,
+        )
+      }
   }
 
   override fun shutDown() {
@@ -66,7 +66,7 @@ constructor(
   @Provides
   @Singleton
   internal fun provideRedisClient(clientMetrics: RedisClientMetrics, unifiedJedis: UnifiedJedis): Redis =
-    RealRedis(unifiedJedis, clientMetrics)
+    RealRedis(unifiedJedis, clientMetrics, redisReplicationGroupConfig.auto_pipelining)
 
   @Provides
   @Singleton
@@ -82,6 +82,10 @@ constructor(
       replicationGroupConfig = redisReplicationGroupConfig,
       ssl = useSsl,
       requiresPassword = deployment.isReal,
+      clientSideCache =
+        redisReplicationGroupConfig.client_side_cache?.let {
+          newClientSideCache(it, redisReplicationGroupConfig.writer_endpoint, clientMetrics)
+        },
     )
   }
 
@@ -0,0 +1,141 @@
+package misk.redis
+
+import com.google.inject.Module
+import io.prometheus.client.CollectorRegistry
+import jakarta.inject.Inject
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import misk.MiskTestingServiceModule
+import misk.environment.DeploymentModule
+import misk.inject.KAbstractModule
+import misk.redis.Redis.ZRangeRankMarker
+import misk.redis.RedisClientMetrics.Companion.AUTO_PIPELINE_BATCH_SIZE
+import misk.redis.testing.DockerRedis
+import misk.redis.testing.RedisTestFlushModule
+import misk.testing.MiskTest
+import misk.testing.MiskTestModule
+import okio.ByteString.Companion.encodeUtf8
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.ConnectionPoolConfig
+import wisp.deployment.TESTING
+
+/** Provides test coverage/parity for a connection-pooled Redis client that auto-pipelines concurrent commands. */
+@MiskTest
+class AutoPipelinedRedisTest : AbstractRedisTest() {
+  @Suppress("unused")
+  @MiskTestModule
+  private val module: Module =
+    object : KAbstractModule() {
+      override fun configure() {
+        install(
+          RedisModule(
+            DockerRedis.replicationGroupConfig.copy(auto_pipelining = RedisAutoPipeliningConfig(max_batch_size = 64)),
+            ConnectionPoolConfig(),
+            useSsl = false,
+          )
+        )
+        install(MiskTestingServiceModule())
+        install(DeploymentModule(TESTING))
+        install(RedisTestFlushModule())
+      }
+    }
+
+  @Inject override lateinit var redis: Redis
+  @Inject private lateinit var collectorRegistry: CollectorRegistry
+
+  @Test
+  fun `concurrent callers each get their own response`() {
+    val commandsBefore = pipelinedCommands()
+
+    val executor = Executors.newFixedThreadPool(32)
+    try {
+      val futures = (0 until 1_000).map { i -> executor.submit<Long> { redis.incr("counter:${i % 10}") } }
+      val responses = futures.map { it.get() }
+
+      // Each counter was incremented 100 times, and each increment saw a distinct value.
+      assertThat(responses.groupingBy { it }.eachCount().values).containsOnly(10)
+      assertThat(responses.toSet()).isEqualTo((1L..100L).toSet())
+    } finally {
+      executor.shutdown()
+      executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+
+    assertThat(pipelinedCommands() - commandsBefore).isEqualTo(1_000.0)
+    assertThat(redis["counter:0"]).isEqualTo("100".encodeUtf8())
+  }
+
+  @Test
+  fun `no caller flushes for longer than its own command takes under steady load`() {
+    val executor = Executors.newFixedThreadPool(32)
+    try {
+      val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2)
+      // Every caller keeps issuing commands until the deadline, so the queue is never empty for long.
+      val futures =
+        (0 until 32).map {
+          executor.submit<Long> {
+            var slowestNanos = 0L
+            while (System.nanoTime() < deadline) {
+              val start = System.nanoTime()
+              redis.incr("counter:${ThreadLocalRandom.current().nextInt(10)}")
+              slowestNanos = maxOf(slowestNanos, System.nanoTime() - start)
+            }
+            slowestNanos
+          }
+        }
+
+      assertThat(futures.map { TimeUnit.NANOSECONDS.toMillis(it.get()) }).allMatch { it < 500 }
+    } finally {
+      executor.shutdown()
+      executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+  }
+
+  @Test
+  fun `multi-key and sorted set commands are pipelined`() {
+    val commandsBefore = pipelinedCommands()
+
+    redis.mset("a".encodeUtf8(), "1".encodeUtf8(), "b".encodeUtf8(), "2".encodeUtf8())
+    assertThat(redis.mget("a", "b")).containsExactly("1".encodeUtf8(), "2".encodeUtf8())
+    assertThat(redis.del("a", "b")).isEqualTo(2)
+    assertThat(redis.zadd("zset", mapOf("x" to 1.0, "y" to 2.0))).isEqualTo(2L)
+    assertThat(redis.zscore("zset", "y")).isEqualTo(2.0)
+    assertThat(redis.zremRangeByRank("zset", ZRangeRankMarker(0), ZRangeRankMarker(0))).isEqualTo(1L)
+    assertThat(redis.zcard("zset")).isEqualTo(1L)
+
+    assertThat(pipelinedCommands() - commandsBefore).isEqualTo(7.0)
+  }
+
+  @Test
+  fun `errors only fail the command that caused them`() {
+    redis["string"] = "value".encodeUtf8()
+
+    val executor = Executors.newFixedThreadPool(2)
+    try {
+      val failed = executor.submit<Long> { redis.hincrBy("string", "field", 1) }
+      val succeeded = executor.submit<Long> { redis.incr("counter") }
+
+      assertThat(runCatching { failed.get() }.exceptionOrNull()).hasMessageContaining("WRONGTYPE")
+      assertThat(succeeded.get()).isEqualTo(1L)
+    } finally {
+      executor.shutdown()
+      executor.awaitTermination(10, TimeUnit.SECONDS)
+    }
+  }
+
+  @Test
+  fun `can't be combined with client-side caching`() {
+    assertThatThrownBy {
+        DockerRedis.replicationGroupConfig.copy(
+          client_side_cache = RedisClientSideCacheConfig(),
+          auto_pipelining = RedisAutoPipeliningConfig(),
+        )
+      }
+      .isInstanceOf(IllegalArgumentException::class.java)
+      .hasMessage("client_side_cache and auto_pipelining can't both be set")
+  }
+
+  private fun pipelinedCommands() = collectorRegistry.getSampleValue("${AUTO_PIPELINE_BATCH_SIZE}_sum") ?: 0.0
+}
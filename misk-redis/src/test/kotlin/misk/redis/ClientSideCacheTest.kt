@@ -0,0 +1,91 @@
+package misk.redis
+
+import io.prometheus.client.CollectorRegistry
+import jakarta.inject.Inject
+import misk.MiskTestingServiceModule
+import misk.environment.DeploymentModule
+import misk.inject.KAbstractModule
+import misk.redis.RedisClientMetrics.Companion.CLIENT_SIDE_CACHE_HITS_TOTAL
+import misk.redis.RedisClientMetrics.Companion.CLIENT_SIDE_CACHE_INVALIDATIONS_TOTAL
+import misk.redis.RedisClientMetrics.Companion.CLIENT_SIDE_CACHE_MISSES_TOTAL
+import misk.redis.RedisClientMetrics.Companion.CLIENT_SIDE_CACHE_SIZE
+import misk.redis.testing.DockerRedis
+import misk.redis.testing.RedisTestFlushModule
+import misk.testing.MiskTest
+import misk.testing.MiskTestModule
+import okio.ByteString.Companion.encodeUtf8
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.ConnectionPoolConfig
+import redis.clients.jedis.Protocol
+import wisp.deployment.TESTING
+
+@MiskTest
+class ClientSideCacheTest {
+  @Suppress("unused")
+  @MiskTestModule
+  private val module =
+    object : KAbstractModule() {
+      override fun configure() {
+        install(DeploymentModule(TESTING))
+        install(MiskTestingServiceModule())
+        install(
+          RedisModule(
+            DockerRedis.replicationGroupConfig.copy(
+              client_side_cache = RedisClientSideCacheConfig(key_prefixes = listOf("cached:"))
+            ),
+            ConnectionPoolConfig(),
+            useSsl = false,
+          )
+        )
+        install(RedisTestFlushModule())
+      }
+    }
+
+  @Inject private lateinit var collectorRegistry: CollectorRegistry
+  @Inject private lateinit var redis: Redis
+
+  @Test
+  fun `reads are cached until the key changes`() {
+    redis["cached:config"] = "v1".encodeUtf8()
+
+    assertThat(redis["cached:config"]?.utf8()).isEqualTo("v1")
+    assertThat(redis["cached:config"]?.utf8()).isEqualTo("v1")
+    assertThat(scrape(CLIENT_SIDE_CACHE_MISSES_TOTAL)).isEqualTo(1.0)
+    assertThat(scrape(CLIENT_SIDE_CACHE_HITS_TOTAL)).isEqualTo(1.0)
+    assertThat(scrape(CLIENT_SIDE_CACHE_SIZE)).isEqualTo(1.0)
+    // Scraping doesn't reset the totals.
+    assertThat(scrape(CLIENT_SIDE_CACHE_HITS_TOTAL)).isEqualTo(1.0)
+
+    // Redis pushes an invalidation for the changed key, so the next read isn't served stale.
+    redis["cached:config"] = "v2".encodeUtf8()
+    assertThat(redis["cached:config"]?.utf8()).isEqualTo("v2")
+    assertThat(scrape(CLIENT_SIDE_CACHE_INVALIDATIONS_TOTAL)).isEqualTo(1.0)
+    assertThat(scrape(CLIENT_SIDE_CACHE_MISSES_TOTAL)).isEqualTo(2.0)
+  }
+
+  @Test
+  fun `keys without a cached prefix are not cached`() {
+    redis["uncached"] = "value".encodeUtf8()
+
+    assertThat(redis["uncached"]?.utf8()).isEqualTo("value")
+    assertThat(redis["uncached"]?.utf8()).isEqualTo("value")
+    assertThat(scrape(CLIENT_SIDE_CACHE_HITS_TOTAL)).isEqualTo(0.0)
+    assertThat(scrape(CLIENT_SIDE_CACHE_SIZE)).isEqualTo(0.0)
+  }
+
+  @Test
+  fun `only default cacheable commands are cached`() {
+    val cacheable = KeyPrefixCacheable(listOf("cached:"))
+
+    assertThat(cacheable.isCacheable(Protocol.Command.GET, listOf("cached:a"))).isTrue()
+    assertThat(cacheable.isCacheable(Protocol.Command.GET, listOf("cached:a".toByteArray()))).isTrue()
+    assertThat(cacheable.isCacheable(Protocol.Command.MGET, listOf("cached:a", "other"))).isFalse()
+    assertThat(cacheable.isCacheable(Protocol.Command.INCR, listOf("cached:a"))).isFalse()
+  }
+
+  private fun scrape(metric: String): Double? {
+    val endpoint = DockerRedis.replicationGroupConfig.writer_endpoint.let { "${it.hostname.orEmpty()}:${it.port}" }
+    return collectorRegistry.getSampleValue(metric, arrayOf("endpoint"), arrayOf(endpoint))
+  }
+}
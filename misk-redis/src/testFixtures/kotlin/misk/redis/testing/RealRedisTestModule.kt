@@ -8,6 +8,7 @@ import misk.redis.JedisPooledWithMetrics
 import misk.redis.RedisClientMetrics
 import misk.redis.RedisModule
 import misk.redis.RedisReplicationGroupConfig
+import misk.redis.newClientSideCache
 import misk.testing.parallelTestIndex
 import redis.clients.jedis.ConnectionPoolConfig
 import redis.clients.jedis.UnifiedJedis
@@ -45,6 +46,10 @@ private class TestUnifiedJedisModule(
       ssl = useSsl,
       requiresPassword = false,
       database = database,
+      clientSideCache =
+        redisReplicationGroupConfig.client_side_cache?.let {
+          newClientSideCache(it, redisReplicationGroupConfig.writer_endpoint, clientMetrics)
+        },
     )
   }
 }
@@ -36,6 +36,16 @@ interface ExecutorServiceFactory {
   /** Returns an executor service that uses [Executors.newCachedThreadPool]. */
   fun unbounded(nameFormat: String): ExecutorService
 
+  /**
+   * Returns an executor service that runs each task on a new virtual thread, with at most [maxConcurrency] tasks
+   * running at once. Tasks beyond that limit wait for a permit on their own virtual thread instead of in a queue.
+   *
+   * Blocking calls in `synchronized` blocks pin a virtual thread to its carrier thread, so prefer this for tasks that
+   * mostly wait on I/O. Where virtual threads aren't supported this falls back to [unbounded] or [fixed].
+   */
+  fun virtual(nameFormat: String, maxConcurrency: Int = Int.MAX_VALUE): ExecutorService =
+    if (maxConcurrency == Int.MAX_VALUE) unbounded(nameFormat) else fixed(nameFormat, maxConcurrency)
+
   /** Returns an executor service that uses [Executors.newScheduledThreadPool]. */
   fun scheduled(nameFormat: String, threadCount: Int): ScheduledExecutorService
 }
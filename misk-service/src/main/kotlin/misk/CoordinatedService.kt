@@ -9,16 +9,37 @@ import com.google.common.util.concurrent.Service.State
 import com.google.inject.Key
 import com.google.inject.Provider
 import com.google.inject.name.Named
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.concurrent.RejectedExecutionException
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
 import misk.inject.toKey
+import misk.logging.getLogger
 
-data class CoordinatedServiceMetadata(val dependencies: Set<String>, val directDependsOn: Set<String>)
+data class CoordinatedServiceMetadata
+@JvmOverloads
+constructor(
+  val dependencies: Set<String>,
+  val directDependsOn: Set<String>,
+  /** How long the service took to start, or null if it hasn't started. */
+  val startDurationMillis: Long? = null,
+  /** How long the service took to stop, or null if it hasn't stopped. */
+  val stopDurationMillis: Long? = null,
+)
 
 internal inline fun <reified T : Service> CoordinatedService(serviceProvider: Provider<T>) =
   CoordinatedService(key = T::class.toKey(), serviceProvider = serviceProvider)
 
-internal class CoordinatedService(private val key: Key<*>, private val serviceProvider: Provider<out Service>) :
-  AbstractService(), DelegatingService {
+/**
+ * @param executor runs the work of starting and stopping the inner service: creating it, and calling its [startAsync]
+ *   and [stopAsync]. Services that become ready together start and stop concurrently when this is a thread pool.
+ */
+internal class CoordinatedService(
+  private val key: Key<*>,
+  private val serviceProvider: Provider<out Service>,
+  private val executor: Executor = MoreExecutors.directExecutor(),
+) : AbstractService(), DelegatingService {
 
   /**
    * To avoid accessing the by lazy service property for toString, use key until the service is initiated by the service
@@ -59,18 +80,21 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
               val outerService = this@CoordinatedService
 
               override fun running() {
+                startDuration = Duration.ofNanos(System.nanoTime() - startNanos)
                 outerService.notifyStarted()
-                dependencies.forEach { it.startIfReady() }
+                dependencies.forEach { it.dispatch { it.startIfReady() } }
               }
 
               override fun terminated(from: State) {
+                val stopStartedNanos = stopNanos.get()
+                if (stopStartedNanos != 0L) stopDuration = Duration.ofNanos(System.nanoTime() - stopStartedNanos)
                 outerService.notifyStopped()
-                directDependsOn.forEach { it.stopIfReady() }
+                directDependsOn.forEach { it.dispatch { it.stopIfReady() } }
               }
 
               override fun failed(from: State, failure: Throwable) {
                 outerService.notifyFailed(failure)
-                directDependsOn.forEach { it.stopIfReady() }
+                directDependsOn.forEach { it.dispatch { it.stopIfReady() } }
               }
             },
             MoreExecutors.directExecutor(),
@@ -91,6 +115,22 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
   /** Used to track internally if this [CoordinatedService] has invoked [startAsync] on the inner [Service] [service] */
   private val innerServiceStarted = AtomicBoolean(false)
 
+  /** When [startAsync] was invoked on the inner service. */
+  @Volatile private var startNanos = 0L
+
+  /** When [stopAsync] was first invoked on the inner service, or 0 if it hasn't been. */
+  private val stopNanos = AtomicLong()
+
+  /** How long the inner service took to start, or null if it hasn't started. */
+  @Volatile
+  var startDuration: Duration? = null
+    private set
+
+  /** How long the inner service took to stop, or null if it hasn't stopped. */
+  @Volatile
+  var stopDuration: Duration? = null
+    private set
+
   /** Marks every [coordinatedServices] as a dependency and marks itself as directDependsOn on each service. */
   fun addDependentServices(vararg coordinatedServices: CoordinatedService) {
     // Check that this service and all dependent services are new before modifying the graph.
@@ -115,7 +155,7 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
   }
 
   override fun doStart() {
-    startIfReady()
+    dispatch { startIfReady() }
   }
 
   private fun startIfReady() {
@@ -125,13 +165,14 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
     if (canStartInner) {
       val started = innerServiceStarted.getAndSet(true)
       if (!started) {
+        startNanos = System.nanoTime()
         service.startAsync()
       }
     }
   }
 
   override fun doStop() {
-    stopIfReady()
+    dispatch { stopIfReady() }
   }
 
   private fun stopIfReady() {
@@ -139,10 +180,36 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
 
     // stopAsync can be called multiple times, with subsequent calls being ignored
     if (canStopInner) {
+      stopNanos.compareAndSet(0L, System.nanoTime())
       service.stopAsync()
     }
   }
 
+  /**
+   * Runs [action] on [executor]. A service that can't be created has already failed in [service], so that failure isn't
+   * rethrown from the executor.
+   */
+  private fun dispatch(action: () -> Unit) {
+    val task = Runnable {
+      try {
+        action()
+      } catch (e: Throwable) {
+        val state = state()
+        if (state in setOf(State.STARTING, State.RUNNING, State.STOPPING)) {
+          notifyFailed(e)
+        } else {
+          log.error(e) { "Failed to start or stop $this, which is already $state" }
+        }
+      }
+    }
+    try {
+      executor.execute(task)
+    } catch (e: RejectedExecutionException) {
+      // The service manager shuts the executor down when a service fails, but the rest still have to stop.
+      task.run()
+    }
+  }
+
   /**
    * Get the service name from the current string source. This uses the key until the service is Injected to avoid early
    * injecting the service out of band from the service graph.
@@ -175,6 +242,8 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
   }
 
   companion object {
+    private val log = getLogger<CoordinatedService>()
+
     /** CycleValidity provides states used to track dependency graph traversal and cycle detection. */
     enum class CycleValidity {
       CHECKING_FOR_CYCLES,
@@ -191,6 +260,8 @@ internal class CoordinatedService(private val key: Key<*>, private val servicePr
     CoordinatedServiceMetadata(
       dependencies = dependencies.map { it.serviceProvider.get().javaClass.name }.toSet(),
       directDependsOn = directDependsOn.map { it.serviceProvider.get().javaClass.name }.toSet(),
+      startDurationMillis = startDuration?.toMillis(),
+      stopDurationMillis = stopDuration?.toMillis(),
     )
   }
 }
@@ -7,5 +7,11 @@ data class ServiceManagerConfig
 @JvmOverloads
 constructor(
   /** If true, writes the full graph of [ServiceModule] services and their dependencies to info-level logs. */
-  val debug_service_graph: Boolean = false
+  val debug_service_graph: Boolean = false,
+  /**
+   * If true, services are created, started and stopped on a dedicated thread pool as soon as the services they depend
+   * on are ready, so independent branches of the graph don't wait on each other. Otherwise each service is started on
+   * the thread that made it ready, which serializes services that do their work in `doStart()`.
+   */
+  val parallel_service_startup: Boolean = false,
 ) : Config
@@ -3,10 +3,14 @@ package misk
 import com.google.common.util.concurrent.MoreExecutors.directExecutor
 import com.google.common.util.concurrent.Service
 import com.google.common.util.concurrent.ServiceManager
+import com.google.common.util.concurrent.ThreadFactoryBuilder
 import com.google.inject.Injector
 import com.google.inject.Provides
 import com.google.inject.Scopes
 import jakarta.inject.Singleton
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
 import misk.inject.KAbstractModule
 import misk.inject.asSingleton
 import misk.logging.getLogger
@@ -58,6 +62,28 @@ constructor(private val serviceManagerConfig: ServiceManagerConfig = ServiceMana
       log.info { "Service dependency graph:\n$builder" }
     }
 
+    serviceManager.addListener(
+      object : ServiceManager.Listener() {
+        override fun healthy() {
+          log.info { "Services started; critical path: ${builder.describeStartupCriticalPath()}" }
+        }
+      },
+      directExecutor(),
+    )
+    (builder.executor as? ExecutorService)?.let { executor ->
+      serviceManager.addListener(
+        object : ServiceManager.Listener() {
+          override fun stopped() {
+            executor.shutdown()
+          }
+
+          override fun failure(service: Service) {
+            executor.shutdown()
+          }
+        },
+        directExecutor(),
+      )
+    }
     listeners.forEach { serviceManager.addListener(it, directExecutor()) }
     return serviceManager
   }
@@ -76,7 +102,7 @@ constructor(private val serviceManagerConfig: ServiceManagerConfig = ServiceMana
     optionalEnhancements: List<OptionalEnhancementEdge>,
   ): ServiceGraphBuilder {
     val invalidServices = mutableListOf<String>()
-    val builder = ServiceGraphBuilder()
+    val builder = ServiceGraphBuilder(serviceGraphExecutor())
 
     // Support the new ServiceModule API.
     // Combine regular and optional entries, filtering out nulls from disabled conditional services
@@ -118,5 +144,16 @@ constructor(private val serviceManagerConfig: ServiceManagerConfig = ServiceMana
     return builder
   }
 
+  /**
+   * Services only run on this while they're being created, started or stopped, so its threads are daemons that are
+   * released when idle. The service manager shuts it down once services have stopped or one has failed.
+   */
+  private fun serviceGraphExecutor(): Executor {
+    if (!serviceManagerConfig.parallel_service_startup) return directExecutor()
+    return Executors.newCachedThreadPool(
+      ThreadFactoryBuilder().setNameFormat("misk-service-graph-%d").setDaemon(true).build()
+    )
+  }
+
   @Provides @Singleton internal fun provideServiceGraphMetadata(builder: ServiceGraphBuilder) = builder.toMetadata()
 }
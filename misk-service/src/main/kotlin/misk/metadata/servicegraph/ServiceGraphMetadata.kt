@@ -26,8 +26,13 @@ data class ServiceGraphMetadata(val builderMetadata: ServiceGraphBuilderMetadata
    */
   val graphVisual by lazy { generateGraphVisual() }
 
+  /** How long each service took to start and stop, slowest to start first. Evaluated lazily like [graphVisual]. */
+  val serviceDurations by lazy { generateServiceDurations() }
+
   data class GraphPairs(val source: String, val target: String)
 
+  data class ServiceDurations(val service: String, val startDurationMillis: Long?, val stopDurationMillis: Long?)
+
   private fun extractType(input: String): String {
     // Find the start index of the type
     val typeStartIndex = input.indexOf("type=")
@@ -52,6 +57,15 @@ data class ServiceGraphMetadata(val builderMetadata: ServiceGraphBuilderMetadata
 
     return output
   }
+
+  private fun generateServiceDurations(): List<ServiceDurations> {
+    return builderMetadata.serviceMap
+      .map { (key, value) ->
+        val metadata = value.get()
+        ServiceDurations(extractType(key), metadata.startDurationMillis, metadata.stopDurationMillis)
+      }
+      .sortedByDescending { it.startDurationMillis ?: -1L }
+  }
 }
 
 internal class ServiceGraphMetadataProvider : MetadataProvider<ServiceGraphMetadata> {
@@ -5,6 +5,9 @@ import com.google.common.util.concurrent.Service
 import com.google.inject.Key
 import com.google.inject.name.Named
 import com.google.inject.name.Names
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import kotlin.test.assertFailsWith
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.Test
@@ -417,6 +420,34 @@ class ServiceGraphBuilderTest {
       )
   }
 
+  @Test
+  fun independentServicesStartConcurrently() {
+    // Each root blocks its start until the other has started too, which only works if they start concurrently.
+    val bothStarting = CountDownLatch(2)
+    val executor = Executors.newCachedThreadPool()
+    val builder =
+      ServiceGraphBuilder(executor).apply {
+        addService(keyA, LatchedService(bothStarting, startMillis = 50))
+        addService(keyB, LatchedService(bothStarting, startMillis = 0))
+        addService(keyC, AppendingService(StringBuilder(), keyC.name))
+        addDependency(dependent = keyC, dependsOn = keyA)
+        addDependency(dependent = keyC, dependsOn = keyB)
+      }
+    val serviceManager = builder.build()
+
+    serviceManager.startAsync()
+    serviceManager.awaitHealthy(5, TimeUnit.SECONDS)
+
+    assertThat(builder.startupCriticalPath()).containsExactly(keyA, keyC)
+    val metadata = builder.toMetadata().serviceMap
+    assertThat(metadata.getValue(keyA.toString()).get().startDurationMillis).isGreaterThanOrEqualTo(50)
+
+    serviceManager.stopAsync()
+    serviceManager.awaitStopped(5, TimeUnit.SECONDS)
+    assertThat(metadata.values.map { it.get().stopDurationMillis }).doesNotContainNull()
+    executor.shutdown()
+  }
+
   @Test
   fun canPrettyPrintTheGraphForDebugging() {
     val graph =
@@ -539,6 +570,20 @@ class ServiceGraphBuilderTest {
     override fun toString() = name
   }
 
+  /** LatchedService is a [Service] that starts once [latch] counts down, then takes [startMillis] to finish starting. */
+  class LatchedService(private val latch: CountDownLatch, private val startMillis: Long) : AbstractService() {
+    override fun doStart() {
+      latch.countDown()
+      check(latch.await(5, TimeUnit.SECONDS)) { "services started one at a time" }
+      Thread.sleep(startMillis)
+      notifyStarted()
+    }
+
+    override fun doStop() {
+      notifyStopped()
+    }
+  }
+
   /** A `Key<Service>` named [name]. */
   private fun key(name: String) = Key.get(Service::class.java, Names.named(name))
 
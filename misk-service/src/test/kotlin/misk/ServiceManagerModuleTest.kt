@@ -9,6 +9,7 @@ import com.google.inject.Provides
 import com.google.inject.Scopes
 import jakarta.inject.Inject
 import jakarta.inject.Singleton
+import java.util.concurrent.TimeUnit
 import kotlin.test.assertFailsWith
 import misk.inject.KAbstractModule
 import misk.inject.getInstance
@@ -251,4 +252,49 @@ internal class ServiceManagerModuleTest {
           .trimMargin()
       )
   }
+
+  @Test
+  fun parallelStartupReleasesItsThreadsOnceServicesStop() {
+    val injector =
+      Guice.createInjector(
+        ServiceManagerModule(ServiceManagerConfig(parallel_service_startup = true)),
+        object : KAbstractModule() {
+          override fun configure() {
+            install(ServiceModule<ThreadRecordingService>())
+          }
+        },
+      )
+
+    val serviceManager = injector.getInstance<ServiceManager>()
+    serviceManager.startAsync()
+    serviceManager.awaitHealthy()
+    assertThat(injector.getInstance<ThreadRecordingService>().startThread).startsWith(SERVICE_GRAPH_THREAD)
+    serviceManager.stopAsync()
+    serviceManager.awaitStopped()
+
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+    while (serviceGraphThreads().isNotEmpty() && System.nanoTime() < deadline) Thread.sleep(10)
+    assertThat(serviceGraphThreads()).isEmpty()
+  }
+
+  private fun serviceGraphThreads() =
+    Thread.getAllStackTraces().keys.filter { it.name.startsWith(SERVICE_GRAPH_THREAD) }
+
+  @Singleton
+  class ThreadRecordingService : AbstractService() {
+    @Volatile var startThread: String? = null
+
+    override fun doStart() {
+      startThread = Thread.currentThread().name
+      notifyStarted()
+    }
+
+    override fun doStop() {
+      notifyStopped()
+    }
+  }
+
+  private companion object {
+    const val SERVICE_GRAPH_THREAD = "misk-service-graph-"
+  }
 }
@@ -0,0 +1,144 @@
+package misk.vitess
+
+import java.util.function.ToLongFunction
+
+/**
+ * Routes ids to the shards of one keyspace, like [Shard.contains] does for one shard, but without scanning shards or
+ * comparing byte strings.
+ *
+ * The router keeps the lower bound of each shard as a long, sorted, and binary-searches it for each keyspace ID. The
+ * bulk methods route a whole batch into per-shard arrays, so batched writes can be split by shard without allocating
+ * per id.
+ *
+ * Build routers with [forKeyspace] or [ShardsLoader.shardRouters]. The shards must cover every keyspace ID exactly
+ * once, as a keyspace's serving shards do.
+ */
+class ShardRouter private constructor(val keyspace: Keyspace, shards: Collection<Shard>) {
+  /** This keyspace's shards, ordered by key range. */
+  val shards: List<Shard>
+
+  /** The lower bound of each shard in [shards], with the sign bit flipped so signed order is unsigned key order. */
+  private val lowerBounds: LongArray
+
+  init {
+    val sorted = shards.map { it to bounds(it) }.sortedWith { a, b -> a.second.lower.compareTo(b.second.lower) }
+    require(sorted.isNotEmpty()) { "no shards for keyspace $keyspace" }
+    for ((index, entry) in sorted.withIndex()) {
+      val (shard, bounds) = entry
+      require(shard.keyspace == keyspace) { "$shard isn't in keyspace $keyspace" }
+      val expectedLower = if (index == 0) Long.MIN_VALUE else sorted[index - 1].second.upper
+      require(index < sorted.size - 1 || bounds.upper == null) { "shards of $keyspace don't cover keys after $shard" }
+      require(bounds.lower == expectedLower) {
+        if (index == 0) "shards of $keyspace don't cover keys before $shard"
+        else "shards ${sorted[index - 1].first} and $shard of $keyspace don't meet"
+      }
+    }
+    this.shards = sorted.map { it.first }
+    this.lowerBounds = LongArray(sorted.size) { sorted[it].second.lower }
+  }
+
+  /** Returns the shard that [id] is stored on, after hashing it like Vitess's `hash` vindex. */
+  fun shardForId(id: Long): Shard = shards[shardIndexForId(id)]
+
+  /** Returns the shard that owns [keyspaceId]. */
+  fun shardForKeyspaceId(keyspaceId: Shard.Key): Shard = shards[shardIndexForKeyspaceId(toLong(keyspaceId))]
+
+  /** Returns the index in [shards] of the shard that [id] is stored on. */
+  fun shardIndexForId(id: Long): Int = shardIndexForKeyspaceId(VitessHash.toKeyspaceIdLong(id))
+
+  /** Returns the index in [shards] of the shard that owns [keyspaceId], a big-endian 8 byte keyspace ID. */
+  fun shardIndexForKeyspaceId(keyspaceId: Long): Int {
+    // Find the last lower bound at or below the key. The first lower bound is the smallest key, so there always is one.
+    val key = keyspaceId xor Long.MIN_VALUE
+    var low = 0
+    var high = lowerBounds.size - 1
+    while (low < high) {
+      val mid = (low + high + 1) ushr 1
+      if (lowerBounds[mid] <= key) low = mid else high = mid - 1
+    }
+    return low
+  }
+
+  /**
+   * Writes the index in [shards] of each id in [ids] to the same position of [shardIndexes], which must be at least as
+   * long as [ids].
+   */
+  fun shardIndexes(ids: LongArray, shardIndexes: IntArray) {
+    require(shardIndexes.size >= ids.size) { "shardIndexes is shorter than ids: ${shardIndexes.size} < ${ids.size}" }
+    for (i in ids.indices) shardIndexes[i] = shardIndexForId(ids[i])
+  }
+
+  /** Splits [ids] by the shard they're stored on, keeping their order. Shards with no ids are left out. */
+  fun groupByShard(ids: LongArray): Map<Shard, LongArray> {
+    val shardIndexes = IntArray(ids.size)
+    shardIndexes(ids, shardIndexes)
+    val counts = countPerShard(shardIndexes)
+    val groups = Array(shards.size) { LongArray(counts[it]) }
+    val positions = IntArray(shards.size)
+    for (i in ids.indices) {
+      val shardIndex = shardIndexes[i]
+      groups[shardIndex][positions[shardIndex]++] = ids[i]
+    }
+    return toShardMap(counts) { groups[it] }
+  }
+
+  /** Splits [items] by the shard that the id returned by [id] is stored on, keeping their order. */
+  fun <T> groupByShard(items: List<T>, id: ToLongFunction<in T>): Map<Shard, List<T>> {
+    val shardIndexes = IntArray(items.size)
+    for ((i, item) in items.withIndex()) shardIndexes[i] = shardIndexForId(id.applyAsLong(item))
+    val counts = countPerShard(shardIndexes)
+    val groups = Array(shards.size) { ArrayList<T>(counts[it]) }
+    for ((i, item) in items.withIndex()) groups[shardIndexes[i]].add(item)
+    return toShardMap(counts) { groups[it] }
+  }
+
+  private fun countPerShard(shardIndexes: IntArray): IntArray {
+    val counts = IntArray(shards.size)
+    for (shardIndex in shardIndexes) counts[shardIndex]++
+    return counts
+  }
+
+  private inline fun <V> toShardMap(counts: IntArray, group: (Int) -> V): Map<Shard, V> {
+    val result = LinkedHashMap<Shard, V>()
+    for (i in shards.indices) {
+      if (counts[i] > 0) result[shards[i]] = group(i)
+    }
+    return result
+  }
+
+  override fun toString() = "ShardRouter($keyspace, $shards)"
+
+  /** A shard's key range as flipped longs; [upper] is null if the shard has no upper bound. */
+  private class Bounds(val lower: Long, val upper: Long?)
+
+  companion object {
+    /** Returns a router over the shards of [keyspace] in [shards], which may include shards of other keyspaces. */
+    @JvmStatic
+    fun forKeyspace(keyspace: Keyspace, shards: Collection<Shard>): ShardRouter =
+      ShardRouter(keyspace, shards.filter { it.keyspace == keyspace })
+
+    /** Returns a router for each keyspace in [shards], such as the shards returned by [ShardsLoader.shards]. */
+    @JvmStatic
+    fun byKeyspace(shards: Collection<Shard>): Map<Keyspace, ShardRouter> =
+      shards.groupBy { it.keyspace }.mapValues { (keyspace, keyspaceShards) -> ShardRouter(keyspace, keyspaceShards) }
+
+    private fun bounds(shard: Shard): Bounds {
+      if (shard.name == Shard.SINGLE_SHARD_ID) return Bounds(Long.MIN_VALUE, null)
+      val (lower, upper) = shard.name.split("-", limit = 2)
+      return Bounds(
+        lower = if (lower.isEmpty()) Long.MIN_VALUE else toLong(Shard.Key(lower)) xor Long.MIN_VALUE,
+        upper = if (upper.isEmpty()) null else toLong(Shard.Key(upper)) xor Long.MIN_VALUE,
+      )
+    }
+
+    /** Returns [key] as a big-endian long, padded with zeroes on the right like Vitess left-justifies keys. */
+    private fun toLong(key: Shard.Key): Long {
+      var result = 0L
+      for (i in 0 until Shard.MAX_LENGTH) {
+        val byte = if (i < key.bytes.size) key.bytes[i].toLong() and 0xff else 0L
+        result = (result shl 8) or byte
+      }
+      return result
+    }
+  }
+}
@@ -9,6 +9,7 @@ import java.sql.SQLRecoverableException
 import java.sql.SQLTimeoutException
 import java.sql.SQLTransientException
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicReference
 import kotlin.random.Random
 import misk.jdbc.DataSourceService
 import misk.jdbc.mapNotNull
@@ -37,6 +38,23 @@ object ShardsLoader {
     }
   }
 
+  /**
+   * Returns a [ShardRouter] for each keyspace in [shards]. The routers are rebuilt only when the shards are reloaded.
+   */
+  fun shardRouters(dataSourceService: DataSourceService): Supplier<Map<Keyspace, ShardRouter>> {
+    val shards = shards(dataSourceService)
+    val routers = AtomicReference<Pair<Set<Shard>, Map<Keyspace, ShardRouter>>?>()
+    return Supplier {
+      val current = shards.get()
+      val cached = routers.get()
+      if (cached != null && cached.first === current) {
+        cached.second
+      } else {
+        ShardRouter.byKeyspace(current).also { routers.set(current to it) }
+      }
+    }
+  }
+
   private fun loadVitessShards(dataSourceService: DataSourceService): Set<Shard> {
     val maxRetries = 3
     var lastException: Exception? = null
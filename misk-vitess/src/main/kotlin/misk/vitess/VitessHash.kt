@@ -45,6 +45,42 @@ internal object VitessHash {
     }
   }
 
+  /**
+   * Like [toKeyspaceId], but returns the keyspace ID as a big-endian long. This reuses a cipher and buffer per thread
+   * so hashing many ids doesn't allocate.
+   */
+  fun toKeyspaceIdLong(id: Long): Long {
+    val encryptor = encryptors.get()
+    val buffer = encryptor.buffer
+    for (i in 0 until 8) buffer[i] = (id ushr (56 - 8 * i)).toByte()
+    try {
+      // doFinal resets the cipher to its initialized state, so it can be reused for the next id.
+      encryptor.cipher.doFinal(buffer, 0, 8, buffer, 8)
+    } catch (e: GeneralSecurityException) {
+      throw AssertionError("Should be fine", e)
+    }
+    var keyspaceId = 0L
+    for (i in 8 until 16) keyspaceId = (keyspaceId shl 8) or (buffer[i].toLong() and 0xff)
+    return keyspaceId
+  }
+
+  private val encryptors =
+    ThreadLocal.withInitial {
+      try {
+        val tripleDes = Cipher.getInstance(TRIPLE_DES)
+        checkState(tripleDes.blockSize == 8)
+        tripleDes.init(Cipher.ENCRYPT_MODE, NULL_KEY, NULL_SALT)
+        Encryptor(tripleDes)
+      } catch (e: GeneralSecurityException) {
+        throw AssertionError("Should be fine", e)
+      }
+    }
+
+  /** A cipher and a buffer holding its 8 byte input followed by its 8 byte output. */
+  private class Encryptor(val cipher: Cipher) {
+    val buffer = ByteArray(16)
+  }
+
   /*
   Port of:
   go/vt/vtgate/vindexes/hash.go
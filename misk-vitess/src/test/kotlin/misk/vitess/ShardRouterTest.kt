@@ -0,0 +1,74 @@
+package misk.vitess
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class ShardRouterTest {
+  private val keyspace = Keyspace("myKeyspace")
+  private val otherKeyspace = Keyspace("otherKeyspace")
+
+  @Test
+  fun routesLikeShardContains() {
+    val shards = shards(keyspace, "-40", "40-80", "80-c0f0", "c0f0-")
+    val router = ShardRouter.forKeyspace(keyspace, shards)
+
+    for (id in (-1000L..1000L) + listOf(Long.MIN_VALUE, Long.MAX_VALUE)) {
+      val keyspaceId = Shard.Key.hash(id)
+      val expected = shards.single { keyspaceId in it }
+      assertThat(router.shardForId(id)).isEqualTo(expected)
+      assertThat(router.shardForKeyspaceId(keyspaceId)).isEqualTo(expected)
+    }
+  }
+
+  @Test
+  fun boundariesBelongToTheUpperShard() {
+    val router = ShardRouter.forKeyspace(keyspace, shards(keyspace, "-80", "80-"))
+
+    assertThat(router.shardForKeyspaceId(Shard.Key("7fffffffffffffff"))).isEqualTo(Shard(keyspace, "-80"))
+    assertThat(router.shardForKeyspaceId(Shard.Key("80"))).isEqualTo(Shard(keyspace, "80-"))
+    assertThat(router.shardForKeyspaceId(Shard.Key("ffffffffffffffff"))).isEqualTo(Shard(keyspace, "80-"))
+  }
+
+  @Test
+  fun singleShard() {
+    val router = ShardRouter.forKeyspace(Shard.SINGLE_KEYSPACE, Shard.SINGLE_SHARD_SET)
+
+    assertThat(router.shardForId(1)).isEqualTo(Shard.SINGLE_SHARD)
+    assertThat(router.shardForId(-1)).isEqualTo(Shard.SINGLE_SHARD)
+  }
+
+  @Test
+  fun groupsIdsByShard() {
+    val router = ShardRouter.forKeyspace(keyspace, shards(keyspace, "-40", "40-80", "80-c0", "c0-"))
+    val ids = LongArray(100) { it.toLong() }
+
+    val groups = router.groupByShard(ids)
+
+    assertThat(groups.values.sumOf { it.size }).isEqualTo(ids.size)
+    for ((shard, shardIds) in groups) {
+      assertThat(shardIds).isSorted()
+      for (id in shardIds) assertThat(Shard.Key.hash(id) in shard).isTrue()
+    }
+    assertThat(router.groupByShard(listOf("1", "2", "3")) { it.toLong() }.mapValues { (_, items) -> items.size })
+      .isEqualTo(router.groupByShard(longArrayOf(1, 2, 3)).mapValues { (_, items) -> items.size })
+  }
+
+  @Test
+  fun routersPerKeyspace() {
+    val routers = ShardRouter.byKeyspace(shards(keyspace, "-80", "80-") + shards(otherKeyspace, "0"))
+
+    assertThat(routers.getValue(keyspace).shards).containsExactly(Shard(keyspace, "-80"), Shard(keyspace, "80-"))
+    assertThat(routers.getValue(otherKeyspace).shards).containsExactly(Shard(otherKeyspace, "0"))
+  }
+
+  @Test
+  fun rejectsShardsThatDontCoverTheKeyspace() {
+    assertThrows<IllegalArgumentException> { ShardRouter.forKeyspace(keyspace, shards(keyspace, "-40", "80-")) }
+    assertThrows<IllegalArgumentException> { ShardRouter.forKeyspace(keyspace, shards(keyspace, "40-")) }
+    assertThrows<IllegalArgumentException> { ShardRouter.forKeyspace(keyspace, shards(keyspace, "-80")) }
+    assertThrows<IllegalArgumentException> { ShardRouter.forKeyspace(keyspace, shards(otherKeyspace, "0")) }
+  }
+
+  private fun shards(keyspace: Keyspace, vararg names: String) = names.map { Shard(keyspace, it) }.toSet()
+}
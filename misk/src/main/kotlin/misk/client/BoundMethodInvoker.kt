@@ -0,0 +1,30 @@
+package misk.client
+
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+
+/**
+ * Calls [method] on [receiver] through a [MethodHandle] that's resolved once, when the client is built.
+ *
+ * Dynamic proxies dispatch every call through [Method.invoke], which checks access and boxes its arguments on each
+ * call. A bound handle does that work up front. Unlike [Method.invoke], it throws the method's exceptions as they are,
+ * rather than wrapped in an [java.lang.reflect.InvocationTargetException].
+ */
+internal class BoundMethodInvoker(method: Method, receiver: Any) {
+  private val handle: MethodHandle =
+    MethodHandles.lookup()
+      .unreflect(method)
+      .bindTo(receiver)
+      .asSpreader(Array<Any?>::class.java, method.parameterCount)
+      .asType(MethodType.methodType(Any::class.java, Array<Any?>::class.java))
+
+  fun invoke(args: Array<out Any?>?): Any? {
+    return handle.invokeExact(args ?: NO_ARGS)
+  }
+
+  private companion object {
+    val NO_ARGS = arrayOf<Any?>()
+  }
+}
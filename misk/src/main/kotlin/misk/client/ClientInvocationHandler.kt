@@ -93,6 +93,12 @@ internal class ClientInvocationHandler(
       }
       .toMap()
 
+  /** Binds each interface method to its retrofit proxy once, so calls don't look it up by name or reflect. */
+  private val invokersByMethod: Map<Method, BoundMethodInvoker> =
+    interfaceType.java.methods
+      .mapNotNull { method -> proxiesByMethod[method.name]?.let { method to BoundMethodInvoker(method, it) } }
+      .toMap()
+
   init {
     require(actionsByMethod.isNotEmpty()) { "$interfaceType is not a Retrofit interface (no @POST or @GET methods)" }
   }
@@ -113,14 +119,12 @@ internal class ClientInvocationHandler(
       .filterNot { it == MediaTypes.APPLICATION_JSON }
   }
 
-  override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any {
-    val argsList = args?.toList() ?: listOf()
-
-    val retrofitProxy =
-      proxiesByMethod[method.name]
+  override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any? {
+    val invoker =
+      invokersByMethod[method]
         ?: throw IllegalStateException("no action corresponding to ${interfaceType.qualifiedName}#${method.name}")
 
-    return method.invoke(retrofitProxy, *argsList.toTypedArray())
+    return invoker.invoke(args)
   }
 }
 
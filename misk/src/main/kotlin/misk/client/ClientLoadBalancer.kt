@@ -0,0 +1,181 @@
+package misk.client
+
+import com.google.common.base.Ticker
+import com.google.common.net.HostAndPort
+import java.net.UnknownHostException
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.exp
+import misk.logging.getLogger
+import okhttp3.Dns
+
+/**
+ * Picks a backend for each call to an endpoint using power of two choices: of two randomly picked backends, it returns
+ * the one with the lower peak moving average latency, weighted by its outstanding calls.
+ *
+ * It also tracks the latency of recent calls across all backends, for [hedgeDelayNanos].
+ *
+ * @param host the host of the endpoint's url, resolved when [HttpClientLoadBalancerConfig.resolveDns] is set.
+ */
+internal class ClientLoadBalancer(
+  private val config: HttpClientLoadBalancerConfig,
+  private val host: String,
+  private val ticker: Ticker = Ticker.systemTicker(),
+  private val dns: Dns = Dns.SYSTEM,
+) {
+  @Volatile
+  internal var backends: List<Backend> = config.backends.map { Backend.parse(it) }
+    private set
+  private val nextDnsRefreshNanos = AtomicLong(ticker.read())
+
+  private val recentLatencies = LongArray(LATENCY_SAMPLES)
+  private var latencyCount = 0L
+  @Volatile private var latencyPercentileNanos = -1L
+
+  /** Returns the backend for the next call. */
+  fun choose(): Backend {
+    refreshDnsIfDue()
+    val backends = backends
+    if (backends.isEmpty()) throw UnknownHostException("no backends for $host")
+    return pickTwo(backends)
+  }
+
+  /** Returns a backend other than [exclude] for a hedged call, or null if there is none. */
+  fun chooseOther(exclude: Backend): Backend? {
+    val others = backends.filter { it !== exclude }
+    if (others.isEmpty()) return null
+    return pickTwo(others)
+  }
+
+  /** Returns whether [host] is one of the addresses that this balancer resolved its host to. */
+  fun isResolvedAddress(host: String) = config.resolveDns && backends.any { it.host == host }
+
+  /** Records that a call to [backend] started. */
+  fun started(backend: Backend) {
+    backend.outstanding.incrementAndGet()
+  }
+
+  /** Records that a call to [backend] was canceled, which says nothing about how fast or healthy the backend is. */
+  fun canceled(backend: Backend) {
+    backend.outstanding.decrementAndGet()
+  }
+
+  /** Records that a call to [backend] completed after [latencyNanos], or failed if [failed]. */
+  fun finished(backend: Backend, latencyNanos: Long, failed: Boolean) {
+    backend.outstanding.decrementAndGet()
+    // Count failures as slow so a backend that fails fast doesn't attract more calls.
+    backend.recordLatency(
+      if (failed) maxOf(latencyNanos, FAILURE_LATENCY_NANOS) else latencyNanos,
+      ticker.read(),
+      config.latencyDecay.toNanos(),
+    )
+    val hedging = config.hedging
+    if (!failed && hedging != null) recordLatency(latencyNanos, hedging.percentile)
+  }
+
+  /**
+   * Returns how long a call should wait before it's hedged: the configured percentile of recent latencies, but no less
+   * than the configured minimum. Returns null if hedging is off or too few calls have completed to tell.
+   */
+  fun hedgeDelayNanos(): Long? {
+    val hedging = config.hedging ?: return null
+    val percentile = latencyPercentileNanos
+    if (percentile < 0) return null
+    return maxOf(percentile, hedging.minDelay.toNanos())
+  }
+
+  private fun pickTwo(backends: List<Backend>): Backend {
+    if (backends.size == 1) return backends[0]
+    val random = ThreadLocalRandom.current()
+    val first = random.nextInt(backends.size)
+    // Pick a different second backend by skipping over the first.
+    val second = (first + 1 + random.nextInt(backends.size - 1)) % backends.size
+    val a = backends[first]
+    val b = backends[second]
+    val aLatency = a.latencyEwmaNanos
+    val bLatency = b.latencyEwmaNanos
+    // Until both have completed a call, the one with fewer calls in flight is less loaded.
+    if (aLatency < 0 || bLatency < 0) return if (b.outstanding.get() < a.outstanding.get()) b else a
+    val aCost = aLatency * (a.outstanding.get() + 1)
+    val bCost = bLatency * (b.outstanding.get() + 1)
+    return if (bCost < aCost) b else a
+  }
+
+  @Synchronized
+  private fun recordLatency(latencyNanos: Long, percentile: Double) {
+    recentLatencies[(latencyCount % LATENCY_SAMPLES).toInt()] = latencyNanos
+    latencyCount++
+    // Sorting on every call would cost more than the percentile drifts between updates.
+    if (latencyCount >= MIN_LATENCY_SAMPLES && latencyCount % PERCENTILE_INTERVAL == 0L) {
+      val samples = recentLatencies.copyOf(minOf(latencyCount, LATENCY_SAMPLES.toLong()).toInt())
+      samples.sort()
+      latencyPercentileNanos = samples[((samples.size - 1) * percentile).toInt()]
+    }
+  }
+
+  private fun refreshDnsIfDue() {
+    if (!config.resolveDns) return
+    val now = ticker.read()
+    val next = nextDnsRefreshNanos.get()
+    if (now - next < 0 || !nextDnsRefreshNanos.compareAndSet(next, now + config.dnsRefreshInterval.toNanos())) return
+
+    val addresses =
+      try {
+        dns.lookup(host).map { it.hostAddress }
+      } catch (e: UnknownHostException) {
+        // Keep calling the backends we know about until the host resolves again.
+        logger.warn(e) { "Failed to resolve backends of $host" }
+        return
+      }
+    // Keep the stats of backends that are still there.
+    val existing = backends.associateBy { it.host }
+    backends = addresses.distinct().map { existing[it] ?: Backend(it, port = null) }
+  }
+
+  /** A backend that calls may be sent to. If [port] is null, calls keep their url's port. */
+  internal class Backend(val host: String, val port: Int?) {
+    val outstanding = AtomicInteger()
+
+    /** The moving average latency of calls to this backend, or -1 if none have completed. */
+    @Volatile
+    var latencyEwmaNanos = -1.0
+      private set
+
+    private var lastUpdateNanos = 0L
+
+    @Synchronized
+    fun recordLatency(latencyNanos: Long, nowNanos: Long, decayNanos: Long) {
+      val previous = latencyEwmaNanos
+      latencyEwmaNanos =
+        if (previous < 0 || latencyNanos > previous) {
+          // Jump to slower latencies right away so a backend that slows down stops getting calls quickly.
+          latencyNanos.toDouble()
+        } else {
+          // Weigh the previous average by how recently it was updated.
+          val weight = exp(-(nowNanos - lastUpdateNanos).toDouble() / decayNanos)
+          previous * weight + latencyNanos * (1 - weight)
+        }
+      lastUpdateNanos = nowNanos
+    }
+
+    override fun toString() = if (port == null) host else HostAndPort.fromParts(host, port).toString()
+
+    companion object {
+      fun parse(backend: String): Backend {
+        val hostAndPort = HostAndPort.fromString(backend)
+        return Backend(hostAndPort.host, if (hostAndPort.hasPort()) hostAndPort.port else null)
+      }
+    }
+  }
+
+  companion object {
+    private val logger = getLogger<ClientLoadBalancer>()
+
+    private const val LATENCY_SAMPLES = 256
+    private const val MIN_LATENCY_SAMPLES = 32
+    private const val PERCENTILE_INTERVAL = 16L
+    private val FAILURE_LATENCY_NANOS = TimeUnit.SECONDS.toNanos(1)
+  }
+}
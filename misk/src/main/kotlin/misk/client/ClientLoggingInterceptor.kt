@@ -13,6 +13,8 @@ internal class ClientLoggingInterceptor @Inject constructor() : Interceptor {
   @com.google.inject.Inject(optional = true) private val httpClientsConfig: HttpClientsConfig = HttpClientsConfig()
 
   override fun intercept(chain: Interceptor.Chain): Response {
+    // Log a hedged call once, not once per attempt.
+    if (LoadBalancingInterceptor.isAttempt(chain.call())) return chain.proceed(chain.request())
     val result = chain.proceed(chain.request())
 
     if (httpClientsConfig.logRequests) {
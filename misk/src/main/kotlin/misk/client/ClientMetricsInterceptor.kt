@@ -23,9 +23,12 @@ private constructor(
   val clientName: String,
   private val requestDurationSummary: Summary?,
   private val requestDurationHistogram: Histogram,
+  private val factory: Factory,
 ) : Interceptor {
 
   override fun intercept(chain: Interceptor.Chain): Response {
+    // Each attempt of a hedged call is recorded per backend; the call itself is recorded once.
+    if (LoadBalancingInterceptor.isAttempt(chain.call())) return chain.proceed(chain.request())
     val actionName = actionName(chain) ?: return chain.proceed(chain.request())
 
     val stopwatch = Stopwatch.createStarted(Ticker.systemTicker())
@@ -59,6 +62,21 @@ private constructor(
     }
   }
 
+  /** Records a call to one backend of a load balanced client, and that backend's current load. */
+  internal fun recordBackendCall(backend: ClientLoadBalancer.Backend, latencyNanos: Long, failed: Boolean) {
+    val name = backend.toString()
+    factory.backendRequestDurationHistogram
+      .labels(clientName, name, if (failed) "failure" else "success")
+      .observe(latencyNanos / 1_000_000.0)
+    factory.backendOutstandingRequests.labels(clientName, name).set(backend.outstanding.get().toDouble())
+    factory.backendLatencyEwma.labels(clientName, name).set(backend.latencyEwmaNanos / 1_000_000.0)
+  }
+
+  /** Records which attempt of a hedged call won. */
+  internal fun recordHedge(hedgeWon: Boolean) {
+    factory.hedgedRequests.labels(clientName, if (hedgeWon) "hedge" else "primary").inc()
+  }
+
   private fun actionName(chain: Interceptor.Chain): String? {
     val invocation = chain.request().tag(Invocation::class.java)
     if (invocation != null) return "$clientName.${invocation.method().name}"
@@ -144,8 +162,36 @@ private constructor(
         labelNames = listOf("action", "code"),
       )
 
+    internal val backendRequestDurationHistogram =
+      m.histogram(
+        name = "histo_client_backend_request_latency_ms",
+        help = "histogram in ms of outgoing client requests to each backend of a load balanced client",
+        labelNames = listOf("client", "backend", "outcome"),
+      )
+
+    internal val backendOutstandingRequests =
+      m.gauge(
+        name = "client_backend_outstanding_requests",
+        help = "outgoing client requests in flight to each backend of a load balanced client",
+        labelNames = listOf("client", "backend"),
+      )
+
+    internal val backendLatencyEwma =
+      m.gauge(
+        name = "client_backend_latency_ewma_ms",
+        help = "moving average latency in ms of each backend of a load balanced client",
+        labelNames = listOf("client", "backend"),
+      )
+
+    internal val hedgedRequests =
+      m.counter(
+        name = "client_hedged_requests_total",
+        help = "count of hedged outgoing client requests, by which attempt won",
+        labelNames = listOf("client", "winner"),
+      )
+
     fun create(clientName: String) =
-      ClientMetricsInterceptor(clientName, requestDurationSummary, requestDurationHistogram)
+      ClientMetricsInterceptor(clientName, requestDurationSummary, requestDurationHistogram, this)
   }
 
   private class TrailerAwareResponseBody(private val delegate: ResponseBody, private val func: () -> Unit) :
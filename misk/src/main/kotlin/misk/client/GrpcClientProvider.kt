@@ -91,7 +91,7 @@ internal class GrpcClientProvider<T : Service, G : T>(
 
     val clientPrototype = httpClient.newBuilder().protocols(protocols).build()
 
-    val handlers = mutableMapOf<String, MethodInvocationHandler<T, G>>()
+    val handlers = mutableMapOf<Method, BoundMethodInvoker>()
     for (method in kclass.java.methods) {
       val handler =
         methodHandler(
@@ -103,18 +103,17 @@ internal class GrpcClientProvider<T : Service, G : T>(
           endpointConfig = endpointConfig,
           callFactoryWrappers,
         ) ?: continue
-      handlers[method.name] = handler
+      handlers[method] = handler
     }
 
     val invocationHandler =
       object : InvocationHandler {
-        override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any {
-          val args = args ?: arrayOf()
-          val handler = handlers[method.name]
+        override fun invoke(proxy: Any, method: Method, args: Array<out Any>?): Any? {
+          val handler = handlers[method]
           return if (handler != null) {
-            handler.method.invoke(handler.delegate, *args)
+            handler.invoke(args)
           } else {
-            method.invoke(this, *args) // equals(), hashCode(), etc.
+            method.invoke(this, *(args ?: arrayOf())) // equals(), hashCode(), etc.
           }
         }
 
@@ -158,7 +157,7 @@ internal class GrpcClientProvider<T : Service, G : T>(
     appInterceptorFactories: List<ClientApplicationInterceptorFactory>,
     endpointConfig: HttpClientEndpointConfig,
     callFactoryWrappers: List<CallFactoryWrapper>,
-  ): MethodInvocationHandler<T, G>? {
+  ): BoundMethodInvoker? {
     val action = toClientAction(method) ?: return null
 
     val clientBuilder = clientPrototype.newBuilder()
@@ -189,8 +188,6 @@ internal class GrpcClientProvider<T : Service, G : T>(
     // There should be *exactly one constructor* that takes in a grpcClient
     val delegate: G = grpcClientClass.constructors.first().call(grpcClient)
 
-    return MethodInvocationHandler(delegate, method)
+    return BoundMethodInvoker(method, delegate)
   }
-
-  private class MethodInvocationHandler<T : Service, G : T>(val delegate: G, val method: Method)
 }
@@ -10,6 +10,7 @@ import javax.net.ssl.X509TrustManager
 import misk.resources.ResourceLoader
 import misk.security.ssl.SslContextFactory
 import misk.security.ssl.SslLoader
+import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
 import okhttp3.Protocol
@@ -58,8 +59,10 @@ constructor(
     if (clientLoggingInterceptor != null) {
       builder.interceptors().add(clientLoggingInterceptor!!)
     }
-    if (serviceName != null && clientMetricsInterceptorFactory != null) {
-      builder.interceptors().add(clientMetricsInterceptorFactory!!.create(serviceName))
+    val clientMetricsInterceptor =
+      if (serviceName != null) clientMetricsInterceptorFactory?.create(serviceName) else null
+    if (clientMetricsInterceptor != null) {
+      builder.interceptors().add(clientMetricsInterceptor)
     }
     okHttpClientCommonConfigurator.configure(builder = builder, config = config)
     config.clientConfig.ssl?.let {
@@ -102,11 +105,36 @@ constructor(
 
     okhttpInterceptors?.let { builder.interceptors().addAll(it.get()) }
 
+    config.loadBalancer?.let { configureLoadBalancing(builder, config, it, clientMetricsInterceptor) }
+
     proxySelector?.let { builder.proxySelector(it) }
 
     return builder.build()
   }
 
+  private fun configureLoadBalancing(
+    builder: OkHttpClient.Builder,
+    config: HttpClientEndpointConfig,
+    loadBalancerConfig: HttpClientLoadBalancerConfig,
+    clientMetricsInterceptor: ClientMetricsInterceptor?,
+  ) {
+    require(config.clientConfig.unixSocketFile == null) {
+      "Setting both `loadBalancer` and `unixSocketFile` on `HttpClientEndpointConfig` is not supported!"
+    }
+    val host = config.url!!.toHttpUrl().host
+    val balancer = ClientLoadBalancer(loadBalancerConfig, host)
+    // Added last so it runs after the other application interceptors and picks a backend per attempt.
+    builder.interceptors().add(LoadBalancingInterceptor(balancer, loadBalancerConfig, clientMetricsInterceptor))
+
+    if (loadBalancerConfig.resolveDns) {
+      // Calls go to the host's addresses, but its certificates are issued for the host.
+      val hostnameVerifier = unconfiguredClient.hostnameVerifier
+      builder.hostnameVerifier { hostname, session ->
+        hostnameVerifier.verify(if (balancer.isResolvedAddress(hostname)) host else hostname, session)
+      }
+    }
+  }
+
   companion object {
     private val unconfiguredClient = OkHttpClient()
   }
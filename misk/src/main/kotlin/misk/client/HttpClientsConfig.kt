@@ -39,6 +39,7 @@ constructor(
       url = endpointConfig.url,
       envoy = endpointConfig.envoy,
       clientConfig = allMatchingConfigs,
+      loadBalancer = endpointConfig.loadBalancer,
     )
   }
 
@@ -128,9 +129,12 @@ constructor(
   val url: String? = null,
   val envoy: HttpClientEnvoyConfig? = null,
   val clientConfig: HttpClientConfig = HttpClientConfig(),
+  /** Spreads calls to [url] over several backends, bypassing any load balancer in front of them. */
+  val loadBalancer: HttpClientLoadBalancerConfig? = null,
 ) {
   init {
     require(url == null || envoy == null) { "Cannot set both url and envoy configs" }
+    require(loadBalancer == null || url != null) { "loadBalancer requires a url" }
   }
 
   @Deprecated("Use clientConfig property", replaceWith = ReplaceWith("clientConfig.connectTimeout"))
@@ -174,6 +178,59 @@ constructor(
     get() = clientConfig.ssl
 }
 
+/**
+ * Client-side load balancing for an endpoint. Each call goes to the less loaded of two randomly picked backends, judged
+ * by their outstanding calls and a moving average of their latency.
+ */
+data class HttpClientLoadBalancerConfig
+@JvmOverloads
+constructor(
+  /** Backends to send calls to, as `host:port` or `host`. Calls to a backend without a port keep the url's port. */
+  val backends: List<String> = listOf(),
+
+  /**
+   * If true, the backends are the addresses that the url's host resolves to, refreshed every [dnsRefreshInterval].
+   * Calls keep the url's host in their `Host` header, and TLS certificates are verified against it.
+   */
+  val resolveDns: Boolean = false,
+  val dnsRefreshInterval: Duration = Duration.ofSeconds(30),
+
+  /** How quickly a backend's average latency forgets older calls. */
+  val latencyDecay: Duration = Duration.ofSeconds(10),
+
+  /** If set, idempotent calls that are slower than usual are sent to a second backend too. */
+  val hedging: HttpClientHedgingConfig? = null,
+) {
+  init {
+    require(backends.isNotEmpty() != resolveDns) { "Set exactly one of backends or resolveDns" }
+  }
+}
+
+/**
+ * Hedging sends a call that hasn't completed after the [percentile] latency of recent calls to a second backend, and
+ * uses whichever response arrives first. The other attempt is canceled.
+ *
+ * Only calls with idempotent HTTP methods are hedged, plus calls to [idempotentPaths], like idempotent gRPC methods.
+ * Calls with one-shot or duplex request bodies, like streaming gRPC calls, are never hedged.
+ *
+ * Each attempt is a copy of the call that goes through the client's OkHttp interceptors again. Misk's logging and
+ * metrics interceptors see the call once, but other interceptors added to the client see the call and then each of its
+ * attempts: twice for a call that could be hedged, and three times for one that was.
+ */
+data class HttpClientHedgingConfig
+@JvmOverloads
+constructor(
+  val percentile: Double = 0.95,
+  /** Calls are never hedged sooner than this. */
+  val minDelay: Duration = Duration.ofMillis(5),
+  /** Paths of calls that are safe to repeat, like `/routeguide.RouteGuide/GetFeature`. */
+  val idempotentPaths: List<String> = listOf(),
+) {
+  init {
+    require(percentile > 0.0 && percentile < 1.0) { "percentile must be between 0 and 1: $percentile" }
+  }
+}
+
 data class HttpClientEnvoyConfig
 @JvmOverloads
 constructor(
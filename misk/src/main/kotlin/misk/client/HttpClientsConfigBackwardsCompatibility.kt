@@ -26,6 +26,7 @@ constructor(
 
   // New fields
   val clientConfig: HttpClientConfig? = null,
+  val loadBalancer: HttpClientLoadBalancerConfig? = null,
 )
 
 data class BackwardsCompatibleClientsConfig
@@ -109,8 +110,15 @@ class BackwardsCompatibleClientsConfigConverter : StdConverter<BackwardsCompatib
             keepAliveDuration = value.keepAliveDuration,
             ssl = value.ssl,
           ),
+        loadBalancer = value.loadBalancer,
+      )
+    else
+      HttpClientEndpointConfig(
+        url = value.url,
+        envoy = value.envoy,
+        clientConfig = value.clientConfig,
+        loadBalancer = value.loadBalancer,
       )
-    else HttpClientEndpointConfig(url = value.url, envoy = value.envoy, clientConfig = value.clientConfig)
 }
 
 @Deprecated("Use default constructor")
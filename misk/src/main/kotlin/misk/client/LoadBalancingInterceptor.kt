@@ -0,0 +1,249 @@
+package misk.client
+
+import com.google.common.base.Ticker
+import com.google.common.util.concurrent.ThreadFactoryBuilder
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ScheduledThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import misk.client.ClientLoadBalancer.Backend
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.HttpUrl
+import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.Response
+
+/**
+ * Sends each call to the backend picked by [balancer], by rewriting the host and port of its url.
+ *
+ * If hedging is on, an idempotent call runs as a clone on the caller's thread. If that clone hasn't completed after the
+ * balancer's hedge delay, a second clone is enqueued on the client's dispatcher for another backend, and the first
+ * response wins. The losing clone is canceled. Clones go through the client's interceptors again, so they're marked
+ * with [isAttempt]. Misk's interceptors that run before this one skip attempts, so they see each call once.
+ *
+ * Canceled attempts aren't counted towards their backend's latency: a hedge cancels whichever attempt is slower, and
+ * the backend it was sent to may be healthy.
+ */
+internal class LoadBalancingInterceptor(
+  private val balancer: ClientLoadBalancer,
+  private val config: HttpClientLoadBalancerConfig,
+  private val metrics: ClientMetricsInterceptor?,
+  private val ticker: Ticker = Ticker.systemTicker(),
+) : Interceptor {
+  /**
+   * Sends hedges and cancels the attempts of canceled calls. Its one thread exits when idle, so a client that's no
+   * longer used leaves nothing running.
+   */
+  private val scheduler =
+    ScheduledThreadPoolExecutor(
+        1,
+        ThreadFactoryBuilder().setNameFormat("misk-client-hedging-%d").setDaemon(true).build(),
+      )
+      .apply {
+        setKeepAliveTime(1, TimeUnit.MINUTES)
+        allowCoreThreadTimeOut(true)
+        removeOnCancelPolicy = true
+      }
+
+  override fun intercept(chain: Interceptor.Chain): Response {
+    val assigned = attempts[chain.call()]
+    if (assigned != null) return proceed(chain, assigned)
+
+    val delayNanos = balancer.hedgeDelayNanos()
+    if (delayNanos == null || !isHedgeable(chain.request())) return proceed(chain, balancer.choose())
+    return hedge(chain.call(), delayNanos)
+  }
+
+  private fun proceed(chain: Interceptor.Chain, backend: Backend): Response {
+    balancer.started(backend)
+    val startNanos = ticker.read()
+    var failed = true
+    try {
+      val response = chain.proceed(rewrite(chain.request(), backend))
+      failed = false
+      return response
+    } finally {
+      if (chain.call().isCanceled()) balancer.canceled(backend) else finished(backend, startNanos, failed)
+    }
+  }
+
+  private fun finished(backend: Backend, startNanos: Long, failed: Boolean) {
+    val latencyNanos = ticker.read() - startNanos
+    balancer.finished(backend, latencyNanos, failed)
+    metrics?.recordBackendCall(backend, latencyNanos, failed)
+  }
+
+  private fun rewrite(request: Request, backend: Backend): Request {
+    val url = request.url.newBuilder().host(backend.host).apply { backend.port?.let { port(it) } }.build()
+    val builder = request.newBuilder().url(url)
+    // The backend is one of the addresses of the url's host, so it's still the host being called.
+    if (config.resolveDns && request.header("Host") == null) builder.header("Host", hostHeader(request.url))
+    return builder.build()
+  }
+
+  private fun hostHeader(url: HttpUrl): String {
+    val host = if (':' in url.host) "[${url.host}]" else url.host
+    return if (url.port == HttpUrl.defaultPort(url.scheme)) host else "$host:${url.port}"
+  }
+
+  private fun isHedgeable(request: Request): Boolean {
+    val body = request.body
+    if (body != null && (body.isOneShot() || body.isDuplex())) return false
+    return request.method in IDEMPOTENT_METHODS || request.url.encodedPath in config.hedging!!.idempotentPaths
+  }
+
+  private fun hedge(call: Call, delayNanos: Long): Response {
+    val completed = LinkedBlockingQueue<Attempt>()
+    val primary = Attempt(call.clone(), balancer.choose(), hedged = false)
+    val hedged = Hedged(primary)
+    val watcher =
+      scheduler.scheduleWithFixedDelay(
+        { hedged.check(call, completed) },
+        delayNanos,
+        CANCEL_CHECK_INTERVAL_NANOS,
+        TimeUnit.NANOSECONDS,
+      )
+
+    try {
+      primary.execute()
+      hedged.primaryDone()
+      completed.add(primary)
+
+      // Take the first response, or the primary's failure if every attempt failed.
+      var winner = takeCompleted(completed)
+      repeat(hedged.attempts().size - 1) { if (winner.error != null) winner = takeCompleted(completed) }
+      if (winner.error != null) winner = primary
+      if (hedged.attempts().size > 1 && winner.response != null) metrics?.recordHedge(winner.hedged)
+
+      for (attempt in hedged.attempts()) {
+        if (attempt !== winner) attempt.abandon()
+      }
+      return winner.response ?: throw winner.error!!
+    } catch (e: Throwable) {
+      for (attempt in hedged.attempts()) attempt.abandon()
+      throw e
+    } finally {
+      watcher.cancel(false)
+    }
+  }
+
+  private fun takeCompleted(completed: LinkedBlockingQueue<Attempt>): Attempt {
+    try {
+      return completed.take()
+    } catch (e: InterruptedException) {
+      Thread.currentThread().interrupt()
+      throw InterruptedIOException("interrupted while waiting for a hedged call")
+    }
+  }
+
+  /** The attempts of one hedged call. */
+  private inner class Hedged(private val primary: Attempt) {
+    private var hedge: Attempt? = null
+    private var primaryDone = false
+
+    @Synchronized fun attempts() = listOfNotNull(primary, hedge)
+
+    @Synchronized
+    fun primaryDone() {
+      primaryDone = true
+    }
+
+    /** Cancels the attempts if [call] was canceled, and sends a hedge if the primary is still running. */
+    fun check(call: Call, completed: LinkedBlockingQueue<Attempt>) {
+      if (call.isCanceled()) {
+        for (attempt in attempts()) attempt.call.cancel()
+        return
+      }
+      val attempt =
+        synchronized(this) {
+          if (primaryDone || hedge != null) return
+          val backend = balancer.chooseOther(primary.backend) ?: return
+          Attempt(call.clone(), backend, hedged = true).also { hedge = it }
+        }
+      attempt.enqueue(completed, onSuccess = ::hedgeSucceeded)
+    }
+
+    /**
+     * The primary runs on the caller's thread, so cancel it to let the caller take the hedge's response. If the primary
+     * is already done the caller is taking whichever finished first, and it may be the primary.
+     */
+    @Synchronized
+    private fun hedgeSucceeded() {
+      if (!primaryDone) primary.call.cancel()
+    }
+  }
+
+  private class Attempt(val call: Call, val backend: Backend, val hedged: Boolean) {
+    @Volatile var response: Response? = null
+    @Volatile var error: Throwable? = null
+    private var abandoned = false
+
+    /** Runs this attempt on the calling thread. */
+    fun execute() {
+      attempts[call] = backend
+      try {
+        complete(call.execute())
+      } catch (e: Throwable) {
+        error = e
+      } finally {
+        attempts.remove(call)
+      }
+    }
+
+    /** Runs this attempt on the client's dispatcher, adding it to [completed] when done. */
+    fun enqueue(completed: LinkedBlockingQueue<Attempt>, onSuccess: () -> Unit) {
+      attempts[call] = backend
+      call.enqueue(
+        object : Callback {
+          override fun onResponse(call: Call, response: Response) {
+            attempts.remove(call)
+            val kept = complete(response)
+            completed.add(this@Attempt)
+            if (kept) onSuccess()
+          }
+
+          override fun onFailure(call: Call, e: IOException) {
+            attempts.remove(call)
+            error = e
+            completed.add(this@Attempt)
+          }
+        }
+      )
+    }
+
+    /** Keeps [response] unless this attempt was abandoned, in which case it's closed and this returns false. */
+    private fun complete(response: Response): Boolean {
+      synchronized(this) {
+        if (abandoned) {
+          response.close()
+          return false
+        }
+        this.response = response
+        return true
+      }
+    }
+
+    /** Cancels this attempt, and closes its response if it has one. */
+    fun abandon() {
+      synchronized(this) {
+        abandoned = true
+        response?.close()
+      }
+      call.cancel()
+    }
+  }
+
+  companion object {
+    private val IDEMPOTENT_METHODS = setOf("GET", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE")
+    private val CANCEL_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+
+    /** The backend of each attempt in flight, by the clone that runs it. */
+    private val attempts = ConcurrentHashMap<Call, Backend>()
+
+    /** Returns true if [call] is one attempt of a hedged call, rather than a call made by the application. */
+    fun isAttempt(call: Call) = attempts.containsKey(call)
+  }
+}
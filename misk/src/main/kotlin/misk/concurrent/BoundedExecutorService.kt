@@ -0,0 +1,49 @@
+package misk.concurrent
+
+import java.util.concurrent.AbstractExecutorService
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+
+/**
+ * Runs at most [maxConcurrency] tasks from [delegate] at once.
+ *
+ * This is meant for executors that start a virtual thread per task. Rather than queueing tasks until a pool thread is
+ * free, each task's thread waits for a permit before running. Waiting virtual threads are cheap, and unlike a pool this
+ * keeps limiting concurrency no matter how many threads the delegate starts.
+ */
+internal class BoundedExecutorService(private val delegate: ExecutorService, maxConcurrency: Int) :
+  AbstractExecutorService() {
+  private val permits = Semaphore(maxConcurrency, /* fair= */ true)
+
+  init {
+    require(maxConcurrency > 0) { "maxConcurrency must be positive" }
+  }
+
+  override fun execute(command: Runnable) {
+    delegate.execute {
+      try {
+        permits.acquire()
+      } catch (e: InterruptedException) {
+        // The executor was shut down with shutdownNow() before this task got to run.
+        Thread.currentThread().interrupt()
+        return@execute
+      }
+      try {
+        command.run()
+      } finally {
+        permits.release()
+      }
+    }
+  }
+
+  override fun shutdown() = delegate.shutdown()
+
+  override fun shutdownNow(): List<Runnable> = delegate.shutdownNow()
+
+  override fun isShutdown() = delegate.isShutdown
+
+  override fun isTerminated() = delegate.isTerminated
+
+  override fun awaitTermination(timeout: Long, unit: TimeUnit) = delegate.awaitTermination(timeout, unit)
+}
@@ -37,5 +37,12 @@ class ExecutorServiceModule(
 
     fun withUnboundThreadPool(annotation: KClass<out Annotation>, nameFormat: String) =
       ExecutorServiceModule(annotation) { it.unbounded(nameFormat) }
+
+    /** Binds an executor service that runs each task on a virtual thread. See [ExecutorServiceFactory.virtual]. */
+    fun withVirtualThreads(
+      annotation: KClass<out Annotation>,
+      nameFormat: String,
+      maxConcurrency: Int = Int.MAX_VALUE,
+    ) = ExecutorServiceModule(annotation) { it.virtual(nameFormat, maxConcurrency) }
   }
 }
@@ -129,6 +129,17 @@ class RealExecutorServiceFactory @Inject constructor(private val clock: Clock) :
     return maybeTrace(Executors.newCachedThreadPool(threadFactory)).also { executors[nameFormat] = it }
   }
 
+  override fun virtual(nameFormat: String, maxConcurrency: Int): ExecutorService {
+    if (!VirtualThreads.isSupported) return super.virtual(nameFormat, maxConcurrency)
+
+    checkCreate()
+    val threadFactory = threadFactory(nameFormat, VirtualThreads.threadFactory())
+    val executorService = VirtualThreads.newThreadPerTaskExecutor(threadFactory)
+    val bounded =
+      if (maxConcurrency == Int.MAX_VALUE) executorService else BoundedExecutorService(executorService, maxConcurrency)
+    return maybeTrace(bounded).also { executors[nameFormat] = it }
+  }
+
   override fun scheduled(nameFormat: String, threadCount: Int): ScheduledExecutorService {
     checkCreate()
     val threadFactory = threadFactory(nameFormat)
@@ -137,7 +148,7 @@ class RealExecutorServiceFactory @Inject constructor(private val clock: Clock) :
     }
   }
 
-  private fun threadFactory(nameFormat: String): ThreadFactory {
+  private fun threadFactory(nameFormat: String, threads: ThreadFactory? = null): ThreadFactory {
     check(!executors.containsKey(nameFormat)) {
       "multiple executor services named $nameFormat - this could be a thread leak!"
     }
@@ -147,7 +158,7 @@ class RealExecutorServiceFactory @Inject constructor(private val clock: Clock) :
 
       override fun newThread(runnable: Runnable): Thread {
         val name = String.format(nameFormat, nextId.getAndIncrement())
-        return Thread(runnable, name)
+        return threads?.newThread(runnable)?.also { it.name = name } ?: Thread(runnable, name)
       }
     }
   }
@@ -0,0 +1,221 @@
+package misk.concurrent
+
+import com.google.common.base.Ticker
+import java.time.Duration
+import java.util.AbstractQueue
+import java.util.ArrayDeque
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Delayed
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.LockSupport
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A [TimerWheelDelayQueue] is a [BlockingQueue] of [Delayed] elements backed by a hashed hierarchical timer wheel.
+ *
+ * Producers never take a lock: [offer] appends to a lock-free inbox and wakes the consumer if it is parked. Consumers
+ * move the inbox into the wheel, advance it one tick at a time, and collect every element that expires in a tick into a
+ * ready list, so elements that come due in the same tick are released together. Scheduling is O(1) regardless of how
+ * many elements are pending; the cost is that expiry is only precise to within one [tick].
+ *
+ * Elements are released when their delay has elapsed, but unlike [java.util.concurrent.DelayQueue] they aren't
+ * released in delay order within a tick. Removing an arbitrary element through [remove] or the iterator isn't
+ * supported.
+ */
+class TimerWheelDelayQueue<T : Delayed>
+@JvmOverloads
+constructor(
+  tick: Duration = Duration.ofMillis(10),
+  private val wheelSize: Int = 64,
+  levels: Int = 4,
+  private val ticker: Ticker = Ticker.systemTicker(),
+) : AbstractQueue<T>(), BlockingQueue<T> {
+  private val tickNanos = tick.toNanos()
+  private val startNanos = ticker.read()
+
+  private val inbox = ConcurrentLinkedQueue<T>()
+  private val count = AtomicInteger()
+
+  /** A consumer that is parked waiting for elements, if any. */
+  @Volatile private var waiter: Thread? = null
+
+  private val lock = ReentrantLock()
+
+  // All fields below are guarded by lock.
+  private var currentTick = 0L
+  private val wheels = Array(levels) { Array(wheelSize) { ArrayDeque<T>() } }
+
+  /** The number of ticks spanned by a single slot at each level. */
+  private val slotTicks = LongArray(levels) { level -> pow(wheelSize.toLong(), level) }
+
+  private val ready = ArrayDeque<T>()
+
+  init {
+    require(tickNanos > 0) { "tick must be positive" }
+    require(wheelSize > 1) { "wheelSize must be greater than 1" }
+    require(levels > 0) { "levels must be positive" }
+  }
+
+  override fun offer(e: T): Boolean {
+    inbox.add(e)
+    count.incrementAndGet()
+    waiter?.let { LockSupport.unpark(it) }
+    return true
+  }
+
+  override fun offer(e: T, timeout: Long, unit: TimeUnit): Boolean = offer(e)
+
+  override fun put(e: T) {
+    offer(e)
+  }
+
+  override fun poll(): T? = lock.withLock { pollExpired() }
+
+  override fun poll(timeout: Long, unit: TimeUnit): T? {
+    val deadline = System.nanoTime() + unit.toNanos(timeout)
+    while (true) {
+      val waitNanos =
+        lock.withLock {
+          val result = pollExpired()
+          if (result != null) return result
+          val remaining = deadline - System.nanoTime()
+          if (remaining <= 0) return null
+
+          // With nothing pending there's no tick to wait for; a producer wakes us up.
+          if (count.get() == 0) remaining else minOf(remaining, nanosUntilNextTick())
+        }
+      waiter = Thread.currentThread()
+      try {
+        if (inbox.isEmpty()) LockSupport.parkNanos(this, waitNanos)
+      } finally {
+        waiter = null
+      }
+      if (Thread.interrupted()) throw InterruptedException()
+    }
+  }
+
+  override fun take(): T = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS)!!
+
+  override fun peek(): T? =
+    lock.withLock {
+      advance()
+      ready.peekFirst()
+    }
+
+  override val size: Int
+    get() = count.get()
+
+  override fun remainingCapacity(): Int = Int.MAX_VALUE
+
+  override fun drainTo(c: MutableCollection<in T>): Int = drainTo(c, Int.MAX_VALUE)
+
+  override fun drainTo(c: MutableCollection<in T>, maxElements: Int): Int {
+    require(c !== this)
+    return lock.withLock {
+      var drained = 0
+      while (drained < maxElements) {
+        c.add(pollExpired() ?: break)
+        drained++
+      }
+      drained
+    }
+  }
+
+  override fun clear() {
+    lock.withLock {
+      while (inbox.poll() != null) count.decrementAndGet()
+      for (wheel in wheels) {
+        for (slot in wheel) {
+          count.addAndGet(-slot.size)
+          slot.clear()
+        }
+      }
+      count.addAndGet(-ready.size)
+      ready.clear()
+    }
+  }
+
+  /** Returns a snapshot of every pending element, whether or not it has expired. */
+  override fun iterator(): MutableIterator<T> {
+    val snapshot =
+      lock.withLock {
+        val result = ArrayList<T>(count.get())
+        result += ready
+        for (wheel in wheels) {
+          for (slot in wheel) result += slot
+        }
+        result += inbox
+        result
+      }
+    val delegate = snapshot.iterator()
+    return object : MutableIterator<T> {
+      override fun hasNext() = delegate.hasNext()
+
+      override fun next() = delegate.next()
+
+      override fun remove() = throw UnsupportedOperationException()
+    }
+  }
+
+  private fun pollExpired(): T? {
+    advance()
+    val result = ready.pollFirst() ?: return null
+    count.decrementAndGet()
+    return result
+  }
+
+  /** Fires every tick up to now, then moves newly offered elements into the wheel. */
+  private fun advance() {
+    val nowTick = (ticker.read() - startNanos) / tickNanos
+    while (currentTick < nowTick) {
+      currentTick++
+
+      // When a level wraps around, cascade the next level's current slot down into the finer-grained wheels.
+      var level = 1
+      while (level < wheels.size && currentTick % slotTicks[level] == 0L) {
+        val slot = wheels[level][((currentTick / slotTicks[level]) % wheelSize).toInt()]
+        repeat(slot.size) { place(slot.removeFirst()) }
+        level++
+      }
+
+      val slot = wheels[0][(currentTick % wheelSize).toInt()]
+      repeat(slot.size) { place(slot.removeFirst()) }
+    }
+
+    while (true) {
+      place(inbox.poll() ?: break)
+    }
+  }
+
+  /** Files [element] in the slot for the tick at which it expires, or in [ready] if it has already expired. */
+  private fun place(element: T) {
+    val delayNanos = element.getDelay(TimeUnit.NANOSECONDS)
+    if (delayNanos <= 0) {
+      ready.addLast(element)
+      return
+    }
+
+    val delayTicks = (delayNanos + tickNanos - 1) / tickNanos
+    val expiryTick = currentTick + delayTicks
+    var level = 0
+    while (level < wheels.size - 1 && delayTicks >= slotTicks[level + 1]) level++
+
+    // Elements beyond the range of the outermost wheel park in its furthest slot and are re-placed when it comes up.
+    val slotTick =
+      if (delayTicks < slotTicks[level] * wheelSize) expiryTick else currentTick + slotTicks[level] * (wheelSize - 1)
+    wheels[level][((slotTick / slotTicks[level]) % wheelSize).toInt()].addLast(element)
+  }
+
+  private fun nanosUntilNextTick(): Long = startNanos + (currentTick + 1) * tickNanos - ticker.read()
+
+  private companion object {
+    fun pow(base: Long, exponent: Int): Long {
+      var result = 1L
+      repeat(exponent) { result = Math.multiplyExact(result, base) }
+      return result
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package misk.concurrent
+
+import misk.ReadyService
+import misk.ServiceModule
+import misk.inject.KAbstractModule
+
+/**
+ * Exports metrics on virtual threads that block while pinned to their carrier thread. This does nothing on JVMs without
+ * virtual threads.
+ *
+ * [misk.web.MiskWebModule] installs this when [misk.web.WebConfig.use_virtual_threads] is set.
+ */
+class VirtualThreadPinningModule : KAbstractModule() {
+  override fun configure() {
+    install(ServiceModule<VirtualThreadPinningMonitor>().enhancedBy<ReadyService>())
+  }
+}
@@ -0,0 +1,92 @@
+package misk.concurrent
+
+import com.google.common.util.concurrent.AbstractIdleService
+import jakarta.inject.Inject
+import jakarta.inject.Singleton
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import jdk.jfr.consumer.RecordedEvent
+import jdk.jfr.consumer.RecordingStream
+import misk.logging.getLogger
+import misk.metrics.v2.Metrics
+
+/**
+ * Counts the times a virtual thread blocks while pinned to its carrier thread, as reported by JFR's
+ * `jdk.VirtualThreadPinned` event. Blocking in a `synchronized` block or a native frame pins the thread, and a carrier
+ * thread that's pinned can't run any other virtual thread. Like JFR, this ignores pinning shorter than 20 ms.
+ *
+ * Pinning events are labeled with a hash of the pinned stack, and each stack is logged the first time it's seen so the
+ * hash can be traced back to code. Install this with [VirtualThreadPinningModule].
+ */
+@Singleton
+internal class VirtualThreadPinningMonitor @Inject internal constructor(metrics: Metrics) : AbstractIdleService() {
+  private val pinnedCount =
+    metrics.counter(
+      "virtual_thread_pinned_total",
+      "count of virtual threads that blocked while pinned to their carrier thread",
+      listOf("stack_hash"),
+    )
+
+  private val pinnedDuration =
+    metrics.histogram(
+      "virtual_thread_pinned_duration_ms",
+      "duration in ms that virtual threads blocked while pinned to their carrier thread",
+      listOf("stack_hash"),
+    )
+
+  private val seenStacks = ConcurrentHashMap.newKeySet<String>()
+  private var stream: RecordingStream? = null
+
+  override fun startUp() {
+    if (!VirtualThreads.isSupported) {
+      log.info { "virtual threads are not supported on this JVM; not monitoring pinning" }
+      return
+    }
+    stream =
+      RecordingStream().apply {
+        enable(PINNED_EVENT).withStackTrace().withThreshold(THRESHOLD)
+        onEvent(PINNED_EVENT, ::onPinned)
+        startAsync()
+      }
+  }
+
+  override fun shutDown() {
+    stream?.close()
+  }
+
+  private fun onPinned(event: RecordedEvent) {
+    val frames =
+      event.stackTrace?.frames.orEmpty().take(MAX_FRAMES).map {
+        "${it.method.type.name}.${it.method.name}:${it.lineNumber}"
+      }
+    record(frames, event.duration)
+  }
+
+  internal fun record(frames: List<String>, duration: Duration) {
+    var stackHash = Integer.toHexString(frames.hashCode())
+    if (stackHash !in seenStacks) {
+      if (seenStacks.size >= MAX_STACKS) {
+        stackHash = OTHER_STACKS
+      } else if (seenStacks.add(stackHash)) {
+        val stack = frames.joinToString(separator = "\n  at ", prefix = "\n  at ")
+        log.warn { "virtual thread pinned for ${duration.toMillis()} ms (stack_hash=$stackHash)$stack" }
+      }
+    }
+    pinnedCount.labels(stackHash).inc()
+    pinnedDuration.labels(stackHash).observe(duration.toNanos() / 1_000_000.0)
+  }
+
+  companion object {
+    private val log = getLogger<VirtualThreadPinningMonitor>()
+
+    private const val PINNED_EVENT = "jdk.VirtualThreadPinned"
+    private val THRESHOLD = Duration.ofMillis(20)
+
+    /** The frames that identify a pinned stack. Deeper frames rarely tell pinning sites apart. */
+    private const val MAX_FRAMES = 16
+
+    /** Caps the number of stack hash labels. Further stacks are counted under [OTHER_STACKS]. */
+    internal const val MAX_STACKS = 100
+    internal const val OTHER_STACKS = "other"
+  }
+}
@@ -0,0 +1,40 @@
+package misk.concurrent
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+
+/**
+ * Creates virtual threads on JVMs that have them.
+ *
+ * Misk targets Java 17, so the Java 21 APIs are looked up reflectively. On older JVMs [isSupported] is false and
+ * callers fall back to platform threads.
+ */
+internal object VirtualThreads {
+  private val virtualThreadFactory: ThreadFactory? =
+    try {
+      val builder = Thread::class.java.getMethod("ofVirtual").invoke(null)
+      Class.forName("java.lang.Thread\$Builder").getMethod("factory").invoke(builder) as ThreadFactory
+    } catch (e: ReflectiveOperationException) {
+      null
+    }
+
+  private val newThreadPerTaskExecutor =
+    try {
+      Executors::class.java.getMethod("newThreadPerTaskExecutor", ThreadFactory::class.java)
+    } catch (e: NoSuchMethodException) {
+      null
+    }
+
+  val isSupported: Boolean
+    get() = virtualThreadFactory != null && newThreadPerTaskExecutor != null
+
+  /** Returns a factory that creates unstarted virtual threads. */
+  fun threadFactory(): ThreadFactory = checkNotNull(virtualThreadFactory) { "virtual threads are not supported" }
+
+  /** Returns an executor service that runs each task on a new thread from [threadFactory]. */
+  fun newThreadPerTaskExecutor(threadFactory: ThreadFactory): ExecutorService {
+    val method = checkNotNull(newThreadPerTaskExecutor) { "virtual threads are not supported" }
+    return method.invoke(null, threadFactory) as ExecutorService
+  }
+}
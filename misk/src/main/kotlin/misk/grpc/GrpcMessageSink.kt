@@ -23,22 +23,30 @@ internal class GrpcMessageSink<T : Any>(
 ) : MessageSink<T> {
   private var closed = false
 
+  // Reused across messages. Writing a message to the sink empties them.
+  private val encodedMessage = Buffer()
+  private val compressedMessage = Buffer()
+
   override fun write(message: T) {
     check(!closed) { "closed" }
 
-    val encodedMessage = Buffer()
-    messageAdapter.encode(encodedMessage, message)
-
-    if (grpcEncoding == "identity" || encodedMessage.size < minMessageToCompress) {
-      sink.writeByte(0) // 0 = Not encoded.
-      sink.writeInt(encodedMessage.size.toInt())
-      sink.writeAll(encodedMessage)
-    } else {
-      val compressedMessage = Buffer()
-      grpcEncoding.toGrpcEncoder().encode(compressedMessage).use { sink -> sink.writeAll(encodedMessage) }
-      sink.writeByte(1) // 1 = Compressed.
-      sink.writeInt(compressedMessage.size.toInt())
-      sink.writeAll(compressedMessage)
+    try {
+      messageAdapter.encode(encodedMessage, message)
+
+      if (grpcEncoding == "identity" || encodedMessage.size < minMessageToCompress) {
+        sink.writeByte(0) // 0 = Not encoded.
+        sink.writeInt(encodedMessage.size.toInt())
+        sink.writeAll(encodedMessage)
+      } else {
+        grpcEncoding.toGrpcEncoder().encode(compressedMessage).use { sink -> sink.writeAll(encodedMessage) }
+        sink.writeByte(1) // 1 = Compressed.
+        sink.writeInt(compressedMessage.size.toInt())
+        sink.writeAll(compressedMessage)
+      }
+    } finally {
+      // Don't let a message that failed to encode leak into the next one.
+      encodedMessage.clear()
+      compressedMessage.clear()
     }
 
     // TODO: fail if the message size is more than MAX_INT
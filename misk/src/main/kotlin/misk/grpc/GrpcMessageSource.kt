@@ -6,13 +6,16 @@ import java.io.Closeable
 import java.net.ProtocolException
 import okio.Buffer
 import okio.BufferedSource
-import okio.buffer
 
 /**
  * Reads an HTTP/2 stream as a sequence of gRPC messages.
  *
  * This is derived from Wire's GrpcMessageSource.kt. https://github.com/square/wire/search?q=GrpcMessageSource&type=Code
  *
+ * Messages are staged in buffers that are reused for the life of the stream. Moving a message out of [source] hands
+ * over okio's pooled segments rather than copying bytes, and uncompressed messages are decoded straight from those
+ * segments, so a long-lived stream doesn't allocate a buffer or byte array per message.
+ *
  * @param source the HTTP/2 stream body.
  * @param messageAdapter a proto adapter for each message.
  * @param grpcEncoding the "grpc-encoding" header, or null if it is absent.
@@ -24,6 +27,12 @@ constructor(
   private val messageAdapter: ProtoAdapter<T>,
   private val grpcEncoding: String? = null,
 ) : MessageSource<T>, Closeable by source {
+  /** The current message as it was sent. */
+  private val encodedMessage = Buffer()
+
+  /** The current message after decompression, if it was compressed. */
+  private val decodedMessage = Buffer()
+
   override fun read(): T? {
     if (source.exhausted()) return null
 
@@ -45,9 +54,18 @@ constructor(
 
     val encodedLength = source.readInt().toLong() and 0xffffffffL
 
-    val encodedMessage = Buffer().write(source, encodedLength)
-
-    return messageDecoding.decode(encodedMessage).buffer().use { messageAdapter.decode(it) }
+    try {
+      encodedMessage.write(source, encodedLength)
+      if (messageDecoding == GrpcDecoder.IdentityGrpcDecoder) {
+        return messageAdapter.decode(encodedMessage)
+      }
+      messageDecoding.decode(encodedMessage).use { decodedMessage.writeAll(it) }
+      return messageAdapter.decode(decodedMessage)
+    } finally {
+      // Release the segments of a message that failed to decode back to the pool.
+      encodedMessage.clear()
+      decodedMessage.clear()
+    }
   }
 
   override fun toString() = "GrpcMessageSource"
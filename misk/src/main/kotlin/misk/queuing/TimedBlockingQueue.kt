@@ -1,175 +1,280 @@
 package misk.queuing
 
 import java.time.Duration
-import java.util.concurrent.ArrayBlockingQueue
+import java.util.AbstractQueue
 import java.util.concurrent.BlockingQueue
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
 
 /**
  * This BlockingQueue implementation allows measuring how long dequeued items have been in the queue. It requires a
  * delayHandler which consumes the latency every time an item is removed from the queue.
  *
- * Caveat: The operations remove(element), removeAll() and retainAll() are supported but may not always invoke the
- * delayHandler in a multithreaded environment. For removing items, poll(), take() and remove() should be used instead.
+ * The queue is a bounded multi-producer, multi-consumer ring buffer. Each slot carries a sequence number that producers
+ * and consumers claim with a CAS, and the time an item was enqueued is kept in a parallel `long[]` rather than in a
+ * wrapper object, so offering and polling neither allocate nor take a lock. A lock is only taken to park and wake
+ * threads that block in [take], [put] or the timed [poll] and [offer].
+ *
+ * Caveat: The operations remove(element), removeAll() and retainAll() are supported but are O(n) and mark removed
+ * items in place; the slot is reclaimed once it reaches the head of the queue. For removing items, poll(), take() and
+ * remove() should be used instead.
  *
  * @param <T> The type of the elements held in this queue
  */
 internal class TimedBlockingQueue<T>(maxQueueSize: Int, private val delayHandler: (Duration) -> Unit) :
-  BlockingQueue<T> {
-  private val queue: BlockingQueue<TimedQueueItem<T>> = ArrayBlockingQueue<TimedQueueItem<T>>(maxQueueSize)
+  AbstractQueue<T>(), BlockingQueue<T> {
+  private val capacity = maxQueueSize
 
-  override fun poll(timeout: Long, unit: TimeUnit): T? {
-    val item = queue.poll(timeout, unit)
-    return if (item != null) handleRemoved(item) else null
-  }
+  /** Items in the queue, or [REMOVED] for items removed out of order. */
+  private val elements = AtomicReferenceArray<Any?>(capacity)
 
-  override fun poll(): T? {
-    val item = queue.poll()
-    return if (item != null) handleRemoved(item) else null
-  }
+  /** When each item was enqueued, as [System.nanoTime]. Published to consumers by the write to [sequences]. */
+  private val enqueuedAt = LongArray(capacity)
 
-  override fun take(): T {
-    return handleRemoved(queue.take())
-  }
+  /**
+   * A slot at position `pos` is free for a producer when its sequence is `pos`, and holds an item for a consumer when
+   * its sequence is `pos + 1`.
+   */
+  private val sequences = AtomicLongArray(capacity)
 
-  override fun remove(): T {
-    return handleRemoved(queue.remove())
-  }
+  private val head = AtomicLong()
+  private val tail = AtomicLong()
 
-  override fun contains(element: T): Boolean {
-    return queue.contains(wrap(element))
-  }
+  /** Items marked [REMOVED] that still occupy a slot. */
+  private val removedCount = AtomicInteger()
 
-  override fun addAll(elements: Collection<T>): Boolean {
-    return queue.addAll(wrapCollection(elements))
-  }
+  private val lock = ReentrantLock()
+  private val notEmpty = lock.newCondition()
+  private val notFull = lock.newCondition()
+  private val waitingConsumers = AtomicInteger()
+  private val waitingProducers = AtomicInteger()
 
-  override fun clear() {
-    var result = poll()
-    while (result != null) {
-      result = poll()
-    }
+  init {
+    require(maxQueueSize > 0) { "maxQueueSize must be positive" }
+    for (i in 0 until capacity) sequences.set(i, i.toLong())
   }
 
-  override fun element(): T {
-    return unwrap(queue.element())
+  override fun offer(e: T): Boolean {
+    if (e == null) throw NullPointerException()
+    while (true) {
+      val pos = tail.get()
+      val i = index(pos)
+      val diff = sequences.get(i) - pos
+      if (diff == 0L) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          enqueuedAt[i] = System.nanoTime()
+          elements.set(i, e)
+          sequences.set(i, pos + 1)
+          if (waitingConsumers.get() > 0) lock.withLock { notEmpty.signal() }
+          return true
+        }
+      } else if (diff < 0) {
+        return false // Full.
+      }
+    }
   }
 
-  override fun removeAll(elements: Collection<T>): Boolean {
-    return removeItems(elements) > 0
+  override fun offer(e: T, timeout: Long, unit: TimeUnit): Boolean {
+    var nanos = unit.toNanos(timeout)
+    while (!offer(e)) {
+      if (nanos <= 0L) return false
+      lock.lockInterruptibly()
+      try {
+        waitingProducers.incrementAndGet()
+        try {
+          if (isFull()) nanos = notFull.awaitNanos(nanos)
+        } finally {
+          waitingProducers.decrementAndGet()
+        }
+      } finally {
+        lock.unlock()
+      }
+    }
+    return true
   }
 
-  override fun add(element: T): Boolean {
-    return queue.add(wrap(element))
+  override fun put(e: T) {
+    offer(e, Long.MAX_VALUE, TimeUnit.NANOSECONDS)
   }
 
-  override fun offer(e: T): Boolean {
-    return queue.offer(wrap(e))
+  override fun poll(): T? {
+    while (true) {
+      val pos = head.get()
+      val i = index(pos)
+      val diff = sequences.get(i) - (pos + 1)
+      if (diff == 0L) {
+        if (head.compareAndSet(pos, pos + 1)) {
+          val element = elements.getAndSet(i, null)
+          val startTime = enqueuedAt[i]
+          release(i, pos)
+          if (element === REMOVED) {
+            removedCount.decrementAndGet()
+            continue
+          }
+          invokeDelayHandler(startTime)
+          @Suppress("UNCHECKED_CAST")
+          return element as T
+        }
+      } else if (diff < 0) {
+        return null // Empty, or the producer of the head slot hasn't published its item yet.
+      }
+    }
   }
 
-  override fun offer(e: T, timeout: Long, unit: TimeUnit): Boolean {
-    return queue.offer(wrap(e), timeout, unit)
+  override fun poll(timeout: Long, unit: TimeUnit): T? {
+    var nanos = unit.toNanos(timeout)
+    while (true) {
+      poll()?.let {
+        return it
+      }
+      if (nanos <= 0L) return null
+      lock.lockInterruptibly()
+      try {
+        waitingConsumers.incrementAndGet()
+        try {
+          if (head.get() == tail.get()) nanos = notEmpty.awaitNanos(nanos)
+        } finally {
+          waitingConsumers.decrementAndGet()
+        }
+      } finally {
+        lock.unlock()
+      }
+    }
   }
 
-  override fun iterator(): MutableIterator<T> {
-    return queue.map(this::unwrap).toMutableList().iterator()
+  override fun take(): T {
+    return poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS)!!
   }
 
   override fun peek(): T? {
-    val item = queue.peek()
-    if (item != null) {
-      return unwrap(item)
+    forEachLive { element ->
+      return element
     }
     return null
   }
 
-  override fun put(e: T) {
-    queue.put(wrap(e))
+  override fun contains(element: T): Boolean {
+    forEachLive { live -> if (live == element) return true }
+    return false
   }
 
-  override fun isEmpty(): Boolean {
-    return queue.isEmpty()
+  /** Returns a snapshot of the items in the queue. */
+  override fun iterator(): MutableIterator<T> {
+    val snapshot = mutableListOf<T>()
+    forEachLive { element -> snapshot += element }
+    return snapshot.iterator()
   }
 
   override fun remove(element: T): Boolean {
-    return removeItem(element)
+    var pos = head.get()
+    val end = tail.get()
+    while (pos < end) {
+      val i = index(pos++)
+      val current = elements.get(i)
+      if (current == null || current === REMOVED || current != element) continue
+
+      // Read the timestamp before marking the slot: once it's marked, a consumer may reclaim it for a new item.
+      val startTime = enqueuedAt[i]
+      if (elements.compareAndSet(i, current, REMOVED)) {
+        removedCount.incrementAndGet()
+        invokeDelayHandler(startTime)
+        reclaimRemovedHead()
+        return true
+      }
+    }
+    return false
   }
 
-  override fun containsAll(elements: Collection<T>): Boolean {
-    return queue.containsAll(wrapCollection(elements))
+  override fun removeAll(elements: Collection<T>): Boolean {
+    return removeItems(elements) > 0
   }
 
   override fun retainAll(elements: Collection<T>): Boolean {
-    val toRemove = queue.filter { wrappedItem -> !elements.contains(wrappedItem.value) }.map { item -> item.value }
+    val toRemove = mutableListOf<T>()
+    forEachLive { element -> if (!elements.contains(element)) toRemove += element }
     return removeItems(toRemove) > 0
   }
 
   override fun remainingCapacity(): Int {
-    return queue.remainingCapacity()
+    return (capacity - (tail.get() - head.get())).coerceIn(0L, capacity.toLong()).toInt()
   }
 
   override fun drainTo(c: MutableCollection<in T>): Int {
-    val collection = mutableListOf<TimedQueueItem<T>>()
-    val result = queue.drainTo(collection)
-    c.addAll(collection.map(this::unwrap))
-    invokeDelayHandlerOnAll(collection)
-    return result
+    return drainTo(c, Int.MAX_VALUE)
   }
 
   override fun drainTo(c: MutableCollection<in T>, maxElements: Int): Int {
-    val collection = mutableListOf<TimedQueueItem<T>>()
-    val result = queue.drainTo(collection, maxElements)
-    c.addAll(collection.map(this::unwrap))
-    invokeDelayHandlerOnAll(collection)
-    return result
+    require(c !== this)
+    var count = 0
+    while (count < maxElements) {
+      c.add(poll() ?: break)
+      count++
+    }
+    return count
   }
 
   override val size: Int
-    get() = queue.size
+    get() = (tail.get() - head.get() - removedCount.get()).coerceIn(0L, capacity.toLong()).toInt()
 
-  private fun <E> wrap(obj: E): TimedQueueItem<E> {
-    return TimedQueueItem(obj, System.nanoTime())
-  }
+  private fun index(pos: Long): Int = (pos % capacity).toInt()
 
-  private fun unwrap(item: TimedQueueItem<T>): T {
-    return item.value
-  }
+  private fun isFull(): Boolean = tail.get() - head.get() >= capacity
 
-  private fun invokeDelayHandler(item: TimedQueueItem<T>) {
-    delayHandler(Duration.ofNanos(System.nanoTime() - item.startTime))
+  /** Hands the slot at [pos] back to producers for the next lap around the ring. */
+  private fun release(i: Int, pos: Long) {
+    sequences.set(i, pos + capacity)
+    if (waitingProducers.get() > 0) lock.withLock { notFull.signal() }
   }
 
-  private fun handleRemoved(item: TimedQueueItem<T>): T {
-    invokeDelayHandler(item)
-    return unwrap(item)
+  /** Reclaims slots at the head of the queue whose items were removed out of order. */
+  private fun reclaimRemovedHead() {
+    while (true) {
+      val pos = head.get()
+      val i = index(pos)
+      if (sequences.get(i) != pos + 1 || elements.get(i) !== REMOVED) return
+      if (head.compareAndSet(pos, pos + 1)) {
+        elements.set(i, null)
+        release(i, pos)
+        removedCount.decrementAndGet()
+      }
+    }
   }
 
-  private fun wrapCollection(collection: Collection<T>): Collection<TimedQueueItem<T>> {
-    return collection.map(this::wrap)
+  /** Visits the published items from head to tail. This is weakly consistent with concurrent offers and polls. */
+  private inline fun forEachLive(action: (T) -> Unit) {
+    var pos = head.get()
+    val end = tail.get()
+    while (pos < end) {
+      val i = index(pos)
+      val element = elements.get(i)
+      if (element != null && element !== REMOVED && sequences.get(i) == pos + 1) {
+        @Suppress("UNCHECKED_CAST") action(element as T)
+      }
+      pos++
+    }
   }
 
-  private fun invokeDelayHandlerOnAll(collection: Collection<TimedQueueItem<T>>) {
-    collection.forEach { item -> invokeDelayHandler(item) }
+  private fun invokeDelayHandler(startTime: Long) {
+    delayHandler(Duration.ofNanos(System.nanoTime() - startTime))
   }
 
   private fun removeItems(collection: Collection<T>): Int {
     var count = 0
     for (element in collection) {
-      if (removeItem(element)) {
+      if (remove(element)) {
         count++
       }
     }
     return count
   }
 
-  private fun removeItem(element: T): Boolean {
-    val foundItem = queue.find { item -> item == wrap(element) }
-    // if 'element' was added after find() and before remove(), the delayHandler will
-    // not be invoked
-    val removed = queue.remove(wrap(element))
-    if (removed && foundItem != null) {
-      invokeDelayHandler(foundItem)
-    }
-    return removed
+  private companion object {
+    /** Marks a slot whose item was removed out of order. Consumers skip it. */
+    val REMOVED = Any()
   }
 }
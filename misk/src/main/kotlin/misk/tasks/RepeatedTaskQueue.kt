@@ -18,6 +18,7 @@ import java.util.concurrent.atomic.AtomicBoolean
 import misk.backoff.Backoff
 import misk.concurrent.ExecutorServiceFactory
 import misk.concurrent.ExplicitReleaseDelayQueue
+import misk.concurrent.TimerWheelDelayQueue
 import misk.logging.getLogger
 import misk.metrics.Metrics
 import misk.time.timed
@@ -25,7 +26,8 @@ import misk.time.timed
 /**
  * A [RepeatedTaskQueue] runs repeated tasks at a user controlled rate. Internally it uses a [DelayQueue] to hold the
  * pending tasks; a background thread pulls the next task from the [DelayQueue] and hands it off to an executor service
- * for execution.
+ * for execution. Queues with many tasks can opt into a [TimerWheelDelayQueue] instead via
+ * [RepeatedTaskQueueConfig.use_timer_wheel].
  *
  * [RepeatedTaskQueue] implements the [Service] interface, which requires proper startup and shutdown. Alternatively,
  * you can add new instances to the [Service] multibind.
@@ -106,6 +108,8 @@ internal constructor(
       // Hand the task off to the executor for parallel execution and repeat so long as the
       // task requests rescheduling
       taskExecutor.submit {
+        val lag = Duration.between(delayedTask.executionTime, clock.instant())
+        metrics.schedulingLag.record(lag.toMillis().coerceAtLeast(0).toDouble(), name)
         val result = task()
         // Reschedule using enqueue so as to not repeatedly wrap the task in try-catch blocks
         if (result.status != Status.NO_RESCHEDULE) enqueue(result.nextDelay, task)
@@ -205,6 +209,13 @@ class RepeatedTaskQueueMetrics @Inject constructor(metrics: Metrics) {
       "count and duration in ms of periodic tasks",
       listOf("name", "result"),
     )
+
+  internal val schedulingLag =
+    metrics.histogram(
+      "task_queue_scheduling_lag",
+      "count and delay in ms between when periodic tasks were due and when they started",
+      listOf("name"),
+    )
 }
 
 @Singleton
@@ -224,12 +235,19 @@ constructor(
     pollingTimeout: Duration = Duration.ofMillis(250),
   ): RepeatedTaskQueue {
     val executor =
-      if (config.num_parallel_tasks == -1) {
-        executorServiceFactory.unbounded("$name-%d")
+      when {
+        config.use_virtual_threads && config.num_parallel_tasks == -1 -> executorServiceFactory.virtual("$name-%d")
+        config.use_virtual_threads -> executorServiceFactory.virtual("$name-%d", config.num_parallel_tasks)
+        config.num_parallel_tasks == -1 -> executorServiceFactory.unbounded("$name-%d")
+        else -> executorServiceFactory.fixed("$name-%d", config.num_parallel_tasks)
+      }
+    val pendingTasks: BlockingQueue<DelayedTask> =
+      if (config.use_timer_wheel) {
+        TimerWheelDelayQueue(Duration.ofMillis(config.timer_wheel_tick_ms))
       } else {
-        executorServiceFactory.fixed("$name-%d", config.num_parallel_tasks)
+        DelayQueue()
       }
-    return RepeatedTaskQueue(name, clock, executor, null, DelayQueue<DelayedTask>(), metrics, config, pollingTimeout)
+    return RepeatedTaskQueue(name, clock, executor, null, pendingTasks, metrics, config, pollingTimeout)
   }
 
   /** Builds a new instance of a [RepeatedTaskQueue] for testing */
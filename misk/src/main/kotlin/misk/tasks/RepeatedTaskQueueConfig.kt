@@ -29,6 +29,24 @@ constructor(
    * an upper bound for the number of tasks submitted.
    */
   val num_parallel_tasks: Int = 1,
+
+  /**
+   * If true, pending tasks are held in a hashed hierarchical timer wheel instead of a
+   * [java.util.concurrent.DelayQueue].
+   *
+   * The timer wheel schedules in constant time without taking a lock, which suits queues with thousands of tasks. Tasks
+   * start up to [timer_wheel_tick_ms] after they are due.
+   */
+  val use_timer_wheel: Boolean = false,
+
+  /** The resolution of the timer wheel when [use_timer_wheel] is set. */
+  val timer_wheel_tick_ms: Long = 10,
+
+  /**
+   * If true, tasks run on virtual threads where the JVM supports them, with [num_parallel_tasks] bounding how many run
+   * at once. See [misk.concurrent.ExecutorServiceFactory.virtual].
+   */
+  val use_virtual_threads: Boolean = false,
 ) {
 
   /** Construct an [ExponentialBackoff] from the initial delay using the default configs. */
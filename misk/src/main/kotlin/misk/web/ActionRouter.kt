@@ -0,0 +1,118 @@
+package misk.web
+
+import misk.web.actions.WebAction
+import misk.web.mediatype.MediaRange
+import okhttp3.HttpUrl
+import okhttp3.MediaType
+
+/**
+ * Routes requests to bound actions without evaluating every action's [PathPattern].
+ *
+ * Actions are indexed once by [DispatchMechanism] and by the literal prefix of their path pattern. Fully literal
+ * patterns like `/api/users` land in an exact-match table; patterns with variables like `/api/users/{id}` are stored in
+ * a trie node for each `/`-delimited segment of their literal prefix. Looking up a request walks the trie along the
+ * request path, so only actions whose literal prefix is compatible with the path are returned as candidates. Path
+ * regexes and media-type tie-breaking then run on just those candidates.
+ */
+internal class ActionRouter(boundActions: Collection<BoundAction<out WebAction>>) {
+  private val byDispatchMechanism: Map<DispatchMechanism, PathIndex> =
+    boundActions.groupBy { it.action.dispatchMechanism }.mapValues { (_, actions) -> PathIndex(actions) }
+
+  private val allActions = PathIndex(boundActions)
+
+  /** Registration order, used to break ties the same way a scan over all bound actions would. */
+  private val ordinals: Map<BoundAction<*>, Int> = boundActions.withIndex().associate { (i, action) -> action to i }
+
+  /** Returns the most specific action matching the request, or null if no action matches. */
+  fun match(
+    dispatchMechanism: DispatchMechanism,
+    requestContentType: MediaType?,
+    requestAcceptedTypes: List<MediaRange>,
+    url: HttpUrl,
+  ): BoundActionMatch? {
+    val index = byDispatchMechanism[dispatchMechanism] ?: return null
+    var best: BoundActionMatch? = null
+    for (candidate in index.candidates(url.encodedPath)) {
+      val match = candidate.match(dispatchMechanism, requestContentType, requestAcceptedTypes, url) ?: continue
+      if (best == null || isBetter(match, best)) best = match
+    }
+    return best
+  }
+
+  private fun isBetter(match: BoundActionMatch, best: BoundActionMatch): Boolean {
+    val diff = match.compareTo(best)
+    if (diff != 0) return diff < 0
+    return ordinals.getValue(match.action) < ordinals.getValue(best.action)
+  }
+
+  /**
+   * Returns a match for every action whose path pattern matches [url], regardless of method or media types. Matches are
+   * in registration order.
+   */
+  fun matchByUrl(url: HttpUrl): List<BoundActionMatch> =
+    allActions.candidates(url.encodedPath).mapNotNull { it.matchByUrl(url) }.sortedBy { ordinals.getValue(it.action) }
+
+  /** Returns the actions that may match [encodedPath]. Callers must still confirm the match with the path regex. */
+  internal fun candidates(dispatchMechanism: DispatchMechanism, encodedPath: String): List<BoundAction<*>> =
+    byDispatchMechanism[dispatchMechanism]?.candidates(encodedPath) ?: listOf()
+
+  /** A segment trie over the literal prefixes of a set of path patterns. */
+  private class PathIndex(actions: Collection<BoundAction<*>>) {
+    /** Actions whose pattern has no variables, keyed by the full pattern. */
+    private val exact = mutableMapOf<String, MutableList<BoundAction<*>>>()
+
+    /** Actions whose pattern doesn't start with '/', and so can't be indexed by prefix. */
+    private val unindexed = mutableListOf<BoundAction<*>>()
+
+    private val root = Node()
+
+    init {
+      for (action in actions) {
+        val pattern = action.pathPattern.pattern
+        val variableStart = pattern.indexOfAny(charArrayOf('{', '\\'))
+        if (variableStart == -1) {
+          exact.getOrPut(pattern) { mutableListOf() } += action
+          continue
+        }
+
+        // Variables always start on a path boundary, so the literal prefix ends with '/'.
+        val prefixEnd = pattern.lastIndexOf('/', variableStart)
+        if (!pattern.startsWith("/") || prefixEnd == -1) {
+          unindexed += action
+          continue
+        }
+
+        var node = root
+        for (segment in pattern.substring(1, prefixEnd + 1).split('/').dropLast(1)) {
+          node = node.children.getOrPut(segment) { Node() }
+        }
+        node.actions += action
+      }
+    }
+
+    fun candidates(encodedPath: String): List<BoundAction<*>> {
+      val result = mutableListOf<BoundAction<*>>()
+      exact[encodedPath]?.let { result += it }
+      result += unindexed
+      if (!encodedPath.startsWith("/")) return result
+
+      // A node at depth N holds actions whose literal prefix is N segments followed by '/'. Those can only match a
+      // path that has at least one more segment after the N that matched.
+      var node = root
+      var segmentStart = 1
+      while (true) {
+        result += node.actions
+        val segmentEnd = encodedPath.indexOf('/', segmentStart)
+        if (segmentEnd == -1) break
+        node = node.children[encodedPath.substring(segmentStart, segmentEnd)] ?: break
+        segmentStart = segmentEnd + 1
+      }
+      return result
+    }
+  }
+
+  private class Node {
+    val children = mutableMapOf<String, Node>()
+    val actions = mutableListOf<BoundAction<*>>()
+  }
+}
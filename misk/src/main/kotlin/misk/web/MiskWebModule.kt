@@ -28,6 +28,7 @@ import misk.ReadyService
 import misk.ServiceModule
 import misk.api.HttpRequest
 import misk.concurrent.ExplicitReleaseDelayQueue
+import misk.concurrent.VirtualThreadPinningModule
 import misk.exceptions.WebActionException
 import misk.grpc.GrpcFeatureBinding
 import misk.grpc.reflect.GrpcReflectModule
@@ -132,6 +133,10 @@ constructor(private val config: WebConfig, private val jettyDependsOn: List<Key<
     bind<WebConfig>().toInstance(config)
     bind<ActionExceptionLogLevelConfig>().toInstance(config.action_exception_log_level)
 
+    if (config.use_virtual_threads) {
+      install(VirtualThreadPinningModule())
+    }
+
     if (!config.disable_jetty) {
       install(ServiceModule(key = JettyService::class.toKey(), dependsOn = jettyDependsOn).dependsOn<ReadyService>())
       install(ServiceModule<JettyThreadPoolMetricsCollector>().enhancedBy<ReadyService>())
@@ -23,12 +23,9 @@ internal class RealUrlMatcher @Inject constructor(private val webActionsServlet:
   override fun hasBoundAction(url: String): Boolean {
     val httpUrl = url.toHttpUrl()
 
-    return webActionsServlet.boundActions.any { boundAction ->
-      val match = boundAction.matchByUrl(httpUrl)
-      val actionClass = boundAction.action.functionAsJavaMethod?.declaringClass
-      val isNotFoundAction = actionClass == NotFoundAction::class.java
-
-      match != null && !isNotFoundAction
+    return webActionsServlet.actionRouter.matchByUrl(httpUrl).any { match ->
+      val actionClass = match.action.action.functionAsJavaMethod?.declaringClass
+      actionClass != NotFoundAction::class.java
     }
   }
 }
@@ -305,6 +305,29 @@ constructor(
    * compatibility.
    */
   val log_level: Level = Level.ERROR,
+
+  /**
+   * Guaranteed shares of the concurrency limit, keyed by partition name. Each share is a fraction in (0, 1] and the
+   * shares must sum to at most 1. Callers that aren't listed share the `default` partition, which is guaranteed what's
+   * left over. A partition may use more than its share, but only while the overall limit has room. Empty disables
+   * partitioning.
+   */
+  val partitions: Map<String, Double> = mapOf(),
+
+  /**
+   * The request header whose value names a call's partition. Calls without the header are partitioned by their
+   * authenticated caller's principal.
+   */
+  val partition_header: String? = null,
+
+  /**
+   * How many calls may wait for a permit when the limit is reached, instead of being rejected immediately. Waiting
+   * calls are admitted newest first.
+   */
+  val max_queue_size: Int = 0,
+
+  /** How long a call waits for a permit before it is rejected. */
+  val max_queue_wait_ms: Long = 100,
 )
 
 data class GracefulShutdownConfig
@@ -80,9 +80,8 @@ internal constructor(
     }
 
   private fun urlOnlyMatches(httpCall: HttpCall): List<BoundActionMatch> {
-    val boundActions = servletProvider.get().boundActions
-    return boundActions
-      .mapNotNull { it.matchByUrl(httpCall.url) }
+    return servletProvider.get().actionRouter
+      .matchByUrl(httpCall.url)
       .filterNot { it.action.pathPattern.matchesWildcardPath }
   }
 
@@ -14,6 +14,8 @@ import com.netflix.concurrency.limits.limit.VegasLimit
 import com.netflix.concurrency.limits.limiter.SimpleLimiter
 import jakarta.inject.Singleton
 import java.time.Clock
+import java.time.Duration
+import java.time.Instant
 import misk.Action
 import misk.inject.KAbstractModule
 import misk.web.ConcurrencyLimiterConfig
@@ -34,11 +36,21 @@ class ConcurrencyLimitsModule(private val config: ConcurrencyLimiterConfig) : KA
   fun concurrencyLimiterFactory(limit: Provider<Limit>, clock: Clock): ConcurrencyLimiterFactory =
     /**
      * This will create the SimpleLimiter with the same Limit algorithm for each every action. This can be configured
-     * per action if needed.
+     * per action if needed. If partitions or a queue are configured, the Limit is shared between partitions instead.
      */
     object : ConcurrencyLimiterFactory {
       override fun create(action: Action): Limiter<String>? =
-        SimpleLimiter.Builder().clock { clock.millis() }.named(action.name).limit(limit.get()).build()
+        if (config.partitions.isEmpty() && config.max_queue_size == 0) {
+          SimpleLimiter.Builder().clock { clock.millis() }.named(action.name).limit(limit.get()).build()
+        } else {
+          PartitionedLimiter(
+            limit = limit.get(),
+            partitions = config.partitions,
+            maxQueueSize = config.max_queue_size,
+            maxQueueWait = Duration.ofMillis(config.max_queue_wait_ms),
+            nanoTime = { Duration.between(Instant.EPOCH, clock.instant()).toNanos() },
+          )
+        }
     }
 
   @Provides
@@ -0,0 +1,178 @@
+package misk.web.concurrencylimits
+
+import com.netflix.concurrency.limits.Limit
+import com.netflix.concurrency.limits.Limiter
+import java.time.Duration
+import java.util.Optional
+import java.util.concurrent.locks.Condition
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * A [Limiter] that divides a single adaptive [Limit] between partitions, such as calling services.
+ *
+ * Each partition is guaranteed a share of the current limit. A partition within its share is always admitted, even if
+ * other partitions have used up the whole limit; a partition beyond its share is only admitted while the limit as a
+ * whole has room. A noisy caller can therefore use up idle capacity, but can't starve a quieter caller of its share.
+ *
+ * The context passed to [acquire] names the partition. Contexts that aren't listed in `partitions` share a default
+ * partition, which is guaranteed whatever share the listed partitions leave over.
+ *
+ * When a request can't be admitted it waits in a bounded queue for up to [maxQueueWait]. The queue is served newest
+ * first: under sustained overload the oldest requests are the ones most likely to have been abandoned by their callers,
+ * so they're the ones left to time out.
+ */
+internal class PartitionedLimiter(
+  private val limit: Limit,
+  partitions: Map<String, Double>,
+  private val maxQueueSize: Int,
+  private val maxQueueWait: Duration,
+  private val nanoTime: () -> Long = System::nanoTime,
+) : Limiter<String> {
+  private val lock = ReentrantLock()
+
+  private val partitions: Map<String, Partition>
+  private val defaultPartition: Partition
+
+  // All fields below are guarded by lock.
+  private var limitValue = limit.limit
+  private var inflightValue = 0
+
+  /** Requests waiting for a permit, newest first. */
+  private val queue = ArrayDeque<Waiter>()
+
+  init {
+    require(maxQueueSize >= 0) { "maxQueueSize must not be negative" }
+    for ((name, share) in partitions) {
+      require(share > 0.0 && share <= 1.0) { "share for partition $name must be in (0, 1] but was $share" }
+    }
+    require(DEFAULT_PARTITION !in partitions) { "$DEFAULT_PARTITION is reserved for unlisted callers" }
+    val total = partitions.values.sum()
+    require(total <= 1.0 + 1e-9) { "partition shares must sum to at most 1 but were $total" }
+
+    this.partitions = partitions.mapValues { (name, share) -> Partition(name, share) }
+    defaultPartition = Partition(DEFAULT_PARTITION, maxOf(0.0, 1.0 - total))
+
+    limit.notifyOnChange { newLimit ->
+      lock.withLock {
+        limitValue = newLimit
+        grantWaiters()
+      }
+    }
+  }
+
+  override fun acquire(context: String): Optional<Limiter.Listener> {
+    val partition = partitionFor(context)
+    lock.withLock {
+      if (tryAcquire(partition)) return Optional.of(Listener(partition, inflightValue))
+      if (queue.size >= maxQueueSize) return Optional.empty()
+
+      val waiter = Waiter(partition, lock.newCondition())
+      queue.addFirst(waiter)
+      var nanos = maxQueueWait.toNanos()
+      try {
+        while (!waiter.granted) {
+          if (nanos <= 0L) {
+            queue.remove(waiter)
+            return Optional.empty()
+          }
+          nanos = waiter.condition.awaitNanos(nanos)
+        }
+      } catch (e: InterruptedException) {
+        Thread.currentThread().interrupt()
+        if (waiter.granted) release(partition) else queue.remove(waiter)
+        return Optional.empty()
+      }
+      return Optional.of(Listener(partition, inflightValue))
+    }
+  }
+
+  /** The name of the partition that [context] is limited in. */
+  fun partitionName(context: String): String = partitionFor(context).name
+
+  /** The number of calls [partitionName] is currently guaranteed. */
+  fun partitionLimit(partitionName: String): Int =
+    lock.withLock { (partitions[partitionName] ?: defaultPartition).guaranteed(limitValue) }
+
+  /** The number of calls currently executing in [partitionName]. */
+  fun partitionInflight(partitionName: String): Int =
+    lock.withLock { (partitions[partitionName] ?: defaultPartition).inflight }
+
+  /** The current limit across all partitions. */
+  val currentLimit: Int
+    get() = lock.withLock { limitValue }
+
+  /** The number of calls currently executing across all partitions. */
+  val inflight: Int
+    get() = lock.withLock { inflightValue }
+
+  /** The number of calls waiting for a permit. */
+  val queued: Int
+    get() = lock.withLock { queue.size }
+
+  private fun partitionFor(context: String): Partition = partitions[context] ?: defaultPartition
+
+  /** Admits a call in [partition] if it fits. Must be called while holding [lock]. */
+  private fun tryAcquire(partition: Partition): Boolean {
+    if (partition.inflight >= partition.guaranteed(limitValue) && inflightValue >= limitValue) return false
+    inflightValue++
+    partition.inflight++
+    return true
+  }
+
+  private fun release(partition: Partition) {
+    lock.withLock {
+      inflightValue--
+      partition.inflight--
+      grantWaiters()
+    }
+  }
+
+  /** Hands freed capacity to queued calls, newest first. Must be called while holding [lock]. */
+  private fun grantWaiters() {
+    val i = queue.iterator()
+    while (i.hasNext()) {
+      val waiter = i.next()
+      if (tryAcquire(waiter.partition)) {
+        i.remove()
+        waiter.granted = true
+        waiter.condition.signal()
+      }
+    }
+  }
+
+  private class Partition(val name: String, private val share: Double) {
+    var inflight = 0
+
+    // Shares like 1 - 0.8 aren't exact in floating point, so round down with a little slack.
+    fun guaranteed(limit: Int): Int = (limit * share + 1e-9).toInt()
+  }
+
+  private class Waiter(val partition: Partition, val condition: Condition) {
+    var granted = false
+  }
+
+  private inner class Listener(private val partition: Partition, private val inflightAtStart: Int) :
+    Limiter.Listener {
+    private val startTime = nanoTime()
+
+    override fun onSuccess() {
+      limit.onSample(startTime, nanoTime() - startTime, inflightAtStart, false)
+      release(partition)
+    }
+
+    override fun onIgnore() {
+      release(partition)
+    }
+
+    override fun onDropped() {
+      limit.onSample(startTime, nanoTime() - startTime, inflightAtStart, true)
+      release(partition)
+    }
+  }
+
+  companion object {
+    /** The partition for callers that don't belong to a configured partition. */
+    const val DEFAULT_PARTITION = "default"
+  }
+}
@@ -16,14 +16,18 @@ import java.time.Instant
 import java.util.concurrent.TimeUnit
 import kotlin.reflect.full.findAnnotation
 import misk.Action
+import misk.MiskCaller
 import misk.logging.getLogger
 import misk.logging.log
 import misk.metrics.Metrics
+import misk.scope.ActionScoped
 import misk.web.AvailableWhenDegraded
+import misk.web.HttpCall
 import misk.web.NetworkChain
 import misk.web.NetworkInterceptor
 import misk.web.WebConfig
 import misk.web.concurrencylimits.ConcurrencyLimiterFactory
+import misk.web.concurrencylimits.PartitionedLimiter
 import org.slf4j.event.Level
 
 /**
@@ -46,6 +50,9 @@ import org.slf4j.event.Level
  * If a Quota-Path header is included, it replaces the action as the scope for concurrency limiting. If the same
  * Quota-Path header is used on different actions, the concurrency limits of these actions are shared.
  *
+ * Within a scope, the limit may be further divided between partitions of callers with a [PartitionedLimiter]. Calls are
+ * partitioned by the configured partition header, or else by the authenticated caller.
+ *
  * [concurrency_limits]: https://github.com/Netflix/concurrency-limits/ [avoid_overload]:
  * https://aws.amazon.com/builders-library/using-load-shedding-to-avoid-overload/
  */
@@ -80,10 +87,13 @@ internal constructor(
         else -> defaultLimiter
       }
 
-    val listener: Limiter.Listener? = limiter.acquire(action.name).orElse(null)
+    val partition =
+      if (limiter is PartitionedLimiter) limiter.partitionName(factory.partitionKey(chain.httpCall)) else null
+    val listener: Limiter.Listener? = limiter.acquire(partition ?: action.name).orElse(null)
 
     if (listener == null) {
       factory.outcomeCounter.labels(metricsName, "rejected").inc()
+      if (partition != null) factory.partitionRejectedCounter.labels(metricsName, partition).inc()
       logShedRequest(limiter, quotaPath)
       chain.httpCall.statusCode = HttpURLConnection.HTTP_UNAVAILABLE
       chain.httpCall.takeResponseBody()?.use { sink -> sink.writeUtf8("service unavailable") }
@@ -93,6 +103,12 @@ internal constructor(
     if (limiter is AbstractLimiter<*>) {
       factory.limitGauge.labels(metricsName).set(limiter.limit.toDouble())
       factory.inFlightGauge.labels(metricsName).set(limiter.inflight.toDouble())
+    } else if (limiter is PartitionedLimiter && partition != null) {
+      factory.limitGauge.labels(metricsName).set(limiter.currentLimit.toDouble())
+      factory.inFlightGauge.labels(metricsName).set(limiter.inflight.toDouble())
+      factory.queuedGauge.labels(metricsName).set(limiter.queued.toDouble())
+      factory.partitionLimitGauge.labels(metricsName, partition).set(limiter.partitionLimit(partition).toDouble())
+      factory.partitionInFlightGauge.labels(metricsName, partition).set(limiter.partitionInflight(partition).toDouble())
     }
 
     try {
@@ -135,8 +151,8 @@ internal constructor(
       logger.log(level = logLevel) {
         "concurrency limits interceptor shedding ${action.name}; " +
           "Quota-Path=$quotaPath; " +
-          "inflight=${(limiter as? AbstractLimiter<*>)?.inflight}; " +
-          "limit=${(limiter as? AbstractLimiter<*>)?.limit}"
+          "inflight=${(limiter as? AbstractLimiter<*>)?.inflight ?: (limiter as? PartitionedLimiter)?.inflight}; " +
+          "limit=${(limiter as? AbstractLimiter<*>)?.limit ?: (limiter as? PartitionedLimiter)?.currentLimit}"
       }
     }
   }
@@ -172,6 +188,39 @@ internal constructor(
         labelNames = listOf("quota_path"),
       )
 
+    val queuedGauge =
+      metrics.gauge(
+        name = "concurrency_limits_queued",
+        help = "how many calls are waiting for a permit?",
+        labelNames = listOf("quota_path"),
+      )
+
+    val partitionLimitGauge =
+      metrics.gauge(
+        name = "concurrency_limits_partition_limit",
+        help = "how many calls is each partition guaranteed?",
+        labelNames = listOf("quota_path", "partition"),
+      )
+
+    val partitionInFlightGauge =
+      metrics.gauge(
+        name = "concurrency_limits_partition_inflight",
+        help = "how many calls are currently executing in each partition?",
+        labelNames = listOf("quota_path", "partition"),
+      )
+
+    val partitionRejectedCounter =
+      metrics.counter(
+        name = "concurrency_limits_partition_rejected",
+        help = "how many calls were shed in each partition?",
+        labelNames = listOf("quota_path", "partition"),
+      )
+
+    /** Absent when no caller authentication is installed, in which case calls without a partition header share one. */
+    @com.google.inject.Inject(optional = true) var caller: ActionScoped<MiskCaller?>? = null
+
+    private val partitionHeader = config.concurrency_limiter?.partition_header
+
     /**
      * Note that this cache is application-global. Multiple actions that use the same Quota-Path will be treated as a
      * homogenous group for concurrency limiting.
@@ -208,6 +257,12 @@ internal constructor(
           .build()
     }
 
+    /** Returns the key that selects the partition for [httpCall] in a [PartitionedLimiter]. */
+    internal fun partitionKey(httpCall: HttpCall): String {
+      partitionHeader?.let { header -> httpCall.requestHeaders[header]?.let { return it } }
+      return caller?.get()?.principal ?: PartitionedLimiter.DEFAULT_PARTITION
+    }
+
     internal fun pickLimiter(action: Action, quotaPath: String): Limiter<String> {
       return quotaPathToLimiter.get(quotaPath) { createLimiterForAction(action, quotaPath) }
     }
@@ -1,40 +1,37 @@
 package misk.web.interceptors
 
+import io.prometheus.client.Collector
 import io.prometheus.client.Histogram
 import io.prometheus.client.Summary
 import jakarta.inject.Inject
 import jakarta.inject.Singleton
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
 import misk.Action
 import misk.MiskCaller
 import misk.metrics.backends.prometheus.PrometheusConfig
 import misk.metrics.v2.Metrics
 import misk.scope.ActionScoped
-import misk.time.timed
 import misk.web.NetworkChain
 import misk.web.NetworkInterceptor
 
 internal class MetricsInterceptor
-internal constructor(
-  private val actionName: String,
-  private val requestDurationSummary: Summary?,
-  private val requestDurationHistogram: Histogram,
-  private val caller: ActionScoped<MiskCaller?>,
-) : NetworkInterceptor {
+internal constructor(private val recorder: RequestLatencyRecorder, private val caller: ActionScoped<MiskCaller?>) :
+  NetworkInterceptor {
   override fun intercept(chain: NetworkChain) {
-    val (elapsedTime, result) = timed { chain.proceed(chain.httpCall) }
+    val start = System.nanoTime()
+    chain.proceed(chain.httpCall)
+    val elapsedTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start).toDouble()
 
-    val elapsedTimeMillis = elapsedTime.toMillis().toDouble()
+    val caller = caller.get()
     val callingPrincipal =
       when {
-        caller.get()?.service != null -> caller.get()?.service!!
-        caller.get()?.user != null -> "<user>"
+        caller?.service != null -> caller.service!!
+        caller?.user != null -> "<user>"
         else -> "unknown"
       }
 
-    val statusCode = chain.httpCall.statusCode
-    requestDurationSummary?.labels(actionName, callingPrincipal, statusCode.toString())?.observe(elapsedTimeMillis)
-    requestDurationHistogram.labels(actionName, callingPrincipal, statusCode.toString()).observe(elapsedTimeMillis)
-    return result
+    recorder.record(callingPrincipal, chain.httpCall.statusCode, elapsedTimeMillis)
   }
 
   @Singleton
@@ -43,7 +40,7 @@ internal constructor(
   constructor(
     m: Metrics,
     private val caller: @JvmSuppressWildcards ActionScoped<MiskCaller?>,
-    config: PrometheusConfig,
+    private val config: PrometheusConfig,
   ) : NetworkInterceptor.Factory {
     internal val requestDurationSummary =
       when (config.disable_default_summary_metrics) {
@@ -64,7 +61,36 @@ internal constructor(
         labelNames = listOf("action", "caller", "code"),
       )
 
-    override fun create(action: Action) =
-      MetricsInterceptor(action.name, requestDurationSummary, requestDurationHistogram, caller)
+    private val recorders = CopyOnWriteArrayList<RequestLatencyRecorder>()
+
+    init {
+      if (config.buffer_request_latency_metrics) {
+        // Apply buffered latencies whenever the registry is scraped. This collector has no samples of its own.
+        object : Collector() {
+            override fun collect(): List<MetricFamilySamples> {
+              flush()
+              return listOf()
+            }
+          }
+          .register<Collector>(m.getRegistry())
+      }
+    }
+
+    /** Applies latencies buffered by interceptors to [requestDurationSummary] and [requestDurationHistogram]. */
+    internal fun flush() {
+      for (recorder in recorders) recorder.flush()
+    }
+
+    override fun create(action: Action): MetricsInterceptor {
+      val recorder =
+        RequestLatencyRecorder(
+          actionName = action.name,
+          summary = requestDurationSummary,
+          histogram = requestDurationHistogram,
+          buffered = config.buffer_request_latency_metrics,
+        )
+      recorders += recorder
+      return MetricsInterceptor(recorder, caller)
+    }
   }
 }
@@ -0,0 +1,120 @@
+package misk.web.interceptors
+
+import io.prometheus.client.Histogram
+import io.prometheus.client.Summary
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Records request latencies for a single action into the default request metrics.
+ *
+ * Resolving a labeled child with `labels(...)` allocates a label array and looks it up in a concurrent map on every
+ * call. This recorder resolves the children for each (caller, status code) once and caches them, so recording a latency
+ * is a map lookup by caller and an array lookup by status code.
+ *
+ * If [buffered], observations are appended to a small buffer picked by the recording thread instead of being applied
+ * to the metrics right away. A buffer is applied in one batch when it fills up or when [flush] is called, which keeps
+ * contention on the summary's lock off the request path.
+ */
+internal class RequestLatencyRecorder(
+  private val actionName: String,
+  private val summary: Summary?,
+  private val histogram: Histogram,
+  private val buffered: Boolean,
+) {
+  private val childrenByCaller = ConcurrentHashMap<String, AtomicReferenceArray<Children>>()
+
+  fun record(callingPrincipal: String, statusCode: Int, elapsedTimeMillis: Double) {
+    // Status codes outside the standard range are rare enough to not be worth caching or buffering.
+    if (statusCode !in 0 until MAX_STATUS_CODE) {
+      newChildren(callingPrincipal, statusCode, buffered = false).observe(elapsedTimeMillis)
+      return
+    }
+
+    val children = children(callingPrincipal, statusCode)
+    if (buffered) {
+      children.buffer!!.observe(elapsedTimeMillis)
+    } else {
+      children.observe(elapsedTimeMillis)
+    }
+  }
+
+  /** Applies every buffered observation to the metrics. */
+  fun flush() {
+    for (byStatus in childrenByCaller.values) {
+      for (i in 0 until byStatus.length()) {
+        byStatus.get(i)?.buffer?.flush()
+      }
+    }
+  }
+
+  private fun children(callingPrincipal: String, statusCode: Int): Children {
+    val byStatus =
+      childrenByCaller[callingPrincipal]
+        ?: childrenByCaller.computeIfAbsent(callingPrincipal) { AtomicReferenceArray(MAX_STATUS_CODE) }
+    byStatus.get(statusCode)?.let {
+      return it
+    }
+    val children = newChildren(callingPrincipal, statusCode, buffered)
+    return if (byStatus.compareAndSet(statusCode, null, children)) children else byStatus.get(statusCode)
+  }
+
+  private fun newChildren(callingPrincipal: String, statusCode: Int, buffered: Boolean): Children {
+    val code = statusCode.toString()
+    return Children(
+      summary = summary?.labels(actionName, callingPrincipal, code),
+      histogram = histogram.labels(actionName, callingPrincipal, code),
+      buffered = buffered,
+    )
+  }
+
+  private class Children(
+    private val summary: Summary.Child?,
+    private val histogram: Histogram.Child,
+    buffered: Boolean,
+  ) {
+    val buffer = if (buffered) ObservationBuffer(::observe) else null
+
+    fun observe(value: Double) {
+      summary?.observe(value)
+      histogram.observe(value)
+    }
+  }
+
+  /** Buffers observations in stripes picked by thread, so concurrent request threads rarely share a lock. */
+  private class ObservationBuffer(private val sink: (Double) -> Unit) {
+    private val stripes = Array(STRIPES) { Stripe() }
+
+    fun observe(value: Double) {
+      val stripe = stripes[(Thread.currentThread().id and (STRIPES - 1).toLong()).toInt()]
+      synchronized(stripe) {
+        stripe.values[stripe.size++] = value
+        if (stripe.size == STRIPE_CAPACITY) drain(stripe)
+      }
+    }
+
+    fun flush() {
+      for (stripe in stripes) {
+        synchronized(stripe) { drain(stripe) }
+      }
+    }
+
+    private fun drain(stripe: Stripe) {
+      for (i in 0 until stripe.size) sink(stripe.values[i])
+      stripe.size = 0
+    }
+  }
+
+  private class Stripe {
+    val values = DoubleArray(STRIPE_CAPACITY)
+    var size = 0
+  }
+
+  private companion object {
+    const val MAX_STATUS_CODE = 600
+
+    /** Must be a power of 2. */
+    const val STRIPES = 8
+    const val STRIPE_CAPACITY = 64
+  }
+}
@@ -1,10 +1,9 @@
 package misk.web.jetty
 
 import java.util.ArrayDeque
-import misk.web.BoundAction
+import misk.web.ActionRouter
 import misk.web.DispatchMechanism
 import misk.web.ServletHttpCall
-import misk.web.actions.WebAction
 import misk.web.actions.WebSocket
 import misk.web.actions.WebSocketListener
 import okhttp3.Headers
@@ -147,7 +146,7 @@ internal class JettyWebSocket(val request: JettyServerUpgradeRequest, val respon
     return "JettyWebSocket[${re.remoteAddr}:${re.remotePort} to ${re.requestURI}]"
   }
 
-  internal class Creator(private val boundActions: Set<BoundAction<out WebAction>>) : JettyWebSocketCreator {
+  internal class Creator(private val actionRouter: ActionRouter) : JettyWebSocketCreator {
     override fun createWebSocket(
       request: JettyServerUpgradeRequest,
       response: JettyServerUpgradeResponse,
@@ -162,10 +161,7 @@ internal class JettyWebSocket(val request: JettyServerUpgradeRequest, val respon
           webSocket = realWebSocket,
         )
 
-      val candidateActions =
-        boundActions.mapNotNull { it.match(DispatchMechanism.WEBSOCKET, null, listOf(), httpCall.url) }
-
-      val bestAction = candidateActions.sorted().firstOrNull() ?: return null
+      val bestAction = actionRouter.match(DispatchMechanism.WEBSOCKET, null, listOf(), httpCall.url) ?: return null
       bestAction.action.scopeAndHandle(request.httpServletRequest, httpCall, bestAction.pathMatcher)
       return realWebSocket.adapter
     }
@@ -7,6 +7,7 @@ import jakarta.servlet.http.HttpServletResponse
 import java.net.HttpURLConnection
 import java.net.ProtocolException
 import misk.logging.getLogger
+import misk.web.ActionRouter
 import misk.web.BoundAction
 import misk.web.DispatchMechanism
 import misk.web.ServletHttpCall
@@ -60,6 +61,9 @@ constructor(
 
   internal val webActionsMetadata: List<WebActionMetadata> by lazy { boundActions.map { it.metadata } }
 
+  /** Indexes [boundActions] so dispatch only evaluates the path patterns that could match a request. */
+  internal val actionRouter: ActionRouter by lazy { ActionRouter(boundActions) }
+
   init {
     for (entry in webActionEntries) {
       boundActions += webActionFactory.newBoundAction(entry.actionClass, entry.url_path_prefix)
@@ -150,11 +154,7 @@ constructor(
       val requestContentType = httpCall.contentType()
       val requestAccepts = httpCall.accepts()
 
-      val candidateActions =
-        boundActions.mapNotNull {
-          it.match(httpCall.dispatchMechanism, requestContentType, requestAccepts, httpCall.url)
-        }
-      val bestAction = candidateActions.minOrNull()
+      val bestAction = actionRouter.match(httpCall.dispatchMechanism, requestContentType, requestAccepts, httpCall.url)
 
       if (bestAction != null) {
         return bestAction.action.scopeAndHandle(request, httpCall, bestAction.pathMatcher)
@@ -223,7 +223,7 @@ constructor(
   }
 
   override fun configure(factory: JettyWebSocketServletFactory) {
-    factory.setCreator(JettyWebSocket.Creator(boundActions))
+    factory.setCreator(JettyWebSocket.Creator(actionRouter))
     // Set idle timeout for WebSocket connections from config
     factory.idleTimeout = java.time.Duration.ofSeconds(webConfig.websocket_idle_timeout_seconds)
   }
@@ -121,6 +121,32 @@ internal class GrpcClientProviderTest {
     assertThat(robotLocator.toString()).isEqualTo("GrpcClient:${RobotLocator::class.qualifiedName}")
   }
 
+  @Test
+  fun overloadedMethodsDispatchToTheirOwnDelegates() {
+    val locator = overloadedLocator()
+
+    assertThat(locator.Locate().method.path).isEqualTo("/RobotLocator/Locate")
+    assertThat(locator.Locate("west").method.path).isEqualTo("/RobotLocator/Locate/west")
+  }
+
+  @Test
+  fun delegateExceptionsAreRethrownAsIs() {
+    val exception = assertFailsWith<IllegalStateException> { overloadedLocator().Fail() }
+
+    assertThat(exception).isSameAs(GrpcOverloadedLocator.FAILURE)
+  }
+
+  private fun overloadedLocator(): OverloadedLocator =
+    Guice.createInjector(
+        object : KAbstractModule() {
+          override fun configure() {
+            install(ClientModule(jetty))
+            install(GrpcClientModule.create<OverloadedLocator, GrpcOverloadedLocator>("robots"))
+          }
+        }
+      )
+      .getInstance()
+
   inner class ClientModule(val jetty: JettyService) : KAbstractModule() {
     override fun configure() {
       install(MiskTestingServiceModule())
@@ -190,6 +216,36 @@ internal class GrpcClientProviderTest {
       )
   }
 
+  interface OverloadedLocator : Service {
+    fun Locate(): GrpcCall<Robot, Warehouse>
+
+    fun Locate(region: String): GrpcCall<Robot, Warehouse>
+
+    fun Fail(): GrpcCall<Robot, Warehouse>
+  }
+
+  class GrpcOverloadedLocator(private val client: GrpcClient) : OverloadedLocator {
+    override fun Locate(): GrpcCall<Robot, Warehouse> =
+      client.newCall(
+        GrpcMethod(path = "/RobotLocator/Locate", requestAdapter = Robot.ADAPTER, responseAdapter = Warehouse.ADAPTER)
+      )
+
+    override fun Locate(region: String): GrpcCall<Robot, Warehouse> =
+      client.newCall(
+        GrpcMethod(
+          path = "/RobotLocator/Locate/$region",
+          requestAdapter = Robot.ADAPTER,
+          responseAdapter = Warehouse.ADAPTER,
+        )
+      )
+
+    override fun Fail(): GrpcCall<Robot, Warehouse> = throw FAILURE
+
+    companion object {
+      val FAILURE = IllegalStateException("boom")
+    }
+  }
+
   interface MisconfiguredService : Service {
     fun SayHello(): GrpcCall<HelloRequest, HelloReply>
   }
@@ -0,0 +1,202 @@
+package misk.client
+
+import io.prometheus.client.CollectorRegistry
+import java.net.InetAddress
+import java.net.URL
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import misk.metrics.backends.prometheus.PrometheusConfig
+import misk.metrics.v2.Metrics
+import okhttp3.Interceptor
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.mockwebserver.Dispatcher
+import okhttp3.mockwebserver.MockResponse
+import okhttp3.mockwebserver.MockWebServer
+import okhttp3.mockwebserver.RecordedRequest
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+internal class LoadBalancingInterceptorTest {
+  private val servers = List(2) { MockWebServer() }
+  private val slowRequests = AtomicInteger()
+  private val arrivals = ConcurrentHashMap<String, CountDownLatch>()
+
+  @BeforeEach
+  fun setUp() {
+    for ((index, server) in servers.withIndex()) {
+      server.dispatcher =
+        object : Dispatcher() {
+          override fun dispatch(request: RecordedRequest): MockResponse {
+            // The first call to /slow stalls on whichever backend gets it.
+            if (request.path == "/slow" && slowRequests.getAndIncrement() == 0) {
+              return MockResponse().setBody("slow").setHeadersDelay(1, TimeUnit.SECONDS)
+            }
+            // Calls to /together/* respond once both attempts have arrived, so they finish at the same time.
+            if (request.path!!.startsWith("/together/")) {
+              val arrived = arrivals.computeIfAbsent(request.path!!) { CountDownLatch(2) }
+              arrived.countDown()
+              arrived.await(5, TimeUnit.SECONDS)
+            }
+            return MockResponse().setBody("$index")
+          }
+        }
+      server.start()
+    }
+  }
+
+  @AfterEach
+  fun tearDown() {
+    servers.forEach { it.shutdown() }
+  }
+
+  @Test
+  fun spreadsCallsOverBackends() {
+    val client = client(HttpClientLoadBalancerConfig(backends = backends()))
+
+    repeat(20) { get(client, "/") }
+
+    // Calls for the first server's url reach both.
+    assertThat(servers.map { it.requestCount }).allMatch { it > 0 }
+    assertThat(servers.sumOf { it.requestCount }).isEqualTo(20)
+  }
+
+  @Test
+  fun resolvesBackendsFromDns() {
+    val config = HttpClientLoadBalancerConfig(resolveDns = true)
+    val balancer = ClientLoadBalancer(config, "backend.test") { listOf(InetAddress.getByName("127.0.0.1")) }
+    val client = OkHttpClient.Builder().addInterceptor(LoadBalancingInterceptor(balancer, config, null)).build()
+
+    val url = servers[0].url("/").newBuilder().host("backend.test").build()
+    client.newCall(Request.Builder().url(url).build()).execute().use { assertThat(it.body.string()).isEqualTo("0") }
+
+    assertThat(servers[0].takeRequest().getHeader("Host")).isEqualTo("backend.test:${servers[0].port}")
+  }
+
+  @Test
+  fun hedgesSlowIdempotentCalls() {
+    val client = client(HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig()))
+    // Hedging starts once enough calls have completed to know what's slow.
+    repeat(64) { get(client, "/") }
+
+    assertThat(get(client, "/slow")).isNotEqualTo("slow")
+    assertThat(slowRequests.get()).isEqualTo(2)
+  }
+
+  @Test
+  fun hedgedResponseIsReadableWhenBothAttemptsFinishTogether() {
+    val client = client(HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig()))
+    repeat(64) { get(client, "/") }
+
+    repeat(20) { assertThat(get(client, "/together/$it")).isIn("0", "1") }
+  }
+
+  @Test
+  fun canceledAttemptsDoNotCountAgainstTheirBackend() {
+    val config = HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig())
+    val balancer = ClientLoadBalancer(config, "localhost")
+    val client = client(balancer, config)
+    repeat(64) { get(client, "/") }
+
+    assertThat(get(client, "/slow")).isNotEqualTo("slow")
+
+    // The slow primary was canceled when the hedge won, so it isn't recorded as a failure.
+    assertThat(balancer.backends.map { it.outstanding.get() }).containsOnly(0)
+    assertThat(balancer.backends).allMatch { it.latencyEwmaNanos < TimeUnit.SECONDS.toNanos(1) }
+  }
+
+  @Test
+  fun interceptorsBeforeLoadBalancingSeeAttempts() {
+    val config = HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig())
+    val balancer = ClientLoadBalancer(config, "localhost")
+    val metricsFactory = ClientMetricsInterceptor.Factory(Metrics.factory(CollectorRegistry()), PrometheusConfig())
+    val metrics = metricsFactory.create("test")
+    val upstreamCalls = AtomicInteger()
+    val client =
+      OkHttpClient.Builder()
+        .addInterceptor { chain -> chain.proceed(chain.request()).also { upstreamCalls.incrementAndGet() } }
+        .addInterceptor(metrics)
+        .addInterceptor(LoadBalancingInterceptor(balancer, config, metrics))
+        .build()
+    fun call(path: String) {
+      val url = servers[0].url(path)
+      val request = Request.Builder().url(url).tag(URL::class.java, url.toUrl()).build()
+      client.newCall(request).execute().use { it.body.string() }
+    }
+    repeat(64) { call("/") }
+    upstreamCalls.set(0)
+
+    call("/slow")
+
+    // Misk's metrics interceptor records the hedged call once.
+    assertThat(metricsFactory.requestDurationHistogram.labels("test.slow", "200").get().buckets.last().toInt())
+      .isEqualTo(1)
+    // Other interceptors see the call, its primary attempt and its hedge.
+    assertThat(upstreamCalls.get()).isEqualTo(3)
+  }
+
+  @Test
+  fun doesNotHedgeNonIdempotentCalls() {
+    val client = client(HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig()))
+    repeat(64) { get(client, "/") }
+    val request = Request.Builder().url(servers[0].url("/slow")).post("".toRequestBody()).build()
+
+    client.newCall(request).execute().use { assertThat(it.body.string()).isEqualTo("slow") }
+    assertThat(slowRequests.get()).isEqualTo(1)
+  }
+
+  @Test
+  fun releasesBackendWhenAnInterceptorThrows() {
+    val config = HttpClientLoadBalancerConfig(backends = backends())
+    val balancer = ClientLoadBalancer(config, "localhost")
+    val client = client(balancer, config)
+
+    assertThatThrownBy { get(client, "/throw") }.isSameAs(THROWN)
+
+    assertThat(balancer.backends.map { it.outstanding.get() }).containsOnly(0)
+    assertThat(get(client, "/")).isIn("0", "1")
+  }
+
+  @Test
+  fun rethrowsWhenAHedgedCallsInterceptorThrows() {
+    val config = HttpClientLoadBalancerConfig(backends = backends(), hedging = HttpClientHedgingConfig())
+    val balancer = ClientLoadBalancer(config, "localhost")
+    val client = client(balancer, config)
+    repeat(64) { get(client, "/") }
+
+    assertThatThrownBy { get(client, "/throw") }.isSameAs(THROWN)
+
+    assertThat(balancer.backends.map { it.outstanding.get() }).containsOnly(0)
+    assertThat(get(client, "/")).isIn("0", "1")
+  }
+
+  private fun client(config: HttpClientLoadBalancerConfig) = client(ClientLoadBalancer(config, "localhost"), config)
+
+  private fun client(balancer: ClientLoadBalancer, config: HttpClientLoadBalancerConfig): OkHttpClient {
+    return OkHttpClient.Builder()
+      .addInterceptor(LoadBalancingInterceptor(balancer, config, null))
+      .addInterceptor(throwingInterceptor)
+      .build()
+  }
+
+  /** Throws for calls to /throw, after the load balancer has picked a backend. */
+  private val throwingInterceptor = Interceptor { chain ->
+    if (chain.request().url.encodedPath == "/throw") throw THROWN
+    chain.proceed(chain.request())
+  }
+
+  private fun backends() = servers.map { "localhost:${it.port}" }
+
+  private fun get(client: OkHttpClient, path: String): String =
+    client.newCall(Request.Builder().url(servers[0].url(path)).build()).execute().use { it.body.string() }
+
+  private companion object {
+    val THROWN = IllegalStateException("boom")
+  }
+}
@@ -3,8 +3,10 @@ package misk.concurrent
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import io.opentracing.mock.MockTracer
 import java.time.Duration
+import java.util.Collections
 import java.util.concurrent.CountDownLatch
 import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.assertFailsWith
 import misk.time.FakeClock
 import org.assertj.core.api.Assertions.assertThat
@@ -145,4 +147,29 @@ internal class RealExecutorServiceFactoryTest {
     val meters = meterRegistry.meters.filter { it.id.name.startsWith("traced.executor") }
     assertThat(meters).isNotEmpty
   }
+
+  @Test
+  fun virtualLimitsConcurrency() {
+    val factory = RealExecutorServiceFactory(FakeClock())
+    val executorService = factory.virtual("virtual-%d", maxConcurrency = 2)
+    factory.startAsync().awaitRunning()
+
+    val running = AtomicInteger()
+    val maxRunning = AtomicInteger()
+    val names = Collections.synchronizedSet(mutableSetOf<String>())
+    repeat(20) {
+      executorService.execute {
+        maxRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+        names += Thread.currentThread().name
+        Thread.sleep(5)
+        running.decrementAndGet()
+      }
+    }
+
+    factory.stopAsync().awaitTerminated()
+
+    assertThat(executorService.isTerminated).isTrue()
+    assertThat(maxRunning.get()).isEqualTo(2)
+    assertThat(names).allMatch { it.startsWith("virtual-") }
+  }
 }
@@ -0,0 +1,128 @@
+package misk.concurrent
+
+import com.google.common.base.Ticker
+import java.time.Duration
+import java.util.concurrent.Delayed
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+internal class TimerWheelDelayQueueTest {
+  private val ticker = FakeTicker()
+  private val queue =
+    TimerWheelDelayQueue<TestDelayed>(tick = Duration.ofMillis(10), wheelSize = 8, levels = 3, ticker = ticker)
+
+  @Test
+  fun releasesExpiredElementsImmediately() {
+    queue.offer(delayed("now", Duration.ZERO))
+    assertThat(queue.size).isEqualTo(1)
+    assertThat(queue.poll()?.name).isEqualTo("now")
+    assertThat(queue.size).isEqualTo(0)
+    assertThat(queue.poll()).isNull()
+  }
+
+  @Test
+  fun holdsElementsUntilTheyExpire() {
+    queue.offer(delayed("later", Duration.ofMillis(35)))
+    assertThat(queue.poll()).isNull()
+
+    ticker.advance(Duration.ofMillis(30))
+    assertThat(queue.poll()).isNull()
+
+    ticker.advance(Duration.ofMillis(10))
+    assertThat(queue.poll()?.name).isEqualTo("later")
+  }
+
+  @Test
+  fun cascadesElementsFromOuterWheels() {
+    // With 8 slots per level and a 10ms tick, these land in the second and third levels and beyond the outermost one.
+    val delays = listOf(95L, 250L, 700L, 3_000L, 20_000L)
+    for (delay in delays) {
+      queue.offer(delayed("$delay", Duration.ofMillis(delay)))
+    }
+
+    val released = mutableListOf<Pair<String, Long>>()
+    var elapsed = 0L
+    while (released.size < delays.size && elapsed < 30_000L) {
+      ticker.advance(Duration.ofMillis(10))
+      elapsed += 10
+      while (true) {
+        val element = queue.poll() ?: break
+        released += element.name to elapsed
+      }
+    }
+
+    assertThat(released.map { it.first }).containsExactlyElementsOf(delays.map { "$it" })
+    for ((name, at) in released) {
+      // Never early, and at most a tick or so late.
+      assertThat(at).isBetween(name.toLong(), name.toLong() + 20)
+    }
+  }
+
+  @Test
+  fun coalescesElementsDueInTheSameTick() {
+    queue.offer(delayed("a", Duration.ofMillis(12)))
+    queue.offer(delayed("b", Duration.ofMillis(15)))
+    queue.offer(delayed("c", Duration.ofMillis(18)))
+
+    ticker.advance(Duration.ofMillis(20))
+    val drained = mutableListOf<TestDelayed>()
+    assertThat(queue.drainTo(drained)).isEqualTo(3)
+    assertThat(drained.map { it.name }).containsExactlyInAnyOrder("a", "b", "c")
+  }
+
+  @Test
+  fun clearRemovesPendingElements() {
+    queue.offer(delayed("now", Duration.ZERO))
+    queue.offer(delayed("later", Duration.ofMillis(500)))
+    queue.offer(delayed("much later", Duration.ofHours(1)))
+    assertThat(queue.map { it.name }).containsExactlyInAnyOrder("now", "later", "much later")
+
+    queue.clear()
+    assertThat(queue.size).isEqualTo(0)
+    assertThat(queue.iterator().hasNext()).isFalse()
+    ticker.advance(Duration.ofHours(2))
+    assertThat(queue.poll()).isNull()
+  }
+
+  @Test
+  fun blockingPollWakesUpWhenAnElementIsOffered() {
+    val realTimeQueue = TimerWheelDelayQueue<TestDelayed>(tick = Duration.ofMillis(10))
+    val producer = thread {
+      Thread.sleep(100)
+      realTimeQueue.offer(TestDelayed("offered", 0L, Ticker.systemTicker()))
+    }
+
+    val start = System.nanoTime()
+    assertThat(realTimeQueue.poll(10, TimeUnit.SECONDS)?.name).isEqualTo("offered")
+    assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5))
+    producer.join()
+  }
+
+  @Test
+  fun blockingPollTimesOut() {
+    val realTimeQueue = TimerWheelDelayQueue<TestDelayed>(tick = Duration.ofMillis(10))
+    assertThat(realTimeQueue.poll(50, TimeUnit.MILLISECONDS)).isNull()
+  }
+
+  private fun delayed(name: String, delay: Duration) = TestDelayed(name, ticker.read() + delay.toNanos(), ticker)
+
+  class TestDelayed(val name: String, private val deadlineNanos: Long, private val ticker: Ticker) : Delayed {
+    override fun getDelay(unit: TimeUnit): Long = unit.convert(deadlineNanos - ticker.read(), TimeUnit.NANOSECONDS)
+
+    override fun compareTo(other: Delayed): Int =
+      getDelay(TimeUnit.NANOSECONDS).compareTo(other.getDelay(TimeUnit.NANOSECONDS))
+  }
+
+  class FakeTicker : Ticker() {
+    private val nanos = AtomicLong()
+
+    override fun read(): Long = nanos.get()
+
+    fun advance(duration: Duration) {
+      nanos.addAndGet(duration.toNanos())
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package misk.concurrent
+
+import io.prometheus.client.CollectorRegistry
+import java.time.Duration
+import misk.metrics.v2.Metrics
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+internal class VirtualThreadPinningMonitorTest {
+  private val registry = CollectorRegistry()
+  private val monitor = VirtualThreadPinningMonitor(Metrics.factory(registry))
+
+  @Test
+  fun pinningIsCountedByStack() {
+    val jdbcStack = listOf("com.mysql.cj.NativeSession.execSQL:1", "com.zaxxer.hikari.pool.ProxyStatement.execute:2")
+    val otherStack = listOf("java.lang.Object.wait:3")
+
+    monitor.record(jdbcStack, Duration.ofMillis(30))
+    monitor.record(jdbcStack, Duration.ofMillis(50))
+    monitor.record(otherStack, Duration.ofMillis(25))
+
+    assertThat(pinnedCount(jdbcStack)).isEqualTo(2.0)
+    assertThat(pinnedCount(otherStack)).isEqualTo(1.0)
+    assertThat(pinnedDurationSum(jdbcStack)).isEqualTo(80.0)
+  }
+
+  @Test
+  fun stackLabelsAreCapped() {
+    repeat(VirtualThreadPinningMonitor.MAX_STACKS + 5) {
+      monitor.record(listOf("Frame.method:$it"), Duration.ofMillis(20))
+    }
+
+    val otherCount =
+      registry.getSampleValue(
+        "virtual_thread_pinned_total",
+        arrayOf("stack_hash"),
+        arrayOf(VirtualThreadPinningMonitor.OTHER_STACKS),
+      )
+    assertThat(otherCount).isEqualTo(5.0)
+  }
+
+  private fun stackHash(frames: List<String>) = Integer.toHexString(frames.hashCode())
+
+  private fun pinnedCount(frames: List<String>) =
+    registry.getSampleValue("virtual_thread_pinned_total", arrayOf("stack_hash"), arrayOf(stackHash(frames)))
+
+  private fun pinnedDurationSum(frames: List<String>) =
+    registry.getSampleValue("virtual_thread_pinned_duration_ms_sum", arrayOf("stack_hash"), arrayOf(stackHash(frames)))
+}
@@ -2,7 +2,9 @@ package misk.grpc
 
 import com.squareup.protos.test.grpc.HelloReply
 import com.squareup.protos.test.grpc.HelloRequest
+import java.io.IOException
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
 import okio.Buffer
 import okio.ByteString.Companion.decodeHex
 import org.junit.jupiter.api.Test
@@ -135,4 +137,35 @@ class GrpcSourceSinkTest {
 
     assertEquals("000000000b0a096c6f63616c686f7374".decodeHex(), buffer.readByteString())
   }
+
+  @Test
+  fun streamOfMessagesRoundTrips() {
+    val buffer = Buffer()
+    val writer =
+      GrpcMessageSink(
+        sink = buffer,
+        minMessageToCompress = 20,
+        messageAdapter = HelloRequest.ADAPTER,
+        grpcEncoding = "gzip",
+      )
+    // Short names are sent as is, and long ones are compressed.
+    val messages = (1..100).map { HelloRequest("x".repeat(it)) }
+    for (message in messages) writer.write(message)
+    writer.close()
+
+    val reader = GrpcMessageSource(buffer, HelloRequest.ADAPTER, "gzip")
+    assertEquals(messages, generateSequence { reader.read() }.toList())
+  }
+
+  @Test
+  fun messageAfterAMalformedMessageIsRead() {
+    val buffer = Buffer()
+    // A message whose field claims more bytes than the message has, then a good message.
+    buffer.write("00000000020a09".decodeHex())
+    buffer.write("000000000b0a096c6f63616c686f7374".decodeHex())
+    val reader = GrpcMessageSource(buffer, HelloRequest.ADAPTER)
+
+    assertFailsWith<IOException> { reader.read() }
+    assertEquals(HelloRequest("localhost"), reader.read())
+  }
 }
@@ -4,7 +4,11 @@ import java.time.Duration
 import java.util.ArrayList
 import java.util.NoSuchElementException
 import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
 import kotlin.test.assertFalse
@@ -157,4 +161,72 @@ internal class TimedBlockingQueueTest {
     assertNull(queue.poll())
     assertNull(queue.poll(1, TimeUnit.SECONDS))
   }
+
+  @Test
+  fun removedItemsInTheMiddleAreSkipped() {
+    val delays = ArrayList<Long>()
+    val queue = TimedBlockingQueue<Int>(3) { delay: Duration -> delays.add(delay.toMillis()) }
+    queue.addAll(listOf(1, 2, 3))
+
+    assertTrue(queue.remove(2))
+    assertEquals(2, queue.size)
+    assertEquals(listOf(1, 3), queue.toList())
+    // The removed item still occupies its slot until it reaches the head.
+    assertFalse(queue.offer(4))
+
+    assertEquals(1, queue.poll())
+    assertEquals(3, queue.poll())
+    assertTrue(queue.offer(4))
+    assertEquals(4, queue.poll())
+    assertNull(queue.poll())
+    assertEquals(4, delays.size)
+  }
+
+  @Test
+  fun wrapsAroundTheRing() {
+    val queue = TimedBlockingQueue<Int>(3) {}
+    for (i in 0 until 10) {
+      assertTrue(queue.offer(i))
+      assertTrue(queue.offer(i + 100))
+      assertEquals(i, queue.poll())
+      assertEquals(i + 100, queue.poll())
+    }
+    assertEquals(3, queue.remainingCapacity())
+  }
+
+  @Test
+  fun concurrentProducersAndConsumersSeeEveryItemOnce() {
+    val producers = 4
+    val consumers = 4
+    val itemsPerProducer = 10_000
+    val delays = AtomicInteger()
+    val queue = TimedBlockingQueue<Int>(16) { delays.incrementAndGet() }
+    val received = ConcurrentHashMap.newKeySet<Int>()
+    val done = CountDownLatch(producers + consumers)
+    val executor = Executors.newFixedThreadPool(producers + consumers)
+    try {
+      repeat(producers) { p ->
+        executor.execute {
+          for (i in 0 until itemsPerProducer) queue.put(p * itemsPerProducer + i)
+          done.countDown()
+        }
+      }
+      repeat(consumers) {
+        executor.execute {
+          while (true) {
+            val item = queue.poll(1, TimeUnit.SECONDS) ?: break
+            assertTrue(received.add(item))
+          }
+          done.countDown()
+        }
+      }
+      assertTrue(done.await(30, TimeUnit.SECONDS))
+    } finally {
+      executor.shutdownNow()
+    }
+
+    assertEquals(producers * itemsPerProducer, received.size)
+    assertEquals(producers * itemsPerProducer, delays.get())
+    assertTrue(queue.isEmpty())
+  }
 }
@@ -107,6 +107,28 @@ internal class RepeatedTaskQueueTest {
     assertThat(taskQueue.metrics.taskDuration.count("my-task-queue", "no_work")).isEqualTo(1)
   }
 
+  @Test
+  fun timerWheelBackend() {
+    val queue =
+      repeatedTaskQueueFactory.new(
+        "timer-wheel-task-queue",
+        RepeatedTaskQueueConfig(use_timer_wheel = true, timer_wheel_tick_ms = 5),
+      )
+    queue.startAsync().awaitRunning()
+    try {
+      val latch = CountDownLatch(3)
+      queue.schedule(Duration.ZERO) {
+        latch.countDown()
+        if (latch.count > 0) Result(Status.OK, Duration.ZERO) else Result(Status.NO_RESCHEDULE, Duration.ZERO)
+      }
+      assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue()
+      assertThat(queue.metrics.taskDuration.count("timer-wheel-task-queue", "ok")).isEqualTo(2)
+      assertThat(queue.metrics.schedulingLag.count("timer-wheel-task-queue")).isGreaterThanOrEqualTo(2)
+    } finally {
+      queue.stopAsync().awaitTerminated()
+    }
+  }
+
   @Test
   fun ordersTasksByInitialDelay() {
     taskQueue.schedule(Duration.ofSeconds(10)) { Result(Status.OK, Duration.ofSeconds(5)) }
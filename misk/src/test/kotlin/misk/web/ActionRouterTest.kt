@@ -0,0 +1,136 @@
+package misk.web
+
+import jakarta.inject.Inject
+import misk.MiskTestingServiceModule
+import misk.inject.KAbstractModule
+import misk.testing.MiskTest
+import misk.testing.MiskTestModule
+import misk.web.actions.WebAction
+import misk.web.jetty.WebActionsServlet
+import misk.web.mediatype.MediaRange
+import misk.web.mediatype.MediaTypes
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.MediaType.Companion.toMediaType
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+
+@MiskTest(startService = true)
+internal class ActionRouterTest {
+  @MiskTestModule val module = TestModule()
+
+  @Inject private lateinit var webActionsServlet: WebActionsServlet
+
+  private val paths =
+    listOf(
+      "/",
+      "/org",
+      "/org/",
+      "/org/admin",
+      "/org/admin/",
+      "/org/admin/users",
+      "/org/admin/users/",
+      "/org/admin/users/bar",
+      "/org/admin/foo",
+      "/org/foo/bar",
+      "/org/unknown/caller/deep/path",
+      "/items/123",
+      "/items/abc",
+      "/items",
+      "/unknown",
+    )
+
+  @Test
+  fun matchesSameActionAsScanningEveryAction() {
+    val router = webActionsServlet.actionRouter
+    for (path in paths) {
+      for (dispatchMechanism in listOf(DispatchMechanism.GET, DispatchMechanism.POST)) {
+        for (contentType in listOf(null, MediaTypes.APPLICATION_JSON_MEDIA_TYPE, "text/plain".toMediaType())) {
+          val url = "http://example.com$path".toHttpUrl()
+          val accepts = MediaRange.parseRanges("*/*")
+          val expected =
+            webActionsServlet.boundActions
+              .mapNotNull { it.match(dispatchMechanism, contentType, accepts, url) }
+              .minOrNull()
+          val actual = router.match(dispatchMechanism, contentType, accepts, url)
+          assertThat(actual?.action).describedAs("$dispatchMechanism $path $contentType").isSameAs(expected?.action)
+        }
+      }
+    }
+  }
+
+  @Test
+  fun matchByUrlSameAsScanningEveryAction() {
+    val router = webActionsServlet.actionRouter
+    for (path in paths) {
+      val url = "http://example.com$path".toHttpUrl()
+      val expected = webActionsServlet.boundActions.mapNotNull { it.matchByUrl(url) }.map { it.action }
+      assertThat(router.matchByUrl(url).map { it.action }).describedAs(path).containsExactlyElementsOf(expected)
+    }
+  }
+
+  @Test
+  fun candidatesExcludeActionsWithIncompatibleLiteralPrefixes() {
+    val candidates =
+      webActionsServlet.actionRouter.candidates(DispatchMechanism.GET, "/items/123").map { it.pathPattern.pattern }
+    assertThat(candidates).contains("/items/{id}", "/{path:.*}")
+    assertThat(candidates).doesNotContain("/org/admin/users", "/org/admin/{subsection}", "/org/{section}/{subsection}")
+  }
+
+  class SpecificPathAction @Inject constructor() : WebAction {
+    @Get("/org/admin/users") @ResponseContentType(MediaTypes.TEXT_PLAIN_UTF8) fun handle() = "specific-path-action"
+  }
+
+  class SubsectionAction @Inject constructor() : WebAction {
+    @Get("/org/admin/{subsection}") @ResponseContentType(MediaTypes.TEXT_PLAIN_UTF8) fun handle() = "subsection-action"
+  }
+
+  class SectionAction @Inject constructor() : WebAction {
+    @Get("/org/{section}/{subsection}") @ResponseContentType(MediaTypes.TEXT_PLAIN_UTF8) fun handle() = "section-action"
+  }
+
+  class RemainderPathAction @Inject constructor() : WebAction {
+    @Get("/org/admin/{path:.*}") @ResponseContentType(MediaTypes.TEXT_PLAIN_UTF8) fun handle() = "remainder-path-action"
+  }
+
+  class GetItemAction @Inject constructor() : WebAction {
+    @Get("/items/{id:[0-9]+}") @ResponseContentType(MediaTypes.APPLICATION_JSON) fun handle() = "get-item"
+  }
+
+  class GetItemByNameAction @Inject constructor() : WebAction {
+    @Get("/items/{id}") @ResponseContentType(MediaTypes.APPLICATION_JSON) fun handle() = "get-item-by-name"
+  }
+
+  class PostItemJsonAction @Inject constructor() : WebAction {
+    @Post("/items/{id}")
+    @RequestContentType(MediaTypes.APPLICATION_JSON)
+    @ResponseContentType(MediaTypes.APPLICATION_JSON)
+    fun handle(@RequestBody body: String) = "post-item-json"
+  }
+
+  class PostItemTextAction @Inject constructor() : WebAction {
+    @Post("/items/{id}")
+    @RequestContentType(MediaTypes.TEXT_PLAIN_UTF8)
+    @ResponseContentType(MediaTypes.APPLICATION_JSON)
+    fun handle(@RequestBody body: String) = "post-item-text"
+  }
+
+  class WholePathAction @Inject constructor() : WebAction {
+    @Get("/{path:.*}") @ResponseContentType(MediaTypes.TEXT_PLAIN_UTF8) fun handle() = "whole-path"
+  }
+
+  class TestModule : KAbstractModule() {
+    override fun configure() {
+      install(WebServerTestingModule())
+      install(MiskTestingServiceModule())
+      install(WebActionModule.create<SpecificPathAction>())
+      install(WebActionModule.create<SubsectionAction>())
+      install(WebActionModule.create<SectionAction>())
+      install(WebActionModule.create<RemainderPathAction>())
+      install(WebActionModule.create<GetItemAction>())
+      install(WebActionModule.create<GetItemByNameAction>())
+      install(WebActionModule.create<PostItemJsonAction>())
+      install(WebActionModule.create<PostItemTextAction>())
+      install(WebActionModule.create<WholePathAction>())
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package misk.web.concurrencylimits
+
+import com.netflix.concurrency.limits.Limiter
+import com.netflix.concurrency.limits.limit.SettableLimit
+import java.time.Duration
+import java.util.Optional
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class PartitionedLimiterTest {
+  private val executor = Executors.newCachedThreadPool()
+
+  @AfterEach
+  fun tearDown() {
+    executor.shutdownNow()
+  }
+
+  @Test
+  fun partitionMayBorrowUpToTheOverallLimit() {
+    val limiter = limiter(limit = 10, partitions = mapOf("noisy" to 0.5, "quiet" to 0.3))
+
+    val noisy = List(10) { limiter.acquire("noisy") }
+    assertThat(noisy).allMatch { it.isPresent }
+    assertThat(limiter.acquire("noisy")).isEmpty()
+    assertThat(limiter.inflight).isEqualTo(10)
+  }
+
+  @Test
+  fun partitionWithinItsShareIsAdmittedWhenOthersUsedTheLimit() {
+    val limiter = limiter(limit = 10, partitions = mapOf("noisy" to 0.5, "quiet" to 0.3))
+    repeat(10) { limiter.acquire("noisy") }
+
+    // quiet is guaranteed 3 of 10.
+    val quiet = List(3) { limiter.acquire("quiet") }
+    assertThat(quiet).allMatch { it.isPresent }
+    assertThat(limiter.acquire("quiet")).isEmpty()
+    assertThat(limiter.partitionInflight("quiet")).isEqualTo(3)
+    assertThat(limiter.partitionLimit("quiet")).isEqualTo(3)
+
+    // Unlisted callers share the default partition, which gets the remaining 2 of 10.
+    assertThat(limiter.partitionName("someone-else")).isEqualTo(PartitionedLimiter.DEFAULT_PARTITION)
+    assertThat(limiter.acquire("someone-else")).isPresent()
+    assertThat(limiter.acquire("someone-else-again")).isPresent()
+    assertThat(limiter.acquire("someone-else")).isEmpty()
+  }
+
+  @Test
+  fun releasingFreesCapacity() {
+    val limiter = limiter(limit = 1)
+    val first = limiter.acquire("a").get()
+    assertThat(limiter.acquire("a")).isEmpty()
+
+    first.onSuccess()
+    val second = limiter.acquire("a")
+    assertThat(second).isPresent()
+    second.get().onIgnore()
+    assertThat(limiter.inflight).isEqualTo(0)
+  }
+
+  @Test
+  fun queuedCallIsAdmittedWhenCapacityFrees() {
+    val limiter = limiter(limit = 1, maxQueueSize = 1, maxQueueWait = Duration.ofSeconds(10))
+    val held = limiter.acquire("a").get()
+
+    val waiting = executor.submit<Optional<Limiter.Listener>> { limiter.acquire("a") }
+    awaitQueued(limiter, 1)
+    held.onSuccess()
+
+    assertThat(waiting.get(10, TimeUnit.SECONDS)).isPresent()
+    assertThat(limiter.queued).isEqualTo(0)
+  }
+
+  @Test
+  fun queueIsServedNewestFirst() {
+    val limiter = limiter(limit = 1, maxQueueSize = 2, maxQueueWait = Duration.ofSeconds(10))
+    val held = limiter.acquire("a").get()
+
+    val oldest = executor.submit<Optional<Limiter.Listener>> { limiter.acquire("a") }
+    awaitQueued(limiter, 1)
+    val newest = executor.submit<Optional<Limiter.Listener>> { limiter.acquire("a") }
+    awaitQueued(limiter, 2)
+
+    // A full queue rejects immediately.
+    assertThat(limiter.acquire("a")).isEmpty()
+
+    held.onSuccess()
+    newest.get(10, TimeUnit.SECONDS).get().onSuccess()
+    assertThat(oldest.get(10, TimeUnit.SECONDS)).isPresent()
+  }
+
+  @Test
+  fun queuedCallTimesOut() {
+    val limiter = limiter(limit = 1, maxQueueSize = 1, maxQueueWait = Duration.ofMillis(10))
+    limiter.acquire("a").get()
+
+    assertThat(limiter.acquire("a")).isEmpty()
+    assertThat(limiter.queued).isEqualTo(0)
+  }
+
+  @Test
+  fun limitChangesApplyToQueuedCalls() {
+    val limit = SettableLimit(1)
+    val limiter = PartitionedLimiter(limit, mapOf(), maxQueueSize = 1, maxQueueWait = Duration.ofSeconds(10))
+    limiter.acquire("a").get()
+
+    val waiting = executor.submit<Optional<Limiter.Listener>> { limiter.acquire("a") }
+    awaitQueued(limiter, 1)
+    limit.setLimit(2)
+
+    assertThat(waiting.get(10, TimeUnit.SECONDS)).isPresent()
+  }
+
+  @Test
+  fun sharesMustNotExceedTheLimit() {
+    assertThatThrownBy { limiter(limit = 10, partitions = mapOf("a" to 0.6, "b" to 0.6)) }
+      .isInstanceOf(IllegalArgumentException::class.java)
+    assertThatThrownBy { limiter(limit = 10, partitions = mapOf(PartitionedLimiter.DEFAULT_PARTITION to 0.5)) }
+      .isInstanceOf(IllegalArgumentException::class.java)
+  }
+
+  private fun limiter(
+    limit: Int,
+    partitions: Map<String, Double> = mapOf(),
+    maxQueueSize: Int = 0,
+    maxQueueWait: Duration = Duration.ZERO,
+  ) = PartitionedLimiter(SettableLimit(limit), partitions, maxQueueSize, maxQueueWait)
+
+  private fun awaitQueued(limiter: PartitionedLimiter, count: Int) {
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10)
+    while (limiter.queued < count) {
+      check(System.nanoTime() < deadline) { "timed out waiting for $count queued calls" }
+      Thread.sleep(1)
+    }
+  }
+}
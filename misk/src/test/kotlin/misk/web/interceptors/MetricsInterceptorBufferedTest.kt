@@ -0,0 +1,114 @@
+package misk.web.interceptors
+
+import io.prometheus.client.CollectorRegistry
+import io.prometheus.client.Histogram
+import jakarta.inject.Inject
+import misk.MiskTestingServiceModule
+import misk.inject.KAbstractModule
+import misk.metrics.backends.prometheus.PrometheusConfig
+import misk.security.authz.AccessControlModule
+import misk.security.authz.FakeCallerAuthenticator
+import misk.security.authz.FakeCallerAuthenticator.Companion.SERVICE_HEADER
+import misk.security.authz.MiskCallerAuthenticator
+import misk.security.authz.Unauthenticated
+import misk.testing.MiskTest
+import misk.testing.MiskTestModule
+import misk.web.Get
+import misk.web.PathParam
+import misk.web.Response
+import misk.web.WebActionModule
+import misk.web.WebServerTestingModule
+import misk.web.actions.WebAction
+import misk.web.jetty.JettyService
+import okhttp3.OkHttpClient
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+@MiskTest(startService = true)
+class MetricsInterceptorBufferedTest {
+  @MiskTestModule val module = TestModule()
+  val httpClient = OkHttpClient()
+
+  @Inject private lateinit var metricsInterceptorFactory: MetricsInterceptor.Factory
+  @Inject private lateinit var prometheusRegistry: CollectorRegistry
+  @Inject private lateinit var jettyService: JettyService
+
+  private fun labels(code: Int, service: String = "unknown") =
+    arrayOf("MetricsInterceptorBufferedTestAction", service, code.toString())
+
+  @BeforeEach
+  fun sendRequests() {
+    invoke(200)
+    invoke(200)
+    invoke(404)
+    invoke(200, "my-peer")
+  }
+
+  @Test
+  fun latenciesAreRecordedOnFlush() {
+    val histoDuration = metricsInterceptorFactory.requestDurationHistogram
+    val summaryDuration = metricsInterceptorFactory.requestDurationSummary!!
+    assertThat(histoDuration.labels(*labels(200)).get().count()).isEqualTo(0)
+
+    metricsInterceptorFactory.flush()
+
+    assertThat(histoDuration.labels(*labels(200)).get().count()).isEqualTo(2)
+    assertThat(histoDuration.labels(*labels(404)).get().count()).isEqualTo(1)
+    assertThat(histoDuration.labels(*labels(200, "my-peer")).get().count()).isEqualTo(1)
+    assertThat(summaryDuration.labels(*labels(200)).get().count.toInt()).isEqualTo(2)
+    assertThat(summaryDuration.labels(*labels(404)).get().count.toInt()).isEqualTo(1)
+  }
+
+  @Test
+  fun scrapingFlushesLatencies() {
+    prometheusRegistry.metricFamilySamples().toList()
+    // The flush may run after the latency metrics were collected, but it has run by the time the scrape is done.
+    val histoDuration = metricsInterceptorFactory.requestDurationHistogram
+    assertThat(histoDuration.labels(*labels(200)).get().count()).isEqualTo(2)
+  }
+
+  @Test
+  fun manyLatenciesAreAllRecorded() {
+    repeat(200) { invoke(202) }
+
+    // Some of these were applied when their buffer filled up, and the rest when flushed.
+    metricsInterceptorFactory.flush()
+    val histoDuration = metricsInterceptorFactory.requestDurationHistogram
+    assertThat(histoDuration.labels(*labels(202)).get().count()).isEqualTo(200)
+  }
+
+  fun invoke(desiredStatusCode: Int, service: String? = null): okhttp3.Response {
+    val url = jettyService.httpServerUrl.newBuilder().encodedPath("/call/$desiredStatusCode").build()
+
+    val request = okhttp3.Request.Builder().url(url).get()
+    service?.let { request.addHeader(SERVICE_HEADER, it) }
+    return httpClient.newCall(request.build()).execute().use {
+      assertThat(it.code).isEqualTo(desiredStatusCode)
+      it
+    }
+  }
+
+  private fun Histogram.Child.Value.count() = buckets.last().toInt()
+
+  class TestModule : KAbstractModule() {
+    override fun configure() {
+      install(AccessControlModule())
+      install(WebServerTestingModule())
+      install(MiskTestingServiceModule())
+      multibind<MiskCallerAuthenticator>().to<FakeCallerAuthenticator>()
+      install(WebActionModule.create<MetricsInterceptorBufferedTestAction>())
+
+      bind<PrometheusConfig>().toInstance(PrometheusConfig(buffer_request_latency_metrics = true))
+      bind<MetricsInterceptor.Factory>()
+    }
+  }
+}
+
+internal class MetricsInterceptorBufferedTestAction @Inject constructor() : WebAction {
+  @Get("/call/{desiredStatusCode}")
+  @Unauthenticated
+  fun call(@PathParam desiredStatusCode: Int): Response<String> {
+    return Response("foo", statusCode = desiredStatusCode)
+  }
+}
@@ -2,6 +2,8 @@ package wisp.launchdarkly
 
 import io.micrometer.core.instrument.Counter
 import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Timer
+import java.util.concurrent.TimeUnit
 
 class LaunchDarklyClientMetrics(private val meterRegistry: MeterRegistry) {
 
@@ -9,6 +11,12 @@ class LaunchDarklyClientMetrics(private val meterRegistry: MeterRegistry) {
 
   private var initFailure: Counter = meterRegistry.counter(FAILED_COUNTER_NAME)
 
+  private val evaluationDuration: Timer = meterRegistry.timer(EVALUATION_DURATION_NAME)
+
+  private val evaluationCacheHits: Counter = meterRegistry.counter(EVALUATION_CACHE_HITS_COUNTER_NAME)
+
+  private val evaluationCacheMisses: Counter = meterRegistry.counter(EVALUATION_CACHE_MISSES_COUNTER_NAME)
+
   fun onInitSuccess(duration: Long) {
     initSuccess.increment()
     meterRegistry.gauge(INITIALIZATION_DURATION_NAME, duration)
@@ -18,9 +26,30 @@ class LaunchDarklyClientMetrics(private val meterRegistry: MeterRegistry) {
     initFailure.increment()
   }
 
+  /** Records how long the LaunchDarkly client took to evaluate one flag. */
+  fun <T> timeEvaluation(evaluation: () -> T): T {
+    val startNanos = System.nanoTime()
+    try {
+      return evaluation()
+    } finally {
+      evaluationDuration.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS)
+    }
+  }
+
+  fun onEvaluationCacheHit() {
+    evaluationCacheHits.increment()
+  }
+
+  fun onEvaluationCacheMiss() {
+    evaluationCacheMisses.increment()
+  }
+
   companion object {
     const val INITIALIZATION_DURATION_NAME = "ld_initialization_duration_ms"
     const val SUCCESS_COUNTER_NAME = "ld_initialization_success_total"
     const val FAILED_COUNTER_NAME = "ld_initialization_failed_total"
+    const val EVALUATION_DURATION_NAME = "ld_evaluation_duration"
+    const val EVALUATION_CACHE_HITS_COUNTER_NAME = "ld_evaluation_cache_hits_total"
+    const val EVALUATION_CACHE_MISSES_COUNTER_NAME = "ld_evaluation_cache_misses_total"
   }
 }
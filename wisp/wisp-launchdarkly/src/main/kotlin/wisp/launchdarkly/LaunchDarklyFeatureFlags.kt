@@ -1,17 +1,22 @@
 package wisp.launchdarkly
 
 import com.google.common.base.Preconditions.checkState
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import com.launchdarkly.sdk.EvaluationDetail
 import com.launchdarkly.sdk.EvaluationReason
 import com.launchdarkly.sdk.LDContext
 import com.launchdarkly.sdk.LDValue
+import com.launchdarkly.sdk.LDValueType
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface
 import com.squareup.moshi.JsonDataException
 import com.squareup.moshi.Moshi
 import io.micrometer.core.instrument.MeterRegistry
 import io.micrometer.core.instrument.Metrics
+import java.time.Duration
 import java.util.Locale
 import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.system.measureTimeMillis
 import mu.KotlinLogging
 import wisp.feature.Attributes
@@ -30,6 +35,11 @@ import wisp.feature.fromSafeJson
 /**
  * Implementation of [FeatureFlags] using LaunchDarkly's Java SDK. See
  * https://docs.launchdarkly.com/docs/java-sdk-reference documentation.
+ *
+ * @param evaluationCacheTtl if non-null, how long to reuse the result of evaluating a flag for the same key and
+ *   attributes. Cached results are dropped as soon as LaunchDarkly reports a change to their flag, so this mostly
+ *   bounds staleness for changes it doesn't report. Evaluations served from the cache aren't reported to LaunchDarkly,
+ *   so its flag insights undercount them. The cache is enabled by [startUp].
  */
 class LaunchDarklyFeatureFlags
 @JvmOverloads
@@ -37,6 +47,7 @@ constructor(
   private val ldClient: Lazy<LDClientInterface>,
   private val moshi: Moshi,
   meterRegistry: MeterRegistry = Metrics.globalRegistry,
+  private val evaluationCacheTtl: Duration? = null,
 ) : FeatureFlags {
   @Deprecated("Only here for binary compatibility.")
   @JvmOverloads
@@ -49,6 +60,11 @@ constructor(
   private var featuresWithMigrationWarnings: MutableList<Feature> = mutableListOf()
   private val launchDarklyClientMetrics = LaunchDarklyClientMetrics(meterRegistry)
 
+  @Volatile private var evaluationCache: Cache<EvaluationKey, EvaluationDetail<*>>? = null
+
+  /** Incremented on every flag change, so evaluations that raced with a change aren't cached. */
+  private val flagChanges = AtomicLong()
+
   fun startUp(): LaunchDarklyFeatureFlags {
     val timedResult = measureTimeMillis {
       var attempts = 300
@@ -70,6 +86,19 @@ constructor(
     }
     launchDarklyClientMetrics.onInitSuccess(timedResult)
     logger.info { "LaunchDarkly successfully initialized in $timedResult ms" }
+
+    if (evaluationCacheTtl != null && evaluationCache == null) {
+      val cache =
+        CacheBuilder.newBuilder()
+          .expireAfterWrite(evaluationCacheTtl)
+          .maximumSize(MAX_CACHED_EVALUATIONS)
+          .build<EvaluationKey, EvaluationDetail<*>>()
+      ldClient.value.flagTracker.addFlagChangeListener { event ->
+        flagChanges.incrementAndGet()
+        cache.asMap().keys.removeIf { it.flag == event.key }
+      }
+      evaluationCache = cache
+    }
     return this
   }
 
@@ -82,14 +111,64 @@ constructor(
     feature: Feature,
     key: String,
     attributes: Attributes,
+    type: VariationType,
     callLdVariation: (String, LDContext) -> EvaluationDetail<T>,
   ): T {
     checkInitialized()
-    val result = callLdVariation(feature.name, buildContext(feature, key, attributes))
+    val result = evaluate(feature, key, attributes, type, { buildContext(feature, key, attributes) }, callLdVariation)
     checkDefaultNotUsed(feature, result)
     return result.value
   }
 
+  /** Evaluates [feature], reusing a cached result for the same key and attributes if there is one. */
+  private fun <T> evaluate(
+    feature: Feature,
+    key: String,
+    attributes: Attributes,
+    type: VariationType,
+    context: () -> LDContext,
+    callLdVariation: (String, LDContext) -> EvaluationDetail<T>,
+  ): EvaluationDetail<T> {
+    val cache =
+      evaluationCache
+        ?: return launchDarklyClientMetrics.timeEvaluation { callLdVariation(feature.name, context()) }
+
+    val cacheKey = EvaluationKey(feature.name, key, attributes, type)
+    @Suppress("UNCHECKED_CAST") val cached = cache.getIfPresent(cacheKey) as EvaluationDetail<T>?
+    if (cached != null) {
+      launchDarklyClientMetrics.onEvaluationCacheHit()
+      return cached
+    }
+    launchDarklyClientMetrics.onEvaluationCacheMiss()
+
+    val flagChangesBefore = flagChanges.get()
+    val result = launchDarklyClientMetrics.timeEvaluation { callLdVariation(feature.name, context()) }
+    // Errors may be transient, so only cache successful evaluations.
+    if (result.reason.kind != EvaluationReason.Kind.ERROR) {
+      cache.put(cacheKey, result)
+      if (flagChanges.get() != flagChangesBefore) cache.invalidate(cacheKey)
+    }
+    return result
+  }
+
+  /**
+   * Evaluates [features] for [key] and [attributes] together: the context is built once and each flag is evaluated
+   * against it up front. A flag that fails to evaluate throws when its value is read.
+   */
+  @JvmOverloads
+  fun getAll(features: Collection<Feature>, key: String, attributes: Attributes = Attributes()): FlagValues {
+    checkInitialized()
+    val context by lazy(LazyThreadSafetyMode.NONE) { buildContext(features.first(), key, attributes) }
+    val results =
+      features.associate { feature ->
+        feature.name to
+          evaluate(feature, key, attributes, VariationType.JSON, { context }) { name, ldContext ->
+            ldClient.value.jsonValueVariationDetail(name, ldContext, LDValue.ofNull())
+          }
+      }
+    return FlagValues(results)
+  }
+
   override fun get(flag: BooleanFeatureFlag): Boolean = getBoolean(flag.feature, flag.key, flag.attributes)
 
   override fun get(flag: StringFeatureFlag): String = getString(flag.feature, flag.key, flag.attributes)
@@ -106,26 +185,36 @@ constructor(
     getJson(flag.feature, flag.key, flag.returnType, flag.attributes)
 
   override fun getBoolean(feature: Feature, key: String, attributes: Attributes): Boolean =
-    get(feature, key, attributes) { name, context -> ldClient.value.boolVariationDetail(name, context, false) }
+    get(feature, key, attributes, VariationType.BOOLEAN) { name, context ->
+      ldClient.value.boolVariationDetail(name, context, false)
+    }
 
   override fun getDouble(feature: Feature, key: String, attributes: Attributes): Double =
-    get(feature, key, attributes) { name, context -> ldClient.value.doubleVariationDetail(name, context, 0.0) }
+    get(feature, key, attributes, VariationType.DOUBLE) { name, context ->
+      ldClient.value.doubleVariationDetail(name, context, 0.0)
+    }
 
   override fun getInt(feature: Feature, key: String, attributes: Attributes): Int =
-    get(feature, key, attributes) { name, context -> ldClient.value.intVariationDetail(name, context, 0) }
+    get(feature, key, attributes, VariationType.INT) { name, context ->
+      ldClient.value.intVariationDetail(name, context, 0)
+    }
 
   override fun getString(feature: Feature, key: String, attributes: Attributes): String =
-    get(feature, key, attributes) { name, context -> ldClient.value.stringVariationDetail(name, context, "") }
+    get(feature, key, attributes, VariationType.STRING) { name, context ->
+      ldClient.value.stringVariationDetail(name, context, "")
+    }
 
   override fun <T : Enum<T>> getEnum(feature: Feature, key: String, clazz: Class<T>, attributes: Attributes): T {
     val result =
-      get(feature, key, attributes) { name, context -> ldClient.value.stringVariationDetail(name, context, "") }
+      get(feature, key, attributes, VariationType.STRING) { name, context ->
+        ldClient.value.stringVariationDetail(name, context, "")
+      }
     return java.lang.Enum.valueOf(clazz, result.uppercase(Locale.getDefault()))
   }
 
   override fun <T> getJson(feature: Feature, key: String, clazz: Class<T>, attributes: Attributes): T {
     val result =
-      get(feature, key, attributes) { name, context ->
+      get(feature, key, attributes, VariationType.JSON) { name, context ->
         ldClient.value.jsonValueVariationDetail(name, context, LDValue.ofNull())
       }
     return moshi.adapter(clazz).fromSafeJson(result.toJsonString()) { exception ->
@@ -135,7 +224,7 @@ constructor(
 
   override fun getJsonString(feature: Feature, key: String, attributes: Attributes): String {
     val result =
-      get(feature, key, attributes) { name, context ->
+      get(feature, key, attributes, VariationType.JSON) { name, context ->
         ldClient.value.jsonValueVariationDetail(name, context, LDValue.ofNull())
       }
     return result.toJsonString()
@@ -313,7 +402,55 @@ constructor(
     }
   }
 
+  /** The values of the flags evaluated together by [getAll]. */
+  inner class FlagValues internal constructor(private val results: Map<String, EvaluationDetail<LDValue>>) {
+    fun getBoolean(feature: Feature): Boolean = value(feature, LDValueType.BOOLEAN).booleanValue()
+
+    fun getDouble(feature: Feature): Double = value(feature, LDValueType.NUMBER).doubleValue()
+
+    fun getInt(feature: Feature): Int = value(feature, LDValueType.NUMBER).intValue()
+
+    fun getString(feature: Feature): String = value(feature, LDValueType.STRING).stringValue()
+
+    fun <T : Enum<T>> getEnum(feature: Feature, clazz: Class<T>): T =
+      java.lang.Enum.valueOf(clazz, getString(feature).uppercase(Locale.getDefault()))
+
+    fun <T> getJson(feature: Feature, clazz: Class<T>): T =
+      moshi.adapter(clazz).fromSafeJson(value(feature, null).toJsonString()) { exception ->
+        logJsonMigrationWarningOnce(feature, exception)
+      } ?: throw IllegalArgumentException("null value deserialized from $feature")
+
+    fun getJsonString(feature: Feature): String = value(feature, null).toJsonString()
+
+    private fun value(feature: Feature, type: LDValueType?): LDValue {
+      val result = requireNotNull(results[feature.name]) { "$feature wasn't passed to getAll" }
+      checkDefaultNotUsed(feature, result)
+      // Matches the WRONG_TYPE error LaunchDarkly reports when a typed variation doesn't match the flag.
+      if (type != null && result.value.type != type) {
+        throw RuntimeException("Feature flag $feature evaluation failed: expected $type but was ${result.value.type}")
+      }
+      return result.value
+    }
+  }
+
+  private enum class VariationType {
+    BOOLEAN,
+    DOUBLE,
+    INT,
+    STRING,
+    JSON,
+  }
+
+  private data class EvaluationKey(
+    val flag: String,
+    val key: String,
+    val attributes: Attributes,
+    val type: VariationType,
+  )
+
   companion object {
     private val logger = KotlinLogging.logger {}
+
+    private const val MAX_CACHED_EVALUATIONS = 10_000L
   }
 }
@@ -1,7 +1,12 @@
 package wisp.launchdarkly
 
 import com.launchdarkly.sdk.*
+import com.launchdarkly.sdk.server.interfaces.FlagChangeEvent
+import com.launchdarkly.sdk.server.interfaces.FlagChangeListener
+import com.launchdarkly.sdk.server.interfaces.FlagTracker
 import com.launchdarkly.sdk.server.interfaces.LDClientInterface
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import java.time.Duration
 import org.assertj.core.api.Assertions.assertThat
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
@@ -121,6 +126,63 @@ internal class LaunchDarklyFeatureFlagsTest {
     assertThat(feature).isEqualTo("""{"value":"dino"}""")
   }
 
+  @Test
+  fun getAll() {
+    val values = mapOf("enabled" to LDValue.of(true), "limit" to LDValue.of(5), "dinosaur" to LDValue.of("pterodactyl"))
+    Mockito.`when`(client.jsonValueVariationDetail(anyString(), any(LDContext::class.java), any(LDValue::class.java)))
+      .thenAnswer { EvaluationDetail.fromValue(values[it.getArgument<String>(0)], 1, EvaluationReason.targetMatch()) }
+
+    val flags =
+      (featureFlags as LaunchDarklyFeatureFlags).getAll(
+        listOf(Feature("enabled"), Feature("limit"), Feature("dinosaur")),
+        "abcd",
+        Attributes(mapOf("continent" to "europa")),
+      )
+
+    assertThat(flags.getBoolean(Feature("enabled"))).isTrue()
+    assertThat(flags.getInt(Feature("limit"))).isEqualTo(5)
+    assertThat(flags.getEnum(Feature("dinosaur"), Dinosaur::class.java)).isEqualTo(Dinosaur.PTERODACTYL)
+    assertThrows<RuntimeException> { flags.getString(Feature("enabled")) }
+    assertThrows<IllegalArgumentException> { flags.getBoolean(Feature("other")) }
+
+    // Every flag was evaluated against the same context.
+    val contextCaptor = ArgumentCaptor.forClass(LDContext::class.java)
+    verify(client, times(3)).jsonValueVariationDetail(anyString(), contextCaptor.capture(), eq(LDValue.ofNull()))
+    assertThat(contextCaptor.allValues.toSet()).hasSize(1)
+  }
+
+  @Test
+  fun evaluationCache() {
+    val flagTracker = mock(FlagTracker::class.java)
+    Mockito.`when`(client.flagTracker).thenReturn(flagTracker)
+    Mockito.`when`(client.stringVariationDetail(anyString(), any(LDContext::class.java), anyString()))
+      .thenReturn(EvaluationDetail.fromValue("value", 1, EvaluationReason.targetMatch()))
+    val meterRegistry = SimpleMeterRegistry()
+    val cachingFeatureFlags =
+      LaunchDarklyFeatureFlags(lazy { client }, moshi, meterRegistry, Duration.ofMinutes(1)).startUp()
+    val listenerCaptor = ArgumentCaptor.forClass(FlagChangeListener::class.java)
+    verify(flagTracker).addFlagChangeListener(listenerCaptor.capture())
+
+    assertThat(cachingFeatureFlags.getString(Feature("key"), "user")).isEqualTo("value")
+    assertThat(cachingFeatureFlags.getString(Feature("key"), "user")).isEqualTo("value")
+    verify(client, times(1)).stringVariationDetail(eq("key"), any(LDContext::class.java), eq(""))
+
+    // Other keys and attributes are evaluated separately.
+    cachingFeatureFlags.getString(Feature("key"), "user", Attributes(mapOf("continent" to "europa")))
+    verify(client, times(2)).stringVariationDetail(eq("key"), any(LDContext::class.java), eq(""))
+
+    // A change to the flag drops its cached evaluations.
+    listenerCaptor.value.onFlagChange(FlagChangeEvent("key"))
+    cachingFeatureFlags.getString(Feature("key"), "user")
+    verify(client, times(3)).stringVariationDetail(eq("key"), any(LDContext::class.java), eq(""))
+
+    assertThat(meterRegistry.counter(LaunchDarklyClientMetrics.EVALUATION_CACHE_HITS_COUNTER_NAME).count())
+      .isEqualTo(1.0)
+    assertThat(meterRegistry.counter(LaunchDarklyClientMetrics.EVALUATION_CACHE_MISSES_COUNTER_NAME).count())
+      .isEqualTo(3.0)
+    assertThat(meterRegistry.timer(LaunchDarklyClientMetrics.EVALUATION_DURATION_NAME).count()).isEqualTo(3)
+  }
+
   @Test
   fun invalidKeys() {
     assertThrows<IllegalArgumentException> { featureFlags.getEnum<Dinosaur>(Feature("which-dinosaur"), "") }
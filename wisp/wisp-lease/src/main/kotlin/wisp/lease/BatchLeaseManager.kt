@@ -0,0 +1,16 @@
+package wisp.lease
+
+/**
+ * A [LeaseManager] that can request many leases at once.
+ *
+ * Processes that own hundreds of leases (e.g. one per shard) should prefer [requestLeases] over calling [requestLease]
+ * in a loop; implementations backed by remote storage acquire the whole batch in a constant number of round trips.
+ */
+interface BatchLeaseManager : LeaseManager {
+  /**
+   * Registers interest in, and attempts to acquire, the leases with the given names.
+   *
+   * @return a lease for every requested name. Leases that could not be acquired are returned in a not-held state.
+   */
+  fun requestLeases(names: Collection<String>): Map<String, Lease>
+}
@@ -7,6 +7,7 @@ dependencies {
   api(project(":wisp:wisp-rate-limiting"))
   api(libs.bucket4jCore)
   api(libs.micrometerCore)
+  implementation(libs.loggingApi)
 
 
   testImplementation(libs.assertj)
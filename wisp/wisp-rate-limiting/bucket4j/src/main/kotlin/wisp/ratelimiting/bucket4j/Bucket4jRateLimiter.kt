@@ -2,7 +2,6 @@ package wisp.ratelimiting.bucket4j
 
 import io.github.bucket4j.Bandwidth
 import io.github.bucket4j.BucketConfiguration
-import io.github.bucket4j.ConsumptionProbe
 import io.github.bucket4j.EstimationProbe
 import io.github.bucket4j.TokensInheritanceStrategy
 import io.github.bucket4j.distributed.BucketProxy
@@ -17,14 +16,22 @@ import wisp.ratelimiting.RateLimiter
 import wisp.ratelimiting.RateLimiterMetrics
 import wisp.ratelimiting.RateLimiterMetrics.ConsumptionResult
 
+/**
+ * A [RateLimiter] backed by Bucket4j buckets in a distributed store.
+ *
+ * @param tokenLeasing if non-null, this process leases tokens from each bucket in blocks and consumes them locally,
+ *   so most calls to [consumeToken] don't make a round trip to the store.
+ */
 class Bucket4jRateLimiter
 @JvmOverloads
 constructor(
   private val bucketProxy: ProxyManager<String>,
   private val clock: Clock,
   meterRegistry: MeterRegistry = Metrics.globalRegistry,
+  tokenLeasing: TokenLeasing? = null,
 ) : RateLimiter {
   private val metrics = RateLimiterMetrics(meterRegistry)
+  private val tokenLeases = tokenLeasing?.let { TokenLeases(it, clock, ::getBucketProxy) }
 
   override fun consumeToken(
     key: String,
@@ -33,20 +40,20 @@ constructor(
   ): RateLimiter.ConsumptionData {
     val result =
       try {
-        var consumptionProbe: ConsumptionProbe
+        var consumptionData: RateLimiter.ConsumptionData
         val millisTaken = measureTimeMillis {
-          val bucket = getBucketProxy(key, configuration)
-          consumptionProbe = bucket.tryConsumeAndReturnRemaining(amount)
+          consumptionData =
+            tokenLeases?.consume(key, configuration, amount) ?: consumeFromBucket(key, configuration, amount)
         }
         metrics.limitConsumptionDuration(configuration).record(millisTaken.toDouble())
 
-        consumptionProbe
+        consumptionData
       } catch (e: Exception) {
         metrics.consumptionAttempts(configuration, ConsumptionResult.EXCEPTION).increment()
         throw e
       }
     val metricResult =
-      if (result.isConsumed) {
+      if (result.didConsume) {
         ConsumptionResult.SUCCESS
       } else {
         ConsumptionResult.REJECTED
@@ -55,10 +62,20 @@ constructor(
     if (metricResult == ConsumptionResult.SUCCESS) {
       metrics.tokensConsumed(configuration).increment(amount.toDouble())
     }
+    return result
+  }
+
+  private fun consumeFromBucket(
+    key: String,
+    configuration: RateLimitConfiguration,
+    amount: Long,
+  ): RateLimiter.ConsumptionData {
+    val bucket = getBucketProxy(key, configuration)
+    val consumptionProbe = bucket.tryConsumeAndReturnRemaining(amount)
     return RateLimiter.ConsumptionData(
-      didConsume = result.isConsumed,
-      remaining = result.remainingTokens,
-      resetTime = clock.instant().plusNanos(result.nanosToWaitForReset),
+      didConsume = consumptionProbe.isConsumed,
+      remaining = consumptionProbe.remainingTokens,
+      resetTime = clock.instant().plusNanos(consumptionProbe.nanosToWaitForReset),
     )
   }
 
@@ -74,9 +91,10 @@ constructor(
     }
     metrics.limitTestDuration(configuration).record(millisTaken.toDouble())
 
+    val leasedTokens = tokenLeases?.leasedTokens(key) ?: 0L
     return RateLimiter.TestConsumptionResult(
-      couldHaveConsumed = estimationProbe.canBeConsumed(),
-      remaining = estimationProbe.remainingTokens,
+      couldHaveConsumed = estimationProbe.canBeConsumed() || leasedTokens >= amount,
+      remaining = estimationProbe.remainingTokens + leasedTokens,
       resetTime = clock.instant().plusNanos(estimationProbe.nanosToWaitForRefill),
     )
   }
@@ -96,13 +114,14 @@ constructor(
       availableTokens = bucket.availableTokens
     }
     metrics.limitAvailabilityDuration(configuration).record(millisTaken.toDouble())
-    return availableTokens
+    return availableTokens + (tokenLeases?.leasedTokens(key) ?: 0L)
   }
 
   override fun resetBucket(key: String, configuration: RateLimitConfiguration) {
     val millisTaken = measureTimeMillis {
       val bucket = getBucketProxy(key, configuration)
       bucket.reset()
+      tokenLeases?.discard(key)
     }
     metrics.limitResetDuration(configuration).record(millisTaken.toDouble())
   }
@@ -0,0 +1,213 @@
+package wisp.ratelimiting.bucket4j
+
+import io.github.bucket4j.distributed.BucketProxy
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import mu.KotlinLogging
+import wisp.ratelimiting.RateLimitConfiguration
+import wisp.ratelimiting.RateLimiter
+
+/**
+ * Lets each process lease blocks of tokens from a distributed bucket and consume them locally, so most calls to
+ * [Bucket4jRateLimiter.consumeToken] don't make a round trip to the bucket's store.
+ *
+ * Tokens are taken from the bucket before they're handed out, so leasing never admits more than the bucket allows.
+ * What it trades is accuracy for throughput: tokens leased by one process can't be used by another until they're
+ * consumed or returned, so a bucket may reject calls while up to [leaseSize] tokens per process sit unused.
+ *
+ * @param leaseSize how many tokens a process leases at a time, capped at the bucket's capacity. Calls for more tokens
+ *   than this go to the bucket directly.
+ * @param leaseDuration how long a process keeps a lease. A lease that's still in use when it expires is renewed along
+ *   with its unused tokens; one that isn't has its unused tokens returned to the bucket.
+ */
+data class TokenLeasing
+@JvmOverloads
+constructor(val leaseSize: Long = 10L, val leaseDuration: Duration = Duration.ofSeconds(1)) {
+  init {
+    require(leaseSize > 0) { "leaseSize must be positive: $leaseSize" }
+    require(!leaseDuration.isNegative && !leaseDuration.isZero) { "leaseDuration must be positive: $leaseDuration" }
+  }
+}
+
+/** The tokens this process has leased from each bucket. */
+internal class TokenLeases(
+  private val leasing: TokenLeasing,
+  private val clock: Clock,
+  private val getBucketProxy: (String, RateLimitConfiguration) -> BucketProxy,
+) {
+  private val slots = ConcurrentHashMap<String, Slot>()
+  private val nextSweepMillis = AtomicLong()
+
+  /**
+   * Consumes [amount] tokens from the lease on [key], leasing more from the bucket if needed. Returns null if [amount]
+   * is too large to lease, in which case the caller should consume from the bucket directly.
+   */
+  fun consume(key: String, configuration: RateLimitConfiguration, amount: Long): RateLimiter.ConsumptionData? {
+    if (amount > leaseSize(configuration)) return null
+
+    while (true) {
+      val slot = slots.computeIfAbsent(key) { Slot() }
+      // Lock-free unless the lease has run out or expired.
+      slot.lease?.tryConsume(amount, clock.millis())?.let {
+        return it
+      }
+
+      val result =
+        synchronized(slot) {
+          // The slot was swept while we waited for it, so try again with a new one.
+          if (slot.removed) return@synchronized null
+          slot.lease?.tryConsume(amount, clock.millis()) ?: renew(slot, key, configuration, amount)
+        } ?: continue
+      returnExpiredLeases()
+      return result
+    }
+  }
+
+  /** Returns how many unexpired tokens this process holds for [key]. */
+  fun leasedTokens(key: String): Long {
+    val lease = slots[key]?.lease ?: return 0L
+    return if (clock.millis() < lease.expiresAtMillis) lease.tokens.get() else 0L
+  }
+
+  /** Drops the lease on [key] without returning its tokens, because the bucket was reset. */
+  fun discard(key: String) {
+    val slot = slots.remove(key) ?: return
+    synchronized(slot) {
+      slot.removed = true
+      slot.lease?.tokens?.set(0L)
+    }
+  }
+
+  private fun renew(
+    slot: Slot,
+    key: String,
+    configuration: RateLimitConfiguration,
+    amount: Long,
+  ): RateLimiter.ConsumptionData {
+    val previous = slot.lease
+    // Take back what's left of the previous lease, so it can't be consumed while it's being renewed.
+    val held = previous?.tokens?.getAndSet(0L) ?: 0L
+    val needed = maxOf(amount - held, 0L)
+    val wanted = maxOf(needed, leaseSize(configuration) - held)
+
+    val bucket = getBucketProxy(key, configuration)
+    var leased = 0L
+    var bucketRemaining = previous?.bucketRemaining ?: 0L
+    var resetTime = previous?.resetTime ?: clock.instant()
+    if (wanted > 0) {
+      var probe = bucket.tryConsumeAndReturnRemaining(wanted)
+      if (probe.isConsumed) leased = wanted
+      // The bucket may not have a whole lease left, but could still have enough for this call.
+      if (!probe.isConsumed && needed in 1..probe.remainingTokens) {
+        probe = bucket.tryConsumeAndReturnRemaining(needed)
+        if (probe.isConsumed) leased = needed
+      }
+      bucketRemaining = probe.remainingTokens
+      resetTime = clock.instant().plusNanos(probe.nanosToWaitForReset)
+    }
+
+    val tokens = held + leased
+    if (tokens < amount) {
+      // Rejected: give back what we held, since calls this size can't use it.
+      slot.lease = null
+      if (held > 0) bucket.addTokens(held)
+      return RateLimiter.ConsumptionData(didConsume = false, remaining = bucketRemaining + held, resetTime = resetTime)
+    }
+
+    val lease =
+      Lease(
+        expiresAtMillis = clock.millis() + leasing.leaseDuration.toMillis(),
+        tokens = tokens - amount,
+        configuration = configuration,
+        bucketRemaining = bucketRemaining,
+        resetTime = resetTime,
+      )
+    slot.lease = lease
+    return RateLimiter.ConsumptionData(
+      didConsume = true,
+      remaining = bucketRemaining + lease.tokens.get(),
+      resetTime = resetTime,
+    )
+  }
+
+  /**
+   * Returns the unused tokens of expired leases to their buckets, at most once per lease duration. This runs on a
+   * caller's thread, so it makes at most [MAX_RETURNS_PER_SWEEP] calls to the store and leaves the rest for the next
+   * call.
+   */
+  private fun returnExpiredLeases() {
+    val now = clock.millis()
+    val next = nextSweepMillis.get()
+    if (now < next || !nextSweepMillis.compareAndSet(next, now + leasing.leaseDuration.toMillis())) return
+
+    var returns = 0
+    for ((key, slot) in slots) {
+      if (returns == MAX_RETURNS_PER_SWEEP) {
+        nextSweepMillis.set(now)
+        return
+      }
+      val (configuration, unused) =
+        synchronized(slot) {
+          val lease = slot.lease
+          if (lease != null && now < lease.expiresAtMillis) return@synchronized null
+          slots.remove(key, slot)
+          slot.removed = true
+          lease?.let { it.configuration to it.tokens.getAndSet(0L) }
+        } ?: continue
+      if (unused == 0L) continue
+
+      // The slot is gone, so this doesn't hold up calls for its key.
+      returns++
+      try {
+        getBucketProxy(key, configuration).addTokens(unused)
+      } catch (e: Exception) {
+        // The bucket refills without them; this only costs it some capacity until then.
+        logger.warn(e) { "Failed to return $unused leased tokens to the bucket for $key" }
+      }
+    }
+  }
+
+  private fun leaseSize(configuration: RateLimitConfiguration) = minOf(leasing.leaseSize, configuration.capacity)
+
+  private class Slot {
+    @Volatile var lease: Lease? = null
+    /** Set once the slot is no longer in [slots]. Guarded by the slot's lock. */
+    var removed = false
+  }
+
+  private class Lease(
+    val expiresAtMillis: Long,
+    tokens: Long,
+    val configuration: RateLimitConfiguration,
+    /** How many tokens the bucket had left when this lease was taken. */
+    val bucketRemaining: Long,
+    val resetTime: Instant,
+  ) {
+    val tokens = AtomicLong(tokens)
+
+    fun tryConsume(amount: Long, nowMillis: Long): RateLimiter.ConsumptionData? {
+      if (nowMillis >= expiresAtMillis) return null
+      while (true) {
+        val available = tokens.get()
+        if (available < amount) return null
+        if (tokens.compareAndSet(available, available - amount)) {
+          return RateLimiter.ConsumptionData(
+            didConsume = true,
+            remaining = bucketRemaining + available - amount,
+            resetTime = resetTime,
+          )
+        }
+      }
+    }
+  }
+
+  internal companion object {
+    private val logger = KotlinLogging.logger {}
+
+    /** The most leases a sweep returns to their buckets. */
+    const val MAX_RETURNS_PER_SWEEP = 8
+  }
+}
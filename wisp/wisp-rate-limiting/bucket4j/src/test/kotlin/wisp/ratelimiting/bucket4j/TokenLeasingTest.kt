@@ -0,0 +1,91 @@
+package wisp.ratelimiting.bucket4j
+
+import io.github.bucket4j.mock.ProxyManagerMock
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import java.time.Duration
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+import wisp.ratelimiting.testing.TestRateLimitConfig
+import wisp.time.FakeClock
+
+internal class TokenLeasingTest {
+  private val fakeClock = FakeClock()
+  private val proxyManager = ProxyManagerMock<String>(ClockTimeMeter(fakeClock))
+  private val tokenLeasing = TokenLeasing(leaseSize = 3, leaseDuration = Duration.ofSeconds(1))
+  private val rateLimiter = Bucket4jRateLimiter(proxyManager, fakeClock, SimpleMeterRegistry(), tokenLeasing)
+  private val unleasedRateLimiter = Bucket4jRateLimiter(proxyManager, fakeClock, SimpleMeterRegistry())
+
+  @Test
+  fun `consumes leased tokens without going to the bucket`() {
+    val result = rateLimiter.consumeToken(KEY, TestRateLimitConfig)
+    assertThat(result.didConsume).isTrue()
+    assertThat(result.remaining).isEqualTo(4L)
+    // The bucket gave up a whole lease, and this process holds the rest of it.
+    assertThat(unleasedRateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(2L)
+    assertThat(rateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(4L)
+
+    proxyManager.setException(RuntimeException())
+    repeat(2) { assertThat(rateLimiter.consumeToken(KEY, TestRateLimitConfig).didConsume).isTrue() }
+    // The lease is used up, so the next call needs the bucket.
+    assertThrows<RuntimeException> { rateLimiter.consumeToken(KEY, TestRateLimitConfig) }
+  }
+
+  @Test
+  fun `unused tokens are returned when the lease expires`() {
+    rateLimiter.consumeToken(KEY, TestRateLimitConfig)
+    assertThat(unleasedRateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(2L)
+
+    fakeClock.add(Duration.ofSeconds(2))
+    rateLimiter.consumeToken(OTHER_KEY, TestRateLimitConfig)
+    assertThat(unleasedRateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(4L)
+  }
+
+  @Test
+  fun `each call returns a bounded number of expired leases`() {
+    val keys = List(TokenLeases.MAX_RETURNS_PER_SWEEP * 2 + 1) { "key_$it" }
+    for (key in keys) rateLimiter.consumeToken(key, TestRateLimitConfig)
+
+    fakeClock.add(Duration.ofSeconds(2))
+    fun returnedKeys() = keys.count { unleasedRateLimiter.availableTokens(it, TestRateLimitConfig) == 4L }
+    rateLimiter.consumeToken(OTHER_KEY, TestRateLimitConfig)
+    assertThat(returnedKeys()).isEqualTo(TokenLeases.MAX_RETURNS_PER_SWEEP)
+
+    // The rest are returned by the next calls that lease tokens, without waiting for another lease duration.
+    repeat(2) { rateLimiter.consumeToken("$OTHER_KEY$it", TestRateLimitConfig) }
+    assertThat(returnedKeys()).isEqualTo(keys.size)
+  }
+
+  @Test
+  fun `processes leasing from the same bucket never exceed its capacity`() {
+    val otherRateLimiter = Bucket4jRateLimiter(proxyManager, fakeClock, SimpleMeterRegistry(), tokenLeasing)
+
+    var consumed = 0
+    repeat(TestRateLimitConfig.capacity.toInt() * 2) {
+      if (rateLimiter.consumeToken(KEY, TestRateLimitConfig).didConsume) consumed++
+      if (otherRateLimiter.consumeToken(KEY, TestRateLimitConfig).didConsume) consumed++
+    }
+    assertThat(consumed).isEqualTo(TestRateLimitConfig.capacity.toInt())
+  }
+
+  @Test
+  fun `large amounts go to the bucket directly`() {
+    val result = rateLimiter.consumeToken(KEY, TestRateLimitConfig, 4)
+    assertThat(result.didConsume).isTrue()
+    assertThat(unleasedRateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(1L)
+    assertThat(rateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(1L)
+  }
+
+  @Test
+  fun `resetting the bucket drops the lease`() {
+    rateLimiter.consumeToken(KEY, TestRateLimitConfig)
+    rateLimiter.resetBucket(KEY, TestRateLimitConfig)
+
+    assertThat(rateLimiter.availableTokens(KEY, TestRateLimitConfig)).isEqualTo(TestRateLimitConfig.capacity)
+  }
+
+  companion object {
+    private const val KEY = "test_key"
+    private const val OTHER_KEY = "other_test_key"
+  }
+}